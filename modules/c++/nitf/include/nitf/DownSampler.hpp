@@ -227,5 +227,115 @@ public:
     //! Destructor
     ~Select2DownSample();
 };
+
+/*!
+ *  \class AverageDownSample
+ *  \brief Average (box filter) down-sample method
+ *
+ *  The row and column skip factors divide the sub-window
+ *  into non-overlapping sample windows.  The mean of the pixels
+ *  in each sample window is the down sampled value for that
+ *  window.  Integer results are rounded to the nearest value.
+ */
+class AverageDownSample : public DownSampler
+{
+public:
+    /*!
+     *  Constructor
+     *  \param rowSkip  The number of rows to skip
+     *  \param colSkip  The number of cols to skip
+     */
+    AverageDownSample(nitf::Uint32 rowSkip,
+                      nitf::Uint32 colSkip);
+    //! Destructor
+    ~AverageDownSample();
+};
+
+/*!
+ *  \class GaussianDownSample
+ *  \brief Gaussian down-sample method
+ *
+ *  Each output pixel is the mean of the pixels around the center
+ *  of its sample window, weighted by a Gaussian.  The weights
+ *  reach ceil(3 * sigma) pixels past the window, and the edge
+ *  pixels of the image are repeated past its edges.
+ */
+class GaussianDownSample : public DownSampler
+{
+public:
+    /*!
+     *  Constructor
+     *  \param rowSkip  The number of rows to skip
+     *  \param colSkip  The number of cols to skip
+     *  \param sigma  The standard deviation, in pixels, or zero
+     *  for half of each skip
+     */
+    GaussianDownSample(nitf::Uint32 rowSkip,
+                       nitf::Uint32 colSkip,
+                       double sigma = 0.0);
+    //! Destructor
+    ~GaussianDownSample();
+};
+
+/*!
+ *  \class MedianDownSample
+ *  \brief Median down-sample method
+ *
+ *  The lower median of the pixels in each sample window is the
+ *  down sampled value for that window.  Complex pixels are
+ *  ordered by their absolute value.
+ */
+class MedianDownSample : public DownSampler
+{
+public:
+    /*!
+     *  Constructor
+     *  \param rowSkip  The number of rows to skip
+     *  \param colSkip  The number of cols to skip
+     */
+    MedianDownSample(nitf::Uint32 rowSkip,
+                     nitf::Uint32 colSkip);
+    //! Destructor
+    ~MedianDownSample();
+};
+
+/*!
+ *  \class DetectDownSample
+ *  \brief Complex detection down-sample method
+ *
+ *  Detects two band I/Q or one band complex data as magnitude, power
+ *  or decibels, averaging the power over each sample window.  Both
+ *  skips may be one, for detection at full resolution.  If a remap
+ *  range is given, the detected values are mapped to 0 to 255.
+ */
+class DetectDownSample : public DownSampler
+{
+public:
+    /*!
+     *  Constructor
+     *  \param rowSkip  The number of rows to skip
+     *  \param colSkip  The number of cols to skip
+     *  \param mode  The detected value
+     */
+    DetectDownSample(nitf::Uint32 rowSkip,
+                     nitf::Uint32 colSkip,
+                     nitf_DetectionMode mode);
+
+    /*!
+     *  Constructor, with remapping to 0 to 255
+     *  \param rowSkip  The number of rows to skip
+     *  \param colSkip  The number of cols to skip
+     *  \param mode  The detected value
+     *  \param minValue  The detected value mapped to 0
+     *  \param maxValue  The detected value mapped to 255
+     */
+    DetectDownSample(nitf::Uint32 rowSkip,
+                     nitf::Uint32 colSkip,
+                     nitf_DetectionMode mode,
+                     double minValue,
+                     double maxValue);
+    //! Destructor
+    ~DetectDownSample();
+};
 }
 #endif
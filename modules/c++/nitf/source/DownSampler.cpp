@@ -95,3 +95,58 @@ nitf::Select2DownSample::Select2DownSample(nitf::Uint32 rowSkip,
 nitf::Select2DownSample::~Select2DownSample()
 {
 }
+
+nitf::AverageDownSample::AverageDownSample(nitf::Uint32 rowSkip,
+        nitf::Uint32 colSkip)
+{
+    setNative(nitf_AverageDownSample_construct(rowSkip, colSkip, &error));
+    setManaged(false);
+}
+
+nitf::AverageDownSample::~AverageDownSample()
+{
+}
+
+nitf::GaussianDownSample::GaussianDownSample(nitf::Uint32 rowSkip,
+        nitf::Uint32 colSkip, double sigma)
+{
+    setNative(nitf_GaussianDownSample_construct(rowSkip, colSkip, sigma,
+                                                &error));
+    setManaged(false);
+}
+
+nitf::GaussianDownSample::~GaussianDownSample()
+{
+}
+
+nitf::MedianDownSample::MedianDownSample(nitf::Uint32 rowSkip,
+        nitf::Uint32 colSkip)
+{
+    setNative(nitf_MedianDownSample_construct(rowSkip, colSkip, &error));
+    setManaged(false);
+}
+
+nitf::MedianDownSample::~MedianDownSample()
+{
+}
+
+nitf::DetectDownSample::DetectDownSample(nitf::Uint32 rowSkip,
+        nitf::Uint32 colSkip, nitf_DetectionMode mode)
+{
+    setNative(nitf_DetectDownSample_construct(rowSkip, colSkip, mode, 0,
+                                              0.0, 0.0, &error));
+    setManaged(false);
+}
+
+nitf::DetectDownSample::DetectDownSample(nitf::Uint32 rowSkip,
+        nitf::Uint32 colSkip, nitf_DetectionMode mode, double minValue,
+        double maxValue)
+{
+    setNative(nitf_DetectDownSample_construct(rowSkip, colSkip, mode, 1,
+                                              minValue, maxValue, &error));
+    setManaged(false);
+}
+
+nitf::DetectDownSample::~DetectDownSample()
+{
+}
@@ -48,6 +48,12 @@ typedef struct _j2k_WriterOptions
     /* TODO add more options as we see fit */
     double compressionRatio;
     nrt_Uint32 numResolutions;
+
+    /* The number of threads the codec may encode each tile with (if > 1) */
+    nrt_Uint32 numThreads;
+
+    /* Lossy output is marked visually lossless (if non-zero) */
+    nrt_Uint32 visuallyLossless;
 } j2k_WriterOptions;
 
 typedef struct _j2k_Writer
@@ -69,6 +69,8 @@ typedef struct _ImplControl
     nitf_Uint64 dataLength;
     nitf_Uint32 curBlock;
     nitf_Field *comratField;     /* kept so we can update it */
+    NITF_BOOL lossy;             /* a compression ratio was asked for */
+    NITF_BOOL visuallyLossless;  /* the caller vouches that it is */
 }ImplControl;
 
 NITF_CXX_ENDGUARD
@@ -285,6 +287,8 @@ NITFPRIV(nitf_CompressionControl*) implOpen(nitf_ImageSubheader *subheader,
     memset(implControl, 0, sizeof(ImplControl));
 
     implControl->comratField = subheader->NITF_COMRAT;
+    implControl->lossy = options.compressionRatio > 1.0;
+    implControl->visuallyLossless = options.visuallyLossless != 0;
 
     /* initialize the container */
     if (!(components = (j2k_Component**)J2K_MALLOC(
@@ -420,14 +424,26 @@ NITFPRIV(NITF_BOOL) implEnd( nitf_CompressionControl * control,
         bits per pixel per band) for the final layer of each tile.
         The decimal point is implicit and assumed to be one
         digit from the right (i.e. xy.z).
+        Vxyz is the same for visually lossless, which is only written
+        when the caller asked for it. Other lossy output gets the bit
+        rate itself, as xx.x.
      */
     comrat = (1.0f * compressedSize * nBits) / rawSize;
     comratInt = (nitf_Uint32)(comrat * 10.0f + 0.5f);
 
     /* write the comrat field */
-    NITF_SNPRINTF(implControl->comratField->raw,
-                  implControl->comratField->length + 1,
-                  "N%03d", comratInt);
+    if (implControl->lossy && !implControl->visuallyLossless)
+    {
+        NITF_SNPRINTF(implControl->comratField->raw,
+                      implControl->comratField->length + 1,
+                      "%04.1f", comrat < 99.9f ? comrat : 99.9f);
+    }
+    else
+    {
+        NITF_SNPRINTF(implControl->comratField->raw,
+                      implControl->comratField->length + 1,
+                      "%c%03d", implControl->lossy ? 'V' : 'N', comratInt);
+    }
 
     return NITF_SUCCESS;
 }
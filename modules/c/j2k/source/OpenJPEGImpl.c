@@ -480,18 +480,13 @@ J2KPRIV( NRT_BOOL) OpenJPEG_initImage(OpenJPEGWriterImpl *impl,
     /* TODO allow overrides somehow? */
     opj_set_default_encoder_parameters(&encoderParams);
 
-    /* For now we are enforcing lossless compression.  If we have a better
-     * way to allow overrides in the future, uncomment out the tcp_rates logic
-     * below (tcp_rates[0] == 0 via opj_set_default_encoder_parameters()).
-     * Also consider setting encoderParams.irreversible = 1; to use the
-     * lossy DWT 9-7 instead of the reversible 5-3.
+    /* Compression is lossless (tcp_rates[0] == 0 via
+     * opj_set_default_encoder_parameters()) unless the caller asked for a
+     * compression ratio, in which case the single quality layer is truncated
+     * to it.  The reversible 5-3 DWT is kept either way.
      */
-
-    /*if (writerOps && writerOps->compressionRatio > 0.0001)
-        encoderParams.tcp_rates[0] = 1.0 / writerOps->compressionRatio;
-    else
-        encoderParams.tcp_rates[0] = 4.0;
-    */
+    if (writerOps && writerOps->compressionRatio > 1.0)
+        encoderParams.tcp_rates[0] = (float)writerOps->compressionRatio;
 
     /* TODO: These two lines should not be necessary when using lossless
      *       encoding but appear to be needed (at least in OpenJPEG 2.0) -
@@ -617,6 +612,15 @@ J2KPRIV( NRT_BOOL) OpenJPEG_initImage(OpenJPEGWriterImpl *impl,
         goto CATCH_ERROR;
     }
 
+#if OPJ_VERSION_MAJOR > 2 || (OPJ_VERSION_MAJOR == 2 && OPJ_VERSION_MINOR >= 2)
+    /* Let the codec encode the code-blocks of each tile on a thread pool.
+     * Builds of OpenJPEG that cannot encode with threads refuse, in which
+     * case we just encode on this thread.
+     */
+    if (writerOps && writerOps->numThreads > 1)
+        opj_codec_set_threads(impl->codec, (int)writerOps->numThreads);
+#endif
+
     if (!opj_setup_encoder(impl->codec, &encoderParams, impl->image))
     {
         /*nrt_Error_init(error, "Error setting up OpenJPEG decoder", NRT_CTXT,
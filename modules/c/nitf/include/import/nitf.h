@@ -43,6 +43,7 @@
 #include "nitf/ImageSource.h"
 #include "nitf/ImageSubheader.h"
 #include "nitf/ImageWriter.h"
+#include "nitf/InterleavedSource.h"
 #include "nitf/LabelSegment.h"
 #include "nitf/LabelSubheader.h"
 #include "nitf/LookupTable.h"
@@ -137,6 +137,8 @@ nitf_IDownSampler;
  *  \param minBands    Minimum number of bands in multi-band method
  *  \param maxBands    Maxmum number of bands in multi-band method
  *  \param types       Mask of type/pixel size flags
+ *  \param fullResolution The method is applied even when both skips are one
+ *  \param halo        Pixels of context the method needs around each window
  *  \param data        The derived class instance data
  *
  * The multiBand, minBands, and maxBands fields support multi-band methods. The
@@ -147,6 +149,19 @@ nitf_IDownSampler;
  * The types field is a mask that specifies the supported pixel types and
  * sizes. Each bit represents one type/size pair (i.e. one byte INT). For the
  * binary pixel type, the byte count is one and for the 12-bit type it is two
+ *
+ * Most methods only select or combine pixels, and with both skips equal to
+ * one the result is the sub-window itself, so the read does not call them.
+ * Methods that change pixel values (i.e. complex detection) set fullResolution
+ * to be applied to every read, whatever the skips.
+ *
+ * Methods that look past their own sample window (i.e. Gaussian filtering)
+ * set halo to the number of pixels they need on every side of it. The input
+ * buffer then holds numWindowRows * rowSkip + 2 * halo rows, and the upper
+ * left corner of the first window is halo rows down and halo columns in.
+ * The read fills the halo from the neighboring pixels of the image, repeating
+ * the edge pixels of the image past its edges, so the windows are always
+ * complete and rowsInLastWindow and colsInLastWindow are the skips.
  */
 
 typedef struct _nitf_DownSampler
@@ -158,6 +173,8 @@ typedef struct _nitf_DownSampler
     nitf_Uint32 minBands;       /* Minimum number of bands in multi-band method */
     nitf_Uint32 maxBands;       /* Maxmum number of bands in multi-band method */
     nitf_Uint32 types;          /* Mask of type/pixel size flags */
+    NITF_BOOL fullResolution;   /* Apply the method even at full resolution */
+    nitf_Uint32 halo;           /* Pixels of context around each window */
     NITF_DATA *data;            /* To be overloaded by derived class  */
 }
 nitf_DownSampler;
@@ -325,6 +342,139 @@ NITFAPI(nitf_DownSampler *) nitf_Select2DownSample_construct(nitf_Uint32
         nitf_Error *
         error);
 
+/*!
+ *  \brief Average (box filter) down-sample method
+ *
+ *  The row and column skip factors divide the sub-window into non-overlaping
+ *  sample windows. The mean of the pixels in each sample window is the
+ *  down-sampled value for that window. Integer results are rounded to the
+ *  nearest value, and complex pixels have their real and imaginary parts
+ *  averaged separately. Unlike pixel skip, this does not alias.
+ *
+ *  \param rowSkip  The number of rows to skip
+ *  \param colSkip  The number of columns to skip
+ *  \param error  An error to populate if something bad happened
+ *
+ *  \return This method returns an object on success, and NULL on failure.
+ */
+NITFAPI(nitf_DownSampler *) nitf_AverageDownSample_construct(nitf_Uint32
+        rowSkip,
+        nitf_Uint32
+        colSkip,
+        nitf_Error *
+        error);
+
+/*!
+ *  \brief Gaussian down-sample method
+ *
+ *  Each output pixel is the mean of the pixels around the center of its
+ *  sample window, weighted by a Gaussian of the given standard deviation, in
+ *  full resolution pixels. The weights are separable and reach ceil(3 *
+ *  sigma) pixels past the window (the halo), so neighboring windows overlap
+ *  and the result does not alias. Past the edges of the image the edge pixels
+ *  are repeated. A sigma of zero or less gives half of each skip, for the
+ *  rows and the columns. Integer results are rounded to the nearest value,
+ *  and complex pixels have their real and imaginary parts filtered
+ *  separately.
+ *
+ *  \param rowSkip  The number of rows to skip
+ *  \param colSkip  The number of columns to skip
+ *  \param sigma  The standard deviation of the Gaussian, in pixels
+ *  \param error  An error to populate if something bad happened
+ *
+ *  \return This method returns an object on success, and NULL on failure.
+ */
+NITFAPI(nitf_DownSampler *) nitf_GaussianDownSample_construct(nitf_Uint32
+        rowSkip,
+        nitf_Uint32
+        colSkip,
+        double
+        sigma,
+        nitf_Error *
+        error);
+
+/*!
+ *  \brief Median down-sample method
+ *
+ *  The lower median of the pixels in each sample window is the down-sampled
+ *  value for that window, so the result is always one of the input pixels.
+ *  Complex pixels are ordered by their absolute value, and NaNs are ordered
+ *  after every number.
+ *
+ *  \param rowSkip  The number of rows to skip
+ *  \param colSkip  The number of columns to skip
+ *  \param error  An error to populate if something bad happened
+ *
+ *  \return This method returns an object on success, and NULL on failure.
+ */
+NITFAPI(nitf_DownSampler *) nitf_MedianDownSample_construct(nitf_Uint32
+        rowSkip,
+        nitf_Uint32
+        colSkip,
+        nitf_Error *
+        error);
+
+/*!
+ *  \enum nitf_DetectionMode
+ *  \brief The value computed from complex pixels by the detect method
+ *
+ *  NITF_DETECT_MAGNITUDE  The magnitude, sqrt(I*I + Q*Q)
+ *  NITF_DETECT_POWER      The power, I*I + Q*Q
+ *  NITF_DETECT_DECIBELS   The power in decibels, 10*log10(I*I + Q*Q)
+ */
+typedef enum _nitf_DetectionMode
+{
+    NITF_DETECT_MAGNITUDE,
+    NITF_DETECT_POWER,
+    NITF_DETECT_DECIBELS
+} nitf_DetectionMode;
+
+/*!
+ *  \brief Complex detection down-sample method
+ *
+ *  Detects complex (i.e. SAR) data in a single pass over the pixels. The
+ *  input is either two bands, in-phase then quadrature, of any integer or
+ *  real type, or one band of complex pixels. Band interleaved by pixel
+ *  (IMODE P) I/Q images are read the same way as the other modes.
+ *
+ *  The power of the pixels of each sample window is averaged (incoherent
+ *  multi-look), and the mean is converted to the requested mode. Both skips
+ *  may be one, for detection at full resolution.
+ *
+ *  If remap is set, the detected value is mapped linearly from the range
+ *  minValue to maxValue onto 0 to 255, rounded and clipped, so any type can
+ *  hold it (in decibels for NITF_DETECT_DECIBELS).
+ *
+ *  The output has the input pixel type. Integer results are rounded and
+ *  clipped to the range of the type. Two band reads get the detected value
+ *  in both bands, complex reads get it as the real part, with a zero
+ *  imaginary part.
+ *
+ *  \param rowSkip  The number of rows to skip
+ *  \param colSkip  The number of columns to skip
+ *  \param mode  The detected value
+ *  \param remap  If non-zero, remap the detected value to 0 to 255
+ *  \param minValue  Detected value mapped to 0, if remap is set
+ *  \param maxValue  Detected value mapped to 255, if remap is set
+ *  \param error  An error to populate if something bad happened
+ *
+ *  \return This method returns an object on success, and NULL on failure.
+ */
+NITFAPI(nitf_DownSampler *) nitf_DetectDownSample_construct(nitf_Uint32
+        rowSkip,
+        nitf_Uint32
+        colSkip,
+        nitf_DetectionMode
+        mode,
+        NITF_BOOL
+        remap,
+        double
+        minValue,
+        double
+        maxValue,
+        nitf_Error *
+        error);
+
 /*!
  *  The downsampler destructor is a management function.  While it does
  *  free the downsampler, it first destroys any user data using the
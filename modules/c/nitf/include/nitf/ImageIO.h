@@ -45,6 +45,14 @@
 
 #define NITF_IMAGE_IO_NO_OFFSET      ((nitf_Uint32) 0xffffffff)
 
+/*! \def NITF_IMAGE_IO_BLOCK_MISSING - Block is not recorded, all pad pixels */
+
+#define NITF_IMAGE_IO_BLOCK_MISSING  ((nitf_Uint8) 0x01)
+
+/*! \def NITF_IMAGE_IO_BLOCK_PADDED - Block is recorded but has pad pixels */
+
+#define NITF_IMAGE_IO_BLOCK_PADDED   ((nitf_Uint8) 0x02)
+
 /*! \def NITF_NBPP_TO_BYTES  - Compute bytes per pixel from NBPP field */
 
 #define NITF_NBPP_TO_BYTES(nbpp) ((((int) (nbpp)) - 1)/8 + 1)
@@ -838,6 +846,38 @@ NITFPROT(nitf_BlockingInfo *) nitf_ImageIO_getBlockingInfo(nitf_ImageIO * image,
                                                            nitf_Error * error
                                                           );
 
+/*!
+  \brief nitf_ImageIO_getBlockStatus - Get the block mask state of each block
+
+  \b nitf_ImageIO_getBlockStatus returns one status byte per block, in
+  block mask order (in blocking mode "S" all of the blocks of the first band
+  followed by those of the second and so on). Each is zero for an ordinary
+  block, NITF_IMAGE_IO_BLOCK_MISSING for a block that is not recorded in the
+  file (reads fill it with the pad value without any I/O) or
+  NITF_IMAGE_IO_BLOCK_PADDED for a recorded block that has pad pixels. Images
+  without masks have only ordinary blocks.
+
+  The masks are read from the file if that has not been done already, hence
+  the need for the I/O handle.
+
+  \param image The associated ImageIO object
+  \param io IO interface for read
+  \param numBlocks Returns the number of entries in the result
+  \param error Error object
+  \return The status array, which the caller must free with NITF_FREE. On
+  error, the error structure is set and NULL is returned.
+
+  Possible errors include:
+
+    memory allocation error
+    I/O error
+*/
+
+NITFPROT(nitf_Uint8 *) nitf_ImageIO_getBlockStatus(nitf_ImageIO * image,
+                                                   nitf_IOInterface* io,
+                                                   nitf_Uint32 * numBlocks,
+                                                   nitf_Error * error);
+
 /*!
   \brief nitf_ImageIO_setWriteCaching - Enable/disable cached writes
 
@@ -897,6 +937,11 @@ NITFPROT(NITF_BOOL) nitf_ImageIO_setupDirectBlockRead(nitf_ImageIO *nitf,
   \b nitf_ImageIO_readBlockDirect reads a block of data directly from file without
   any manipulation or re-organization.  Only use this if you know what you're doing!
 
+  A block that is missing from the block mask of an uncompressed image is
+  returned as a block of pad pixels. In a compressed (or bit-packed) image it
+  is an error: NULL is returned and the block size is set to zero. Use
+  nitf_ImageIO_getBlockStatus to find the missing blocks beforehand.
+
   \param nitf         Image handle
   \param io           IO handle
   \param blockNumber  The block to read
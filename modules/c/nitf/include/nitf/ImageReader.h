@@ -46,6 +46,16 @@ NITFAPI(nitf_BlockingInfo *)
 nitf_ImageReader_getBlockingInfo(nitf_ImageReader * imageReader,
                                  nitf_Error * error);
 
+/*!
+ *  Returns the block mask state of each block, as described for
+ *  nitf_ImageIO_getBlockStatus. The caller must free the result with
+ *  NITF_FREE.
+ */
+NITFAPI(nitf_Uint8 *)
+nitf_ImageReader_getBlockStatus(nitf_ImageReader * imageReader,
+                                nitf_Uint32 * numBlocks,
+                                nitf_Error * error);
+
 /*!
  *  TODO: Add documentation
  */
@@ -55,7 +65,8 @@ NITFAPI(NITF_BOOL) nitf_ImageReader_read(nitf_ImageReader * imageReader,
         int *padded, nitf_Error * error);
 
 /**
-   Read a block directly from file
+   Read a block directly from file. A block missing from the block mask of a
+   compressed image is an error, as described for nitf_ImageIO_readBlockDirect.
  */
 NITFAPI(nitf_Uint8*) nitf_ImageReader_readBlock(nitf_ImageReader * imageReader,
                                                 nitf_Uint32 blockNumber,
@@ -0,0 +1,103 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2014, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+  \file InterleavedSource - Image source for pixel interleaved data
+
+  The InterleavedSource builds an image source from data that has all of the
+  bands of each pixel together (band interleaved by pixel), such as an RGB
+  raster. Rather than one memory source per band, each of which strides
+  through the whole buffer, the band sources share a splitter that takes each
+  interleaved row apart into its bands in one pass, the first time any band
+  asks for it. The image writer then lays the bands out for the image's
+  IMODE as usual.
+
+  The data comes either from memory or from a "nextRow" function, which is
+  asked for the rows in order, each once. Like the RowSource, this relies on
+  the bands of the image source being read in step, a row at a time, as the
+  image writer does. Like the RowSource, it cannot be reused for a second
+  write.
+*/
+
+#ifndef __NITF_INTERLEAVED_SOURCE_H__
+#define __NITF_INTERLEAVED_SOURCE_H__
+
+#include "nitf/ImageSource.h"
+
+NITF_CXX_GUARD
+
+/*!
+  \brief NITF_INTERLEAVED_SOURCE_NEXT_ROW - Next row function prototype
+
+  \param algorithm - The algorithm object
+  \param row       - The requested row
+  \param buffer    - A buffer the row may be put in
+  \param error     - Error object for error returns
+
+  \return Returns the row, which is either the buffer that was passed, or
+  memory of the algorithm object's that stays valid until the next call.
+  On failure NULL is returned and the error object is set
+*/
+typedef const NITF_DATA *(*NITF_INTERLEAVED_SOURCE_NEXT_ROW) (void *algorithm,
+        nitf_Uint32 row,
+        NITF_DATA * buffer,
+        nitf_Error * error);
+
+/*!
+  \brief nitf_InterleavedSource_construct - Image source for interleaved
+  data in memory
+
+  \return The new image source, with a band source per band, or NULL on
+  error. The data is not copied, and must outlive the image source.
+*/
+NITFAPI(nitf_ImageSource *) nitf_InterleavedSource_construct
+(
+    const void *data,               /*!< The interleaved pixels */
+    nitf_Uint32 numRows,            /*!< Number of rows */
+    nitf_Uint32 numCols,            /*!< Number of columns */
+    nitf_Uint32 numBands,           /*!< Number of bands */
+    nitf_Uint32 numBytesPerPixel,   /*!< Bytes in each band of a pixel */
+    nitf_Error * error              /*!< For error returns */
+);
+
+/*!
+  \brief nitf_InterleavedSource_constructRows - Image source for interleaved
+  data produced a row at a time
+
+  \return The new image source, with a band source per band, or NULL on
+  error. If destructAlgorithm is not NULL, the algorithm object is given to
+  it when the image source is destroyed (but not if construction fails).
+*/
+NITFAPI(nitf_ImageSource *) nitf_InterleavedSource_constructRows
+(
+    void *algorithm,                            /*!< The algorithm object */
+    NITF_INTERLEAVED_SOURCE_NEXT_ROW nextRow,   /*!< The next row function */
+    NITF_IDATASOURCE_DESTRUCT destructAlgorithm,/*!< Optional destructor */
+    nitf_Uint32 numRows,            /*!< Number of rows */
+    nitf_Uint32 numCols,            /*!< Number of columns */
+    nitf_Uint32 numBands,           /*!< Number of bands */
+    nitf_Uint32 numBytesPerPixel,   /*!< Bytes in each band of a pixel */
+    nitf_Error * error              /*!< For error returns */
+);
+
+NITF_CXX_ENDGUARD
+#endif
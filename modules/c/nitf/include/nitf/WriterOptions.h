@@ -29,6 +29,8 @@ NITF_CXX_GUARD
 
 #define C8_COMPRESSION_RATIO_KEY "compressionRatio"
 #define C8_NUM_RESOLUTIONS_KEY   "numResolutions"
+#define C8_NUM_THREADS_KEY       "numThreads"
+#define C8_VISUALLY_LOSSLESS_KEY "visuallyLossless"
 
 NITF_CXX_ENDGUARD
 
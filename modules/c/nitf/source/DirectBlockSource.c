@@ -158,11 +158,17 @@ NITFAPI(nitf_BandSource *) nitf_DirectBlockSource_construct(void * algorithm,
                                           imageReader->input,
                                           numBands,
                                           error))
-        return NITF_FAILURE;
+    {
+        NITF_FREE(impl);
+        return NULL;
+    }
 
     blockInfo = nitf_ImageReader_getBlockingInfo(imageReader, error);
     if (blockInfo == NULL)
-        return NITF_FAILURE;
+    {
+        NITF_FREE(impl);
+        return NULL;
+    }
 
     numBlocks = blockInfo->numBlocksPerRow * blockInfo->numBlocksPerCol;
 
@@ -179,6 +185,7 @@ NITFAPI(nitf_BandSource *) nitf_DirectBlockSource_construct(void * algorithm,
     {
         nitf_Error_init(error, NITF_STRERROR(NITF_ERRNO), NITF_CTXT,
                         NITF_ERR_MEMORY);
+        NITF_FREE(impl);
         return NULL;
     }
     bandSource->data = impl;
@@ -231,6 +231,8 @@ NITFAPI(nitf_DownSampler *) nitf_PixelSkip_construct(nitf_Uint32 rowSkip,
     downsampler->minBands = 1;
     downsampler->maxBands = 0;
     downsampler->types = NITF_DOWNSAMPLER_TYPE_ALL;
+    downsampler->fullResolution = 0;
+    downsampler->halo = 0;
     downsampler->data = NULL;
 
     downsampler->iface = &iPixelSkip;
@@ -557,6 +559,8 @@ NITFAPI(nitf_DownSampler *) nitf_MaxDownSample_construct(nitf_Uint32
     downsampler->minBands = 1;
     downsampler->maxBands = 0;
     downsampler->types = NITF_DOWNSAMPLER_TYPE_ALL;
+    downsampler->fullResolution = 0;
+    downsampler->halo = 0;
     downsampler->data = NULL;
 
     downsampler->iface = &iMaxDownSample;
@@ -807,6 +811,8 @@ NITFAPI(nitf_DownSampler *) nitf_SumSq2DownSample_construct(nitf_Uint32
     downsampler->minBands = 2;
     downsampler->maxBands = 2;
     downsampler->types = NITF_DOWNSAMPLER_TYPE_ALL_BUT_COMPLEX;
+    downsampler->fullResolution = 0;
+    downsampler->halo = 0;
     downsampler->data = NULL;
 
     downsampler->iface = &iSumSq2DownSample;
@@ -1066,8 +1072,1239 @@ NITFAPI(nitf_DownSampler *) nitf_Select2DownSample_construct(nitf_Uint32
     downsampler->minBands = 2;
     downsampler->maxBands = 2;
     downsampler->types = NITF_DOWNSAMPLER_TYPE_ALL_BUT_COMPLEX;
+    downsampler->fullResolution = 0;
+    downsampler->halo = 0;
     downsampler->data = NULL;
 
     downsampler->iface = &iSelect2DownSample;
     return downsampler;
 }
+
+/*
+*      Average down-sample method
+*
+*  Each output pixel is the mean of the pixels in its sample window, over the
+*  pixels actually present, so partial windows at the edge of the image are
+*  handled. Integer results are rounded to the nearest value. Complex pixels
+*  have their real and imaginary parts averaged separately.
+*/
+
+#define ROUND_DOWN_SAMPLE(value) ((value) < 0 ? (value) - 0.5 : (value) + 0.5)
+#define NO_ROUND_DOWN_SAMPLE(value) (value)
+
+#define AVERAGE_DOWN_SAMPLE(type, round) \
+    { \
+        nitf_Uint32 row;         /* Current row */ \
+        nitf_Uint32 column;      /* Current column */ \
+        nitf_Uint32 winRow;      /* Current row in current window */ \
+        nitf_Uint32 winCol;      /* Current column current window */ \
+        nitf_Uint32 rowWinLimit; /* Number of rows in current window */ \
+        nitf_Uint32 colWinLimit; /* Number of cols in current window */ \
+        type *currentPtr;        /* Pointer to the current window UL corner */ \
+        type *pixel;             /* Pointer to the current pixel */ \
+        type *outp;              /* Pointer into output */ \
+        double sum;              /* Sum of the window */ \
+        double count;            /* Number of pixels in the window */ \
+        \
+        for(band=0;band<numBands;band++) \
+        { \
+            for(row=0;row<numWindowRows;row++) \
+            { \
+                rowWinLimit = (row < (numWindowRows-1)) ? \
+                    object->rowSkip : rowsInLastWindow; \
+                currentPtr = ((type *) inputWindows[band]) \
+                    + row*object->rowSkip*numInputCols; \
+                outp = ((type *) outputWindows[band]) + row*numCols; \
+                for(column=0;column<numWindowCols;column++) \
+                { \
+                    colWinLimit = (column < (numWindowCols-1)) ? \
+                        object->colSkip : colsInLastWindow; \
+                    sum = 0.0; \
+                    for(winRow=0;winRow<rowWinLimit;winRow++) \
+                    { \
+                        pixel = currentPtr + winRow*numInputCols; \
+                        for(winCol=0;winCol<colWinLimit;winCol++) \
+                        { \
+                            sum += (double) pixel[winCol]; \
+                        } \
+                    } \
+                    count = (double) rowWinLimit*colWinLimit; \
+                    sum /= count; \
+                    *(outp++) = (type) round(sum); \
+                    currentPtr += object->colSkip; \
+                } \
+            } \
+        } \
+        \
+        return(1); \
+    }
+
+#define AVERAGE_DOWN_SAMPLE_CMPX(type) \
+    { \
+        nitf_Uint32 row;         /* Current row */ \
+        nitf_Uint32 column;      /* Current column */ \
+        nitf_Uint32 winRow;      /* Current row in current window */ \
+        nitf_Uint32 winCol;      /* Current column current window */ \
+        nitf_Uint32 rowWinLimit; /* Number of rows in current window */ \
+        nitf_Uint32 colWinLimit; /* Number of cols in current window */ \
+        type *currentPtr;        /* Pointer to the current window UL corner */ \
+        type *pixel;             /* Pointer to the current pixel */ \
+        type *outp;              /* Pointer into output */ \
+        double sumReal;          /* Sum of the window, real part */ \
+        double sumImg;           /* Sum of the window, complex part */ \
+        double count;            /* Number of pixels in the window */ \
+        \
+        for(band=0;band<numBands;band++) \
+        { \
+            for(row=0;row<numWindowRows;row++) \
+            { \
+                rowWinLimit = (row < (numWindowRows-1)) ? \
+                    object->rowSkip : rowsInLastWindow; \
+                currentPtr = ((type *) inputWindows[band]) \
+                    + row*object->rowSkip*numInputCols*2; \
+                outp = ((type *) outputWindows[band]) + row*numCols*2; \
+                for(column=0;column<numWindowCols;column++) \
+                { \
+                    colWinLimit = (column < (numWindowCols-1)) ? \
+                        object->colSkip : colsInLastWindow; \
+                    sumReal = 0.0; \
+                    sumImg = 0.0; \
+                    for(winRow=0;winRow<rowWinLimit;winRow++) \
+                    { \
+                        pixel = currentPtr + winRow*numInputCols*2; \
+                        for(winCol=0;winCol<colWinLimit;winCol++) \
+                        { \
+                            sumReal += (double) pixel[2*winCol]; \
+                            sumImg += (double) pixel[2*winCol + 1]; \
+                        } \
+                    } \
+                    count = (double) rowWinLimit*colWinLimit; \
+                    *(outp++) = (type) (sumReal / count); \
+                    *(outp++) = (type) (sumImg / count); \
+                    currentPtr += object->colSkip*2; \
+                } \
+            } \
+        } \
+        \
+        return(1); \
+    }
+
+NITFPRIV(NITF_BOOL) AverageDownSample_apply(nitf_DownSampler * object,
+                                            NITF_DATA ** inputWindows,
+                                            NITF_DATA ** outputWindows,
+                                            nitf_Uint32 numBands,
+                                            nitf_Uint32 numWindowRows,
+                                            nitf_Uint32 numWindowCols,
+                                            nitf_Uint32 numInputCols,
+                                            nitf_Uint32 numCols,
+                                            nitf_Uint32 pixelType,
+                                            nitf_Uint32 pixelSize,
+                                            nitf_Uint32 rowsInLastWindow,
+                                            nitf_Uint32 colsInLastWindow,
+                                            nitf_Error * error)
+{
+    nitf_Uint32 band;           /* Current band */
+
+    if (pixelType == NITF_PIXEL_TYPE_INT)
+    {
+        switch (pixelSize)
+        {
+            case 1:
+                AVERAGE_DOWN_SAMPLE(nitf_Uint8, ROUND_DOWN_SAMPLE)
+            case 2:
+                AVERAGE_DOWN_SAMPLE(nitf_Uint16, ROUND_DOWN_SAMPLE)
+            case 4:
+                AVERAGE_DOWN_SAMPLE(nitf_Uint32, ROUND_DOWN_SAMPLE)
+            case 8:
+                AVERAGE_DOWN_SAMPLE(nitf_Uint64, ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_B)
+    {
+        AVERAGE_DOWN_SAMPLE(nitf_Uint8, ROUND_DOWN_SAMPLE)
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_SI)
+    {
+        switch (pixelSize)
+        {
+            case 1:
+                AVERAGE_DOWN_SAMPLE(nitf_Int8, ROUND_DOWN_SAMPLE)
+            case 2:
+                AVERAGE_DOWN_SAMPLE(nitf_Int16, ROUND_DOWN_SAMPLE)
+            case 4:
+                AVERAGE_DOWN_SAMPLE(nitf_Int32, ROUND_DOWN_SAMPLE)
+            case 8:
+                AVERAGE_DOWN_SAMPLE(nitf_Int64, ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_R)
+    {
+        switch (pixelSize)
+        {
+            case 4:
+                AVERAGE_DOWN_SAMPLE(float, NO_ROUND_DOWN_SAMPLE)
+            case 8:
+                AVERAGE_DOWN_SAMPLE(double, NO_ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_C)
+    {
+        switch (pixelSize)
+        {
+            case 8:
+                AVERAGE_DOWN_SAMPLE_CMPX(float)
+            case 16:
+                AVERAGE_DOWN_SAMPLE_CMPX(double)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else
+    {
+        nitf_Error_init(error, "Invalid pixel type",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return (0);
+    }
+}
+
+NITFPRIV(void) AverageDownSample_destruct(NITF_DATA * data)
+{
+    return;                     /* There is no instance data */
+}
+
+NITFAPI(nitf_DownSampler *) nitf_AverageDownSample_construct(nitf_Uint32
+        rowSkip,
+        nitf_Uint32
+        colSkip,
+        nitf_Error *
+        error)
+{
+
+    static nitf_IDownSampler iAverageDownSample =
+        {
+            &AverageDownSample_apply,
+            &AverageDownSample_destruct
+        };
+
+    nitf_DownSampler *downsampler;
+
+    if (rowSkip == 0 || colSkip == 0)
+    {
+        nitf_Error_init(error, "Invalid skip size",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return NULL;
+    }
+
+    downsampler =
+        (nitf_DownSampler *) NITF_MALLOC(sizeof(nitf_DownSampler));
+    if (!downsampler)
+    {
+        nitf_Error_init(error,
+                        NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+
+    downsampler->rowSkip = rowSkip;
+    downsampler->colSkip = colSkip;
+    downsampler->multiBand = 0;
+    downsampler->minBands = 1;
+    downsampler->maxBands = 0;
+    downsampler->types = NITF_DOWNSAMPLER_TYPE_ALL;
+    downsampler->fullResolution = 0;
+    downsampler->halo = 0;
+    downsampler->data = NULL;
+
+    downsampler->iface = &iAverageDownSample;
+    return downsampler;
+}
+
+/*
+*      Gaussian down-sample method
+*
+*  Each output pixel is the weighted mean of the pixels around the center of
+*  its sample window. The weights are a separable Gaussian, one weight per
+*  row and one per column, that reaches halo pixels past the window on every
+*  side. The input holds the halo around the windows (see nitf_DownSampler),
+*  so the kernel of a window starts at the upper left corner of the window,
+*  moved up and left by the halo, and the windows are always complete. The
+*  weights of each direction sum to one. Integer results are rounded to the
+*  nearest value. Complex pixels have their real and imaginary parts
+*  filtered separately.
+*/
+
+/*  Instance data of the Gaussian down-sampler */
+typedef struct _GaussianDownSampleData
+{
+    double *rowWeights;         /* rowSkip + 2*halo weights, one per row */
+    double *colWeights;         /* colSkip + 2*halo weights, one per column */
+}
+GaussianDownSampleData;
+
+#define GAUSSIAN_DOWN_SAMPLE(type, round) \
+    { \
+        nitf_Uint32 row;         /* Current row */ \
+        nitf_Uint32 column;      /* Current column */ \
+        nitf_Uint32 kernRow;     /* Current row in current kernel */ \
+        nitf_Uint32 kernCol;     /* Current column in current kernel */ \
+        type *currentPtr;        /* Pointer to the current kernel UL corner */ \
+        type *pixel;             /* Pointer to the current pixel */ \
+        type *outp;              /* Pointer into output */ \
+        double sum;              /* Weighted sum of the kernel */ \
+        double rowSum;           /* Weighted sum of one row of the kernel */ \
+        \
+        for(band=0;band<numBands;band++) \
+        { \
+            for(row=0;row<numWindowRows;row++) \
+            { \
+                currentPtr = ((type *) inputWindows[band]) \
+                    + row*object->rowSkip*numInputCols; \
+                outp = ((type *) outputWindows[band]) + row*numCols; \
+                for(column=0;column<numWindowCols;column++) \
+                { \
+                    sum = 0.0; \
+                    for(kernRow=0;kernRow<kernRows;kernRow++) \
+                    { \
+                        pixel = currentPtr + kernRow*numInputCols; \
+                        rowSum = 0.0; \
+                        for(kernCol=0;kernCol<kernCols;kernCol++) \
+                        { \
+                            rowSum += data->colWeights[kernCol] \
+                                * (double) pixel[kernCol]; \
+                        } \
+                        sum += data->rowWeights[kernRow] * rowSum; \
+                    } \
+                    *(outp++) = (type) round(sum); \
+                    currentPtr += object->colSkip; \
+                } \
+            } \
+        } \
+        \
+        return(1); \
+    }
+
+#define GAUSSIAN_DOWN_SAMPLE_CMPX(type) \
+    { \
+        nitf_Uint32 row;         /* Current row */ \
+        nitf_Uint32 column;      /* Current column */ \
+        nitf_Uint32 kernRow;     /* Current row in current kernel */ \
+        nitf_Uint32 kernCol;     /* Current column in current kernel */ \
+        type *currentPtr;        /* Pointer to the current kernel UL corner */ \
+        type *pixel;             /* Pointer to the current pixel */ \
+        type *outp;              /* Pointer into output */ \
+        double sumReal;          /* Weighted sum, real part */ \
+        double sumImg;           /* Weighted sum, complex part */ \
+        double rowReal;          /* Weighted sum of one kernel row, real */ \
+        double rowImg;           /* Weighted sum of one kernel row, complex */ \
+        \
+        for(band=0;band<numBands;band++) \
+        { \
+            for(row=0;row<numWindowRows;row++) \
+            { \
+                currentPtr = ((type *) inputWindows[band]) \
+                    + row*object->rowSkip*numInputCols*2; \
+                outp = ((type *) outputWindows[band]) + row*numCols*2; \
+                for(column=0;column<numWindowCols;column++) \
+                { \
+                    sumReal = 0.0; \
+                    sumImg = 0.0; \
+                    for(kernRow=0;kernRow<kernRows;kernRow++) \
+                    { \
+                        pixel = currentPtr + kernRow*numInputCols*2; \
+                        rowReal = 0.0; \
+                        rowImg = 0.0; \
+                        for(kernCol=0;kernCol<kernCols;kernCol++) \
+                        { \
+                            rowReal += data->colWeights[kernCol] \
+                                * (double) pixel[2*kernCol]; \
+                            rowImg += data->colWeights[kernCol] \
+                                * (double) pixel[2*kernCol + 1]; \
+                        } \
+                        sumReal += data->rowWeights[kernRow] * rowReal; \
+                        sumImg += data->rowWeights[kernRow] * rowImg; \
+                    } \
+                    *(outp++) = (type) sumReal; \
+                    *(outp++) = (type) sumImg; \
+                    currentPtr += object->colSkip*2; \
+                } \
+            } \
+        } \
+        \
+        return(1); \
+    }
+
+NITFPRIV(NITF_BOOL) GaussianDownSample_apply(nitf_DownSampler * object,
+                                             NITF_DATA ** inputWindows,
+                                             NITF_DATA ** outputWindows,
+                                             nitf_Uint32 numBands,
+                                             nitf_Uint32 numWindowRows,
+                                             nitf_Uint32 numWindowCols,
+                                             nitf_Uint32 numInputCols,
+                                             nitf_Uint32 numCols,
+                                             nitf_Uint32 pixelType,
+                                             nitf_Uint32 pixelSize,
+                                             nitf_Uint32 rowsInLastWindow,
+                                             nitf_Uint32 colsInLastWindow,
+                                             nitf_Error * error)
+{
+    nitf_Uint32 band;           /* Current band */
+    GaussianDownSampleData *data = (GaussianDownSampleData *) object->data;
+    /* Size of the kernel of one window */
+    nitf_Uint32 kernRows = object->rowSkip + 2 * object->halo;
+    nitf_Uint32 kernCols = object->colSkip + 2 * object->halo;
+
+    if (pixelType == NITF_PIXEL_TYPE_INT)
+    {
+        switch (pixelSize)
+        {
+            case 1:
+                GAUSSIAN_DOWN_SAMPLE(nitf_Uint8, ROUND_DOWN_SAMPLE)
+            case 2:
+                GAUSSIAN_DOWN_SAMPLE(nitf_Uint16, ROUND_DOWN_SAMPLE)
+            case 4:
+                GAUSSIAN_DOWN_SAMPLE(nitf_Uint32, ROUND_DOWN_SAMPLE)
+            case 8:
+                GAUSSIAN_DOWN_SAMPLE(nitf_Uint64, ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_B)
+    {
+        GAUSSIAN_DOWN_SAMPLE(nitf_Uint8, ROUND_DOWN_SAMPLE)
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_SI)
+    {
+        switch (pixelSize)
+        {
+            case 1:
+                GAUSSIAN_DOWN_SAMPLE(nitf_Int8, ROUND_DOWN_SAMPLE)
+            case 2:
+                GAUSSIAN_DOWN_SAMPLE(nitf_Int16, ROUND_DOWN_SAMPLE)
+            case 4:
+                GAUSSIAN_DOWN_SAMPLE(nitf_Int32, ROUND_DOWN_SAMPLE)
+            case 8:
+                GAUSSIAN_DOWN_SAMPLE(nitf_Int64, ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_R)
+    {
+        switch (pixelSize)
+        {
+            case 4:
+                GAUSSIAN_DOWN_SAMPLE(float, NO_ROUND_DOWN_SAMPLE)
+            case 8:
+                GAUSSIAN_DOWN_SAMPLE(double, NO_ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_C)
+    {
+        switch (pixelSize)
+        {
+            case 8:
+                GAUSSIAN_DOWN_SAMPLE_CMPX(float)
+            case 16:
+                GAUSSIAN_DOWN_SAMPLE_CMPX(double)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else
+    {
+        nitf_Error_init(error, "Invalid pixel type",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return (0);
+    }
+}
+
+NITFPRIV(void) GaussianDownSample_destruct(NITF_DATA * data)
+{
+    GaussianDownSampleData *weights = (GaussianDownSampleData *) data;
+    if (weights)
+    {
+        if (weights->rowWeights)
+            NITF_FREE(weights->rowWeights);
+        if (weights->colWeights)
+            NITF_FREE(weights->colWeights);
+        NITF_FREE(weights);
+    }
+}
+
+/*
+ *  Returns the skip + 2*halo weights of one direction, a Gaussian of the
+ *  given standard deviation centered on the window, normalized to sum to one
+ */
+NITFPRIV(double *) GaussianDownSample_weights(nitf_Uint32 skip,
+                                              nitf_Uint32 halo,
+                                              double sigma,
+                                              nitf_Error * error)
+{
+    nitf_Uint32 i;
+    nitf_Uint32 size = skip + 2 * halo;
+    double center = halo + (skip - 1) / 2.0;
+    double sum = 0.0;
+    double *weights = (double *) NITF_MALLOC(sizeof(double) * size);
+    if (!weights)
+    {
+        nitf_Error_init(error,
+                        NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+
+    for (i = 0; i < size; i++)
+    {
+        weights[i] = exp(-(i - center) * (i - center) / (2 * sigma * sigma));
+        sum += weights[i];
+    }
+    for (i = 0; i < size; i++)
+        weights[i] /= sum;
+    return weights;
+}
+
+NITFAPI(nitf_DownSampler *) nitf_GaussianDownSample_construct(nitf_Uint32
+        rowSkip,
+        nitf_Uint32
+        colSkip,
+        double
+        sigma,
+        nitf_Error *
+        error)
+{
+
+    static nitf_IDownSampler iGaussianDownSample =
+        {
+            &GaussianDownSample_apply,
+            &GaussianDownSample_destruct
+        };
+
+    nitf_DownSampler *downsampler;
+    GaussianDownSampleData *data;
+    double rowSigma;            /* Standard deviation between rows */
+    double colSigma;            /* Standard deviation between columns */
+    nitf_Uint32 halo;           /* Pixels of context around each window */
+
+    if (rowSkip == 0 || colSkip == 0)
+    {
+        nitf_Error_init(error, "Invalid skip size",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return NULL;
+    }
+
+    rowSigma = sigma > 0 ? sigma : rowSkip / 2.0;
+    colSigma = sigma > 0 ? sigma : colSkip / 2.0;
+    halo = (nitf_Uint32) ceil(3 * (rowSigma > colSigma ?
+                                   rowSigma : colSigma));
+
+    data = (GaussianDownSampleData *)
+        NITF_MALLOC(sizeof(GaussianDownSampleData));
+    if (!data)
+    {
+        nitf_Error_init(error,
+                        NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+    data->rowWeights =
+        GaussianDownSample_weights(rowSkip, halo, rowSigma, error);
+    data->colWeights = data->rowWeights ?
+        GaussianDownSample_weights(colSkip, halo, colSigma, error) : NULL;
+    if (!data->colWeights)
+    {
+        GaussianDownSample_destruct(data);
+        return NULL;
+    }
+
+    downsampler =
+        (nitf_DownSampler *) NITF_MALLOC(sizeof(nitf_DownSampler));
+    if (!downsampler)
+    {
+        GaussianDownSample_destruct(data);
+        nitf_Error_init(error,
+                        NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+
+    downsampler->rowSkip = rowSkip;
+    downsampler->colSkip = colSkip;
+    downsampler->multiBand = 0;
+    downsampler->minBands = 1;
+    downsampler->maxBands = 0;
+    downsampler->types = NITF_DOWNSAMPLER_TYPE_ALL;
+    downsampler->fullResolution = 1;
+    downsampler->halo = halo;
+    downsampler->data = data;
+
+    downsampler->iface = &iGaussianDownSample;
+    return downsampler;
+}
+
+/*
+*      Median down-sample method
+*
+*  The pixels of each sample window are copied to a scratch buffer and
+*  sorted, and the lower median is the down-sampled value, so the result is
+*  always one of the input pixels. Complex pixels are ordered by their
+*  absolute value, like the max down-sample method. NaNs are ordered after
+*  every number, so they are only the median of windows that are mostly NaN.
+*
+*  The scratch buffer is allocated with the object, large enough for a
+*  window of the largest pixels, so one object cannot be applied by two
+*  threads at once.
+*/
+
+/*  The largest pixel, a complex double */
+#define MEDIAN_MAX_PIXEL_SIZE 16
+
+#define MEDIAN_COMPARE(name, type) \
+    NITFPRIV(int) name(const void *a, const void *b) \
+    { \
+        type x = *((const type *) a); \
+        type y = *((const type *) b); \
+        return x < y ? -1 : (x > y ? 1 : 0); \
+    }
+
+/*  NaN is the only value not equal to itself, and sorts last */
+#define MEDIAN_COMPARE_FLOAT(name, type) \
+    NITFPRIV(int) name(const void *a, const void *b) \
+    { \
+        type x = *((const type *) a); \
+        type y = *((const type *) b); \
+        if (x != x) \
+            return y != y ? 0 : 1; \
+        if (y != y) \
+            return -1; \
+        return x < y ? -1 : (x > y ? 1 : 0); \
+    }
+
+#define MEDIAN_COMPARE_CMPX(name, type) \
+    NITFPRIV(int) name(const void *a, const void *b) \
+    { \
+        const type *x = (const type *) a; \
+        const type *y = (const type *) b; \
+        type xSq = x[0]*x[0] + x[1]*x[1]; \
+        type ySq = y[0]*y[0] + y[1]*y[1]; \
+        if (xSq != xSq) \
+            return ySq != ySq ? 0 : 1; \
+        if (ySq != ySq) \
+            return -1; \
+        return xSq < ySq ? -1 : (xSq > ySq ? 1 : 0); \
+    }
+
+MEDIAN_COMPARE(MedianDownSample_compareUint8, nitf_Uint8)
+MEDIAN_COMPARE(MedianDownSample_compareUint16, nitf_Uint16)
+MEDIAN_COMPARE(MedianDownSample_compareUint32, nitf_Uint32)
+MEDIAN_COMPARE(MedianDownSample_compareUint64, nitf_Uint64)
+MEDIAN_COMPARE(MedianDownSample_compareInt8, nitf_Int8)
+MEDIAN_COMPARE(MedianDownSample_compareInt16, nitf_Int16)
+MEDIAN_COMPARE(MedianDownSample_compareInt32, nitf_Int32)
+MEDIAN_COMPARE(MedianDownSample_compareInt64, nitf_Int64)
+MEDIAN_COMPARE_FLOAT(MedianDownSample_compareFloat, float)
+MEDIAN_COMPARE_FLOAT(MedianDownSample_compareDouble, double)
+MEDIAN_COMPARE_CMPX(MedianDownSample_compareCmpxFloat, float)
+MEDIAN_COMPARE_CMPX(MedianDownSample_compareCmpxDouble, double)
+
+NITFPRIV(NITF_BOOL) MedianDownSample_apply(nitf_DownSampler * object,
+                                           NITF_DATA ** inputWindows,
+                                           NITF_DATA ** outputWindows,
+                                           nitf_Uint32 numBands,
+                                           nitf_Uint32 numWindowRows,
+                                           nitf_Uint32 numWindowCols,
+                                           nitf_Uint32 numInputCols,
+                                           nitf_Uint32 numCols,
+                                           nitf_Uint32 pixelType,
+                                           nitf_Uint32 pixelSize,
+                                           nitf_Uint32 rowsInLastWindow,
+                                           nitf_Uint32 colsInLastWindow,
+                                           nitf_Error * error)
+{
+    int (*compare)(const void *, const void *) = NULL;
+    nitf_Uint32 band;           /* Current band */
+    nitf_Uint32 row;            /* Current row */
+    nitf_Uint32 column;         /* Current column */
+    nitf_Uint32 winRow;         /* Current row in current window */
+    nitf_Uint32 rowWinLimit;    /* Number of rows in current window */
+    nitf_Uint32 colWinLimit;    /* Number of cols in current window */
+    nitf_Uint32 count;          /* Number of pixels in current window */
+    nitf_Uint8 *currentPtr;     /* Pointer to the current window UL corner */
+    nitf_Uint8 *outp;           /* Pointer into output */
+    nitf_Uint8 *scratch = (nitf_Uint8 *) object->data; /* Window pixels */
+
+    if (pixelType == NITF_PIXEL_TYPE_INT || pixelType == NITF_PIXEL_TYPE_B)
+    {
+        switch (pixelSize)
+        {
+            case 1:
+                compare = &MedianDownSample_compareUint8;
+                break;
+            case 2:
+                compare = &MedianDownSample_compareUint16;
+                break;
+            case 4:
+                compare = &MedianDownSample_compareUint32;
+                break;
+            case 8:
+                compare = &MedianDownSample_compareUint64;
+                break;
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_SI)
+    {
+        switch (pixelSize)
+        {
+            case 1:
+                compare = &MedianDownSample_compareInt8;
+                break;
+            case 2:
+                compare = &MedianDownSample_compareInt16;
+                break;
+            case 4:
+                compare = &MedianDownSample_compareInt32;
+                break;
+            case 8:
+                compare = &MedianDownSample_compareInt64;
+                break;
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_R)
+    {
+        if (pixelSize == 4)
+            compare = &MedianDownSample_compareFloat;
+        else if (pixelSize == 8)
+            compare = &MedianDownSample_compareDouble;
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_C)
+    {
+        if (pixelSize == 8)
+            compare = &MedianDownSample_compareCmpxFloat;
+        else if (pixelSize == 16)
+            compare = &MedianDownSample_compareCmpxDouble;
+    }
+
+    if (!compare)
+    {
+        nitf_Error_init(error, "Invalid pixel type",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return (0);
+    }
+
+    for (band = 0; band < numBands; band++)
+    {
+        for (row = 0; row < numWindowRows; row++)
+        {
+            rowWinLimit = (row < (numWindowRows - 1)) ?
+                object->rowSkip : rowsInLastWindow;
+            currentPtr = ((nitf_Uint8 *) inputWindows[band])
+                + row * object->rowSkip * numInputCols * pixelSize;
+            outp = ((nitf_Uint8 *) outputWindows[band])
+                + row * numCols * pixelSize;
+            for (column = 0; column < numWindowCols; column++)
+            {
+                colWinLimit = (column < (numWindowCols - 1)) ?
+                    object->colSkip : colsInLastWindow;
+                count = 0;
+                for (winRow = 0; winRow < rowWinLimit; winRow++)
+                {
+                    memcpy(scratch + count * pixelSize,
+                           currentPtr + winRow * numInputCols * pixelSize,
+                           colWinLimit * pixelSize);
+                    count += colWinLimit;
+                }
+                qsort(scratch, count, pixelSize, compare);
+                memcpy(outp, scratch + ((count - 1) / 2) * pixelSize,
+                       pixelSize);
+                outp += pixelSize;
+                currentPtr += object->colSkip * pixelSize;
+            }
+        }
+    }
+
+    return (1);
+}
+
+NITFPRIV(void) MedianDownSample_destruct(NITF_DATA * data)
+{
+    if (data)
+        NITF_FREE(data);
+}
+
+NITFAPI(nitf_DownSampler *) nitf_MedianDownSample_construct(nitf_Uint32
+        rowSkip,
+        nitf_Uint32
+        colSkip,
+        nitf_Error *
+        error)
+{
+
+    static nitf_IDownSampler iMedianDownSample =
+        {
+            &MedianDownSample_apply,
+            &MedianDownSample_destruct
+        };
+
+    nitf_DownSampler *downsampler;
+    nitf_Uint8 *scratch;
+
+    if (rowSkip == 0 || colSkip == 0)
+    {
+        nitf_Error_init(error, "Invalid skip size",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return NULL;
+    }
+
+    scratch = (nitf_Uint8 *)
+        NITF_MALLOC(rowSkip * colSkip * MEDIAN_MAX_PIXEL_SIZE);
+    if (!scratch)
+    {
+        nitf_Error_init(error,
+                        NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+
+    downsampler =
+        (nitf_DownSampler *) NITF_MALLOC(sizeof(nitf_DownSampler));
+    if (!downsampler)
+    {
+        NITF_FREE(scratch);
+        nitf_Error_init(error,
+                        NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+
+    downsampler->rowSkip = rowSkip;
+    downsampler->colSkip = colSkip;
+    downsampler->multiBand = 0;
+    downsampler->minBands = 1;
+    downsampler->maxBands = 0;
+    downsampler->types = NITF_DOWNSAMPLER_TYPE_ALL;
+    downsampler->fullResolution = 0;
+    downsampler->halo = 0;
+    downsampler->data = scratch;
+
+    downsampler->iface = &iMedianDownSample;
+    return downsampler;
+}
+
+/*
+*      Complex detection down-sample method
+*
+*  The power (I*I + Q*Q) of each pixel is summed over the sample window and
+*  the mean is converted to the detected value. The in-phase and quadrature
+*  values come either from two bands or from the parts of one complex band.
+*/
+
+/*  Instance data of the detect down-sampler */
+typedef struct _DetectDownSampleData
+{
+    nitf_DetectionMode mode;    /* The detected value */
+    NITF_BOOL remap;            /* Remap the detected value to 0 to 255 */
+    double minValue;            /* Detected value mapped to 0 */
+    double scale;               /* Remap scale, 255/(maxValue - minValue) */
+}
+DetectDownSampleData;
+
+/*
+ *  Converts the mean power of a sample window to the detected value, and
+ *  remaps it if requested
+ */
+NITFPRIV(double) DetectDownSample_value(DetectDownSampleData * data,
+                                        double power)
+{
+    double value;
+
+    if (data->mode == NITF_DETECT_MAGNITUDE)
+        value = sqrt(power);
+    else if (data->mode == NITF_DETECT_DECIBELS)
+        value = 10.0 * log10(power); /* -HUGE_VAL for zero power */
+    else
+        value = power;
+
+    if (data->remap)
+    {
+        value = (value - data->minValue) * data->scale;
+        if (!(value >= 0.0))    /* Includes NaN */
+            value = 0.0;
+        else if (value > 255.0)
+            value = 255.0;
+        value = floor(value + 0.5);
+    }
+    return value;
+}
+
+/*  Clips to the range of the output type, NaN goes to the low limit */
+#define DETECT_CLIP(value, low, high) \
+    (!((value) >= (low)) ? (low) : (((value) > (high)) ? (high) : (value)))
+#define NO_DETECT_CLIP(value, low, high) (value)
+
+/*  In the following, the I values are in band 0 and the Q values in band 1 */
+
+#define DETECT_DOWN_SAMPLE(type, clip, low, high, round) \
+    { \
+        nitf_Uint32 row;         /* Current row */ \
+        nitf_Uint32 column;      /* Current column */ \
+        nitf_Uint32 winRow;      /* Current row in current window */ \
+        nitf_Uint32 winCol;      /* Current column current window */ \
+        nitf_Uint32 rowWinLimit; /* Number of rows in current window */ \
+        nitf_Uint32 colWinLimit; /* Number of cols in current window */ \
+        type *currentPtr0;       /* Current window UL corner, band 0 */ \
+        type *currentPtr1;       /* Current window UL corner, band 1 */ \
+        type *pixel0;            /* Pointer to the current pixel, band 0 */ \
+        type *pixel1;            /* Pointer to the current pixel, band 1 */ \
+        type *outp0;             /* Pointer into output, band 0 */ \
+        type *outp1;             /* Pointer into output, band 1 */ \
+        double power;            /* Sum of the power of the window */ \
+        double value;            /* Detected value */ \
+        \
+        for(row=0;row<numWindowRows;row++) \
+        { \
+            rowWinLimit = (row < (numWindowRows-1)) ? \
+                object->rowSkip : rowsInLastWindow; \
+            currentPtr0 = ((type *) inputWindows[0]) \
+                + row*object->rowSkip*numInputCols; \
+            currentPtr1 = ((type *) inputWindows[1]) \
+                + row*object->rowSkip*numInputCols; \
+            outp0 = ((type *) outputWindows[0]) + row*numCols; \
+            outp1 = ((type *) outputWindows[1]) + row*numCols; \
+            if (object->rowSkip == 1 && object->colSkip == 1) \
+            { \
+                /* Full resolution, one pixel per window */ \
+                for(column=0;column<numWindowCols;column++) \
+                { \
+                    power = (double) currentPtr0[column] \
+                        * (double) currentPtr0[column] \
+                        + (double) currentPtr1[column] \
+                        * (double) currentPtr1[column]; \
+                    value = DetectDownSample_value(data, power); \
+                    value = clip(value, low, high); \
+                    outp0[column] = outp1[column] = (type) round(value); \
+                } \
+                continue; \
+            } \
+            for(column=0;column<numWindowCols;column++) \
+            { \
+                colWinLimit = (column < (numWindowCols-1)) ? \
+                    object->colSkip : colsInLastWindow; \
+                power = 0.0; \
+                for(winRow=0;winRow<rowWinLimit;winRow++) \
+                { \
+                    pixel0 = currentPtr0 + winRow*numInputCols; \
+                    pixel1 = currentPtr1 + winRow*numInputCols; \
+                    for(winCol=0;winCol<colWinLimit;winCol++) \
+                        power += (double) pixel0[winCol] \
+                            * (double) pixel0[winCol] \
+                            + (double) pixel1[winCol] \
+                            * (double) pixel1[winCol]; \
+                } \
+                value = DetectDownSample_value(data, \
+                    power / ((double) rowWinLimit * colWinLimit)); \
+                value = clip(value, low, high); \
+                *(outp0++) = *(outp1++) = (type) round(value); \
+                currentPtr0 += object->colSkip; \
+                currentPtr1 += object->colSkip; \
+            } \
+        } \
+        \
+        return(1); \
+    }
+
+/*  In the following, the I and Q values are the parts of one complex band */
+
+#define DETECT_DOWN_SAMPLE_CMPX(type) \
+    { \
+        nitf_Uint32 row;         /* Current row */ \
+        nitf_Uint32 column;      /* Current column */ \
+        nitf_Uint32 winRow;      /* Current row in current window */ \
+        nitf_Uint32 winCol;      /* Current column current window */ \
+        nitf_Uint32 rowWinLimit; /* Number of rows in current window */ \
+        nitf_Uint32 colWinLimit; /* Number of cols in current window */ \
+        type *currentPtr;        /* Pointer to the current window UL corner */ \
+        type *pixel;             /* Pointer to the current pixel */ \
+        type *outp;              /* Pointer into output */ \
+        double power;            /* Sum of the power of the window */ \
+        \
+        for(row=0;row<numWindowRows;row++) \
+        { \
+            rowWinLimit = (row < (numWindowRows-1)) ? \
+                object->rowSkip : rowsInLastWindow; \
+            currentPtr = ((type *) inputWindows[0]) \
+                + row*object->rowSkip*numInputCols*2; \
+            outp = ((type *) outputWindows[0]) + row*numCols*2; \
+            if (object->rowSkip == 1 && object->colSkip == 1) \
+            { \
+                /* Full resolution, one pixel per window */ \
+                for(column=0;column<2*numWindowCols;column+=2) \
+                { \
+                    power = (double) currentPtr[column] \
+                        * (double) currentPtr[column] \
+                        + (double) currentPtr[column + 1] \
+                        * (double) currentPtr[column + 1]; \
+                    outp[column] = (type) DetectDownSample_value(data, power); \
+                    outp[column + 1] = (type) 0; \
+                } \
+                continue; \
+            } \
+            for(column=0;column<numWindowCols;column++) \
+            { \
+                colWinLimit = (column < (numWindowCols-1)) ? \
+                    object->colSkip : colsInLastWindow; \
+                power = 0.0; \
+                for(winRow=0;winRow<rowWinLimit;winRow++) \
+                { \
+                    pixel = currentPtr + winRow*numInputCols*2; \
+                    for(winCol=0;winCol<2*colWinLimit;winCol+=2) \
+                        power += (double) pixel[winCol] \
+                            * (double) pixel[winCol] \
+                            + (double) pixel[winCol + 1] \
+                            * (double) pixel[winCol + 1]; \
+                } \
+                *(outp++) = (type) DetectDownSample_value(data, \
+                    power / ((double) rowWinLimit * colWinLimit)); \
+                *(outp++) = (type) 0; \
+                currentPtr += object->colSkip*2; \
+            } \
+        } \
+        \
+        return(1); \
+    }
+
+NITFPRIV(NITF_BOOL) DetectDownSample_apply(nitf_DownSampler * object,
+                                           NITF_DATA ** inputWindows,
+                                           NITF_DATA ** outputWindows,
+                                           nitf_Uint32 numBands,
+                                           nitf_Uint32 numWindowRows,
+                                           nitf_Uint32 numWindowCols,
+                                           nitf_Uint32 numInputCols,
+                                           nitf_Uint32 numCols,
+                                           nitf_Uint32 pixelType,
+                                           nitf_Uint32 pixelSize,
+                                           nitf_Uint32 rowsInLastWindow,
+                                           nitf_Uint32 colsInLastWindow,
+                                           nitf_Error * error)
+{
+    DetectDownSampleData *data = (DetectDownSampleData *) object->data;
+
+    if (pixelType == NITF_PIXEL_TYPE_C)
+    {
+        if (numBands != 1)
+        {
+            nitf_Error_init(error,
+                            "Complex read request must be exactly 1 band",
+                            NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+            return (0);
+        }
+        switch (pixelSize)
+        {
+            case 8:
+                DETECT_DOWN_SAMPLE_CMPX(float)
+            case 16:
+                DETECT_DOWN_SAMPLE_CMPX(double)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+
+    if (numBands != 2)
+    {
+        nitf_Error_init(error, "Read request must be exactly 2 bands",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return (0);
+    }
+
+    if (pixelType == NITF_PIXEL_TYPE_INT)
+    {
+        switch (pixelSize)
+        {
+            case 1:
+                DETECT_DOWN_SAMPLE(nitf_Uint8, DETECT_CLIP,
+                                   0.0, 255.0, ROUND_DOWN_SAMPLE)
+            case 2:
+                DETECT_DOWN_SAMPLE(nitf_Uint16, DETECT_CLIP,
+                                   0.0, 65535.0, ROUND_DOWN_SAMPLE)
+            case 4:
+                DETECT_DOWN_SAMPLE(nitf_Uint32, DETECT_CLIP,
+                                   0.0, 4294967295.0, ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Unsupported pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_B)
+    {
+        DETECT_DOWN_SAMPLE(nitf_Uint8, DETECT_CLIP,
+                           0.0, 255.0, ROUND_DOWN_SAMPLE)
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_SI)
+    {
+        switch (pixelSize)
+        {
+            case 1:
+                DETECT_DOWN_SAMPLE(nitf_Int8, DETECT_CLIP,
+                                   -128.0, 127.0, ROUND_DOWN_SAMPLE)
+            case 2:
+                DETECT_DOWN_SAMPLE(nitf_Int16, DETECT_CLIP,
+                                   -32768.0, 32767.0, ROUND_DOWN_SAMPLE)
+            case 4:
+                DETECT_DOWN_SAMPLE(nitf_Int32, DETECT_CLIP,
+                                   -2147483648.0, 2147483647.0,
+                                   ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Unsupported pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else if (pixelType == NITF_PIXEL_TYPE_R)
+    {
+        switch (pixelSize)
+        {
+            case 4:
+                DETECT_DOWN_SAMPLE(float, NO_DETECT_CLIP,
+                                   0.0, 0.0, NO_ROUND_DOWN_SAMPLE)
+            case 8:
+                DETECT_DOWN_SAMPLE(double, NO_DETECT_CLIP,
+                                   0.0, 0.0, NO_ROUND_DOWN_SAMPLE)
+            default:
+                nitf_Error_init(error, "Invalid pixel type",
+                                NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+                return (0);
+        }
+    }
+    else
+    {
+        nitf_Error_init(error, "Invalid pixel type",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return (0);
+    }
+}
+
+NITFPRIV(void) DetectDownSample_destruct(NITF_DATA * data)
+{
+    if (data)
+        NITF_FREE(data);
+}
+
+NITFAPI(nitf_DownSampler *) nitf_DetectDownSample_construct(nitf_Uint32
+        rowSkip,
+        nitf_Uint32
+        colSkip,
+        nitf_DetectionMode
+        mode,
+        NITF_BOOL
+        remap,
+        double
+        minValue,
+        double
+        maxValue,
+        nitf_Error *
+        error)
+{
+    static nitf_IDownSampler iDetectDownSample =
+        {
+            &DetectDownSample_apply,
+            &DetectDownSample_destruct
+        };
+
+    nitf_DownSampler *downsampler;
+    DetectDownSampleData *data;
+
+    if (rowSkip == 0 || colSkip == 0)
+    {
+        nitf_Error_init(error, "Invalid skip size",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return NULL;
+    }
+
+    if (mode != NITF_DETECT_MAGNITUDE && mode != NITF_DETECT_POWER
+            && mode != NITF_DETECT_DECIBELS)
+    {
+        nitf_Error_init(error, "Invalid detection mode",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return NULL;
+    }
+
+    if (remap && !(maxValue > minValue))
+    {
+        nitf_Error_init(error, "Invalid remap range",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        return NULL;
+    }
+
+    data = (DetectDownSampleData *) NITF_MALLOC(sizeof(DetectDownSampleData));
+    if (!data)
+    {
+        nitf_Error_init(error,
+                        NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+    data->mode = mode;
+    data->remap = remap;
+    data->minValue = minValue;
+    data->scale = remap ? 255.0 / (maxValue - minValue) : 1.0;
+
+    downsampler =
+        (nitf_DownSampler *) NITF_MALLOC(sizeof(nitf_DownSampler));
+    if (!downsampler)
+    {
+        DetectDownSample_destruct(data);
+        nitf_Error_init(error,
+                        NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+
+    downsampler->rowSkip = rowSkip;
+    downsampler->colSkip = colSkip;
+    downsampler->multiBand = 1;
+    downsampler->minBands = 1;
+    downsampler->maxBands = 2;
+    downsampler->types =
+        NITF_DOWNSAMPLER_TYPE_INT_1BYTE |
+        NITF_DOWNSAMPLER_TYPE_INT_2BYTE |
+        NITF_DOWNSAMPLER_TYPE_INT_4BYTE |
+        NITF_DOWNSAMPLER_TYPE_SI_1BYTE |
+        NITF_DOWNSAMPLER_TYPE_SI_2BYTE |
+        NITF_DOWNSAMPLER_TYPE_SI_4BYTE |
+        NITF_DOWNSAMPLER_TYPE_R_4BYTE |
+        NITF_DOWNSAMPLER_TYPE_R_8BYTE |
+        NITF_DOWNSAMPLER_TYPE_C_8BYTE |
+        NITF_DOWNSAMPLER_TYPE_C_16BYTE;
+    downsampler->fullResolution = 1;
+    downsampler->halo = 0;
+    downsampler->data = data;
+
+    downsampler->iface = &iDetectDownSample;
+    return downsampler;
+}
@@ -135,6 +135,10 @@ compression of a one byte unsigned image.\n
    in bytes */
 #define NITF_IMAGE_IO_PAD_MAX_LENGTH (16)
 
+/*! \def NITF_IMAGE_IO_HALO_STRIP_ROWS - Maximum number of full resolution
+   rows read at once for a down-sampler with a halo */
+#define NITF_IMAGE_IO_HALO_STRIP_ROWS (256)
+
 /*!
   \def NITF_IMAGE_IO_PAD_SCANNER - Macro to a create pad scan function
 
@@ -376,6 +380,8 @@ typedef struct
     nitf_Uint8 pad[NITF_IMAGE_IO_PAD_MAX_LENGTH];
     int swap;                   /*!< Byte swap if TRUE */
     nitf_Uint32 shift;          /*!< Shift count (in bits) for left justified pixels */
+    /*!< Bits per pixel (NBPP) of bit packed pixels, zero if byte aligned */
+    nitf_Uint32 packedBits;
 }
 _nitf_ImageIOPixelDef;
 
@@ -514,6 +520,7 @@ typedef struct
     _nitf_ImageIO_MaskHeader maskHeader;
     nitf_Uint64 *blockMask;     /*!< Block mask */
     nitf_Uint64 *padMask;       /*!< Pad pixel mask */
+    nitf_Uint8 *padBlock;       /*!< Direct read block of pad pixels */
     _nitf_ImageIOVtbl vtbl;     /*!< Function vector table */
     int oneBand;                /*!< Read/write one band at a time if TRUE */
     /*!< Control structure for current write */
@@ -994,6 +1001,71 @@ typedef struct _nitf_ImageIO_12PixelComControl
 }
 nitf_ImageIO_12PixelComControl;
 
+/*!
+  \brief nitf_ImageIO_PackedPixelControl - The actual implementation beneath
+  the opaque decompression control pointer, for bit packed pixels
+ */
+
+typedef struct _nitf_ImageIO_PackedPixelControl
+{
+
+    /*! Saved open argument */
+    nitf_IOInterface* io;
+
+    /*! Saved open argument */
+    nitf_Uint64 offset;
+
+    /*! Saved open argument */
+    nitf_BlockingInfo *blockInfo;
+
+    /*! Saved open argument */
+    nitf_Uint64 *blockMask;
+
+    /*! Bits per packed pixel (NBPP) */
+    nitf_Uint32 nBits;
+
+    /*! Significant bits per pixel (ABPP) */
+    nitf_Uint32 nBitsActual;
+
+    /*! Significant bits are left justified in the packed pixel if TRUE */
+    int leftJustified;
+
+    /*! Pixels are sign extended if TRUE */
+    int sign;
+
+    /*! Size of an unpacked pixel in bytes (1, 2 or 4) */
+    nitf_Uint32 pixelBytes;
+
+    /*! Number of pixels in block */
+    size_t blockPixelCount;
+
+    /*! Size of compressed block in bytes */
+    size_t blockSizeCompressed;
+
+    /*! Buffer for compressed block */
+    nitf_Uint8 *buffer;
+}
+nitf_ImageIO_PackedPixelControl;
+
+/*!
+  \brief nitf_ImageIO_PackedPixelComControl - The actual implementation
+  beneath the opaque compression control pointer, for bit packed pixels
+ */
+
+typedef struct _nitf_ImageIO_PackedPixelComControl
+{
+
+    /*! Pixel layout, shared with the decompressor */
+    nitf_ImageIO_PackedPixelControl pixels;
+
+    /*! Saved start argument */
+    nitf_Uint64 offset;
+
+    /*! Amount of data written so far */
+    nitf_Uint64 written;
+}
+nitf_ImageIO_PackedPixelComControl;
+
 /*!
   \brief nitf_ImageIO_decodeCompression - Decode compression string
 
@@ -1632,6 +1704,38 @@ On error, the supplied error object is set. Possible errors include:
 Invalid dimension or band
 */
 
+/*!
+  \brief nitf_ImageIO_readHalo - Read a sub-window for a down-sampler with
+  a halo
+
+  nitf_ImageIO_readHalo reads a down-sampled sub-window for a down-sample
+  method that needs pixels around its sample windows (the halo field of
+  nitf_DownSampler is not zero). The request is read in strips of rows of
+  sample windows. Each strip is read at full resolution, widened by the halo
+  on every side and clipped to the image, and the halo that falls outside
+  of the image is filled by repeating the edge pixels. The down-sampler is
+  then called once per strip.
+
+\b Note:
+
+This is an internal function and is not intended to be called
+directly by the user.
+
+\return Returns FALSE on error
+
+On error, the supplied error object is set. Possible errors include:
+
+Memory allocation error
+System I/O error
+*/
+
+NITFPRIV(NITF_BOOL) nitf_ImageIO_readHalo(_nitf_ImageIO * nitf,
+                                          nitf_IOInterface* io,
+                                          nitf_SubWindow * subWindow,
+                                          nitf_Uint8 ** user,
+                                          int *padded,
+                                          nitf_Error * error);
+
 /*!< The nitf_ImageIO object used do the check */
 /*!< The sub-window to check */
 NITFPRIV(int) nitf_ImageIO_checkSubWindow(_nitf_ImageIO * nitf,
@@ -3093,6 +3197,140 @@ static nitf_CompressionInterface nitf_ImageIO_12PixelComInterface =
         NULL
     };
 
+/*!
+  \brief nitf_ImageIO_packedPixelOpen - Open function for bit packed pixel
+  psuedo-decompression interface (INT or SI pixels, NBPP not a multiple
+  of 8, other than the NBPP == ABPP == 12 case).
+
+  The packed pixels of each block are expanded to 1, 2 or 4 byte native
+  integers, applying the pixel justification (PJUST) and sign extension,
+  so no further unformatting is needed.
+
+    This function follows the NITF_DECOMPRESSION_INTERFACE_OPEN_FUNCTION calling
+    sequence
+*/
+NITFPRIV(nitf_DecompressionControl*) nitf_ImageIO_packedPixelOpen
+(nitf_ImageSubheader * subheader, nrt_HashTable * options, nitf_Error * error);
+
+/*!
+  \brief nitf_ImageIO_packedPixelStart - Start function for bit packed pixel
+  psuedo-decompression interface.
+
+    This function follows the NITF_DECOMPRESSION_INTERFACE_START_FUNCTION
+    calling sequence
+*/
+
+NITFPRIV(NITF_BOOL) nitf_ImageIO_packedPixelStart(
+   nitf_DecompressionControl* control,
+   nitf_IOInterface* io,            /*!< IO handle for reads */
+   nitf_Uint64 offset,              /*!< Offset to start of blocks */
+   nitf_Uint64 fileLength,          /*!< Total file length (not used) */
+   nitf_BlockingInfo * blockInfo,   /*!< Associated blocking information */
+   nitf_Uint64 * blockMask,         /*!< Associated block mask */
+   nitf_Error * error);             /*!< For error returns */
+
+/*!
+  \brief nitf_ImageIO_packedPixelReadBlock - Read block function for bit
+  packed pixel psuedo-decompression interface.
+
+  \returns The block buffer on success. On error, NULL is returned and
+  the error object is set
+*/
+
+NITFPRIV(nitf_Uint8 *) nitf_ImageIO_packedPixelReadBlock(
+  nitf_DecompressionControl * control, /*!< Associated control structure */
+  nitf_Uint32 blockNumber, /*!< Block number to read */
+  nitf_Uint64* blockSize, /*!< Size of block that was read */
+  nitf_Error * error);    /*!< For error returns */
+
+/*!
+  \brief nitf_ImageIO_packedPixelClose - Close function for bit packed pixel
+  psuedo-decompression interface.
+*/
+
+NITFPRIV(void) nitf_ImageIO_packedPixelClose(
+  nitf_DecompressionControl **control);
+
+/*!
+  \brief nitf_ImageIO_packedPixelInterface - Decompression interface for bit
+  packed pixels. The block free function is shared with the 12-bit interface.
+*/
+
+static nitf_DecompressionInterface nitf_ImageIO_packedPixelInterface =
+    {
+        nitf_ImageIO_packedPixelOpen,
+        nitf_ImageIO_packedPixelStart,
+        nitf_ImageIO_packedPixelReadBlock,
+        nitf_ImageIO_12PixelFreeBlock,
+        nitf_ImageIO_packedPixelClose,
+        NULL
+    };
+
+/*!
+    \brief nitf_ImageIO_packedPixelComOpen - Open function for bit packed
+    pixel psuedo compression, the inverse of the decompression above
+
+    This function follows the NITF_COMPRESSION_INTERFACE_OPEN_FUNCTION calling
+    sequence
+*/
+
+NITFPRIV(nitf_CompressionControl *) nitf_ImageIO_packedPixelComOpen
+(nitf_ImageSubheader * subheader, nrt_HashTable* options, nitf_Error * error);
+
+/*!
+    \brief nitf_ImageIO_packedPixelComStart - Start function for bit packed
+    pixel psuedo compression
+
+    This function follows the NITF_COMPRESSION_INTERFACE_START_FUNCTION calling
+    sequence
+*/
+
+NITFPRIV(NITF_BOOL) nitf_ImageIO_packedPixelComStart
+  (nitf_CompressionControl *object,nitf_Uint64 offset,nitf_Uint64 dataLength,
+   nitf_Uint64 * blockMask,nitf_Uint64 * padMask, nitf_Error * error);
+
+/*!
+    \brief nitf_ImageIO_packedPixelComWriteBlock - Write block function for
+    bit packed pixel psuedo compression
+
+    This function follows the NITF_COMPRESSION_INTERFACE_WRITE_BLOCK_FUNCTION
+    calling sequence
+*/
+
+NITFPRIV(NITF_BOOL) nitf_ImageIO_packedPixelComWriteBlock(
+                                            nitf_CompressionControl* object,
+                                            nitf_IOInterface* io,
+                                            const nitf_Uint8 *data,
+                                            NITF_BOOL pad,
+                                            NITF_BOOL noData,
+                                            nitf_Error *error);
+
+/*!
+    \brief nitf_ImageIO_packedPixelComDestroy - Destroy function for bit
+    packed pixel psuedo compression
+
+    This function follows the NITF_COMPRESSION_INTERFACE_DESTROY_FUNCTION
+    calling sequence
+*/
+
+NITFPRIV(void) nitf_ImageIO_packedPixelComDestroy(
+  nitf_CompressionControl ** object);
+
+/*!
+  \brief nitf_ImageIO_packedPixelComInterface - Compression interface for bit
+  packed pixels. The end function is shared with the 12-bit interface.
+*/
+
+static nitf_CompressionInterface nitf_ImageIO_packedPixelComInterface =
+    {
+        nitf_ImageIO_packedPixelComOpen,
+        nitf_ImageIO_packedPixelComStart,
+        nitf_ImageIO_packedPixelComWriteBlock,
+        nitf_ImageIO_12PixelComEnd,
+        nitf_ImageIO_packedPixelComDestroy,
+        NULL
+    };
+
 
 /*============================================================================*/
 /*==================== Function definitions ==================================*/
@@ -3229,6 +3467,17 @@ NITFPROT(nitf_ImageIO *) nitf_ImageIO_construct(
         nitf->compressor = &nitf_ImageIO_12PixelComInterface;
     }
 
+    /*
+     *      Check for other bit packed pixels (NBPP not a multiple of 8), and
+     * set the psuedo decompressor and compressor that unpack and pack them
+     */
+
+    if (nitf->pixel.packedBits != 0)
+    {
+        nitf->decompressor = &nitf_ImageIO_packedPixelInterface;
+        nitf->compressor = &nitf_ImageIO_packedPixelComInterface;
+    }
+
     if (nitf->blockingMode == NITF_IMAGE_IO_BLOCKING_MODE_S)
     {
         nitf->nBlocksTotal =
@@ -3305,6 +3554,7 @@ NITFPROT(nitf_ImageIO *) nitf_ImageIO_clone(nitf_ImageIO * image,
     memset(&(clone->maskHeader), 0, sizeof(_nitf_ImageIO_MaskHeader));
     clone->blockMask = NULL;
     clone->padMask = NULL;
+    clone->padBlock = NULL;
 
     return (nitf_ImageIO *) clone;
 }
@@ -3325,6 +3575,9 @@ NITFPROT(void) nitf_ImageIO_destruct(nitf_ImageIO ** nitf)
     if (nitfp->padMask != NULL)
         NITF_FREE(nitfp->padMask);
 
+    if (nitfp->padBlock != NULL)
+        NITF_FREE(nitfp->padBlock);
+
     if (nitfp->blockControl.block != NULL)
     {
         /* No plugin */
@@ -3394,6 +3647,12 @@ NITFPROT(NITF_BOOL) nitf_ImageIO_read(nitf_ImageIO * nitf,
     if (!nitf_ImageIO_checkSubWindow(nitfI, subWindow, &all, error))
         return 0;
 
+    /* Down-samplers that need pixels around their windows read in strips */
+
+    if ((subWindow->downsampler != NULL) && (subWindow->downsampler->halo != 0))
+        return nitf_ImageIO_readHalo(nitfI, io, subWindow, user, padded,
+                                     error);
+
     /*
      *   Look for single read cases (down-sampling never does a single read or
      * one band reads if the method is multi-band)
@@ -3402,7 +3661,8 @@ NITFPROT(NITF_BOOL) nitf_ImageIO_read(nitf_ImageIO * nitf,
     oneBand = nitfI->oneBand;
     if ((subWindow->downsampler != NULL) &&
             ((subWindow->downsampler->rowSkip != 1)
-             || (subWindow->downsampler->colSkip != 1)))
+             || (subWindow->downsampler->colSkip != 1)
+             || subWindow->downsampler->fullResolution))
     {
         oneRead = 0;
         if (subWindow->downsampler->multiBand)
@@ -3485,6 +3745,165 @@ NITFPROT(NITF_BOOL) nitf_ImageIO_read(nitf_ImageIO * nitf,
     return ret;
 }
 
+NITFPRIV(NITF_BOOL) nitf_ImageIO_readHalo(_nitf_ImageIO * nitf,
+                                          nitf_IOInterface* io,
+                                          nitf_SubWindow * subWindow,
+                                          nitf_Uint8 ** user,
+                                          int *padded, nitf_Error * error)
+{
+    nitf_DownSampler *downSampler; /* The down-sample method */
+    nitf_Uint32 rowSkip;        /* Row skip factor */
+    nitf_Uint32 colSkip;        /* Column skip factor */
+    nitf_Uint32 halo;           /* Pixels of context around each window */
+    nitf_Uint32 bytes;          /* Pixel size in bytes */
+    nitf_Uint32 numBands;       /* Number of bands requested */
+    nitf_Uint32 stripRows;      /* Rows of sample windows per strip */
+    nitf_Uint32 windowRows;     /* Rows of sample windows in this strip */
+    nitf_Uint32 numInputCols;   /* Columns of one strip, with the halo */
+    nitf_Uint32 numInputRows;   /* Rows of one strip, with the halo */
+    nitf_Int64 firstCol;        /* First column of a strip, with the halo */
+    nitf_Int64 firstRow;        /* First row of a strip, with the halo */
+    nitf_Uint32 leftCols;       /* Halo columns left of the image */
+    nitf_Uint32 rightCols;      /* Halo columns right of the image */
+    nitf_Uint32 row;            /* Current row of sample windows */
+    nitf_Uint32 inRow;          /* Current row of a strip */
+    nitf_Int64 imageRow;        /* Image row of the current strip row */
+    nitf_Uint32 band;           /* Current band */
+    nitf_Uint32 i;
+    nitf_SubWindow readSub;     /* Full resolution read of one strip */
+    int readPadded;             /* Padded flag of one strip */
+    nitf_Uint8 **read = NULL;   /* Full resolution strip, clipped */
+    nitf_Uint8 **input = NULL;  /* Full resolution strip, with the halo */
+    nitf_Uint8 **output = NULL; /* Output of one strip */
+    nitf_Uint8 *src;            /* Current source row */
+    nitf_Uint8 *dst;            /* Current destination row */
+    NITF_BOOL ret = NITF_FAILURE;
+
+    downSampler = subWindow->downsampler;
+    rowSkip = downSampler->rowSkip;
+    colSkip = downSampler->colSkip;
+    halo = downSampler->halo;
+    bytes = nitf->pixel.bytes;
+    numBands = subWindow->numBands;
+
+    stripRows = nitf->numRowsPerBlock < NITF_IMAGE_IO_HALO_STRIP_ROWS ?
+        nitf->numRowsPerBlock : NITF_IMAGE_IO_HALO_STRIP_ROWS;
+    stripRows /= rowSkip;
+    if (stripRows == 0)
+        stripRows = 1;
+    if (stripRows > subWindow->numRows)
+        stripRows = subWindow->numRows;
+
+    /* The columns are the same for every strip */
+    numInputCols = subWindow->numCols * colSkip + 2 * halo;
+    firstCol = (nitf_Int64) subWindow->startCol - halo;
+    leftCols = firstCol < 0 ? (nitf_Uint32) - firstCol : 0;
+    rightCols = firstCol + numInputCols > nitf->numColumns ?
+        (nitf_Uint32) (firstCol + numInputCols - nitf->numColumns) : 0;
+
+    readSub = *subWindow;
+    readSub.startCol = (nitf_Uint32) (firstCol + leftCols);
+    readSub.numCols = numInputCols - leftCols - rightCols;
+    readSub.downsampler = NULL;
+
+    read = (nitf_Uint8 **) NITF_MALLOC(3 * numBands * sizeof(nitf_Uint8 *));
+    if (read == NULL)
+    {
+        nitf_Error_initf(error, NITF_CTXT, NITF_ERR_MEMORY,
+                         "Memory allocation error: %s",
+                         NITF_STRERROR(NITF_ERRNO));
+        return NITF_FAILURE;
+    }
+    memset(read, 0, 3 * numBands * sizeof(nitf_Uint8 *));
+    input = read + numBands;
+    output = input + numBands;
+
+    numInputRows = stripRows * rowSkip + 2 * halo;
+    for (band = 0; band < numBands; band++)
+    {
+        read[band] = (nitf_Uint8 *) NITF_MALLOC((size_t) numInputRows *
+                                                readSub.numCols * bytes);
+        input[band] = (nitf_Uint8 *) NITF_MALLOC((size_t) numInputRows *
+                                                 numInputCols * bytes);
+        if (read[band] == NULL || input[band] == NULL)
+        {
+            nitf_Error_initf(error, NITF_CTXT, NITF_ERR_MEMORY,
+                             "Memory allocation error: %s",
+                             NITF_STRERROR(NITF_ERRNO));
+            goto CATCH_ERROR;
+        }
+    }
+
+    *padded = 0;
+    for (row = 0; row < subWindow->numRows; row += windowRows)
+    {
+        windowRows = subWindow->numRows - row;
+        if (windowRows > stripRows)
+            windowRows = stripRows;
+        numInputRows = windowRows * rowSkip + 2 * halo;
+
+        /* Read the part of the strip that is in the image */
+        firstRow = (nitf_Int64) subWindow->startRow + row * rowSkip - halo;
+        readSub.startRow = firstRow < 0 ? 0 : (nitf_Uint32) firstRow;
+        readSub.numRows = (firstRow + numInputRows > nitf->numRows ?
+                           nitf->numRows : (nitf_Uint32) (firstRow
+                                                          + numInputRows))
+            - readSub.startRow;
+        readPadded = 0;
+        if (!nitf_ImageIO_read((nitf_ImageIO *) nitf, io, &readSub, read,
+                               &readPadded, error))
+            goto CATCH_ERROR;
+        if (readPadded)
+            *padded = 1;
+
+        /* Copy it into the strip, repeating the edges into the halo */
+        for (band = 0; band < numBands; band++)
+        {
+            for (inRow = 0; inRow < numInputRows; inRow++)
+            {
+                imageRow = firstRow + inRow;
+                if (imageRow < readSub.startRow)
+                    imageRow = readSub.startRow;
+                else if (imageRow >= readSub.startRow + readSub.numRows)
+                    imageRow = readSub.startRow + readSub.numRows - 1;
+
+                src = read[band] + (size_t) (imageRow - readSub.startRow) *
+                    readSub.numCols * bytes;
+                dst = input[band] + (size_t) inRow * numInputCols * bytes;
+                for (i = 0; i < leftCols; i++)
+                    memcpy(dst + i * bytes, src, bytes);
+                memcpy(dst + leftCols * bytes, src,
+                       (size_t) readSub.numCols * bytes);
+                for (i = numInputCols - rightCols; i < numInputCols; i++)
+                    memcpy(dst + i * bytes,
+                           src + (readSub.numCols - 1) * bytes, bytes);
+            }
+            output[band] = user[band] +
+                (size_t) row * subWindow->numCols * bytes;
+        }
+
+        if (!nitf_DownSampler_apply(downSampler, (NITF_DATA **) input,
+                                    (NITF_DATA **) output, numBands,
+                                    windowRows, subWindow->numCols,
+                                    numInputCols, subWindow->numCols,
+                                    nitf->pixel.type, bytes, rowSkip,
+                                    colSkip, error))
+            goto CATCH_ERROR;
+    }
+    ret = NITF_SUCCESS;
+
+CATCH_ERROR:
+    for (band = 0; band < numBands; band++)
+    {
+        if (read[band] != NULL)
+            NITF_FREE(read[band]);
+        if (input[band] != NULL)
+            NITF_FREE(input[band]);
+    }
+    NITF_FREE(read);
+    return ret;
+}
+
 
 NITFPROT(NITF_BOOL) nitf_ImageIO_writeDone(nitf_ImageIO * object,
                                            nitf_IOInterface* io,
@@ -3938,6 +4357,49 @@ nitf_ImageIO_getBlockingInfo(nitf_ImageIO * image,
     return result;
 }
 
+
+NITFPROT(nitf_Uint8 *) nitf_ImageIO_getBlockStatus(nitf_ImageIO * image,
+                                                   nitf_IOInterface* io,
+                                                   nitf_Uint32 * numBlocks,
+                                                   nitf_Error * error)
+{
+    _nitf_ImageIO *img;         /* Internal representation of object */
+    nitf_Uint8 *status;         /* The requested status */
+    nitf_Uint32 i;
+
+    img = (_nitf_ImageIO *) image;
+
+    /*      Create the block mask if it has not been done already */
+
+    if (img->blockMask == NULL)
+    {
+        if (!nitf_ImageIO_mkMasks(img, io, 1, error))
+            return NULL;
+    }
+
+    status = (nitf_Uint8 *) NITF_MALLOC(img->nBlocksTotal);
+    if (status == NULL)
+    {
+        nitf_Error_initf(error, NITF_CTXT, NITF_ERR_MEMORY,
+                         "Memory allocation error: %s",
+                         NITF_STRERROR(NITF_ERRNO));
+        return NULL;
+    }
+
+    for (i = 0; i < img->nBlocksTotal; i++)
+    {
+        if (img->blockMask[i] == NITF_IMAGE_IO_NO_OFFSET)
+            status[i] = NITF_IMAGE_IO_BLOCK_MISSING;
+        else if (img->padMask[i] != NITF_IMAGE_IO_NO_OFFSET)
+            status[i] = NITF_IMAGE_IO_BLOCK_PADDED;
+        else
+            status[i] = 0;
+    }
+
+    *numBlocks = img->nBlocksTotal;
+    return status;
+}
+
 NITFPROT(int) nitf_ImageIO_setWriteCaching(nitf_ImageIO * nitf, int enable)
 {
     _nitf_ImageIO *initf;   /* Internal representation of object */
@@ -4266,6 +4728,7 @@ NITFPRIV(void) nitf_ImageIO_setIO(_nitf_ImageIO * nitf)
 
     if ((nitf->pixel.type != NITF_IMAGE_IO_PIXEL_TYPE_B)
          && (nitf->pixel.type != NITF_IMAGE_IO_PIXEL_TYPE_12)
+         && (nitf->pixel.packedBits == 0)
                       && (nitf->compression & NITF_IMAGE_IO_NO_COMPRESSION))
     {
         nitf->vtbl.reader = nitf_ImageIO_uncachedReader;
@@ -4521,6 +4984,7 @@ NITFPRIV(int) nitf_ImageIO_setPixelDef(_nitf_ImageIO * nitf,
 
     nitf->pixel.bytes = NITF_NBPP_TO_BYTES(nBits);
     nitf->pixel.shift = nBits - nBitsActual;
+    nitf->pixel.packedBits = 0;
 
     if (nitf->pixel.bytes == 1)
         nitf->pixel.swap = 0;
@@ -4598,6 +5062,25 @@ NITFPRIV(int) nitf_ImageIO_setPixelDef(_nitf_ImageIO * nitf,
         return NITF_FAILURE;
     }
 
+    /*
+     * Uncompressed bit packed integers are unpacked, justified and sign
+     * extended by the packed pixel psuedo-decompressor, so there is nothing
+     * left to unformat. Unpacked pixels are 1, 2 or 4 bytes; NBPP 17 to 23
+     * would need 3, which is not supported.
+     */
+    if ((nBits % 8 != 0)
+            && (nitf->pixel.type & (NITF_IMAGE_IO_PIXEL_TYPE_INT |
+                                    NITF_IMAGE_IO_PIXEL_TYPE_SI))
+            && (nitf->pixel.bytes != 3) && (nitf->pixel.bytes <= 4)
+            && (nitf->compression & NITF_IMAGE_IO_NO_COMPRESSION))
+    {
+        nitf->pixel.packedBits = nBits;
+        nitf->pixel.shift = 0;
+        nitf->vtbl.unformat = NULL;
+        nitf->vtbl.format = NULL;
+        return NITF_SUCCESS;
+    }
+
     /*      Pixel unformat and format functions */
 
     found = 0;
@@ -4791,19 +5274,6 @@ NITFPRIV(void) nitf_ImageIO_commonBlockInit(_nitf_ImageIOControl * cntl,
     blockIO->padColumnCount = 0;
     blockIO->padRowCount = 0;
     blockIO->residual = residual;
-    if (nitf->blockingMode == NITF_IMAGE_IO_BLOCKING_MODE_P)
-    {
-        if (cntl->downSampling)
-        {
-            blockIO->myResidual = nitf_ImageIO_updateMyResidual(cntl, blockIO,
-                    bandIdx, blockColIdx, nBlockCols, myResidual);
-        }
-    }
-    else
-    {
-        blockIO->myResidual = nitf_ImageIO_updateMyResidual(cntl, blockIO,
-                bandIdx, blockColIdx, nBlockCols, myResidual);
-    }
 
     /*
     * See description of _nitf_ImageIOBlock for an
@@ -4897,6 +5367,24 @@ NITFPRIV(void) nitf_ImageIO_commonBlockInit(_nitf_ImageIOControl * cntl,
         blockIO->pixelCountDR += 1;
     }
 
+    /*
+     * The residual is based on the pixel counts and sample start column, so
+     * it can only be computed once they are set
+     */
+    if (nitf->blockingMode == NITF_IMAGE_IO_BLOCKING_MODE_P)
+    {
+        if (cntl->downSampling)
+        {
+            blockIO->myResidual = nitf_ImageIO_updateMyResidual(cntl, blockIO,
+                    bandIdx, blockColIdx, nBlockCols, myResidual);
+        }
+    }
+    else
+    {
+        blockIO->myResidual = nitf_ImageIO_updateMyResidual(cntl, blockIO,
+                bandIdx, blockColIdx, nBlockCols, myResidual);
+    }
+
     if (cntl->downSampling)
     {
         /*
@@ -4957,12 +5445,16 @@ nitf_Uint32 nitf_ImageIO_updateMyResidual(
         }
         else
         {
-            myResidual = cntl->column + numColsFR - nitf->numColumns;
-
-            if (myResidual < 0)
-            {
+            /*
+             * Only the part of the last sample window that falls off the
+             * side of the image is residual. The values are unsigned, so
+             * check before subtracting or a window that ends inside the
+             * image wraps around to a huge residual
+             */
+            if (cntl->column + numColsFR > nitf->numColumns)
+                myResidual = cntl->column + numColsFR - nitf->numColumns;
+            else
                 myResidual = 0;
-            }
         }
     }
     return myResidual;
@@ -5696,7 +6188,9 @@ nitf_ImageIOControl_construct(_nitf_ImageIO * nitf,
         cntl->rowSkip = 1;
         cntl->columnSkip = 1;
     }
-    cntl->downSampling = (cntl->rowSkip != 1) || (cntl->columnSkip != 1);
+    cntl->downSampling = (cntl->rowSkip != 1) || (cntl->columnSkip != 1)
+        || ((subWindow->downsampler != NULL)
+            && subWindow->downsampler->fullResolution);
     if (cntl->downSampling)
     {
         cntl->downSampleIn =
@@ -6121,12 +6615,14 @@ NITFPRIV(NITF_BOOL) nitf_ImageIO_checkOneRead(_nitf_ImageIO * nitfI,
     NITF_BOOL oneRead;   /* The result */
 
     /*
-     * Look for the special case where pixel type is "B" (binary). This can
-     * look like a one read case, but is actually handled as a
-     * type of compression
+     * Look for the special case where pixel type is "B" (binary), 12-bit or
+     * otherwise bit packed. This can look like a one read case, but is
+     * actually handled as a type of compression
      */
 
-    if (nitfI->pixel.type == NITF_IMAGE_IO_PIXEL_TYPE_B)
+    if ((nitfI->pixel.type == NITF_IMAGE_IO_PIXEL_TYPE_B)
+            || (nitfI->pixel.type == NITF_IMAGE_IO_PIXEL_TYPE_12)
+            || (nitfI->pixel.packedBits != 0))
         return 0;
 
     /*
@@ -6220,6 +6716,12 @@ NITFPRIV(int) nitf_ImageIO_mkMasks(nitf_ImageIO * img,
             bytesPerBlock += 2;
     }
 
+    if(nitf->pixel.packedBits != 0)
+    {
+        bytesPerBlock = ((nitf->blockSize/nitf->pixel.bytes)
+                         * nitf->pixel.packedBits + 7) / 8;
+    }
+
     /* Initialize header */
 
     if (!nitf_ImageIO_initMaskHeader
@@ -7431,6 +7933,7 @@ int nitf_ImageIO_cachedReader(_nitf_ImageIOBlock * blockIO,
         {
             if ((nitf->pixel.type != NITF_IMAGE_IO_PIXEL_TYPE_B)
                   && (nitf->pixel.type != NITF_IMAGE_IO_PIXEL_TYPE_12)
+                  && (nitf->pixel.packedBits == 0)
                      && (nitf->compression & NITF_IMAGE_IO_NO_COMPRESSION))
             {
                 /* Allocate block buffer if required */
@@ -7543,15 +8046,58 @@ NITFPROT(nitf_Uint8*) nitf_ImageIO_readBlockDirect(nitf_ImageIO* nitf,
 {
     _nitf_ImageIO *nitfI;        /* Associated ImageIO object */
     nitf_Uint64 imageDataOffset;
+    NITF_BOOL raw;               /* Blocks are read as they are stored */
 
     nitfI = (_nitf_ImageIO*) nitf;
     imageDataOffset = nitfI->blockMask[blockNumber];
+    raw = (nitfI->pixel.type != NITF_IMAGE_IO_PIXEL_TYPE_B)
+        && (nitfI->pixel.type != NITF_IMAGE_IO_PIXEL_TYPE_12)
+        && (nitfI->pixel.packedBits == 0)
+        && (nitfI->compression & NITF_IMAGE_IO_NO_COMPRESSION);
+
+    /*
+     * A block that is not recorded in the file is all pad pixels. When the
+     * blocks are read as stored, it is supplied without any I/O from a block
+     * that is built once. Otherwise there is nothing in the format of the
+     * other blocks to return, so it is reported as missing, and the caller
+     * decides what to do (see nitf_ImageIO_getBlockStatus)
+     */
+    if (imageDataOffset == NITF_IMAGE_IO_NO_OFFSET)
+    {
+        if (!raw)
+        {
+            *blockSize = 0;
+            nitf_Error_initf(error, NITF_CTXT, NITF_ERR_READING_FROM_FILE,
+                             "Block %u is missing (all pad pixels)",
+                             blockNumber);
+            return NULL;
+        }
+
+        if (nitfI->padBlock == NULL)
+        {
+            size_t i;
+
+            nitfI->padBlock = (nitf_Uint8 *) NITF_MALLOC(nitfI->blockSize);
+            if (nitfI->padBlock == NULL)
+            {
+                nitf_Error_initf(error, NITF_CTXT, NITF_ERR_MEMORY,
+                                 "Error allocating block buffer: %s",
+                                 NITF_STRERROR(NITF_ERRNO));
+                return NULL;
+            }
+            for (i = 0; i + nitfI->pixel.bytes <= nitfI->blockSize;
+                 i += nitfI->pixel.bytes)
+                memcpy(nitfI->padBlock + i, nitfI->pixel.pad,
+                       nitfI->pixel.bytes);
+        }
+
+        *blockSize = nitfI->blockSize;
+        return nitfI->padBlock;
+    }
 
     if (nitfI->blockControl.number != blockNumber)
     {
-        if ((nitfI->pixel.type != NITF_IMAGE_IO_PIXEL_TYPE_B)
-            && (nitfI->pixel.type != NITF_IMAGE_IO_PIXEL_TYPE_12)
-            && (nitfI->compression & NITF_IMAGE_IO_NO_COMPRESSION))
+        if (raw)
         {
             /* Allocate block buffer if required */
             if (nitfI->blockControl.block == NULL)
@@ -9637,6 +10183,429 @@ void nitf_ImageIO_12PixelComDestroy(nitf_CompressionControl ** object)
   return;
 }
 
+/*============================================================================*/
+/*======================== Bit packed pixel psuedo decompressor ==============*/
+/*============================================================================*/
+
+/*
+ *  Decodes the pixel layout shared by the packed pixel decompressor and
+ *  compressor from the subheader
+ */
+NITFPRIV(NITF_BOOL) nitf_ImageIO_packedPixelInit(
+    nitf_ImageIO_PackedPixelControl * icntl,
+    nitf_ImageSubheader * subheader, nitf_Error * error)
+{
+    nitf_Uint32 nBytes;
+
+    NITF_TRY_GET_UINT32(subheader->numBitsPerPixel, &(icntl->nBits), error);
+    NITF_TRY_GET_UINT32(subheader->actualBitsPerPixel,
+                        &(icntl->nBitsActual), error);
+    if (icntl->nBitsActual == 0 || icntl->nBitsActual > icntl->nBits)
+        icntl->nBitsActual = icntl->nBits;
+    icntl->leftJustified = (subheader->pixelJustification->raw[0] == 'L');
+    icntl->sign = (subheader->pixelValueType->raw[0] == 'S');
+
+    nBytes = NITF_NBPP_TO_BYTES(icntl->nBits);
+    icntl->pixelBytes = nBytes;
+    icntl->blockPixelCount = 0;
+    icntl->blockSizeCompressed = 0;
+    icntl->buffer = NULL;
+    return NITF_SUCCESS;
+
+CATCH_ERROR:
+    return NITF_FAILURE;
+}
+
+/*
+ *  Unpacks count pixels of nBits each from a big-endian bit stream into
+ *  native integers of the given type, keeping the significant (ABPP) bits
+ *  and sign extending them for SI pixels
+ */
+#define NITF_IMAGE_IO_UNPACK_BITS(type) \
+{ \
+    type *outPtr = (type *) out; \
+    for (i = 0; i < count; i++) \
+    { \
+        while (bits < nBits) \
+        { \
+            acc = (acc << 8) | *(in++); \
+            bits += 8; \
+        } \
+        bits -= nBits; \
+        value = (nitf_Uint32) (acc >> bits) & fieldMask; \
+        value = (value >> justShift) & valueMask; \
+        if (sign && (value & signBit)) \
+            value |= ~valueMask; \
+        *(outPtr++) = (type) value; \
+    } \
+}
+
+NITFPRIV(void) nitf_ImageIO_unpackBits(nitf_ImageIO_PackedPixelControl *icntl,
+                                       const nitf_Uint8 * in,
+                                       nitf_Uint8 * out, size_t count)
+{
+    nitf_Uint32 nBits = icntl->nBits;
+    nitf_Uint32 justShift = icntl->leftJustified ?
+        icntl->nBits - icntl->nBitsActual : 0;
+    nitf_Uint32 fieldMask = (nitf_Uint32) (((nitf_Uint64) 1 << nBits) - 1);
+    nitf_Uint32 valueMask =
+        (nitf_Uint32) (((nitf_Uint64) 1 << icntl->nBitsActual) - 1);
+    nitf_Uint32 signBit = (nitf_Uint32) 1 << (icntl->nBitsActual - 1);
+    int sign = icntl->sign;
+    nitf_Uint64 acc = 0;   /* Bits read but not yet unpacked, low bits */
+    nitf_Uint32 bits = 0;  /* Number of bits in acc */
+    nitf_Uint32 value;
+    size_t i;
+
+    /* Bi-level fast path, eight pixels per byte */
+    if (nBits == 1 && icntl->pixelBytes == 1 && !sign)
+    {
+        for (i = 0; i + 8 <= count; i += 8)
+        {
+            nitf_Uint8 b = *(in++);
+            out[i] = b >> 7;
+            out[i + 1] = (b >> 6) & 1;
+            out[i + 2] = (b >> 5) & 1;
+            out[i + 3] = (b >> 4) & 1;
+            out[i + 4] = (b >> 3) & 1;
+            out[i + 5] = (b >> 2) & 1;
+            out[i + 6] = (b >> 1) & 1;
+            out[i + 7] = b & 1;
+        }
+        for (; i < count; i++)
+            out[i] = (in[0] >> (7 - (i % 8))) & 1;
+        return;
+    }
+
+    switch (icntl->pixelBytes)
+    {
+        case 1:
+            NITF_IMAGE_IO_UNPACK_BITS(nitf_Uint8);
+            break;
+        case 2:
+            NITF_IMAGE_IO_UNPACK_BITS(nitf_Uint16);
+            break;
+        default:
+            NITF_IMAGE_IO_UNPACK_BITS(nitf_Uint32);
+            break;
+    }
+}
+
+/*
+ *  Packs count native integers of the given type into a big-endian stream
+ *  of nBits bit pixels, placing the significant (ABPP) bits as justified
+ *  and padding the end of the stream to a byte boundary with zero bits
+ */
+#define NITF_IMAGE_IO_PACK_BITS(type) \
+{ \
+    const type *inPtr = (const type *) in; \
+    for (i = 0; i < count; i++) \
+    { \
+        value = ((nitf_Uint32) *(inPtr++) & valueMask) << justShift; \
+        acc = (acc << nBits) | value; \
+        bits += nBits; \
+        while (bits >= 8) \
+        { \
+            bits -= 8; \
+            *(out++) = (nitf_Uint8) (acc >> bits); \
+        } \
+    } \
+}
+
+NITFPRIV(void) nitf_ImageIO_packBits(nitf_ImageIO_PackedPixelControl *icntl,
+                                     const nitf_Uint8 * in,
+                                     nitf_Uint8 * out, size_t count)
+{
+    nitf_Uint32 nBits = icntl->nBits;
+    nitf_Uint32 justShift = icntl->leftJustified ?
+        icntl->nBits - icntl->nBitsActual : 0;
+    nitf_Uint32 valueMask =
+        (nitf_Uint32) (((nitf_Uint64) 1 << icntl->nBitsActual) - 1);
+    nitf_Uint64 acc = 0;   /* Bits packed but not yet written, low bits */
+    nitf_Uint32 bits = 0;  /* Number of bits in acc */
+    nitf_Uint32 value;
+    size_t i;
+
+    switch (icntl->pixelBytes)
+    {
+        case 1:
+            NITF_IMAGE_IO_PACK_BITS(nitf_Uint8);
+            break;
+        case 2:
+            NITF_IMAGE_IO_PACK_BITS(nitf_Uint16);
+            break;
+        default:
+            NITF_IMAGE_IO_PACK_BITS(nitf_Uint32);
+            break;
+    }
+
+    if (bits > 0)
+        *out = (nitf_Uint8) (acc << (8 - bits));
+}
+
+NITFPRIV(nitf_DecompressionControl*)
+nitf_ImageIO_packedPixelOpen(nitf_ImageSubheader * subheader,
+                             nrt_HashTable * options,
+                             nitf_Error * error)
+{
+    nitf_ImageIO_PackedPixelControl *icntl;
+    (void)options;
+
+    icntl =
+        (nitf_ImageIO_PackedPixelControl *)
+        NITF_MALLOC(sizeof(nitf_ImageIO_PackedPixelControl));
+    if (icntl == NULL)
+    {
+        nitf_Error_init(error, "Error creating control object",
+                        NITF_CTXT, NITF_ERR_DECOMPRESSION);
+        return NULL;
+    }
+
+    if (!nitf_ImageIO_packedPixelInit(icntl, subheader, error))
+    {
+        NITF_FREE(icntl);
+        return NULL;
+    }
+
+    return (nitf_DecompressionControl *) icntl;
+}
+
+NITFPRIV(NITF_BOOL)
+nitf_ImageIO_packedPixelStart(nitf_DecompressionControl* control,
+                              nitf_IOInterface* io,
+                              nitf_Uint64 offset,
+                              nitf_Uint64 fileLength,
+                              nitf_BlockingInfo * blockInfo,
+                              nitf_Uint64 * blockMask,
+                              nitf_Error * error)
+{
+    nitf_ImageIO_PackedPixelControl *icntl;
+
+    /* Silence compiler warnings about unused variables */
+    (void)fileLength;
+
+    icntl = (nitf_ImageIO_PackedPixelControl *)control;
+    icntl->io = io;
+    icntl->offset = offset;
+    icntl->blockInfo = blockInfo;
+    icntl->blockMask = blockMask;
+    icntl->blockPixelCount = blockInfo->length / icntl->pixelBytes;
+
+    /* The packed block is padded to a byte boundary */
+    icntl->blockSizeCompressed =
+        (icntl->blockPixelCount * icntl->nBits + 7) / 8;
+
+    icntl->buffer = (nitf_Uint8 *) NITF_MALLOC(icntl->blockSizeCompressed);
+    if (icntl->buffer == NULL)
+    {
+        nitf_Error_init(error, "Error creating control object",
+                        NITF_CTXT, NITF_ERR_DECOMPRESSION);
+        return NITF_FAILURE;
+    }
+
+    return NITF_SUCCESS;
+}
+
+NITFPRIV(nitf_Uint8 *)
+nitf_ImageIO_packedPixelReadBlock(nitf_DecompressionControl* control,
+                                  nitf_Uint32 blockNumber,
+                                  nitf_Uint64* blockSize,
+                                  nitf_Error* error)
+{
+    nitf_ImageIO_PackedPixelControl *icntl;
+    nitf_Uint8 *block;             /* Uncompressed result */
+
+    icntl = (nitf_ImageIO_PackedPixelControl *) control;
+
+    /* Read the data */
+
+    if (!NITF_IO_SUCCESS(nitf_IOInterface_seek(icntl->io,
+                 (nitf_Off) (icntl->offset + icntl->blockMask[blockNumber]),
+                                               NITF_SEEK_SET, error)))
+        return NULL;
+
+    if (!nitf_IOInterface_read(icntl->io,
+                               (char *) (icntl->buffer),
+                               icntl->blockSizeCompressed, error))
+        return NULL;
+
+    /* Allocate block */
+
+    block = (nitf_Uint8 *) NITF_MALLOC(icntl->blockInfo->length);
+    if (block == NULL)
+    {
+        nitf_Error_init(error, "Error creating block buffer",
+                        NITF_CTXT, NITF_ERR_DECOMPRESSION);
+        return NULL;
+    }
+
+    nitf_ImageIO_unpackBits(icntl, icntl->buffer, block,
+                            icntl->blockPixelCount);
+
+    *blockSize = icntl->blockPixelCount * icntl->pixelBytes;
+    return block;
+}
+
+
+NITFPRIV(void)
+nitf_ImageIO_packedPixelClose(nitf_DecompressionControl **control)
+{
+    nitf_ImageIO_PackedPixelControl *icntl;
+    icntl = (nitf_ImageIO_PackedPixelControl *) * control;
+
+    if (icntl->buffer != NULL)
+        NITF_FREE((void *) (icntl->buffer));
+    NITF_FREE((void *) (icntl));
+    *control = NULL;
+    return;
+}
+
+/*============================================================================*/
+/*======================== Bit packed pixel psuedo compressor ================*/
+/*============================================================================*/
+
+NITFPRIV(nitf_CompressionControl *) nitf_ImageIO_packedPixelComOpen
+( nitf_ImageSubheader * subheader, nrt_HashTable* options, nitf_Error * error)
+{
+    nitf_ImageIO_PackedPixelComControl *icntl;   /* The result */
+    nitf_Uint32 numRowsPerBlock;      /* Number of rows per block */
+    nitf_Uint32 numColumnsPerBlock;   /* Number of columns per block */
+    nitf_Uint32 numBands, xBands;     /* Number of bands */
+    (void)options;
+
+    icntl =
+        (nitf_ImageIO_PackedPixelComControl *)
+        NITF_MALLOC(sizeof(nitf_ImageIO_PackedPixelComControl));
+    if (icntl == NULL)
+    {
+        nitf_Error_init(error, "Error creating control object",
+                        NITF_CTXT, NITF_ERR_COMPRESSION);
+        return(NULL);
+    }
+
+    if (!nitf_ImageIO_packedPixelInit(&(icntl->pixels), subheader, error))
+        goto CATCH_ERROR;
+
+    /* Get values from the subheader, need block dimensions */
+
+    NITF_TRY_GET_UINT32(subheader->numImageBands, &numBands, error);
+    NITF_TRY_GET_UINT32(subheader->numMultispectralImageBands, &xBands,
+                        error);
+    numBands += xBands;
+    NITF_TRY_GET_UINT32(subheader->numPixelsPerVertBlock, &numRowsPerBlock,
+                        error);
+    NITF_TRY_GET_UINT32(subheader->numPixelsPerHorizBlock,
+                        &numColumnsPerBlock, error);
+    if (numRowsPerBlock == 0)
+        NITF_TRY_GET_UINT32(subheader->numRows, &numRowsPerBlock, error);
+    if (numColumnsPerBlock == 0)
+        NITF_TRY_GET_UINT32(subheader->numCols, &numColumnsPerBlock, error);
+
+    /* Blocks hold one band in S mode, and all of them otherwise */
+    if (subheader->imageMode->raw[0] == 'S')
+        numBands = 1;
+
+    icntl->pixels.blockPixelCount =
+        (size_t)numRowsPerBlock * numColumnsPerBlock * numBands;
+    icntl->pixels.blockSizeCompressed =
+        (icntl->pixels.blockPixelCount * icntl->pixels.nBits + 7) / 8;
+
+    return((nitf_CompressionControl *) icntl);
+
+CATCH_ERROR:
+    NITF_FREE(icntl);
+    return NULL;
+}
+
+NITFPRIV(NITF_BOOL)
+nitf_ImageIO_packedPixelComStart(nitf_CompressionControl *object,
+                                 nitf_Uint64 offset,
+                                 nitf_Uint64 dataLength,
+                                 nitf_Uint64 * blockMask,
+                                 nitf_Uint64 * padMask,
+                                 nitf_Error * error)
+{
+    nitf_ImageIO_PackedPixelComControl *icntl;
+
+    /* Silence compiler warnings about unused variables */
+    (void)dataLength;
+    (void)blockMask;
+    (void)padMask;
+
+    icntl = (nitf_ImageIO_PackedPixelComControl *) object;
+    icntl->offset = offset;
+    icntl->written = 0;
+
+    /* Allocate compressed block buffer */
+
+    if (icntl->pixels.buffer == NULL)
+    {
+        icntl->pixels.buffer =
+            (nitf_Uint8 *) NITF_MALLOC(icntl->pixels.blockSizeCompressed);
+        if (icntl->pixels.buffer == NULL)
+        {
+            nitf_Error_init(error, "Error creating block buffer",
+                            NITF_CTXT, NITF_ERR_COMPRESSION);
+            return NITF_FAILURE;
+        }
+    }
+
+    return NITF_SUCCESS;
+}
+
+NITFPRIV(NITF_BOOL)
+nitf_ImageIO_packedPixelComWriteBlock(nitf_CompressionControl * object,
+                                      nitf_IOInterface* io,
+                                      const nitf_Uint8 *data,
+                                      NITF_BOOL pad,
+                                      NITF_BOOL noData,
+                                      nitf_Error *error)
+{
+    nitf_ImageIO_PackedPixelComControl *icntl;
+    nitf_Off fileOffset;         /* File offset for write */
+
+    /* Silence compiler warnings about unused variables */
+    (void)pad;
+    (void)noData;
+
+    icntl = (nitf_ImageIO_PackedPixelComControl *) object;
+
+    nitf_ImageIO_packBits(&(icntl->pixels), data, icntl->pixels.buffer,
+                          icntl->pixels.blockPixelCount);
+
+    fileOffset = icntl->offset + icntl->written;
+    if (!NITF_IO_SUCCESS(
+            nitf_IOInterface_seek(io, fileOffset, NITF_SEEK_SET, error)))
+        return NITF_FAILURE;
+
+    if (!nitf_IOInterface_write(io, (char *) (icntl->pixels.buffer),
+                                icntl->pixels.blockSizeCompressed, error))
+        return NITF_FAILURE;
+
+    icntl->written += icntl->pixels.blockSizeCompressed;
+
+    return NITF_SUCCESS;
+}
+
+NITFPRIV(void)
+nitf_ImageIO_packedPixelComDestroy(nitf_CompressionControl ** object)
+{
+    nitf_ImageIO_PackedPixelComControl *icntl;
+
+    if (object != NULL)
+    {
+        icntl = *((nitf_ImageIO_PackedPixelComControl **) object);
+        if (icntl != NULL)
+        {
+            if (icntl->pixels.buffer != NULL)
+                NITF_FREE(icntl->pixels.buffer);
+            NITF_FREE(icntl);
+        }
+        *object = NULL;
+    }
+    return;
+}
+
 /*============================================================================*/
 /*======================== Diagnostic Functions ===============================*/
 /*============================================================================*/
@@ -31,6 +31,16 @@ nitf_ImageReader_getBlockingInfo(nitf_ImageReader * imageReader,
 }
 
 
+NITFAPI(nitf_Uint8 *)
+nitf_ImageReader_getBlockStatus(nitf_ImageReader * imageReader,
+                                nitf_Uint32 * numBlocks,
+                                nitf_Error * error)
+{
+    return nitf_ImageIO_getBlockStatus(imageReader->imageDeblocker,
+                                       imageReader->input, numBlocks, error);
+}
+
+
 NITFAPI(NITF_BOOL) nitf_ImageReader_read(nitf_ImageReader * imageReader,
                                          nitf_SubWindow * subWindow,
                                          nitf_Uint8 ** user,
@@ -0,0 +1,405 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2014, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/*
+ *    Implementation of the interleaved source object
+ */
+
+#include "nitf/InterleavedSource.h"
+
+/*   The state shared by the band sources of an interleaved source */
+
+typedef struct _InterleavedSourceImpl
+{
+    const nitf_Uint8 *data;     /* The pixels, if they are in memory */
+    void *algorithm;            /* Otherwise, the algorithm object */
+    NITF_INTERLEAVED_SOURCE_NEXT_ROW nextRow;
+    NITF_IDATASOURCE_DESTRUCT destructAlgorithm;
+    nitf_Uint32 numRows;        /* Number of rows */
+    nitf_Uint32 numCols;        /* Number of columns */
+    nitf_Uint32 numBands;       /* Number of bands */
+    nitf_Uint32 numBytesPerPixel;       /* Bytes in each band of a pixel */
+    size_t rowLength;           /* Length of a row of one band in bytes */
+    nitf_Uint8 *rowBuffer;      /* Interleaved row for nextRow */
+    nitf_Uint8 *bandBuffer;     /* The split row, band after band */
+    const nitf_Uint8 *current;  /* The split current row */
+    nitf_Uint32 row;            /* The current row */
+    nitf_Uint32 nextRowIndex;   /* The next row nextRow is to produce */
+    int refCount;               /* Band sources sharing this */
+}
+InterleavedSourceImpl;
+
+/*   The instance data of each band source */
+
+typedef struct _InterleavedBandImpl
+{
+    InterleavedSourceImpl *source;
+    nitf_Uint32 band;
+    nitf_Off mark;              /* Bytes of the band read so far */
+}
+InterleavedBandImpl;
+
+
+/*
+ *  Takes an interleaved row apart into its bands, in one pass
+ */
+NITFPRIV(void) InterleavedSource_split(InterleavedSourceImpl * impl,
+                                       const nitf_Uint8 * row)
+{
+    nitf_Uint8 *bands = impl->bandBuffer;
+    size_t numBytesPerPixel = impl->numBytesPerPixel;
+    size_t offset;
+    nitf_Uint32 band;
+
+    if (numBytesPerPixel == 1)
+    {
+        for (offset = 0; offset < impl->rowLength; ++offset)
+        {
+            for (band = 0; band < impl->numBands; ++band)
+                bands[band * impl->rowLength + offset] = *row++;
+        }
+    }
+    else
+    {
+        for (offset = 0; offset < impl->rowLength;
+             offset += numBytesPerPixel)
+        {
+            for (band = 0; band < impl->numBands; ++band)
+            {
+                memcpy(bands + band * impl->rowLength + offset, row,
+                       numBytesPerPixel);
+                row += numBytesPerPixel;
+            }
+        }
+    }
+}
+
+
+/*
+ *  Makes the given row the current one
+ */
+NITFPRIV(NITF_BOOL) InterleavedSource_load(InterleavedSourceImpl * impl,
+                                           nitf_Uint32 row,
+                                           nitf_Error * error)
+{
+    const nitf_Uint8 *data;
+
+    if (impl->current && impl->row == row)
+        return NITF_SUCCESS;
+
+    if (impl->data)
+    {
+        data = impl->data + (size_t) row * impl->rowLength * impl->numBands;
+    }
+    else
+    {
+        /* the rows can only be produced in order */
+        if (row != impl->nextRowIndex)
+        {
+            nitf_Error_init(error,
+                            "Interleaved bands must be read in step",
+                            NITF_CTXT, NITF_ERR_READING_FROM_FILE);
+            return NITF_FAILURE;
+        }
+        data = (const nitf_Uint8 *) (*(impl->nextRow)) (impl->algorithm,
+                row, impl->rowBuffer, error);
+        if (!data)
+            return NITF_FAILURE;
+        impl->nextRowIndex = row + 1;
+    }
+
+    if (impl->numBands == 1)
+    {
+        impl->current = data;
+    }
+    else
+    {
+        InterleavedSource_split(impl, data);
+        impl->current = impl->bandBuffer;
+    }
+    impl->row = row;
+    return NITF_SUCCESS;
+}
+
+
+NITFPRIV(void) InterleavedSource_release(InterleavedSourceImpl * impl)
+{
+    if (--impl->refCount > 0)
+        return;
+
+    if (impl->destructAlgorithm)
+        (*(impl->destructAlgorithm)) (impl->algorithm);
+    if (impl->rowBuffer)
+        NITF_FREE(impl->rowBuffer);
+    if (impl->bandBuffer)
+        NITF_FREE(impl->bandBuffer);
+    NITF_FREE(impl);
+}
+
+
+NITFPRIV(NITF_BOOL) InterleavedBand_read(NITF_DATA * data, void *buf,
+                                         nitf_Off size, nitf_Error * error)
+{
+    InterleavedBandImpl *impl = (InterleavedBandImpl *) data;
+    InterleavedSourceImpl *source = impl->source;
+    nitf_Uint8 *bufPtr = (nitf_Uint8 *) buf;
+    nitf_Uint32 row;
+    size_t offset;
+    size_t xfrCount;
+
+    while (size > 0)
+    {
+        row = (nitf_Uint32) (impl->mark / (nitf_Off) source->rowLength);
+        offset = (size_t) (impl->mark % (nitf_Off) source->rowLength);
+        if (row >= source->numRows)
+        {
+            nitf_Error_init(error, "Read past the last row", NITF_CTXT,
+                            NITF_ERR_READING_FROM_FILE);
+            return NITF_FAILURE;
+        }
+        if (!InterleavedSource_load(source, row, error))
+            return NITF_FAILURE;
+
+        xfrCount = source->rowLength - offset;
+        if ((nitf_Off) xfrCount > size)
+            xfrCount = (size_t) size;
+        memcpy(bufPtr, source->current + impl->band * source->rowLength
+               + offset, xfrCount);
+
+        bufPtr += xfrCount;
+        impl->mark += xfrCount;
+        size -= xfrCount;
+    }
+    return NITF_SUCCESS;
+}
+
+
+NITFPRIV(void) InterleavedBand_destruct(NITF_DATA * data)
+{
+    InterleavedBandImpl *impl = (InterleavedBandImpl *) data;
+    if (impl)
+    {
+        InterleavedSource_release(impl->source);
+        NITF_FREE(impl);
+    }
+}
+
+
+NITFPRIV(nitf_Off) InterleavedBand_getSize(NITF_DATA * data, nitf_Error * e)
+{
+    InterleavedBandImpl *impl = (InterleavedBandImpl *) data;
+    return (nitf_Off) impl->source->numRows *
+        (nitf_Off) impl->source->rowLength;
+}
+
+
+NITFPRIV(NITF_BOOL) InterleavedBand_setSize(NITF_DATA * data, nitf_Off size,
+                                            nitf_Error * e)
+{
+    return NITF_SUCCESS;
+}
+
+
+/*   BandSource interface structure, static is ok since this is read-only */
+
+static nitf_IDataSource iInterleavedBand =
+    {
+        InterleavedBand_read,
+        InterleavedBand_destruct,
+        InterleavedBand_getSize,
+        InterleavedBand_setSize
+    };
+
+
+/*
+ *  Builds the image source, with a band source per band. On failure, the
+ *  shared state is freed (but not the algorithm object).
+ */
+NITFPRIV(nitf_ImageSource *) InterleavedSource_create(
+        InterleavedSourceImpl * impl, nitf_Error * error)
+{
+    nitf_ImageSource *imageSource;
+    nitf_BandSource *bandSource;
+    InterleavedBandImpl *bandImpl;
+    nitf_Uint32 band;
+
+    if (impl->numRows == 0 || impl->numCols == 0 || impl->numBands == 0
+        || impl->numBytesPerPixel == 0)
+    {
+        nitf_Error_init(error, "Invalid interleaved image dimensions",
+                        NITF_CTXT, NITF_ERR_INVALID_PARAMETER);
+        NITF_FREE(impl);
+        return NULL;
+    }
+    impl->rowLength = (size_t) impl->numCols * impl->numBytesPerPixel;
+
+    if (!impl->data)
+    {
+        impl->rowBuffer = (nitf_Uint8 *) NITF_MALLOC(impl->rowLength *
+                                                     impl->numBands);
+        if (!impl->rowBuffer)
+        {
+            nitf_Error_init(error, NITF_STRERROR(NITF_ERRNO),
+                            NITF_CTXT, NITF_ERR_MEMORY);
+            NITF_FREE(impl);
+            return NULL;
+        }
+    }
+    if (impl->numBands > 1)
+    {
+        impl->bandBuffer = (nitf_Uint8 *) NITF_MALLOC(impl->rowLength *
+                                                      impl->numBands);
+        if (!impl->bandBuffer)
+        {
+            nitf_Error_init(error, NITF_STRERROR(NITF_ERRNO),
+                            NITF_CTXT, NITF_ERR_MEMORY);
+            if (impl->rowBuffer)
+                NITF_FREE(impl->rowBuffer);
+            NITF_FREE(impl);
+            return NULL;
+        }
+    }
+
+    imageSource = nitf_ImageSource_construct(error);
+    if (!imageSource)
+    {
+        impl->destructAlgorithm = NULL;
+        impl->refCount = 1;
+        InterleavedSource_release(impl);
+        return NULL;
+    }
+
+    /*
+     * Each band source holds a reference, and the one held here is given
+     * up once they are all made, so whatever happens in between, the
+     * shared state is freed with the last band source
+     */
+    impl->refCount = 1;
+    for (band = 0; band < impl->numBands; ++band)
+    {
+        bandImpl = (InterleavedBandImpl *)
+            NITF_MALLOC(sizeof(InterleavedBandImpl));
+        bandSource = (nitf_BandSource *) NITF_MALLOC(sizeof(nitf_BandSource));
+        if (!bandImpl || !bandSource)
+        {
+            nitf_Error_init(error, NITF_STRERROR(NITF_ERRNO),
+                            NITF_CTXT, NITF_ERR_MEMORY);
+            if (bandImpl)
+                NITF_FREE(bandImpl);
+            if (bandSource)
+                NITF_FREE(bandSource);
+            goto CATCH_ERROR;
+        }
+        bandImpl->source = impl;
+        bandImpl->band = band;
+        bandImpl->mark = 0;
+        bandSource->data = bandImpl;
+        bandSource->iface = &iInterleavedBand;
+        ++impl->refCount;
+
+        if (!nitf_ImageSource_addBand(imageSource, bandSource, error))
+        {
+            nitf_BandSource_destruct(&bandSource);
+            goto CATCH_ERROR;
+        }
+    }
+    InterleavedSource_release(impl);
+    return imageSource;
+
+  CATCH_ERROR:
+    impl->destructAlgorithm = NULL;
+    nitf_ImageSource_destruct(&imageSource);
+    InterleavedSource_release(impl);
+    return NULL;
+}
+
+
+NITFAPI(nitf_ImageSource *) nitf_InterleavedSource_construct(
+        const void *data,
+        nitf_Uint32 numRows,
+        nitf_Uint32 numCols,
+        nitf_Uint32 numBands,
+        nitf_Uint32 numBytesPerPixel,
+        nitf_Error * error)
+{
+    InterleavedSourceImpl *impl;
+
+    if (!data)
+    {
+        nitf_Error_init(error, "No interleaved data", NITF_CTXT,
+                        NITF_ERR_INVALID_PARAMETER);
+        return NULL;
+    }
+
+    impl = (InterleavedSourceImpl *) NITF_MALLOC(sizeof(InterleavedSourceImpl));
+    if (!impl)
+    {
+        nitf_Error_init(error, NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+    memset(impl, 0, sizeof(InterleavedSourceImpl));
+    impl->data = (const nitf_Uint8 *) data;
+    impl->numRows = numRows;
+    impl->numCols = numCols;
+    impl->numBands = numBands;
+    impl->numBytesPerPixel = numBytesPerPixel;
+    return InterleavedSource_create(impl, error);
+}
+
+
+NITFAPI(nitf_ImageSource *) nitf_InterleavedSource_constructRows(
+        void *algorithm,
+        NITF_INTERLEAVED_SOURCE_NEXT_ROW nextRow,
+        NITF_IDATASOURCE_DESTRUCT destructAlgorithm,
+        nitf_Uint32 numRows,
+        nitf_Uint32 numCols,
+        nitf_Uint32 numBands,
+        nitf_Uint32 numBytesPerPixel,
+        nitf_Error * error)
+{
+    InterleavedSourceImpl *impl;
+
+    if (!nextRow)
+    {
+        nitf_Error_init(error, "No next row function", NITF_CTXT,
+                        NITF_ERR_INVALID_PARAMETER);
+        return NULL;
+    }
+
+    impl = (InterleavedSourceImpl *) NITF_MALLOC(sizeof(InterleavedSourceImpl));
+    if (!impl)
+    {
+        nitf_Error_init(error, NITF_STRERROR(NITF_ERRNO),
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        return NULL;
+    }
+    memset(impl, 0, sizeof(InterleavedSourceImpl));
+    impl->algorithm = algorithm;
+    impl->nextRow = nextRow;
+    impl->destructAlgorithm = destructAlgorithm;
+    impl->numRows = numRows;
+    impl->numCols = numCols;
+    impl->numBands = numBands;
+    impl->numBytesPerPixel = numBytesPerPixel;
+    return InterleavedSource_create(impl, error);
+}
@@ -0,0 +1,306 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOException;
+
+import nitf.ImageSubheader;
+import nitf.NITFException;
+import nitf.SubWindow;
+
+/**
+ * Extracts a batch of chips from one image segment. Instead of a read per
+ * chip, which seeks back and forth and reads the blocks that chips share
+ * again and again, the union of the blocks the chips need is read once, in
+ * block order (which is the order they are in the file), and each block's
+ * pixels are copied out to every chip that overlaps it.
+ * <p>
+ * Of each block only the part that some chip needs is read. Blocks are
+ * shared out between worker threads, each of which reads its blocks
+ * (synchronized on the native reader) and does its own copying.
+ */
+public class ChipExtractor
+{
+    /**
+     * Blocks with more than this many pixels needed are read a chip at a
+     * time, rather than once for all of the chips
+     */
+    private static final int MAX_READ_PIXELS = 1 << 22;
+
+    private final nitf.ImageReader imageReader;
+
+    private final NITFImageInfo info;
+
+    private int numThreads = 1;
+
+    /**
+     * @param imageReader
+     *            the reader of the image segment
+     * @param subheader
+     *            the subheader of the image segment
+     */
+    public ChipExtractor(nitf.ImageReader imageReader, ImageSubheader subheader)
+            throws NITFException
+    {
+        this(imageReader, new NITFImageInfo(subheader));
+    }
+
+    ChipExtractor(nitf.ImageReader imageReader, NITFImageInfo info)
+    {
+        this.imageReader = imageReader;
+        this.info = info;
+    }
+
+    /**
+     * Sets the number of threads the blocks are shared out between. Defaults
+     * to 1.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Reads the given chips.
+     *
+     * @param windows
+     *            the region of each chip, which must lie within the image
+     * @param bandLists
+     *            the bands of each chip. Either may be null for all bands.
+     * @return for each chip, a buffer per band of its pixels in row major
+     *         order, in native byte order, just as
+     *         {@link nitf.ImageReader#read(SubWindow, byte[][])} returns them
+     * @throws IOException
+     */
+    public byte[][][] read(final Rectangle[] windows, int[][] bandLists)
+            throws IOException
+    {
+        if (bandLists != null && bandLists.length != windows.length)
+            throw new IllegalArgumentException("Expected " + windows.length
+                    + " band lists, not " + bandLists.length);
+
+        final byte[][][] chips = new byte[windows.length][][];
+        final int[][] bands = new int[windows.length][];
+        for (int i = 0; i < windows.length; ++i)
+        {
+            Rectangle window = windows[i];
+            if (window.isEmpty() || window.x < 0 || window.y < 0
+                    || window.x + window.width > info.numCols
+                    || window.y + window.height > info.numRows)
+                throw new IllegalArgumentException("Chip " + i
+                        + " is not within the image: " + window);
+
+            bands[i] = bandLists != null && bandLists[i] != null ? bandLists[i]
+                    : allBands();
+            for (int b = 0; b < bands[i].length; ++b)
+            {
+                if (bands[i][b] < 0 || bands[i][b] >= info.numBands)
+                    throw new IllegalArgumentException("Chip " + i
+                            + " has an invalid band: " + bands[i][b]);
+            }
+            chips[i] = new byte[bands[i].length][window.width * window.height
+                    * info.pixelSize];
+        }
+
+        // the union of the blocks, in block (and so file) order
+        SortedMap<Integer, Unit> blocks = new TreeMap<Integer, Unit>();
+        for (int i = 0; i < windows.length; ++i)
+        {
+            Rectangle window = windows[i];
+            int firstRow = window.y / info.numRowsPerBlock;
+            int lastRow = (window.y + window.height - 1) / info.numRowsPerBlock;
+            int firstCol = window.x / info.numColsPerBlock;
+            int lastCol = (window.x + window.width - 1) / info.numColsPerBlock;
+            for (int row = firstRow; row <= lastRow; ++row)
+            {
+                for (int col = firstCol; col <= lastCol; ++col)
+                {
+                    Integer block = row * info.numBlocksPerRow + col;
+                    Unit unit = blocks.get(block);
+                    if (unit == null)
+                    {
+                        unit = new Unit();
+                        blocks.put(block, unit);
+                    }
+                    unit.add(i, window.intersection(new Rectangle(col
+                            * info.numColsPerBlock, row * info.numRowsPerBlock,
+                            info.numColsPerBlock, info.numRowsPerBlock)));
+                }
+            }
+        }
+        final Unit[] units = blocks.values().toArray(new Unit[blocks.size()]);
+        final AtomicInteger nextUnit = new AtomicInteger();
+
+        List<Callable<Object>> workers = new ArrayList<Callable<Object>>();
+        for (int i = 0; i < Math.min(numThreads, units.length); ++i)
+        {
+            workers.add(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    SubWindow window = createWindow();
+                    byte[][] buf = null;
+                    for (int u = nextUnit.getAndIncrement(); u < units.length; u = nextUnit
+                            .getAndIncrement())
+                    {
+                        Unit unit = units[u];
+                        Rectangle[] reads;
+                        if ((long) unit.bounds.width * unit.bounds.height <= MAX_READ_PIXELS)
+                            reads = new Rectangle[] { unit.bounds };
+                        else
+                            reads = unit.parts.toArray(new Rectangle[unit.parts
+                                    .size()]);
+                        for (Rectangle read : reads)
+                        {
+                            int size = read.width * read.height
+                                    * info.pixelSize;
+                            if (buf == null || buf[0].length < size)
+                                buf = new byte[info.numBands][size];
+                            window.setStartRow(read.y);
+                            window.setNumRows(read.height);
+                            window.setStartCol(read.x);
+                            window.setNumCols(read.width);
+                            synchronized (imageReader)
+                            {
+                                imageReader.read(window, buf);
+                            }
+                            for (int c = 0; c < unit.chips.size(); ++c)
+                            {
+                                int chip = unit.chips.get(c);
+                                copy(buf, read, unit.parts.get(c),
+                                        windows[chip], bands[chip],
+                                        chips[chip]);
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                workers.size()));
+        try
+        {
+            List<Future<Object>> futures = executor.invokeAll(workers);
+            for (Future<Object> future : futures)
+                future.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new IIOException("Interrupted", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IIOException("Unable to read chips", e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return chips;
+    }
+
+    /**
+     * Copies the part of a chip that lies within what was read to the chip
+     */
+    private void copy(byte[][] buf, Rectangle read, Rectangle part,
+            Rectangle window, int[] bands, byte[][] chip)
+    {
+        Rectangle copied = part.intersection(read);
+        if (copied.isEmpty())
+            return;
+
+        int length = copied.width * info.pixelSize;
+        for (int y = copied.y; y < copied.y + copied.height; ++y)
+        {
+            int from = ((y - read.y) * read.width + copied.x - read.x)
+                    * info.pixelSize;
+            int to = ((y - window.y) * window.width + copied.x - window.x)
+                    * info.pixelSize;
+            for (int b = 0; b < bands.length; ++b)
+                System.arraycopy(buf[bands[b]], from, chip[b], to, length);
+        }
+    }
+
+    private int[] allBands()
+    {
+        int[] bands = new int[info.numBands];
+        for (int i = 0; i < bands.length; ++i)
+            bands[i] = i;
+        return bands;
+    }
+
+    private SubWindow createWindow() throws NITFException
+    {
+        /*
+         * The native reader does not handle band subsets for every IMODE, so
+         * we read all bands, just like NITFReader does.
+         */
+        int[] bands = allBands();
+        SubWindow window = new SubWindow();
+        window.setNumBands(bands.length);
+        window.setBandList(bands);
+        return window;
+    }
+
+    /**
+     * The chips that overlap one block, with the part of each within it
+     */
+    private static final class Unit
+    {
+        final List<Integer> chips = new ArrayList<Integer>();
+
+        final List<Rectangle> parts = new ArrayList<Rectangle>();
+
+        Rectangle bounds;
+
+        void add(int chip, Rectangle part)
+        {
+            chips.add(chip);
+            parts.add(part);
+            bounds = bounds == null ? part : bounds.union(part);
+        }
+    }
+}
@@ -0,0 +1,597 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.imageio.IIOException;
+
+import nitf.BandInfo;
+import nitf.ImageSubheader;
+import nitf.LookupTable;
+import nitf.NITFException;
+import nitf.PixelSkipDownSampler;
+import nitf.SubWindow;
+
+/**
+ * Renders a NITF image segment for display, as 8-bit interleaved RGB.
+ * <p>
+ * Bands with lookup tables (IREP=LUT, RGB/LUT, or MONO with a LUT) are
+ * mapped through them. Other bands get a dynamic range adjustment (DRA): the
+ * values between the low and high percentiles are stretched over 0 to 255,
+ * linearly or with a gamma, and the rest clipped. For integer pixels of up to
+ * 16 bits, the LUT or DRA becomes a table indexed by pixel value, and the
+ * pixels are mapped straight from the buffers the native reader fills, a
+ * block row at a time, without converting them to Java samples first.
+ * <p>
+ * The percentiles come from the histograms of the {@link ImageStatistics} of
+ * the image, computed the first time a band is stretched and then kept, so
+ * redraws only read the region being drawn. The pipelines of a
+ * {@link NITFReader} take them from {@link NITFReader#getStatistics(int)},
+ * so they are shared with every other use of the image's statistics.
+ */
+public class DisplayPipeline
+{
+    private final nitf.ImageReader imageReader;
+
+    private final NITFImageInfo info;
+
+    /** The lookup tables of each band, null for bands without them */
+    private final byte[][][] luts;
+
+    /** Computes the statistics, the first time they are needed */
+    private final Callable<ImageStatistics> statisticsSource;
+
+    private ImageStatistics statistics;
+
+    private int[] bands;
+
+    private double lowPercentile = 2;
+
+    private double highPercentile = 98;
+
+    private double gamma = 1;
+
+    private boolean useLookupTables = true;
+
+    /**
+     * Creates a pipeline whose statistics are computed by a
+     * {@link StatisticsCalculator}, the first time they are needed.
+     *
+     * @param imageReader
+     *            the native reader of the image segment, which may be shared
+     *            with other readers, as it is synchronized on
+     * @param subheader
+     *            the subheader of the image segment
+     * @throws IOException
+     */
+    public DisplayPipeline(nitf.ImageReader imageReader,
+            ImageSubheader subheader) throws IOException
+    {
+        this(imageReader, subheader, null);
+    }
+
+    /**
+     * @param statisticsSource
+     *            gives the statistics of the image, or null to compute them
+     *            with a StatisticsCalculator
+     */
+    DisplayPipeline(final nitf.ImageReader imageReader,
+            ImageSubheader subheader,
+            Callable<ImageStatistics> statisticsSource) throws IOException
+    {
+        this.imageReader = imageReader;
+        try
+        {
+            info = new NITFImageInfo(subheader);
+            if (statisticsSource == null)
+            {
+                statisticsSource = new Callable<ImageStatistics>()
+                {
+                    public ImageStatistics call() throws IOException
+                    {
+                        return new StatisticsCalculator(imageReader, info)
+                                .compute();
+                    }
+                };
+            }
+            this.statisticsSource = statisticsSource;
+
+            luts = new byte[info.numBands][][];
+            BandInfo[] bandInfos = subheader.getBandInfo();
+            for (int i = 0; i < info.numBands; ++i)
+            {
+                int numLUTs = bandInfos[i].getNumLUTs().getIntData();
+                LookupTable table = numLUTs > 0 ? bandInfos[i]
+                        .getLookupTable() : null;
+                if (table == null || table.getNumEntries() == 0)
+                    continue;
+                int entries = table.getNumEntries();
+                byte[] data = table.getData();
+                luts[i] = new byte[table.getNumTables()][entries];
+                for (int j = 0; j < luts[i].length; ++j)
+                    System.arraycopy(data, j * entries, luts[i][j], 0, entries);
+            }
+
+            // RGB images are shown in color, everything else as gray
+            String irep = info.irep;
+            if (irep.equals("RGB") && info.numBands >= 3)
+            {
+                bands = new int[] { 0, 1, 2 };
+                for (int i = 0; i < info.numBands; ++i)
+                {
+                    String rep = bandInfos[i].getRepresentation()
+                            .getStringData().trim();
+                    int channel = "RGB".indexOf(rep);
+                    if (rep.length() == 1 && channel >= 0)
+                        bands[channel] = i;
+                }
+            }
+            else
+                bands = new int[] { 0 };
+        }
+        catch (NITFException e)
+        {
+            throw new IIOException("NITF Exception", e);
+        }
+    }
+
+    /**
+     * Sets the bands to display: one, shown as gray (or in color, if it has
+     * three lookup tables), or three, shown as red, green and blue. Defaults
+     * to the red, green and blue bands of RGB images, and the first band
+     * otherwise.
+     */
+    public void setBands(int[] bands)
+    {
+        if (bands == null || (bands.length != 1 && bands.length != 3))
+            throw new IllegalArgumentException("One or three bands required");
+        for (int i = 0; i < bands.length; ++i)
+        {
+            if (bands[i] < 0 || bands[i] >= info.numBands)
+                throw new IllegalArgumentException("Invalid band: " + bands[i]);
+        }
+        this.bands = bands.clone();
+    }
+
+    public int[] getBands()
+    {
+        return bands.clone();
+    }
+
+    /**
+     * Sets the percentiles, from 0 to 100, mapped to 0 and 255 by the DRA.
+     * Defaults to 2 and 98. Use 0 and 100 for a min/max stretch.
+     */
+    public void setPercentiles(double low, double high)
+    {
+        if (low < 0 || high > 100 || low > high)
+            throw new IllegalArgumentException("Invalid percentiles: " + low
+                    + ", " + high);
+        lowPercentile = low;
+        highPercentile = high;
+    }
+
+    public double getLowPercentile()
+    {
+        return lowPercentile;
+    }
+
+    public double getHighPercentile()
+    {
+        return highPercentile;
+    }
+
+    /**
+     * Sets the gamma of the DRA. The stretched value t, from 0 to 1, is
+     * displayed as 255 * t^(1/gamma), so a gamma above 1 brightens the
+     * mid-tones. Defaults to 1, a linear stretch.
+     */
+    public void setGamma(double gamma)
+    {
+        if (!(gamma > 0))
+            throw new IllegalArgumentException("Invalid gamma: " + gamma);
+        this.gamma = gamma;
+    }
+
+    public double getGamma()
+    {
+        return gamma;
+    }
+
+    /**
+     * Sets whether the lookup tables of the bands are applied. If not, those
+     * bands get the DRA too. Defaults to true.
+     */
+    public void setUseLookupTables(boolean useLookupTables)
+    {
+        this.useLookupTables = useLookupTables;
+    }
+
+    public boolean isUseLookupTables()
+    {
+        return useLookupTables;
+    }
+
+    /**
+     * Renders a region of the image, taking every xSub'th column of every
+     * ySub'th row.
+     *
+     * @param region
+     *            the source region, or null for the whole image
+     * @return an 8-bit RGB image, with pixel interleaved samples
+     * @throws IOException
+     */
+    public BufferedImage render(Rectangle region, int xSub, int ySub)
+            throws IOException
+    {
+        if (region == null)
+            region = new Rectangle(0, 0, info.numCols, info.numRows);
+        if (region.x < 0 || region.y < 0 || region.width < 1
+                || region.height < 1
+                || region.x + region.width > info.numCols
+                || region.y + region.height > info.numRows)
+            throw new IllegalArgumentException("Invalid region: " + region);
+        if (xSub < 1 || ySub < 1)
+            throw new IllegalArgumentException("Invalid subsampling: " + xSub
+                    + ", " + ySub);
+
+        final int outCols = (region.width + xSub - 1) / xSub;
+        final int outRows = (region.height + ySub - 1) / ySub;
+        WritableRaster raster = Raster.createInterleavedRaster(
+                DataBuffer.TYPE_BYTE, outCols, outRows, outCols * 3, 3,
+                new int[] { 0, 1, 2 }, null);
+        final byte[] rgb = ((DataBufferByte) raster.getDataBuffer()).getData();
+
+        final int[] channelBands = new int[3];
+        final Mapper[] mappers = new Mapper[3];
+        Map<Integer, Mapper> draMappers = new HashMap<Integer, Mapper>();
+        for (int c = 0; c < 3; ++c)
+        {
+            channelBands[c] = bands[bands.length == 3 ? c : 0];
+            byte[][] lut = useLookupTables ? luts[channelBands[c]] : null;
+            if (lut != null && bands.length == 1 && lut.length == 3)
+                mappers[c] = createLookupMapper(lut[c]);
+            else if (lut != null && lut.length == 1)
+                mappers[c] = createLookupMapper(lut[0]);
+            if (mappers[c] == null)
+            {
+                Integer key = Integer.valueOf(channelBands[c]);
+                mappers[c] = draMappers.get(key);
+                if (mappers[c] == null)
+                {
+                    mappers[c] = createDRAMapper(channelBands[c]);
+                    draMappers.put(key, mappers[c]);
+                }
+            }
+        }
+
+        readStrips(region, xSub, ySub, new StripHandler()
+        {
+            public void handle(byte[][] buf, int numRows, int readCols,
+                    int colStep, int dstY)
+            {
+                for (int c = 0; c < 3; ++c)
+                {
+                    for (int row = 0; row < numRows; ++row)
+                    {
+                        mappers[c].map(buf[channelBands[c]], row * readCols,
+                                colStep, outCols, rgb, ((dstY + row) * outCols)
+                                        * 3 + c);
+                    }
+                }
+            }
+        });
+
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace
+                .getInstance(ColorSpace.CS_sRGB), false, false,
+                Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * Returns the statistics of the image, computing them the first time
+     *
+     * @throws IOException
+     */
+    public synchronized ImageStatistics getStatistics() throws IOException
+    {
+        if (statistics == null)
+        {
+            try
+            {
+                statistics = statisticsSource.call();
+            }
+            catch (IOException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
+            {
+                throw new IIOException("Unable to compute statistics", e);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the histogram of a band, from the statistics of the image.
+     * Integer pixels of up to 16 bits get one bin per value, others are
+     * binned over their range, as a {@link StatisticsCalculator} does.
+     *
+     * @throws IOException
+     */
+    public Histogram getHistogram(int band) throws IOException
+    {
+        return getStatistics().getHistogram(band);
+    }
+
+    private Mapper createLookupMapper(byte[] lut)
+    {
+        PixelFormat format = new PixelFormat(info);
+        if (format.getNumValues() == 0)
+            return null;
+        byte[] table = new byte[format.getNumValues()];
+        for (int i = 0; i < table.length; ++i)
+        {
+            // LUTs are indexed by the (unsigned) pixel value
+            int value = (i + format.getMinValue()) & (table.length - 1);
+            table[i] = lut[Math.min(value, lut.length - 1)];
+        }
+        return new TableMapper(format, table);
+    }
+
+    private Mapper createDRAMapper(int band) throws IOException
+    {
+        Histogram histogram = getHistogram(band);
+        double low = histogram.getPercentile(lowPercentile);
+        double high = histogram.getPercentile(highPercentile);
+        PixelFormat format = new PixelFormat(info);
+        DRA dra = new DRA(low, high, gamma);
+        if (format.getNumValues() == 0)
+            return new DRAMapper(format, dra);
+
+        byte[] table = new byte[format.getNumValues()];
+        for (int i = 0; i < table.length; ++i)
+            table[i] = dra.apply(i + format.getMinValue());
+        return new TableMapper(format, table);
+    }
+
+    /**
+     * Receives the strips of a read, as filled in by the native reader
+     */
+    private interface StripHandler
+    {
+        /**
+         * @param buf
+         *            the pixels of each band, in native order
+         * @param numRows
+         *            the number of (output) rows read
+         * @param readCols
+         *            the number of pixels per row in buf
+         * @param colStep
+         *            the step between output pixels in buf
+         * @param dstY
+         *            the output row of the first row read
+         */
+        void handle(byte[][] buf, int numRows, int readCols, int colStep,
+                int dstY);
+    }
+
+    /**
+     * Reads a region of all bands, a block row at a time, taking every
+     * xSub'th column of every ySub'th row. The native reader does the
+     * skipping, unless the skips are larger than a block, in which case the
+     * rows are read one at a time and the columns skipped by the handler.
+     */
+    private void readStrips(Rectangle region, int xSub, int ySub,
+            StripHandler handler) throws IOException
+    {
+        int outCols = (region.width + xSub - 1) / xSub;
+        int outRows = (region.height + ySub - 1) / ySub;
+        boolean nativeSkip = xSub <= info.numColsPerBlock
+                && ySub <= info.numRowsPerBlock;
+        int readCols = nativeSkip ? outCols : (outCols - 1) * xSub + 1;
+        int colStep = nativeSkip ? 1 : xSub;
+        int maxRows = nativeSkip ? Math.min(outRows, info.numRowsPerBlock
+                / ySub + 1) : 1;
+
+        /*
+         * The native reader does not handle band subsets for every IMODE, so
+         * we read all bands, just like NITFReader does.
+         */
+        int[] readBands = new int[info.numBands];
+        for (int i = 0; i < readBands.length; ++i)
+            readBands[i] = i;
+        byte[][] buf = new byte[readBands.length][maxRows * readCols
+                * info.pixelSize];
+
+        try
+        {
+            SubWindow window = new SubWindow();
+            window.setNumBands(readBands.length);
+            window.setBandList(readBands);
+            window.setStartCol(region.x);
+            window.setNumCols(readCols);
+            if (nativeSkip && (xSub != 1 || ySub != 1))
+                window.setDownSampler(new PixelSkipDownSampler(ySub, xSub));
+
+            for (int dstY = 0; dstY < outRows;)
+            {
+                // read up to the end of the block row
+                int srcY = region.y + dstY * ySub;
+                int numRows = 1;
+                if (nativeSkip)
+                {
+                    int blockEnd = (srcY / info.numRowsPerBlock + 1)
+                            * info.numRowsPerBlock;
+                    numRows = Math.min(maxRows, Math.min(outRows - dstY,
+                            (blockEnd - srcY + ySub - 1) / ySub));
+                }
+                window.setStartRow(srcY);
+                window.setNumRows(numRows);
+                synchronized (imageReader)
+                {
+                    imageReader.read(window, buf);
+                }
+                handler.handle(buf, numRows, readCols, colStep, dstY);
+                dstY += numRows;
+            }
+        }
+        catch (NITFException e)
+        {
+            throw new IIOException("NITF Exception", e);
+        }
+    }
+
+    /**
+     * The percentile stretch, with its gamma
+     */
+    private static final class DRA
+    {
+        private final double low;
+
+        private final double range;
+
+        private final double invGamma;
+
+        DRA(double low, double high, double gamma)
+        {
+            this.low = low;
+            this.range = high > low ? high - low : 1;
+            this.invGamma = 1 / gamma;
+        }
+
+        byte apply(double value)
+        {
+            double t = (value - low) / range;
+            if (!(t > 0))
+                return 0;
+            if (t >= 1)
+                return (byte) 255;
+            if (invGamma != 1)
+                t = Math.pow(t, invGamma);
+            return (byte) (int) (255 * t + 0.5);
+        }
+    }
+
+    /**
+     * Maps a row of pixels of one band to one channel of the RGB output
+     */
+    private static abstract class Mapper
+    {
+        /**
+         * @param src
+         *            the native-order pixels
+         * @param srcIndex
+         *            the index of the first pixel
+         * @param srcStep
+         *            the step between pixels, in pixels
+         * @param count
+         *            the number of pixels to map
+         * @param dst
+         *            the RGB bytes
+         * @param dstOffset
+         *            the offset of the first output sample
+         */
+        abstract void map(byte[] src, int srcIndex, int srcStep, int count,
+                byte[] dst, int dstOffset);
+    }
+
+    /**
+     * Looks up integer pixels of up to 16 bits in a table indexed by value
+     */
+    private static final class TableMapper extends Mapper
+    {
+        private final PixelFormat format;
+
+        private final byte[] table;
+
+        TableMapper(PixelFormat format, byte[] table)
+        {
+            this.format = format;
+            this.table = table;
+        }
+
+        void map(byte[] src, int srcIndex, int srcStep, int count, byte[] dst,
+                int dstOffset)
+        {
+            int offset = -format.getMinValue();
+            if (format.pixelSize == 1)
+            {
+                for (int i = 0, p = srcIndex; i < count; ++i, p += srcStep, dstOffset += 3)
+                    dst[dstOffset] = table[(format.signed ? src[p]
+                            : src[p] & 0xFF)
+                            + offset];
+                return;
+            }
+
+            boolean bigEndian = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+            int hi = bigEndian ? 0 : 1;
+            int lo = 1 - hi;
+            for (int i = 0, p = 2 * srcIndex; i < count; ++i, p += 2 * srcStep, dstOffset += 3)
+            {
+                int value = (src[p + hi] << 8) | (src[p + lo] & 0xFF);
+                dst[dstOffset] = table[(format.signed ? (short) value
+                        : value & 0xFFFF)
+                        + offset];
+            }
+        }
+    }
+
+    /**
+     * Stretches 32-bit and real pixels one at a time
+     */
+    private static final class DRAMapper extends Mapper
+    {
+        private final PixelFormat format;
+
+        private final DRA dra;
+
+        DRAMapper(PixelFormat format, DRA dra)
+        {
+            this.format = format;
+            this.dra = dra;
+        }
+
+        void map(byte[] src, int srcIndex, int srcStep, int count, byte[] dst,
+                int dstOffset)
+        {
+            for (int i = 0, p = srcIndex; i < count; ++i, p += srcStep, dstOffset += 3)
+                dst[dstOffset] = dra.apply(format.get(src, p));
+        }
+    }
+}
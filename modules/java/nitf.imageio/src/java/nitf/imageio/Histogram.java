@@ -0,0 +1,164 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+/**
+ * A histogram of equal-width bins over [min, max). Values below the range are
+ * counted in the first bin, and values at or above it in the last one. For
+ * integer data, one bin per value (a width of 1) gives exact percentiles.
+ */
+public final class Histogram
+{
+    private final double min;
+
+    private final double max;
+
+    private final double binWidth;
+
+    private final long[] counts;
+
+    private long total;
+
+    /**
+     * @param min
+     *            the lower edge of the first bin
+     * @param max
+     *            the upper edge of the last bin
+     * @param numBins
+     *            the number of bins
+     */
+    public Histogram(double min, double max, int numBins)
+    {
+        if (numBins < 1 || !(max > min))
+            throw new IllegalArgumentException("Invalid histogram: " + min
+                    + " to " + max + " in " + numBins + " bins");
+        this.min = min;
+        this.max = max;
+        this.binWidth = (max - min) / numBins;
+        this.counts = new long[numBins];
+    }
+
+    /**
+     * @return the bin the given value falls in
+     */
+    public int getBin(double value)
+    {
+        if (!(value >= min))
+            return 0;
+        int bin = (int) ((value - min) / binWidth);
+        return bin < counts.length ? bin : counts.length - 1;
+    }
+
+    public void add(double value)
+    {
+        counts[getBin(value)]++;
+        total++;
+    }
+
+    /**
+     * Adds the given number of values to a bin
+     */
+    public void add(int bin, long count)
+    {
+        counts[bin] += count;
+        total += count;
+    }
+
+    /**
+     * Adds the counts of another histogram with the same bins
+     */
+    public void add(Histogram other)
+    {
+        if (other.min != min || other.max != max
+                || other.counts.length != counts.length)
+            throw new IllegalArgumentException("Mismatched histogram bins");
+        for (int i = 0; i < counts.length; ++i)
+            counts[i] += other.counts[i];
+        total += other.total;
+    }
+
+    public double getMin()
+    {
+        return min;
+    }
+
+    public double getMax()
+    {
+        return max;
+    }
+
+    public int getNumBins()
+    {
+        return counts.length;
+    }
+
+    public double getBinWidth()
+    {
+        return binWidth;
+    }
+
+    /**
+     * @return the lower edge of the given bin
+     */
+    public double getBinValue(int bin)
+    {
+        return min + bin * binWidth;
+    }
+
+    public long getCount(int bin)
+    {
+        return counts[bin];
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * Returns the lower edge of the bin holding the given percentile, that is
+     * of the first bin at which the cumulative count reaches percentile% of
+     * the total. For an empty histogram, this is the lower edge of the range.
+     *
+     * @param percentile
+     *            from 0 to 100
+     */
+    public double getPercentile(double percentile)
+    {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Invalid percentile: "
+                    + percentile);
+        double target = Math.max(1, percentile / 100 * total);
+        long sum = 0;
+        for (int i = 0; i < counts.length; ++i)
+        {
+            sum += counts[i];
+            if (sum >= target)
+                return getBinValue(i);
+        }
+        return min;
+    }
+}
@@ -303,6 +303,9 @@ public class ImageIOUtils
     public static float[] findMinAndMax(float[] buffer, int pixelStride,
                                         int numBands)
     {
+        if (pixelStride == numBands)
+            return PixelKernels.findMinAndMax(buffer, 0, buffer.length);
+
         float min = Float.MAX_VALUE;
         float max = -Float.MAX_VALUE;
         for (int i = 0; i < buffer.length; i += numBands)
@@ -325,6 +328,9 @@ public class ImageIOUtils
     public static double[] findMinAndMax(double[] buffer, int pixelStride,
                                          int numBands)
     {
+        if (pixelStride == numBands)
+            return PixelKernels.findMinAndMax(buffer, 0, buffer.length);
+
         double min = Double.MAX_VALUE;
         double max = -Double.MAX_VALUE;
         for (int i = 0; i < buffer.length; i += numBands)
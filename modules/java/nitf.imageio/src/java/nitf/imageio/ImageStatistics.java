@@ -0,0 +1,131 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+/**
+ * The per-band statistics of an image segment, as computed by a
+ * {@link StatisticsCalculator}. Pad pixels, and NaNs in real images, are not
+ * counted. Instances are immutable, so they can be cached and shared.
+ */
+public final class ImageStatistics
+{
+    private final long[] counts;
+
+    private final double[] min;
+
+    private final double[] max;
+
+    private final double[] mean;
+
+    private final double[] stdDev;
+
+    private final Histogram[] histograms;
+
+    private final int overviewLevel;
+
+    ImageStatistics(long[] counts, double[] min, double[] max, double[] mean,
+            double[] stdDev, Histogram[] histograms, int overviewLevel)
+    {
+        this.counts = counts;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.stdDev = stdDev;
+        this.histograms = histograms;
+        this.overviewLevel = overviewLevel;
+    }
+
+    public int getNumBands()
+    {
+        return counts.length;
+    }
+
+    /**
+     * @return the number of pixels counted in the given band
+     */
+    public long getCount(int band)
+    {
+        return counts[band];
+    }
+
+    /**
+     * @return the smallest value of the band, or NaN if no pixels were
+     *         counted
+     */
+    public double getMin(int band)
+    {
+        return min[band];
+    }
+
+    /**
+     * @return the largest value of the band, or NaN if no pixels were counted
+     */
+    public double getMax(int band)
+    {
+        return max[band];
+    }
+
+    public double getMean(int band)
+    {
+        return mean[band];
+    }
+
+    /**
+     * @return the (population) standard deviation of the band
+     */
+    public double getStandardDeviation(int band)
+    {
+        return stdDev[band];
+    }
+
+    /**
+     * @return the histogram of the band. Do not add to it, as it is shared.
+     */
+    public Histogram getHistogram(int band)
+    {
+        return histograms[band];
+    }
+
+    /**
+     * @return the given percentile, from 0 to 100, of the band, as found by
+     *         {@link Histogram#getPercentile(double)}
+     */
+    public double getPercentile(int band, double percentile)
+    {
+        return histograms[band].getPercentile(percentile);
+    }
+
+    /**
+     * @return the overview level the statistics were estimated from, or 0 if
+     *         they were computed from the full resolution pixels
+     */
+    public int getOverviewLevel()
+    {
+        return overviewLevel;
+    }
+
+    public boolean isEstimate()
+    {
+        return overviewLevel > 0;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SampleModel;
+
+import nitf.BandInfo;
+import nitf.ImageSubheader;
+import nitf.LookupTable;
+import nitf.NITFException;
+
+import org.apache.commons.lang.NotImplementedException;
+
+/**
+ * The pixel layout of a NITF image segment, as described by its subheader,
+ * along with the Java2D data type, SampleModel and ColorModel that best
+ * represent it. The native reader hands back one buffer per band, so the
+ * SampleModels created here are banded.
+ */
+final class NITFImageInfo
+{
+    final int numRows;
+
+    final int numCols;
+
+    final int numBands;
+
+    final int nbpp;
+
+    final int pixelSize;
+
+    final String pvType;
+
+    final String irep;
+
+    final int numRowsPerBlock;
+
+    final int numColsPerBlock;
+
+    final int numBlocksPerRow;
+
+    final int numBlocksPerCol;
+
+    private final byte[][] lut;
+
+    NITFImageInfo(ImageSubheader subheader) throws NITFException
+    {
+        numRows = subheader.getNumRows().getIntData();
+        numCols = subheader.getNumCols().getIntData();
+        numBands = subheader.getBandCount();
+        nbpp = subheader.getNumBitsPerPixel().getIntData();
+        pixelSize = ((nbpp - 1) / 8) + 1;
+        pvType = subheader.getPixelValueType().getStringData().trim();
+        irep = subheader.getImageRepresentation().getStringData().trim();
+        numBlocksPerRow = subheader.getNumBlocksPerRow().getIntData();
+        numBlocksPerCol = subheader.getNumBlocksPerCol().getIntData();
+
+        // NITF 2.1 uses 0 to mean a single block wider/taller than 8192
+        int nppbh = subheader.getNumPixelsPerHorizBlock().getIntData();
+        int nppbv = subheader.getNumPixelsPerVertBlock().getIntData();
+        numColsPerBlock = nppbh > 0 ? nppbh : numCols;
+        numRowsPerBlock = nppbv > 0 ? nppbv : numRows;
+
+        byte[][] lutData = null;
+        if (numBands == 1 && pixelSize == 1)
+        {
+            BandInfo bandInfo = subheader.getBandInfo()[0];
+            LookupTable table = bandInfo.getNumLUTs().getIntData() == 3 ? bandInfo
+                    .getLookupTable()
+                    : null;
+            if (table != null && table.getNumEntries() > 0)
+            {
+                int entries = table.getNumEntries();
+                byte[] data = table.getData();
+                lutData = new byte[3][entries];
+                for (int i = 0; i < 3; ++i)
+                    System.arraycopy(data, i * entries, lutData[i], 0, entries);
+            }
+        }
+        lut = lutData;
+    }
+
+    /**
+     * @return the DataBuffer type used to represent the pixels
+     */
+    int getDataType()
+    {
+        return getDataType(pvType, nbpp);
+    }
+
+    /**
+     * Maps a NITF pixel value type and bits per pixel to a DataBuffer type
+     *
+     * @param pvType
+     *            the PVTYPE value (INT, B, SI, R or C)
+     * @param nbpp
+     *            the number of bits per pixel
+     * @return the DataBuffer type
+     */
+    static int getDataType(String pvType, int nbpp)
+    {
+        int nBytes = ((nbpp - 1) / 8) + 1;
+        if (pvType.equals("R"))
+        {
+            if (nBytes == 4)
+                return DataBuffer.TYPE_FLOAT;
+            if (nBytes == 8)
+                return DataBuffer.TYPE_DOUBLE;
+        }
+        else if (!pvType.equals("C"))
+        {
+            boolean signed = pvType.equals("SI");
+            if (nBytes == 1)
+                return DataBuffer.TYPE_BYTE;
+            if (nBytes == 2)
+                return signed ? DataBuffer.TYPE_SHORT : DataBuffer.TYPE_USHORT;
+            if (nBytes == 4)
+                return DataBuffer.TYPE_INT;
+        }
+        throw new NotImplementedException("Support for " + nbpp
+                + "-bit pixels of type " + pvType
+                + " has not been implemented yet");
+    }
+
+    /**
+     * Creates a banded SampleModel for the given dimensions and number of
+     * bands
+     */
+    SampleModel createSampleModel(int width, int height, int bands)
+    {
+        return new BandedSampleModel(getDataType(), width, height, bands);
+    }
+
+    /**
+     * Creates a ColorModel for the given bands of the image. RGB images are
+     * given an sRGB model, images with a color lookup table an
+     * IndexColorModel, and single bands a grayscale model. Returns null when
+     * there is no sensible ColorModel (e.g. multispectral data).
+     *
+     * @param bands
+     *            the (zero-based) bands that will be present
+     */
+    ColorModel createColorModel(int[] bands)
+    {
+        int dataType = getDataType();
+        if (lut != null && bands.length == 1)
+        {
+            return new IndexColorModel(8, lut[0].length, lut[0], lut[1],
+                    lut[2]);
+        }
+        if (bands.length == 3 && irep.equals("RGB") && bands[0] == 0
+                && bands[1] == 1 && bands[2] == 2)
+        {
+            return new ComponentColorModel(ColorSpace
+                    .getInstance(ColorSpace.CS_sRGB), false, false,
+                    Transparency.OPAQUE, dataType);
+        }
+        if (bands.length == 1)
+        {
+            return new ComponentColorModel(ColorSpace
+                    .getInstance(ColorSpace.CS_GRAY), false, false,
+                    Transparency.OPAQUE, dataType);
+        }
+        return null;
+    }
+
+}
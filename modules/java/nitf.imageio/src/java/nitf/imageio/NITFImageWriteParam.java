@@ -0,0 +1,100 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.util.Locale;
+
+import javax.imageio.ImageWriteParam;
+
+/**
+ * ImageWriteParam for the NITF writer. In addition to the standard source
+ * region, subsampling, band selection and tiling settings, this lets the
+ * caller pick the NITF image mode (IMODE) used to lay out the pixel data.
+ * <p>
+ * If tiling is not explicitly requested, the writer picks a blocking based on
+ * the source image: a single block when the image fits within the NITF block
+ * size limit, otherwise {@link #DEFAULT_BLOCK_SIZE} square blocks.
+ */
+public class NITFImageWriteParam extends ImageWriteParam
+{
+    /** Band interleaved by block */
+    public static final String MODE_BLOCK = "B";
+
+    /** Band interleaved by pixel */
+    public static final String MODE_PIXEL = "P";
+
+    /** Band interleaved by row */
+    public static final String MODE_ROW = "R";
+
+    /** Band sequential */
+    public static final String MODE_SEQUENTIAL = "S";
+
+    /** The largest number of pixels NITF allows in a single block dimension */
+    public static final int MAX_BLOCK_SIZE = 8192;
+
+    /** The block size used when an image dimension exceeds MAX_BLOCK_SIZE */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    private String imageMode = MODE_BLOCK;
+
+    public NITFImageWriteParam()
+    {
+        this(Locale.getDefault());
+    }
+
+    public NITFImageWriteParam(Locale locale)
+    {
+        super(locale);
+        this.canWriteTiles = true;
+        this.canOffsetTiles = false;
+        this.canWriteProgressive = false;
+        this.canWriteCompressed = false;
+    }
+
+    /**
+     * @return the NITF image mode (IMODE) that will be written
+     */
+    public String getImageMode()
+    {
+        return imageMode;
+    }
+
+    /**
+     * Sets the NITF image mode (IMODE) to write
+     *
+     * @param imageMode
+     *            one of MODE_BLOCK, MODE_PIXEL, MODE_ROW or MODE_SEQUENTIAL
+     */
+    public void setImageMode(String imageMode)
+    {
+        if (!MODE_BLOCK.equals(imageMode) && !MODE_PIXEL.equals(imageMode)
+                && !MODE_ROW.equals(imageMode)
+                && !MODE_SEQUENTIAL.equals(imageMode))
+        {
+            throw new IllegalArgumentException("Invalid image mode: "
+                    + imageMode);
+        }
+        this.imageMode = imageMode;
+    }
+
+}
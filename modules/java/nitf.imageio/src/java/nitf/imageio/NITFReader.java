@@ -27,24 +27,21 @@ import java.awt.Rectangle;
 import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
-import java.awt.image.DataBufferDouble;
-import java.awt.image.DataBufferFloat;
-import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.DoubleBuffer;
-import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.imageio.IIOException;
 import javax.imageio.ImageReadParam;
@@ -71,8 +68,32 @@ public class NITFReader extends ImageReader
 {
     private static final Log log = LogFactory.getLog(NITFReader.class);
 
+    /** Thumbnails are subsampled to fit within this many pixels */
+    public static final int MAX_THUMBNAIL_SIZE = 256;
+
+    /** The number of image segments whose statistics are cached */
+    public static final int STATISTICS_CACHE_SIZE = 64;
+
+    /**
+     * The statistics of recently read image segments, shared by all readers
+     * and keyed by the file, its size and modification time, the segment and
+     * the overview level
+     */
+    private static final Map<String, ImageStatistics> statisticsCache = Collections
+            .synchronizedMap(new LinkedHashMap<String, ImageStatistics>(16,
+                    0.75f, true)
+            {
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, ImageStatistics> eldest)
+                {
+                    return size() > STATISTICS_CACHE_SIZE;
+                }
+            });
+
     private IOHandle handle = null;
 
+    private File file = null;
+
     private Reader reader = null;
 
     private Record record = null;
@@ -80,19 +101,32 @@ public class NITFReader extends ImageReader
     private Map<Integer, nitf.ImageReader> imageReaderMap = Collections
             .synchronizedMap(new HashMap<Integer, nitf.ImageReader>());
 
+    /** The display pipeline of each image */
+    private Map<Integer, DisplayPipeline> pipelineMap = Collections
+            .synchronizedMap(new HashMap<Integer, DisplayPipeline>());
+
+    private boolean useOverviews = true;
+
+    private Overviews overviews = null;
+
+    private boolean overviewsOpened = false;
+
     public NITFReader(ImageReaderSpi originatingProvider)
     {
         super(originatingProvider);
     }
 
-    public void setInput(Object input)
+    public synchronized void setInput(Object input)
     {
         if (input instanceof File)
         {
             File file = (File) input;
             try
             {
-                this.handle = new IOHandle(file.getAbsolutePath());
+                IOHandle handle = new IOHandle(file.getAbsolutePath());
+                closeInput();
+                this.handle = handle;
+                this.file = file;
             }
             catch (NITFException e)
             {
@@ -107,6 +141,34 @@ public class NITFReader extends ImageReader
         }
     }
 
+    /**
+     * Forgets everything read from the current input, and closes it and its
+     * overviews
+     */
+    private synchronized void closeInput()
+    {
+        if (overviews != null)
+            overviews.close();
+        overviews = null;
+        overviewsOpened = false;
+        reader = null;
+        record = null;
+        imageReaderMap.clear();
+        pipelineMap.clear();
+        if (handle != null)
+        {
+            try
+            {
+                handle.close();
+            }
+            catch (NITFException e)
+            {
+                log.warn("Unable to close " + file, e);
+            }
+            handle = null;
+        }
+    }
+
     @Override
     public Object getInput()
     {
@@ -165,6 +227,203 @@ public class NITFReader extends ImageReader
         }
     }
 
+    /**
+     * Sets whether subsampled reads may be served from the overviews built by
+     * {@link OverviewBuilder}. Overview pixels are averages of the pixels
+     * they cover, so turn this off if the exact pixels at the subsampled
+     * positions are needed. Defaults to true.
+     */
+    public void setUseOverviews(boolean useOverviews)
+    {
+        this.useOverviews = useOverviews;
+    }
+
+    public boolean isUseOverviews()
+    {
+        return useOverviews;
+    }
+
+    private synchronized Overviews getOverviews()
+    {
+        if (!overviewsOpened && file != null)
+        {
+            overviews = Overviews.open(file);
+            overviewsOpened = true;
+        }
+        return overviews;
+    }
+
+    /**
+     * @return the number of overview levels available for the given image,
+     *         where level n is the image reduced by a factor of 2^n
+     * @throws IOException
+     */
+    public int getNumOverviews(int imageIndex) throws IOException
+    {
+        checkIndex(imageIndex);
+        Overviews overviews = getOverviews();
+        return overviews != null ? overviews.getNumLevels(imageIndex) : 0;
+    }
+
+    /**
+     * @return a {@link Resampler} for arbitrary-size reads of the given image,
+     *         sharing this reader's native image reader
+     * @throws IOException
+     */
+    public Resampler getResampler(int imageIndex) throws IOException
+    {
+        nitf.ImageReader imageReader = getImageReader(imageIndex);
+        try
+        {
+            return new Resampler(imageReader, record.getImages()[imageIndex]
+                    .getSubheader());
+        }
+        catch (NITFException e)
+        {
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new IIOException("NITF Exception", e);
+        }
+    }
+
+    /**
+     * @return a {@link ChipExtractor} for batches of chips of the given image,
+     *         sharing this reader's native image reader
+     * @throws IOException
+     */
+    public ChipExtractor getChipExtractor(int imageIndex) throws IOException
+    {
+        nitf.ImageReader imageReader = getImageReader(imageIndex);
+        try
+        {
+            return new ChipExtractor(imageReader, record.getImages()[imageIndex]
+                    .getSubheader());
+        }
+        catch (NITFException e)
+        {
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new IIOException("NITF Exception", e);
+        }
+    }
+
+    /**
+     * @return whether each block of the given image, in row major order, is
+     *         recorded in the file. Tiles within missing blocks are all pad
+     *         pixels, so they can be answered as empty without a read.
+     * @throws IOException
+     */
+    public boolean[] getPresentBlocks(int imageIndex) throws IOException
+    {
+        nitf.ImageReader imageReader = getImageReader(imageIndex);
+        try
+        {
+            synchronized (imageReader)
+            {
+                return imageReader.getPresentBlocks();
+            }
+        }
+        catch (NITFException e)
+        {
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new IIOException("NITF Exception", e);
+        }
+    }
+
+    /**
+     * @return a {@link DisplayPipeline} rendering the given image for display,
+     *         sharing this reader's native image reader. The pipeline is
+     *         created once per image, until the input changes, and takes its
+     *         histograms from {@link #getStatistics(int)}.
+     * @throws IOException
+     */
+    public synchronized DisplayPipeline getDisplayPipeline(
+            final int imageIndex) throws IOException
+    {
+        Integer key = Integer.valueOf(imageIndex);
+        DisplayPipeline pipeline = pipelineMap.get(key);
+        if (pipeline != null)
+            return pipeline;
+
+        nitf.ImageReader imageReader = getImageReader(imageIndex);
+        try
+        {
+            pipeline = new DisplayPipeline(imageReader, record.getImages()[
+                    imageIndex].getSubheader(), new Callable<ImageStatistics>()
+            {
+                public ImageStatistics call() throws IOException
+                {
+                    return getStatistics(imageIndex);
+                }
+            });
+            pipelineMap.put(key, pipeline);
+            return pipeline;
+        }
+        catch (NITFException e)
+        {
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new IIOException("NITF Exception", e);
+        }
+    }
+
+    /**
+     * @return the statistics of every band of the given image, computed in
+     *         one pass by a {@link StatisticsCalculator} and cached, so
+     *         opening the same file again does not recompute them
+     * @throws IOException
+     */
+    public ImageStatistics getStatistics(int imageIndex) throws IOException
+    {
+        return getStatistics(imageIndex, 0);
+    }
+
+    /**
+     * Returns statistics estimated from the given overview level (see
+     * {@link #getNumOverviews(int)}), which reads 4^level times fewer pixels
+     * than the full image. Level 0 computes them from the image itself.
+     *
+     * @throws IOException
+     */
+    public ImageStatistics getStatistics(int imageIndex, int overviewLevel)
+            throws IOException
+    {
+        checkIndex(imageIndex);
+        if (overviewLevel < 0 || overviewLevel > getNumOverviews(imageIndex))
+            throw new IndexOutOfBoundsException("bad overview level: "
+                    + overviewLevel);
+
+        String key = file.getAbsolutePath() + "|" + file.length() + "|"
+                + file.lastModified() + "|" + imageIndex + "|" + overviewLevel;
+        ImageStatistics statistics = statisticsCache.get(key);
+        if (statistics != null)
+            return statistics;
+
+        try
+        {
+            StatisticsCalculator calculator;
+            if (overviewLevel > 0)
+            {
+                Overviews overviews = getOverviews();
+                calculator = new StatisticsCalculator(overviews.getImageReader(
+                        imageIndex, overviewLevel), overviews.getImageInfo(
+                        imageIndex, overviewLevel));
+                calculator.setOverviewLevel(overviewLevel);
+            }
+            else
+            {
+                calculator = new StatisticsCalculator(
+                        getImageReader(imageIndex), record.getImages()[imageIndex]
+                                .getSubheader());
+            }
+            statistics = calculator.compute();
+        }
+        catch (NITFException e)
+        {
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new IIOException("NITF Exception", e);
+        }
+        statisticsCache.put(key, statistics);
+        return statistics;
+    }
+
     @Override
     public int getNumImages(boolean allowSearch) throws IOException
     {
@@ -290,269 +549,318 @@ public class NITFReader extends ImageReader
     @Override
     public Raster readRaster(int imageIndex, ImageReadParam param)
             throws IOException
+    {
+        ReadRequest request = createRequest(imageIndex, param);
+
+        WritableRaster ras = ImageIOUtils
+                .makeGenericPixelInterleavedWritableRaster(
+                        request.destRegion.width, request.destRegion.height,
+                        request.bandOffsets.length, request.bufType);
+        checkReadParamBandSettings(param, request.bandCount, ras
+                .getSampleModel().getNumBands());
+
+        clearAbortRequest();
+        processStarted(request);
+        readBlocks(request, ras, null);
+        finishRead(request);
+        return ras;
+    }
+
+    /**
+     * Holds the parameters of a single read, derived from the ImageReadParam
+     */
+    private static class ReadRequest
+    {
+        int imageIndex;
+
+        Rectangle sourceRegion;
+
+        Rectangle destRegion;
+
+        int sourceXSubsampling;
+
+        int sourceYSubsampling;
+
+        int[] bandOffsets;
+
+        int bandCount;
+
+        int pixelSize;
+
+        String pvType;
+
+        int bufType;
+
+        NITFImageInfo info;
+
+        nitf.ImageReader imageReader;
+
+        /** The thumbnail being read, or -1 for the image itself */
+        int thumbnailIndex = -1;
+    }
+
+    private ReadRequest createRequest(int imageIndex, ImageReadParam param)
+            throws IOException
     {
         checkIndex(imageIndex);
 
-        Rectangle sourceRegion = new Rectangle();
-        Rectangle destRegion = new Rectangle();
+        ReadRequest request = new ReadRequest();
+        request.imageIndex = imageIndex;
+        request.sourceRegion = new Rectangle();
+        request.destRegion = new Rectangle();
         computeRegions(param, getWidth(imageIndex), getHeight(imageIndex),
-                null, sourceRegion, destRegion);
+                null, request.sourceRegion, request.destRegion);
 
         // Set everything to default values
-        int sourceXSubsampling = param != null ? param.getSourceXSubsampling()
-                : 1;
-        int sourceYSubsampling = param != null ? param.getSourceYSubsampling()
-                : 1;
-        Point destinationOffset = param != null ? param.getDestinationOffset()
-                : new Point(0, 0);
-
-        ImageSubheader subheader;
+        request.sourceXSubsampling = param != null ? param
+                .getSourceXSubsampling() : 1;
+        request.sourceYSubsampling = param != null ? param
+                .getSourceYSubsampling() : 1;
+
         try
         {
-            subheader = record.getImages()[imageIndex].getSubheader();
+            request.info = new NITFImageInfo(record.getImages()[imageIndex]
+                    .getSubheader());
         }
         catch (NITFException e)
         {
             throw new IOException(ExceptionUtils.getStackTrace(e));
         }
-        String irep = subheader.getImageRepresentation().getStringData().trim();
-        String pvType = subheader.getPixelValueType().getStringData().trim();
-        int nbpp = subheader.getNumBitsPerPixel().getIntData();
-        int bandCount = subheader.getBandCount();
+        request.pvType = request.info.pvType;
+        request.bandCount = request.info.numBands;
 
         // make the band offsets array, for the output
-        int[] bandOffsets = null;
         int[] sourceBands = param != null ? param.getSourceBands() : null;
         if (param != null && param.getDestinationBands() != null)
-            bandOffsets = param.getDestinationBands();
+            request.bandOffsets = param.getDestinationBands();
         else if (param != null && sourceBands != null)
         {
-            bandOffsets = new int[sourceBands.length];
-            for (int i = 0; i < bandOffsets.length; i++)
-                bandOffsets[i] = sourceBands[i];
+            request.bandOffsets = new int[sourceBands.length];
+            for (int i = 0; i < request.bandOffsets.length; i++)
+                request.bandOffsets[i] = sourceBands[i];
         }
         else
         {
             // Setup band offsets -- TODO should we really read ALL bands by
             // default?
-            bandOffsets = new int[bandCount];
-            for (int i = 0; i < bandOffsets.length; i++)
-                bandOffsets[i] = i;
+            request.bandOffsets = new int[request.bandCount];
+            for (int i = 0; i < request.bandOffsets.length; i++)
+                request.bandOffsets[i] = i;
         }
 
-        int nBytes = ((nbpp - 1) / 8) + 1;
-
-        int bufType = -1;
+        int nBytes = request.info.pixelSize;
+        request.pixelSize = nBytes;
 
         // byte
         if (nBytes == 1)
         {
-            bufType = DataBuffer.TYPE_BYTE;
+            request.bufType = DataBuffer.TYPE_BYTE;
         }
         // short
         else if (nBytes == 2)
         {
-            bufType = DataBuffer.TYPE_USHORT;
+            request.bufType = DataBuffer.TYPE_USHORT;
         }
         // float
-        else if (nBytes == 4 && pvType.equals("R"))
+        else if (nBytes == 4 && request.pvType.equals("R"))
         {
-            bufType = DataBuffer.TYPE_FLOAT;
+            request.bufType = DataBuffer.TYPE_FLOAT;
         }
         // double
-        else if (nBytes == 8 && pvType.equals("R"))
+        else if (nBytes == 8 && request.pvType.equals("R"))
         {
-            bufType = DataBuffer.TYPE_DOUBLE;
+            request.bufType = DataBuffer.TYPE_DOUBLE;
         }
         else
         {
             throw new NotImplementedException("not yet implemented");
         }
 
-        WritableRaster ras = ImageIOUtils
-                .makeGenericPixelInterleavedWritableRaster(destRegion.width,
-                        destRegion.height, bandOffsets.length, bufType);
-        checkReadParamBandSettings(param, bandCount, ras.getSampleModel()
-                .getNumBands());
-        readRaster(imageIndex, sourceRegion, destRegion, sourceXSubsampling,
-                sourceYSubsampling, bandOffsets, nBytes, destinationOffset, ras);
-        return ras;
+        request.imageReader = getImageReader(imageIndex);
+        if (useOverviews)
+            selectOverview(request);
+        return request;
+    }
+
+    /**
+     * Switches a subsampled request over to the deepest overview level whose
+     * reduction factor divides both subsampling factors. Source position x
+     * lands on overview column x / 2^n, so the same destination pixels are
+     * produced, from averages rather than single pixels.
+     */
+    private void selectOverview(ReadRequest request) throws IOException
+    {
+        Overviews overviews = getOverviews();
+        if (overviews == null)
+            return;
+
+        int numLevels = overviews.getNumLevels(request.imageIndex);
+        int level = 0;
+        while (level < numLevels
+                && request.sourceXSubsampling % (2 << level) == 0
+                && request.sourceYSubsampling % (2 << level) == 0)
+            ++level;
+        if (level == 0)
+            return;
+
+        try
+        {
+            NITFImageInfo info = overviews.getImageInfo(request.imageIndex,
+                    level);
+            int factor = 1 << level;
+            int xSub = request.sourceXSubsampling / factor;
+            int ySub = request.sourceYSubsampling / factor;
+            Rectangle region = new Rectangle(request.sourceRegion.x / factor,
+                    request.sourceRegion.y / factor,
+                    (request.destRegion.width - 1) * xSub + 1,
+                    (request.destRegion.height - 1) * ySub + 1);
+            if (info.pixelSize != request.pixelSize
+                    || !info.pvType.equals(request.pvType)
+                    || info.numBands != request.bandCount
+                    || region.x + region.width > info.numCols
+                    || region.y + region.height > info.numRows)
+            {
+                log.warn("Ignoring mismatched overview level " + level
+                        + " of image " + request.imageIndex);
+                return;
+            }
+
+            request.imageReader = overviews.getImageReader(
+                    request.imageIndex, level);
+            request.info = info;
+            request.sourceRegion = region;
+            request.sourceXSubsampling = xSub;
+            request.sourceYSubsampling = ySub;
+        }
+        catch (NITFException e)
+        {
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new IIOException("NITF Exception", e);
+        }
     }
 
     /**
-     * Optimization to read the entire image in one fell swoop... This is most
-     * likely the common use case for this codec, so we hope this optimization
-     * will be helpful.
+     * Reads the requested region into the given raster, one block row at a
+     * time. Progress is reported after each read, along with an image update
+     * if a destination image is given, and the read stops at the next block
+     * row boundary once an abort has been requested.
      * 
-     * @param imageIndex
-     * @param sourceXSubsampling
-     * @param sourceYSubsampling
-     * @param bandOffsets
-     * @param pixelSize
+     * @param request
+     *            the read parameters
      * @param imRas
+     *            the raster to fill, sized to the destination region
+     * @param image
+     *            the image backed by imRas, or null
      * @throws IOException
      */
-    protected void readFullImage(int imageIndex, Rectangle destRegion,
-                                 int sourceXSubsampling,
-                                 int sourceYSubsampling, int[] bandOffsets,
-                                 int pixelSize, WritableRaster imRas)
-            throws IOException
+    private void readBlocks(ReadRequest request, WritableRaster imRas,
+            BufferedImage image) throws IOException
     {
+        NITFImageInfo info = request.info;
+        Rectangle sourceRegion = request.sourceRegion;
+        int xSub = request.sourceXSubsampling;
+        int ySub = request.sourceYSubsampling;
+        int outCols = request.destRegion.width;
+        int outRows = request.destRegion.height;
+        int pixelSize = request.pixelSize;
+
+        /*
+         * NOTE: This is a "fix" that will be removed once the underlying
+         * NITRO library gets patched. Currently, if you make a request of a
+         * single band, it doesn't matter which band you request - the data
+         * from the first band will be returned regardless. This is obviously
+         * wrong. To thwart this, we will read all bands, then scale down what
+         * we return to the user based on their actual request.
+         */
+        int[] requestBands = new int[info.numBands];
+        for (int i = 0; i < requestBands.length; ++i)
+            requestBands[i] = i;
+
+        /*
+         * The native down sampler can't skip more than a block, so in that
+         * case we read the rows we need one at a time and skip the columns
+         * ourselves.
+         */
+        boolean nativeSkip = xSub <= info.numColsPerBlock
+                && ySub <= info.numRowsPerBlock;
+
+        /*
+         * The native down sampler reads every row of each sample window.
+         * Thumbnails only need one row in ySub, so read just those.
+         */
+        if (request.thumbnailIndex >= 0 && ySub > 1)
+            nativeSkip = false;
+        int readCols = nativeSkip ? outCols : (outCols - 1) * xSub + 1;
+        int colStep = nativeSkip ? 1 : xSub;
+        int maxRows = nativeSkip ? Math.min(outRows, info.numRowsPerBlock
+                / ySub + 1) : 1;
+
+        byte[][] buf = new byte[requestBands.length][maxRows * readCols
+                * pixelSize];
+        Object samples = null;
+
+        int[] destBands = new int[request.bandOffsets.length];
+        for (int i = 0; i < destBands.length; ++i)
+            destBands[i] = i;
+
         try
         {
-            ImageSubheader subheader = record.getImages()[imageIndex]
-                    .getSubheader();
-            int numCols = destRegion.width;
-            int numRows = destRegion.height;
-
-            int nBands = subheader.getBandCount();
-
-            /*
-             * NOTE: This is a "fix" that will be removed once the underlying
-             * NITRO library gets patched. Currently, if you make a request of a
-             * single band, it doesn't matter which band you request - the data
-             * from the first band will be returned regardless. This is
-             * obviously wrong. To thwart this, we will read all bands, then
-             * scale down what we return to the user based on their actual
-             * request.
-             */
-
-            int[] requestBands = bandOffsets;
-            /*
-             * if (nBands != bandOffsets.length && bandOffsets.length == 1
-             * && bandOffsets[0] != 0)
-             * {
-             * requestBands = new int[nBands];
-             * for (int i = 0; i < nBands; ++i)
-             * requestBands[i] = i;
-             * }
-             */
-
-            int bufSize = numCols * numRows * pixelSize;
-            byte[][] imageBuf = new byte[requestBands.length][bufSize];
-
-            // make a SubWindow from the params
-            // TODO may want to read by blocks or rows to make faster and more
-            // memory efficient
-            SubWindow window;
-            window = new SubWindow();
+            SubWindow window = new SubWindow();
             window.setNumBands(requestBands.length);
             window.setBandList(requestBands);
-            window.setNumCols(numCols);
-            window.setNumRows(numRows);
-            window.setStartCol(0);
-            window.setStartRow(0);
+            window.setStartCol(sourceRegion.x);
+            window.setNumCols(readCols);
 
             // the NITRO library can do the subsampling for us
-            if (sourceYSubsampling != 1 || sourceXSubsampling != 1)
+            if (nativeSkip && (ySub != 1 || xSub != 1))
             {
-                DownSampler downSampler = new PixelSkipDownSampler(
-                        sourceYSubsampling, sourceXSubsampling);
+                DownSampler downSampler = new PixelSkipDownSampler(ySub, xSub);
                 window.setDownSampler(downSampler);
             }
 
-            // String pixelJustification = subheader.getPixelJustification()
-            // .getStringData().trim();
-            // boolean shouldSwap = pixelJustification.equals("R");
-
-            // since this is Java, we need the data in big-endian format
-            // boolean shouldSwap = ByteOrder.nativeOrder() !=
-            // ByteOrder.BIG_ENDIAN;
-
-            nitf.ImageReader imageReader = getImageReader(imageIndex);
-            imageReader.read(window, imageBuf);
-
-            List<ByteBuffer> bandBufs = new ArrayList<ByteBuffer>();
-
-            for (int i = 0; i < bandOffsets.length; ++i)
+            nitf.ImageReader imageReader = request.imageReader;
+            for (int dstY = 0; dstY < outRows;)
             {
-                ByteBuffer bandBuf = null;
+                if (abortRequested())
+                    break;
 
-                // the special "fix" we added needs to do this
-                if (bandOffsets.length != requestBands.length)
+                // read up to the end of the block row
+                int srcY = sourceRegion.y + dstY * ySub;
+                int numRows = 1;
+                if (nativeSkip)
                 {
-                    bandBuf = ByteBuffer.wrap(imageBuf[bandOffsets[i]]);
+                    int blockEnd = (srcY / info.numRowsPerBlock + 1)
+                            * info.numRowsPerBlock;
+                    numRows = Math.min(maxRows, Math.min(outRows - dstY,
+                            (blockEnd - srcY + ySub - 1) / ySub));
                 }
-                else
+                window.setStartRow(srcY);
+                window.setNumRows(numRows);
+
+                try
                 {
-                    bandBuf = ByteBuffer.wrap(imageBuf[i]);
+                    synchronized (imageReader)
+                    {
+                        imageReader.read(window, buf);
+                    }
                 }
-                // ban dBuf.order(ByteOrder.nativeOrder());
-                // shouldSwap ? ByteOrder.LITTLE_ENDIAN
-                // : ByteOrder.BIG_ENDIAN);
-
-                bandBufs.add(bandBuf);
-            }
-
-            // optimization for 1 band case... just dump the whole thing
-            if (bandOffsets.length == 1)
-            {
-                ByteBuffer bandBuf = bandBufs.get(0);
-
-                switch (pixelSize)
+                catch (NITFException e)
                 {
-                case 1:
-                    ByteBuffer rasterByteBuf = ByteBuffer
-                            .wrap(((DataBufferByte) imRas.getDataBuffer())
-                                    .getData());
-                    rasterByteBuf.put(bandBuf);
-                    break;
-                case 2:
-                    ShortBuffer rasterShortBuf = ShortBuffer
-                            .wrap(((DataBufferUShort) imRas.getDataBuffer())
-                                    .getData());
-                    rasterShortBuf.put(bandBuf.asShortBuffer());
-                    break;
-                case 4:
-                    FloatBuffer rasterFloatBuf = FloatBuffer
-                            .wrap(((DataBufferFloat) imRas.getDataBuffer())
-                                    .getData());
-                    rasterFloatBuf.put(bandBuf.asFloatBuffer());
-                    break;
-                case 8:
-                    DoubleBuffer rasterDoubleBuf = DoubleBuffer
-                            .wrap(((DataBufferDouble) imRas.getDataBuffer())
-                                    .getData());
-                    rasterDoubleBuf.put(bandBuf.asDoubleBuffer());
-                    break;
+                    throw new IIOException("Error reading line " + srcY, e);
                 }
-            }
-            else
-            {
-                // for multi-band case, we need to iterate over each pixel...
-                // TODO -- optimize this!... somehow
 
-                for (int srcY = 0, srcX = 0; srcY < numRows; srcY++)
+                for (int i = 0; i < request.bandOffsets.length; ++i)
                 {
-                    // Copy each (subsampled) source pixel into imRas
-                    for (int dstX = 0; dstX < numCols; srcX += pixelSize, dstX++)
-                    {
-                        for (int i = 0; i < bandOffsets.length; ++i)
-                        {
-                            ByteBuffer bandBuf = bandBufs.get(i);
-
-                            switch (pixelSize)
-                            {
-                            case 1:
-                                imRas.setSample(dstX, srcY, i, bandBuf
-                                        .get(srcX));
-                                break;
-                            case 2:
-                                imRas.setSample(dstX, srcY, i, bandBuf
-                                        .getShort(srcX));
-                                break;
-                            case 4:
-                                imRas.setSample(dstX, srcY, i, bandBuf
-                                        .getFloat(srcX));
-                                break;
-                            case 8:
-                                imRas.setSample(dstX, srcY, i, bandBuf
-                                        .getDouble(srcX));
-                                break;
-                            }
-                        }
-                    }
+                    samples = toSamples(buf[request.bandOffsets[i]], numRows,
+                            readCols, colStep, outCols, request, samples);
+                    setSamples(imRas, dstY, outCols, numRows, i, samples);
                 }
+                dstY += numRows;
+
+                processProgress(request, 100.0f * dstY / outRows);
+                if (image != null)
+                    processUpdate(request, image, 0, dstY - numRows, outCols,
+                            numRows, destBands);
             }
         }
         catch (NITFException e1)
@@ -562,181 +870,114 @@ public class NITFReader extends ImageReader
     }
 
     /**
-     * Reads image data as bytes for the given region, and writes it to the
-     * given writable raster
-     * 
-     * @param sourceRegion
-     * @param sourceXSubsampling
-     * @param sourceYSubsampling
-     * @param bandOffsets
-     * @param destinationOffset
-     * @param imRas
-     * @return Raster
-     * @throws IOException
+     * Converts rows of native-order pixels to an int, float or double sample
+     * array, taking every colStep'th column. The given array is reused if it
+     * is large enough.
      */
-    protected void readRaster(int imageIndex, Rectangle sourceRegion,
-                              Rectangle destRegion, int sourceXSubsampling,
-                              int sourceYSubsampling, int[] bandOffsets,
-                              int pixelSize, Point destinationOffset,
-                              WritableRaster imRas) throws IOException
+    private static Object toSamples(byte[] src, int numRows, int srcCols,
+            int colStep, int outCols, ReadRequest request, Object samples)
     {
-        checkIndex(imageIndex);
+        ByteBuffer buf = ByteBuffer.wrap(src).order(ByteOrder.nativeOrder());
+        int count = numRows * outCols;
+        int pixelSize = request.pixelSize;
 
-        try
+        if (request.bufType == DataBuffer.TYPE_FLOAT)
         {
-            ImageSubheader subheader = record.getImages()[imageIndex]
-                    .getSubheader();
-            int numCols = subheader.getNumCols().getIntData();
-            int numRows = subheader.getNumRows().getIntData();
+            float[] out = samples instanceof float[]
+                    && ((float[]) samples).length >= count ? (float[]) samples
+                    : new float[count];
+            for (int row = 0, k = 0; row < numRows; ++row)
+                for (int col = 0, p = row * srcCols * pixelSize; col < outCols; ++col, p += colStep
+                        * pixelSize)
+                    out[k++] = buf.getFloat(p);
+            return out;
+        }
+        if (request.bufType == DataBuffer.TYPE_DOUBLE)
+        {
+            double[] out = samples instanceof double[]
+                    && ((double[]) samples).length >= count ? (double[]) samples
+                    : new double[count];
+            for (int row = 0, k = 0; row < numRows; ++row)
+                for (int col = 0, p = row * srcCols * pixelSize; col < outCols; ++col, p += colStep
+                        * pixelSize)
+                    out[k++] = buf.getDouble(p);
+            return out;
+        }
 
-            // try to optimize the read call by reading in the entire
-            // image at once
-            if ((destRegion.height * sourceYSubsampling) == numRows
-                    && (destRegion.width * sourceXSubsampling) == numCols)
+        int[] out = samples instanceof int[]
+                && ((int[]) samples).length >= count ? (int[]) samples
+                : new int[count];
+        boolean signed = request.pvType.equals("SI");
+        for (int row = 0, k = 0; row < numRows; ++row)
+        {
+            int p = row * srcCols * pixelSize;
+            int step = colStep * pixelSize;
+            if (pixelSize == 1)
             {
-                readFullImage(imageIndex, destRegion, sourceXSubsampling,
-                        sourceYSubsampling, bandOffsets, pixelSize, imRas);
-                return;
+                for (int col = 0; col < outCols; ++col, p += step)
+                    out[k++] = src[p] & 0xFF;
+            }
+            else if (signed)
+            {
+                for (int col = 0; col < outCols; ++col, p += step)
+                    out[k++] = buf.getShort(p);
             }
-            // the general purpose case
             else
             {
-                int colBytes = destRegion.width * pixelSize;
-
-                int dstMinX = imRas.getMinX();
-                int dstMaxX = dstMinX + imRas.getWidth() - 1;
-                int dstMinY = imRas.getMinY();
-                int dstMaxY = dstMinY + imRas.getHeight() - 1;
-                // int swap = 0;
-
-                int nBands = subheader.getBandCount();
-
-                /*
-                 * NOTE: This is a "fix" that will be removed once the
-                 * underlying NITRO library gets patched. Currently, if you make
-                 * a request of a single band, it doesn't matter which band you
-                 * request - the data from the first band will be returned
-                 * regardless. This is obviously wrong. To thwart this, we will
-                 * read all bands, then scale down what we return to the user
-                 * based on their actual request.
-                 */
-                int[] requestBands = new int[nBands];
-                for (int i = 0; i < nBands; ++i)
-                    requestBands[i] = i;
-
-                byte[][] rowBuf = new byte[requestBands.length][colBytes];
-
-                // make a SubWindow from the params
-                // TODO may want to read by blocks or rows to make faster and
-                // more
-                // memory efficient
-                SubWindow window;
-                window = new SubWindow();
-                window.setNumBands(requestBands.length);
-                window.setBandList(requestBands);
-                window.setNumCols(destRegion.width);
-                window.setNumRows(1);
-                window.setStartCol(sourceRegion.x);
-                window.setStartRow(sourceRegion.y);
-
-                // the NITRO library can do the subsampling for us
-                if (sourceYSubsampling != 1 || sourceXSubsampling != 1)
-                {
-                    DownSampler downSampler = new PixelSkipDownSampler(
-                            sourceYSubsampling, sourceXSubsampling);
-                    window.setDownSampler(downSampler);
-                }
-
-                // String pixelJustification = record.getImages()[imageIndex]
-                // .getSubheader().getPixelJustification().getStringData()
-                // .trim();
-                // swap = pixelJustification.equals("R") ? 1 : 0;
-
-                List<ByteBuffer> bandBufs = new ArrayList<ByteBuffer>();
-                for (int i = 0; i < requestBands.length; ++i)
-                {
-                    ByteBuffer bandBuf = null;
-                    bandBuf = ByteBuffer.wrap(rowBuf[i]);
-                    // bandBuf.order(ByteOrder.nativeOrder());
-                    // bandBuf.order(swap == 0 ? ByteOrder.BIG_ENDIAN
-                    // : ByteOrder.LITTLE_ENDIAN);
-                    bandBufs.add(bandBuf);
-                }
+                for (int col = 0; col < outCols; ++col, p += step)
+                    out[k++] = buf.getShort(p) & 0xFFFF;
+            }
+        }
+        return out;
+    }
 
-                nitf.ImageReader imageReader = getImageReader(imageIndex);
-                for (int srcY = 0; srcY < sourceRegion.height; srcY++)
-                {
-                    if (sourceYSubsampling != 1
-                            && (srcY % sourceYSubsampling) != 0)
-                        continue;
+    private static void setSamples(WritableRaster ras, int dstY, int width,
+            int height, int band, Object samples)
+    {
+        int x = ras.getMinX();
+        int y = ras.getMinY() + dstY;
+        if (samples instanceof float[])
+            ras.setSamples(x, y, width, height, band, (float[]) samples);
+        else if (samples instanceof double[])
+            ras.setSamples(x, y, width, height, band, (double[]) samples);
+        else
+            ras.setSamples(x, y, width, height, band, (int[]) samples);
+    }
 
-                    window.setStartRow(sourceRegion.y + srcY);
+    private void processStarted(ReadRequest request)
+    {
+        if (request.thumbnailIndex >= 0)
+            processThumbnailStarted(request.imageIndex, request.thumbnailIndex);
+        else
+            processImageStarted(request.imageIndex);
+    }
 
-                    // Read the row
-                    try
-                    {
-                        imageReader.read(window, rowBuf);
-                    }
-                    catch (NITFException e)
-                    {
-                        throw new IIOException("Error reading line " + srcY, e);
-                    }
+    private void processProgress(ReadRequest request, float percentageDone)
+    {
+        if (request.thumbnailIndex >= 0)
+            processThumbnailProgress(percentageDone);
+        else
+            processImageProgress(percentageDone);
+    }
 
-                    // Determine where the row will go in the destination
-                    int dstY = destinationOffset.y + srcY / sourceYSubsampling;
-                    if (dstY < dstMinY)
-                    {
-                        continue; // The row is above imRas
-                    }
-                    if (dstY > dstMaxY)
-                    {
-                        break; // We're done with the image
-                    }
+    private void processUpdate(ReadRequest request, BufferedImage image,
+            int minX, int minY, int width, int height, int[] bands)
+    {
+        if (request.thumbnailIndex >= 0)
+            processThumbnailUpdate(image, minX, minY, width, height, 1, 1,
+                    bands);
+        else
+            processImageUpdate(image, minX, minY, width, height, 1, 1, bands);
+    }
 
-                    // Copy each (subsampled) source pixel into imRas
-                    for (int srcX = 0, dstX = destinationOffset.x; srcX < colBytes; srcX += pixelSize, dstX++)
-                    {
-                        if (dstX < dstMinX)
-                        {
-                            continue;
-                        }
-                        if (dstX > dstMaxX)
-                        {
-                            break;
-                        }
-
-                        for (int i = 0; i < bandOffsets.length; ++i)
-                        {
-                            ByteBuffer bandBuf = bandBufs.get(bandOffsets[i]);
-
-                            switch (pixelSize)
-                            {
-                            case 1:
-                                imRas.setSample(dstX, dstY, i, bandBuf
-                                        .get(srcX));
-                                break;
-                            case 2:
-                                imRas.setSample(dstX, dstY, i, bandBuf
-                                        .getShort(srcX));
-                                break;
-                            case 4:
-                                imRas.setSample(dstX, dstY, i, bandBuf
-                                        .getFloat(srcX));
-                                break;
-                            case 8:
-                                imRas.setSample(dstX, dstY, i, bandBuf
-                                        .getDouble(srcX));
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        catch (NITFException e1)
-        {
-            throw new IOException(ExceptionUtils.getStackTrace(e1));
-        }
+    private void finishRead(ReadRequest request)
+    {
+        if (abortRequested())
+            processReadAborted();
+        else if (request.thumbnailIndex >= 0)
+            processThumbnailComplete();
+        else
+            processImageComplete();
     }
 
     @Override
@@ -744,7 +985,13 @@ public class NITFReader extends ImageReader
             throws IOException
     {
         readHeader();
-        Raster raster = readRaster(imageIndex, param);
+        return readImage(createRequest(imageIndex, param), param);
+    }
+
+    private BufferedImage readImage(ReadRequest request, ImageReadParam param)
+            throws IOException
+    {
+        int imageIndex = request.imageIndex;
 
         // get the requested number of destination bands (or 0 for all)
         int numDestBands = param != null ? (param.getDestinationBands() != null ? param
@@ -775,28 +1022,152 @@ public class NITFReader extends ImageReader
                 imageType = firstType;
         }
 
-        try
-        {
-            ImageSubheader subheader = record.getImages()[imageIndex]
-                    .getSubheader();
-            String pvType = subheader.getPixelValueType().getStringData()
-                    .trim();
-            int nbpp = subheader.getNumBitsPerPixel().getIntData();
-            int nBytes = ((nbpp - 1) / 8) + 1;
+        clearAbortRequest();
+        processStarted(request);
 
-            if (nBytes == 1 || nBytes == 2
-                    || (nBytes == 4 && pvType.equals("R"))
-                    || (nBytes == 8 && pvType.equals("R")))
+        BufferedImage image;
+        int width = request.destRegion.width;
+        int height = request.destRegion.height;
+        if (imageType.getSampleModel().getDataType() == request.bufType
+                && imageType.getNumBands() == request.bandOffsets.length)
+        {
+            // no conversion needed, so read right into the image
+            image = imageType.createBufferedImage(width, height);
+            checkReadParamBandSettings(param, request.bandCount, image
+                    .getSampleModel().getNumBands());
+            readBlocks(request, image.getRaster(), image);
+        }
+        else
+        {
+            WritableRaster raster = ImageIOUtils
+                    .makeGenericPixelInterleavedWritableRaster(width, height,
+                            request.bandOffsets.length, request.bufType);
+            checkReadParamBandSettings(param, request.bandCount, raster
+                    .getSampleModel().getNumBands());
+            readBlocks(request, raster, null);
+            image = ImageIOUtils.rasterToBufferedImage(raster, imageType);
+            if (!abortRequested())
             {
-                return ImageIOUtils.rasterToBufferedImage(raster, imageType);
+                int[] bands = new int[image.getSampleModel().getNumBands()];
+                for (int i = 0; i < bands.length; ++i)
+                    bands[i] = i;
+                processUpdate(request, image, 0, 0, width, height, bands);
             }
         }
+        finishRead(request);
+        return image;
+    }
+
+    @Override
+    public boolean readerSupportsThumbnails()
+    {
+        return true;
+    }
+
+    /**
+     * Every image has a single thumbnail, which fits in MAX_THUMBNAIL_SIZE.
+     */
+    @Override
+    public int getNumThumbnails(int imageIndex) throws IOException
+    {
+        checkIndex(imageIndex);
+        return 1;
+    }
+
+    private void checkThumbnailIndex(int imageIndex, int thumbnailIndex)
+            throws IOException
+    {
+        if (thumbnailIndex < 0
+                || thumbnailIndex >= getNumThumbnails(imageIndex))
+            throw new IndexOutOfBoundsException("bad thumbnail index: "
+                    + thumbnailIndex);
+    }
+
+    /**
+     * @return the subsampling factor used for the thumbnail. It is a power of
+     *         two, so thumbnails line up with the overview levels.
+     */
+    private int getThumbnailSubsampling(int imageIndex) throws IOException
+    {
+        int size = Math.max(getWidth(imageIndex), getHeight(imageIndex));
+        int factor = 1;
+        while ((size + factor - 1) / factor > MAX_THUMBNAIL_SIZE)
+            factor *= 2;
+        return factor;
+    }
+
+    @Override
+    public int getThumbnailWidth(int imageIndex, int thumbnailIndex)
+            throws IOException
+    {
+        checkThumbnailIndex(imageIndex, thumbnailIndex);
+        int factor = getThumbnailSubsampling(imageIndex);
+        return (getWidth(imageIndex) + factor - 1) / factor;
+    }
+
+    @Override
+    public int getThumbnailHeight(int imageIndex, int thumbnailIndex)
+            throws IOException
+    {
+        checkThumbnailIndex(imageIndex, thumbnailIndex);
+        int factor = getThumbnailSubsampling(imageIndex);
+        return (getHeight(imageIndex) + factor - 1) / factor;
+    }
+
+    /**
+     * Reads the thumbnail of an image. It comes from the best overview, when
+     * there are overviews (see {@link OverviewBuilder}); otherwise only the
+     * rows that land in the thumbnail are read.
+     */
+    @Override
+    public BufferedImage readThumbnail(int imageIndex, int thumbnailIndex)
+            throws IOException
+    {
+        checkThumbnailIndex(imageIndex, thumbnailIndex);
+        int factor = getThumbnailSubsampling(imageIndex);
+        ImageReadParam param = getDefaultReadParam();
+        param.setSourceSubsampling(factor, factor, 0, 0);
+
+        ReadRequest request = createRequest(imageIndex, param);
+        request.thumbnailIndex = thumbnailIndex;
+        return readImage(request, param);
+    }
+
+    /**
+     * Returns a RenderedImage whose tiles are read from the file on demand,
+     * one NITF block at a time, and kept in the shared {@link TileCache}.
+     * Source bands are honored; if the param asks for a source region,
+     * subsampling or destination settings, the image is read eagerly instead.
+     */
+    @Override
+    public RenderedImage readAsRenderedImage(int imageIndex,
+            ImageReadParam param) throws IOException
+    {
+        if (param != null
+                && (param.getSourceRegion() != null
+                        || param.getSourceXSubsampling() != 1
+                        || param.getSourceYSubsampling() != 1
+                        || param.getDestination() != null
+                        || param.getDestinationBands() != null || !param
+                        .getDestinationOffset().equals(new Point(0, 0))))
+        {
+            return super.readAsRenderedImage(imageIndex, param);
+        }
+
+        nitf.ImageReader imageReader = getImageReader(imageIndex);
+        try
+        {
+            NITFImageInfo info = new NITFImageInfo(record.getImages()[imageIndex]
+                    .getSubheader());
+            return new NITFRenderedImage(imageReader, info,
+                    param != null ? param.getSourceBands() : null, TileCache
+                            .getDefaultInstance());
+        }
         catch (NITFException e)
         {
-            throw new IOException(ExceptionUtils.getStackTrace(e));
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new IIOException("NITF Exception", e);
         }
-        throw new NotImplementedException(
-                "Image pixel type or bits per pixel not yet supported");
     }
 
     @Override
@@ -805,6 +1176,13 @@ public class NITFReader extends ImageReader
         return true;
     }
 
+    @Override
+    public void dispose()
+    {
+        closeInput();
+        super.dispose();
+    }
+
     /**
      * @return returns the underlying Record
      * @throws IOException
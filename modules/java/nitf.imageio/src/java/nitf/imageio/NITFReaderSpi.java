@@ -47,7 +47,7 @@ public class NITFReaderSpi extends ImageReaderSpi
                 new String[] { "image/x-ntf", "image/x-nitf" }, // MIMETypes
                 NITFReader.class.getName(), // readerClassName
                 new Class[] { File.class }, // inputTypes
-                null, // writerSpiNames
+                new String[] { NITFWriterSpi.class.getName() }, // writerSpiNames
                 false, // supportsStandardStreamMetadataFormat
                 null, // nativeStreamMetadataFormatName
                 null, // nativeStreamMetadataFormatClassName
@@ -0,0 +1,427 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Vector;
+
+import nitf.NITFException;
+import nitf.SubWindow;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A RenderedImage view of a NITF image segment. Nothing is read up front;
+ * each call to getTile reads the corresponding NITF block through the native
+ * reader, and decoded tiles are kept in a shared {@link TileCache}. Tiles line
+ * up with the NITF blocks, unless the blocks are very large (e.g. a single
+ * block image), in which case they are split into smaller tiles.
+ * <p>
+ * getTile may be called concurrently; reads through the underlying native
+ * reader are serialized on the reader. The tiles it returns are shared, and
+ * must not be modified.
+ */
+public class NITFRenderedImage implements RenderedImage
+{
+    private static final Log log = LogFactory.getLog(NITFRenderedImage.class);
+
+    /** Blocks larger than this are split into DEFAULT_TILE_SIZE tiles */
+    public static final int MAX_TILE_SIZE = 2048;
+
+    public static final int DEFAULT_TILE_SIZE = 1024;
+
+    private final nitf.ImageReader imageReader;
+
+    private final NITFImageInfo info;
+
+    private final int[] bands;
+
+    private final TileCache cache;
+
+    private final int tileWidth;
+
+    private final int tileHeight;
+
+    private final SampleModel sampleModel;
+
+    private final ColorModel colorModel;
+
+    /**
+     * @param imageReader
+     *            the native reader for the image segment
+     * @param info
+     *            the layout of the image segment
+     * @param bands
+     *            the (zero-based) bands to expose, or null for all bands
+     * @param cache
+     *            the cache to keep decoded tiles in
+     */
+    NITFRenderedImage(nitf.ImageReader imageReader, NITFImageInfo info,
+            int[] bands, TileCache cache)
+    {
+        this.imageReader = imageReader;
+        this.info = info;
+        if (bands == null)
+        {
+            bands = new int[info.numBands];
+            for (int i = 0; i < bands.length; ++i)
+                bands[i] = i;
+        }
+        for (int i = 0; i < bands.length; ++i)
+        {
+            if (bands[i] < 0 || bands[i] >= info.numBands)
+                throw new IllegalArgumentException("Invalid band: "
+                        + bands[i]);
+        }
+        this.bands = bands;
+        this.cache = cache;
+        this.tileWidth = getTileSize(info.numColsPerBlock, info.numCols);
+        this.tileHeight = getTileSize(info.numRowsPerBlock, info.numRows);
+        this.sampleModel = info.createSampleModel(tileWidth, tileHeight,
+                bands.length);
+        this.colorModel = info.createColorModel(bands);
+    }
+
+    private static int getTileSize(int blockSize, int imageSize)
+    {
+        int size = blockSize > MAX_TILE_SIZE ? DEFAULT_TILE_SIZE : blockSize;
+        return Math.max(1, Math.min(size, imageSize));
+    }
+
+    /**
+     * Returns the tile, which is shared through the tile cache, so it must
+     * not be modified. {@link #getData(Rectangle)} returns a copy.
+     */
+    public Raster getTile(int tileX, int tileY)
+    {
+        if (tileX < 0 || tileX >= getNumXTiles() || tileY < 0
+                || tileY >= getNumYTiles())
+            throw new IllegalArgumentException("Invalid tile: " + tileX + ", "
+                    + tileY);
+
+        Raster tile = cache.getTile(this, tileX, tileY);
+        if (tile == null)
+        {
+            try
+            {
+                tile = readTile(tileX, tileY);
+            }
+            catch (NITFException e)
+            {
+                log.error(ExceptionUtils.getStackTrace(e));
+                throw new RuntimeException("Unable to read tile " + tileX
+                        + ", " + tileY, e);
+            }
+            cache.addTile(this, tileX, tileY, tile);
+        }
+        return tile;
+    }
+
+    private Raster readTile(int tileX, int tileY) throws NITFException
+    {
+        int x = tileX * tileWidth;
+        int y = tileY * tileHeight;
+        int cols = Math.min(tileWidth, info.numCols - x);
+        int rows = Math.min(tileHeight, info.numRows - y);
+
+        /*
+         * The native reader does not handle band subsets for every IMODE, so
+         * we read all bands and keep the ones we were asked for, just like
+         * NITFReader does.
+         */
+        int[] readBands = new int[info.numBands];
+        for (int i = 0; i < readBands.length; ++i)
+            readBands[i] = i;
+        byte[][] buf = new byte[readBands.length][cols * rows
+                * info.pixelSize];
+
+        SubWindow window = new SubWindow();
+        window.setStartRow(y);
+        window.setNumRows(rows);
+        window.setStartCol(x);
+        window.setNumCols(cols);
+        window.setNumBands(readBands.length);
+        window.setBandList(readBands);
+
+        synchronized (imageReader)
+        {
+            imageReader.read(window, buf);
+        }
+
+        DataBuffer dataBuffer = createDataBuffer(sampleModel.getDataType(),
+                tileWidth * tileHeight, bands.length);
+        for (int i = 0; i < bands.length; ++i)
+            copyToBank(buf[bands[i]], cols, rows, dataBuffer, i, tileWidth);
+        return Raster.createWritableRaster(sampleModel, dataBuffer,
+                new Point(x, y));
+    }
+
+    /**
+     * Creates a banded DataBuffer of the given type
+     */
+    static DataBuffer createDataBuffer(int dataType, int size, int numBanks)
+    {
+        switch (dataType)
+        {
+        case DataBuffer.TYPE_BYTE:
+            return new DataBufferByte(size, numBanks);
+        case DataBuffer.TYPE_USHORT:
+            return new DataBufferUShort(size, numBanks);
+        case DataBuffer.TYPE_SHORT:
+            return new DataBufferShort(size, numBanks);
+        case DataBuffer.TYPE_INT:
+            return new DataBufferInt(size, numBanks);
+        case DataBuffer.TYPE_FLOAT:
+            return new DataBufferFloat(size, numBanks);
+        case DataBuffer.TYPE_DOUBLE:
+            return new DataBufferDouble(size, numBanks);
+        default:
+            throw new IllegalArgumentException("Unsupported data type: "
+                    + dataType);
+        }
+    }
+
+    /**
+     * Copies a band of native-order pixels (cols x rows) read by the native
+     * reader into a bank of the given DataBuffer, whose rows are scanlineStride
+     * elements apart.
+     */
+    static void copyToBank(byte[] src, int cols, int rows, DataBuffer dst,
+            int bank, int scanlineStride)
+    {
+        ByteBuffer buf = ByteBuffer.wrap(src).order(ByteOrder.nativeOrder());
+        for (int row = 0; row < rows; ++row)
+        {
+            int dstOffset = row * scanlineStride;
+            switch (dst.getDataType())
+            {
+            case DataBuffer.TYPE_BYTE:
+                System.arraycopy(src, row * cols, ((DataBufferByte) dst)
+                        .getData(bank), dstOffset, cols);
+                break;
+            case DataBuffer.TYPE_USHORT:
+                buf.position(row * cols * 2);
+                buf.asShortBuffer().get(((DataBufferUShort) dst).getData(bank),
+                        dstOffset, cols);
+                break;
+            case DataBuffer.TYPE_SHORT:
+                buf.position(row * cols * 2);
+                buf.asShortBuffer().get(((DataBufferShort) dst).getData(bank),
+                        dstOffset, cols);
+                break;
+            case DataBuffer.TYPE_INT:
+                buf.position(row * cols * 4);
+                buf.asIntBuffer().get(((DataBufferInt) dst).getData(bank),
+                        dstOffset, cols);
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                buf.position(row * cols * 4);
+                buf.asFloatBuffer().get(((DataBufferFloat) dst).getData(bank),
+                        dstOffset, cols);
+                break;
+            case DataBuffer.TYPE_DOUBLE:
+                buf.position(row * cols * 8);
+                buf.asDoubleBuffer().get(
+                        ((DataBufferDouble) dst).getData(bank), dstOffset,
+                        cols);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes any cached tiles of this image from the tile cache
+     */
+    public void dispose()
+    {
+        cache.removeTiles(this);
+    }
+
+    public Raster getData()
+    {
+        return getData(new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+
+    public Raster getData(Rectangle rect)
+    {
+        Rectangle bounds = rect.intersection(new Rectangle(0, 0, getWidth(),
+                getHeight()));
+        if (bounds.isEmpty())
+            throw new IllegalArgumentException("Rectangle does not intersect "
+                    + "the image: " + rect);
+
+        WritableRaster raster = Raster.createWritableRaster(sampleModel
+                .createCompatibleSampleModel(bounds.width, bounds.height),
+                new Point(bounds.x, bounds.y));
+        copyTiles(bounds, raster, true);
+        return raster;
+    }
+
+    public WritableRaster copyData(WritableRaster raster)
+    {
+        Rectangle bounds = new Rectangle(0, 0, getWidth(), getHeight());
+        if (raster == null)
+        {
+            raster = Raster.createWritableRaster(sampleModel
+                    .createCompatibleSampleModel(bounds.width, bounds.height),
+                    null);
+        }
+        else
+            bounds = bounds.intersection(raster.getBounds());
+        if (!bounds.isEmpty())
+            copyTiles(bounds, raster, false);
+        return raster;
+    }
+
+    private void copyTiles(Rectangle bounds, WritableRaster raster,
+            boolean sameLayout)
+    {
+        int minTileX = bounds.x / tileWidth;
+        int maxTileX = (bounds.x + bounds.width - 1) / tileWidth;
+        int minTileY = bounds.y / tileHeight;
+        int maxTileY = (bounds.y + bounds.height - 1) / tileHeight;
+        for (int ty = minTileY; ty <= maxTileY; ++ty)
+        {
+            for (int tx = minTileX; tx <= maxTileX; ++tx)
+            {
+                Raster tile = getTile(tx, ty);
+                Rectangle area = tile.getBounds().intersection(bounds);
+                if (sameLayout)
+                {
+                    raster.setDataElements(area.x, area.y, area.width,
+                            area.height, tile.getDataElements(area.x, area.y,
+                                    area.width, area.height, null));
+                }
+                else
+                {
+                    raster.setRect(tile.createChild(area.x, area.y,
+                            area.width, area.height, area.x, area.y, null));
+                }
+            }
+        }
+    }
+
+    public ColorModel getColorModel()
+    {
+        return colorModel;
+    }
+
+    public SampleModel getSampleModel()
+    {
+        return sampleModel;
+    }
+
+    public int getWidth()
+    {
+        return info.numCols;
+    }
+
+    public int getHeight()
+    {
+        return info.numRows;
+    }
+
+    public int getMinX()
+    {
+        return 0;
+    }
+
+    public int getMinY()
+    {
+        return 0;
+    }
+
+    public int getNumXTiles()
+    {
+        return (info.numCols + tileWidth - 1) / tileWidth;
+    }
+
+    public int getNumYTiles()
+    {
+        return (info.numRows + tileHeight - 1) / tileHeight;
+    }
+
+    public int getMinTileX()
+    {
+        return 0;
+    }
+
+    public int getMinTileY()
+    {
+        return 0;
+    }
+
+    public int getTileWidth()
+    {
+        return tileWidth;
+    }
+
+    public int getTileHeight()
+    {
+        return tileHeight;
+    }
+
+    public int getTileGridXOffset()
+    {
+        return 0;
+    }
+
+    public int getTileGridYOffset()
+    {
+        return 0;
+    }
+
+    public Vector<RenderedImage> getSources()
+    {
+        return null;
+    }
+
+    public Object getProperty(String name)
+    {
+        return Image.UndefinedProperty;
+    }
+
+    public String[] getPropertyNames()
+    {
+        return null;
+    }
+
+}
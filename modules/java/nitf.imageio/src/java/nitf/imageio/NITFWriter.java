@@ -0,0 +1,396 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.ImageWriterSpi;
+
+import nitf.BandInfo;
+import nitf.FileHeader;
+import nitf.IOHandle;
+import nitf.ImageSubheader;
+import nitf.NITFException;
+import nitf.Record;
+import nitf.Version;
+import nitf.Writer;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * ImageIO writer for NITF 2.1 files. The image is streamed to the native
+ * writer a strip of rows at a time, pulling tiles from the RenderedImage as
+ * they are needed, so arbitrarily large (tiled) images can be written without
+ * holding them in memory.
+ */
+public class NITFWriter extends ImageWriter
+{
+    private static final Log log = LogFactory.getLog(NITFWriter.class);
+
+    public NITFWriter(ImageWriterSpi originatingProvider)
+    {
+        super(originatingProvider);
+    }
+
+    @Override
+    public void setOutput(Object output)
+    {
+        if (output != null && !(output instanceof File))
+        {
+            throw new IllegalArgumentException(
+                    "Currently, the output must be a File");
+        }
+        super.setOutput(output);
+    }
+
+    @Override
+    public ImageWriteParam getDefaultWriteParam()
+    {
+        return new NITFImageWriteParam(getLocale());
+    }
+
+    @Override
+    public IIOMetadata getDefaultStreamMetadata(ImageWriteParam param)
+    {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata getDefaultImageMetadata(ImageTypeSpecifier imageType,
+            ImageWriteParam param)
+    {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata convertStreamMetadata(IIOMetadata inData,
+            ImageWriteParam param)
+    {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata convertImageMetadata(IIOMetadata inData,
+            ImageTypeSpecifier imageType, ImageWriteParam param)
+    {
+        return null;
+    }
+
+    @Override
+    public void write(IIOMetadata streamMetadata, IIOImage image,
+            ImageWriteParam param) throws IOException
+    {
+        if (output == null)
+            throw new IllegalStateException("No output has been set");
+        if (image == null)
+            throw new IllegalArgumentException("image is null");
+        if (image.hasRaster())
+            throw new UnsupportedOperationException(
+                    "Writing Rasters is not supported");
+
+        RenderedImage renderedImage = image.getRenderedImage();
+        if (param == null)
+            param = getDefaultWriteParam();
+
+        Rectangle sourceRegion = new Rectangle(renderedImage.getMinX(),
+                renderedImage.getMinY(), renderedImage.getWidth(),
+                renderedImage.getHeight());
+        if (param.getSourceRegion() != null)
+            sourceRegion = sourceRegion.intersection(param.getSourceRegion());
+        int xSubsampling = param.getSourceXSubsampling();
+        int ySubsampling = param.getSourceYSubsampling();
+        sourceRegion.x += param.getSubsamplingXOffset();
+        sourceRegion.y += param.getSubsamplingYOffset();
+        sourceRegion.width -= param.getSubsamplingXOffset();
+        sourceRegion.height -= param.getSubsamplingYOffset();
+        if (sourceRegion.isEmpty())
+            throw new IllegalArgumentException("Source region is empty");
+
+        SampleModel sampleModel = renderedImage.getSampleModel();
+        int[] sourceBands = param.getSourceBands();
+        if (sourceBands == null)
+        {
+            sourceBands = new int[sampleModel.getNumBands()];
+            for (int i = 0; i < sourceBands.length; ++i)
+                sourceBands[i] = i;
+        }
+        for (int i = 0; i < sourceBands.length; ++i)
+        {
+            if (sourceBands[i] < 0
+                    || sourceBands[i] >= sampleModel.getNumBands())
+                throw new IllegalArgumentException("Invalid source band: "
+                        + sourceBands[i]);
+        }
+
+        int numCols = (sourceRegion.width + xSubsampling - 1) / xSubsampling;
+        int numRows = (sourceRegion.height + ySubsampling - 1) / ySubsampling;
+        int[] blockSize = getBlockSize(renderedImage, numCols, numRows, param);
+
+        clearAbortRequest();
+        processImageStarted(0);
+
+        final RenderedImageSource source = new RenderedImageSource(
+                renderedImage, sourceRegion, xSubsampling, ySubsampling,
+                sourceBands, blockSize[1])
+        {
+            @Override
+            protected void stripLoaded(int rowsLoaded) throws NITFException
+            {
+                if (abortRequested())
+                    throw new NITFException("Write aborted");
+                processImageProgress(100.0f * rowsLoaded / getNumRows());
+            }
+        };
+
+        File file = (File) output;
+        if (file.exists() && !file.delete())
+            throw new IIOException("Unable to overwrite "
+                    + file.getAbsolutePath());
+
+        IOHandle handle = null;
+        NITFException failure = null;
+        boolean complete = false;
+        try
+        {
+            Record record = new Record(Version.NITF_21);
+            fillHeader(record.getHeader());
+            fillImageSubheader(record.newImageSegment().getSubheader(),
+                    renderedImage, sourceBands, numCols, numRows, blockSize,
+                    param);
+
+            handle = new IOHandle(file.getAbsolutePath(),
+                    IOHandle.NITF_ACCESS_WRITEONLY, IOHandle.NITF_CREATE);
+            Writer writer = new Writer();
+            writer.prepare(record, handle);
+            writer.getNewImageWriter(0).attachSource(
+                    source.createImageSource());
+            writer.write();
+            complete = true;
+        }
+        catch (NITFException e)
+        {
+            failure = e;
+        }
+        finally
+        {
+            if (handle != null)
+            {
+                try
+                {
+                    handle.close();
+                }
+                catch (NITFException e)
+                {
+                    log.error(ExceptionUtils.getStackTrace(e));
+                }
+            }
+
+            // a partial file would look like a whole one
+            if (!complete && file.exists() && !file.delete())
+                log.error("Unable to delete " + file.getAbsolutePath());
+        }
+
+        if (failure != null)
+        {
+            if (abortRequested())
+            {
+                processWriteAborted();
+                return;
+            }
+            log.error(ExceptionUtils.getStackTrace(failure));
+            throw new IIOException("NITF Exception", failure);
+        }
+        processImageComplete();
+    }
+
+    /**
+     * Fills in the file header fields shared by the NITFs written here
+     */
+    static void fillHeader(FileHeader header) throws NITFException
+    {
+        header.getFileHeader().setData("NITF");
+        header.getFileVersion().setData("02.10");
+        header.getSystemType().setData("BF01");
+        header.getOriginStationID().setData("NITRO");
+        header.getFileTitle().setData(" ");
+        header.getClassification().setData("U");
+        header.getEncrypted().setData("0");
+        header.getMessageCopyNum().setData("0");
+        header.getMessageNumCopies().setData("0");
+    }
+
+    private void fillImageSubheader(ImageSubheader subheader,
+            RenderedImage image, int[] sourceBands, int numCols, int numRows,
+            int[] blockSize, ImageWriteParam param) throws NITFException
+    {
+        SampleModel sampleModel = image.getSampleModel();
+        int dataType = RenderedImageSource.getOutputDataType(sampleModel,
+                sourceBands);
+        int nbpp = RenderedImageSource.getPixelSize(dataType) * 8;
+        int abpp = nbpp;
+        String pvType = "INT";
+        switch (dataType)
+        {
+        case DataBuffer.TYPE_BYTE:
+        case DataBuffer.TYPE_USHORT:
+            abpp = 0;
+            for (int i = 0; i < sourceBands.length; ++i)
+                abpp = Math.max(abpp, sampleModel.getSampleSize(sourceBands[i]));
+            break;
+        case DataBuffer.TYPE_SHORT:
+        case DataBuffer.TYPE_INT:
+            pvType = "SI";
+            break;
+        case DataBuffer.TYPE_FLOAT:
+        case DataBuffer.TYPE_DOUBLE:
+            pvType = "R";
+            break;
+        }
+
+        String irep = "MULTI";
+        String icat = "MS";
+        String bandReps = null;
+        if (sourceBands.length == 1)
+        {
+            irep = "MONO";
+            icat = "VIS";
+            bandReps = "M";
+        }
+        else if (sourceBands.length == 3 && dataType == DataBuffer.TYPE_BYTE
+                && isRGB(image.getColorModel()) && sourceBands[0] == 0
+                && sourceBands[1] == 1 && sourceBands[2] == 2)
+        {
+            irep = "RGB";
+            icat = "VIS";
+            bandReps = "RGB";
+        }
+
+        String imageMode = NITFImageWriteParam.MODE_BLOCK;
+        if (param instanceof NITFImageWriteParam)
+            imageMode = ((NITFImageWriteParam) param).getImageMode();
+
+        subheader.getFilePartType().setData("IM");
+        subheader.getImageId().setData("NITRO");
+        subheader.getImageSecurityClass().setData("U");
+        subheader.getEncrypted().setData("0");
+        subheader.getImageSource().setData(" ");
+        subheader.getNumRows().setData(String.valueOf(numRows));
+        subheader.getNumCols().setData(String.valueOf(numCols));
+        subheader.getPixelValueType().setData(pvType);
+        subheader.getImageRepresentation().setData(irep);
+        subheader.getImageCategory().setData(icat);
+        subheader.getActualBitsPerPixel().setData(String.valueOf(abpp));
+        subheader.getPixelJustification().setData("R");
+        subheader.getImageCoordinateSystem().setData(" ");
+        subheader.getImageCompression().setData("NC");
+        subheader.getImageSyncCode().setData("0");
+        subheader.getImageMode().setData(imageMode);
+        subheader.getNumBlocksPerRow().setData(
+                String.valueOf((numCols + blockSize[0] - 1) / blockSize[0]));
+        subheader.getNumBlocksPerCol().setData(
+                String.valueOf((numRows + blockSize[1] - 1) / blockSize[1]));
+        subheader.getNumPixelsPerHorizBlock().setData(
+                String.valueOf(blockSize[0]));
+        subheader.getNumPixelsPerVertBlock().setData(
+                String.valueOf(blockSize[1]));
+        subheader.getNumBitsPerPixel().setData(String.valueOf(nbpp));
+        subheader.getImageDisplayLevel().setData("1");
+        subheader.getImageAttachmentLevel().setData("0");
+        subheader.getImageLocation().setData("0000000000");
+        subheader.getImageMagnification().setData("1.0");
+
+        subheader.createBands(sourceBands.length);
+        BandInfo[] bandInfos = subheader.getBandInfo();
+        for (int i = 0; i < bandInfos.length; ++i)
+        {
+            bandInfos[i].getRepresentation().setData(
+                    bandReps != null ? String.valueOf(bandReps.charAt(i))
+                            : " ");
+            bandInfos[i].getImageFilterCondition().setData("N");
+            bandInfos[i].getNumLUTs().setData("0");
+        }
+    }
+
+    /**
+     * Determines the NITF blocking to use, as {width, height}. Explicit tiling
+     * from the param wins; otherwise (in the default and copy from metadata
+     * modes, which is the default) the source tiling is kept when the image
+     * is tiled and written at full resolution, and a single block is used
+     * when possible.
+     */
+    private int[] getBlockSize(RenderedImage image, int numCols, int numRows,
+            ImageWriteParam param)
+    {
+        int maxBlock = NITFImageWriteParam.MAX_BLOCK_SIZE;
+        int defaultBlock = NITFImageWriteParam.DEFAULT_BLOCK_SIZE;
+        int[] blockSize = new int[] {
+                numCols > maxBlock ? defaultBlock : numCols,
+                numRows > maxBlock ? defaultBlock : numRows };
+
+        if (param.canWriteTiles()
+                && param.getTilingMode() == ImageWriteParam.MODE_EXPLICIT)
+        {
+            blockSize[0] = Math.min(param.getTileWidth(), numCols);
+            blockSize[1] = Math.min(param.getTileHeight(), numRows);
+            if (blockSize[0] > maxBlock || blockSize[1] > maxBlock)
+                throw new IllegalArgumentException("NITF blocks cannot exceed "
+                        + maxBlock + " pixels");
+        }
+        else if ((param.getTilingMode() == ImageWriteParam.MODE_DEFAULT
+                || param.getTilingMode() ==
+                        ImageWriteParam.MODE_COPY_FROM_METADATA)
+                && param.getSourceXSubsampling() == 1
+                && param.getSourceYSubsampling() == 1
+                && (image.getNumXTiles() > 1 || image.getNumYTiles() > 1)
+                && image.getTileWidth() <= maxBlock
+                && image.getTileHeight() <= maxBlock)
+        {
+            blockSize[0] = Math.min(image.getTileWidth(), numCols);
+            blockSize[1] = Math.min(image.getTileHeight(), numRows);
+        }
+        return blockSize;
+    }
+
+    private static boolean isRGB(ColorModel colorModel)
+    {
+        return colorModel != null
+                && colorModel.getColorSpace().getType() == ColorSpace.TYPE_RGB
+                && colorModel.getNumComponents() == 3;
+    }
+
+}
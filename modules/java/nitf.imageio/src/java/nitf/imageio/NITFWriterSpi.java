@@ -0,0 +1,90 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf.imageio;
+
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+
+public class NITFWriterSpi extends ImageWriterSpi
+{
+
+    public NITFWriterSpi()
+    {
+        super("NITRO", // vendorName
+                "1.0", // version
+                new String[] { "NITF", "nitf", "NSIF" }, // names
+                new String[] { "ntf", "nitf", "nsf" }, // suffixes
+                new String[] { "image/x-ntf", "image/x-nitf" }, // MIMETypes
+                NITFWriter.class.getName(), // writerClassName
+                new Class<?>[] { File.class }, // outputTypes
+                new String[] { NITFReaderSpi.class.getName() }, // readerSpiNames
+                false, // supportsStandardStreamMetadataFormat
+                null, // nativeStreamMetadataFormatName
+                null, // nativeStreamMetadataFormatClassName
+                null, // extraStreamMetadataFormatNames
+                null, // extraStreamMetadataFormatClassNames
+                false, // supportsStandardImageMetadataFormat
+                null, // nativeImageMetadataFormatName
+                null, // nativeImageMetadataFormatClassName
+                null, // extraImageMetadataFormatNames
+                null // extraImageMetadataFormatClassNames
+        );
+    }
+
+    @Override
+    public boolean canEncodeImage(ImageTypeSpecifier type)
+    {
+        switch (type.getSampleModel().getDataType())
+        {
+        case DataBuffer.TYPE_BYTE:
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+        case DataBuffer.TYPE_INT:
+        case DataBuffer.TYPE_FLOAT:
+        case DataBuffer.TYPE_DOUBLE:
+            return type.getNumBands() > 0;
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    public ImageWriter createWriterInstance(Object extension)
+            throws IOException
+    {
+        return new NITFWriter(this);
+    }
+
+    @Override
+    public String getDescription(Locale locale)
+    {
+        return "NITF 2.1 Writer";
+    }
+
+}
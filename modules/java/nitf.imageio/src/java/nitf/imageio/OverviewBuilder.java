@@ -0,0 +1,765 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOException;
+
+import nitf.BandInfo;
+import nitf.FileSource;
+import nitf.IOHandle;
+import nitf.ImageSource;
+import nitf.ImageSubheader;
+import nitf.LookupTable;
+import nitf.NITFException;
+import nitf.Reader;
+import nitf.Record;
+import nitf.SubWindow;
+import nitf.Version;
+import nitf.Writer;
+
+import org.apache.commons.lang.NotImplementedException;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Builds reduced-resolution overviews (a 2x, 4x, 8x, ... pyramid) for each
+ * image segment of a NITF file, and stores them in a sidecar NITF next to it
+ * (see {@link #getSidecarFile(File)}), one image segment per level.
+ * {@link NITFReader} picks these up automatically for subsampled reads.
+ * <p>
+ * The source is read once, a strip at a time. Each strip is fed through a
+ * cascade of 2x2 reductions, split by band and column range across a pool of
+ * threads, so only a few rows per level are ever held in memory. Levels are
+ * averaged, except for images with a color lookup table, whose pixels are
+ * decimated instead.
+ */
+public class OverviewBuilder
+{
+    private static final Log log = LogFactory.getLog(OverviewBuilder.class);
+
+    /** Appended to the name of the source file to get the sidecar name */
+    public static final String SIDECAR_SUFFIX = ".ovr";
+
+    /** Levels are added until both dimensions are at most this size */
+    public static final int MIN_OVERVIEW_SIZE = 256;
+
+    /** The prefix of the IID1 of each overview segment in the sidecar */
+    static final String OVERVIEW_ID = "OVR";
+
+    private static final int OVERVIEW_BLOCK_SIZE = 512;
+
+    private static final long MAX_STRIP_BYTES = 16 * 1024 * 1024;
+
+    private final File file;
+
+    private int maxLevels = Integer.MAX_VALUE;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param file
+     *            the NITF file to build overviews for
+     */
+    public OverviewBuilder(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return the sidecar file that holds the overviews of the given file
+     */
+    public static File getSidecarFile(File file)
+    {
+        return new File(file.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Limits the number of levels built per image segment. By default levels
+     * are added until the image fits in MIN_OVERVIEW_SIZE.
+     */
+    public void setMaxLevels(int maxLevels)
+    {
+        if (maxLevels < 1)
+            throw new IllegalArgumentException("Invalid number of levels: "
+                    + maxLevels);
+        this.maxLevels = maxLevels;
+    }
+
+    public int getMaxLevels()
+    {
+        return maxLevels;
+    }
+
+    /**
+     * Sets the number of threads used to reduce the data. Defaults to the
+     * number of available processors.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * @return the number of overview levels for an image of the given size
+     */
+    static int getNumLevels(int numCols, int numRows, int maxLevels)
+    {
+        int levels = 0;
+        while (Math.max(numCols, numRows) > MIN_OVERVIEW_SIZE
+                && levels < maxLevels)
+        {
+            numCols = (numCols + 1) / 2;
+            numRows = (numRows + 1) / 2;
+            ++levels;
+        }
+        return levels;
+    }
+
+    /**
+     * @return the IID1 of the overview segment for the given image segment
+     *         and level
+     */
+    static String getOverviewId(int imageIndex, int level)
+    {
+        return OVERVIEW_ID + String.format("%03d%02d", imageIndex, level);
+    }
+
+    /**
+     * Builds the overviews and writes the sidecar file, replacing any
+     * existing one. Image segments that are too small, or whose pixel type is
+     * not supported, are skipped.
+     *
+     * @return the sidecar file
+     * @throws IOException
+     */
+    public File build() throws IOException
+    {
+        File sidecar = getSidecarFile(file);
+        File tempFile = File.createTempFile("nitro", SIDECAR_SUFFIX);
+        IOHandle handle = null;
+        IOHandle tempHandle = null;
+        IOHandle outHandle = null;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try
+        {
+            handle = new IOHandle(file.getAbsolutePath());
+            Reader reader = new Reader();
+            Record record = reader.read(handle);
+
+            // reduce each image segment into the temp file
+            List<Pyramid> pyramids = new ArrayList<Pyramid>();
+            RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+            try
+            {
+                long offset = 0;
+                int numImages = record.getHeader().getNumImages()
+                        .getIntData();
+                for (int i = 0; i < numImages; ++i)
+                {
+                    ImageSubheader subheader = record.getImages()[i]
+                            .getSubheader();
+                    NITFImageInfo info;
+                    try
+                    {
+                        info = new NITFImageInfo(subheader);
+                        info.getDataType();
+                    }
+                    catch (NotImplementedException e)
+                    {
+                        log.warn("Skipping overviews for image segment " + i
+                                + ": " + e.getMessage());
+                        continue;
+                    }
+                    int levels = getNumLevels(info.numCols, info.numRows,
+                            maxLevels);
+                    if (levels == 0)
+                        continue;
+
+                    Pyramid pyramid = new Pyramid(i, info, levels, offset,
+                            !hasLookupTable(subheader));
+                    pyramid.build(reader.getNewImageReader(i), raf
+                            .getChannel(), executor, numThreads);
+                    pyramids.add(pyramid);
+                    offset = pyramid.getEndOffset();
+                }
+            }
+            finally
+            {
+                raf.close();
+            }
+
+            if (sidecar.exists() && !sidecar.delete())
+                throw new IIOException("Unable to overwrite "
+                        + sidecar.getAbsolutePath());
+
+            // write each level out as an image segment of the sidecar
+            Record overviewRecord = new Record(Version.NITF_21);
+            NITFWriter.fillHeader(overviewRecord.getHeader());
+            overviewRecord.getHeader().getClassification().setData(
+                    record.getHeader().getClassification().getStringData());
+
+            tempHandle = new IOHandle(tempFile.getAbsolutePath());
+            List<ImageSource> sources = new ArrayList<ImageSource>();
+            for (Pyramid pyramid : pyramids)
+            {
+                ImageSubheader subheader = record.getImages()[pyramid.imageIndex]
+                        .getSubheader();
+                for (int level = 1; level <= pyramid.numLevels; ++level)
+                {
+                    fillOverviewSubheader(overviewRecord.newImageSegment()
+                            .getSubheader(), subheader, pyramid, level,
+                            sources.size() + 1);
+                    sources.add(pyramid.createImageSource(tempHandle, level));
+                }
+            }
+
+            outHandle = new IOHandle(sidecar.getAbsolutePath(),
+                    IOHandle.NITF_ACCESS_WRITEONLY, IOHandle.NITF_CREATE);
+            Writer writer = new Writer();
+            writer.prepare(overviewRecord, outHandle);
+            for (int i = 0; i < sources.size(); ++i)
+                writer.getNewImageWriter(i).attachSource(sources.get(i));
+            writer.write();
+        }
+        catch (NITFException e)
+        {
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new IIOException("NITF Exception", e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+            close(handle);
+            close(tempHandle);
+            close(outHandle);
+            if (!tempFile.delete())
+                tempFile.deleteOnExit();
+        }
+        return sidecar;
+    }
+
+    private static void close(IOHandle handle)
+    {
+        if (handle != null)
+        {
+            try
+            {
+                handle.close();
+            }
+            catch (NITFException e)
+            {
+                log.error(ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    private static boolean hasLookupTable(ImageSubheader subheader)
+            throws NITFException
+    {
+        BandInfo[] bandInfos = subheader.getBandInfo();
+        for (int i = 0; i < bandInfos.length; ++i)
+        {
+            if (bandInfos[i].getNumLUTs().getIntData() > 0)
+                return true;
+        }
+        return false;
+    }
+
+    private static void fillOverviewSubheader(ImageSubheader subheader,
+            ImageSubheader source, Pyramid pyramid, int level,
+            int displayLevel) throws NITFException
+    {
+        int numCols = pyramid.levelCols[level];
+        int numRows = pyramid.levelRows[level];
+        int blockCols = Math.min(OVERVIEW_BLOCK_SIZE, numCols);
+        int blockRows = Math.min(OVERVIEW_BLOCK_SIZE, numRows);
+
+        subheader.getFilePartType().setData("IM");
+        subheader.getImageId().setData(
+                getOverviewId(pyramid.imageIndex, level));
+        subheader.getImageTitle().setData(
+                "Overview level " + level + " of image segment "
+                        + pyramid.imageIndex);
+        subheader.getImageSecurityClass().setData(
+                source.getImageSecurityClass().getStringData());
+        subheader.getEncrypted().setData("0");
+        subheader.getImageSource().setData(" ");
+        subheader.getNumRows().setData(String.valueOf(numRows));
+        subheader.getNumCols().setData(String.valueOf(numCols));
+        subheader.getPixelValueType().setData(pyramid.info.pvType);
+        subheader.getImageRepresentation().setData(pyramid.info.irep);
+        subheader.getImageCategory().setData(
+                source.getImageCategory().getStringData());
+        subheader.getActualBitsPerPixel().setData(
+                source.getActualBitsPerPixel().getStringData());
+        subheader.getPixelJustification().setData("R");
+        subheader.getImageCoordinateSystem().setData(" ");
+        subheader.getImageCompression().setData("NC");
+        subheader.getImageSyncCode().setData("0");
+        subheader.getImageMode().setData(NITFImageWriteParam.MODE_BLOCK);
+        subheader.getNumBlocksPerRow().setData(
+                String.valueOf((numCols + blockCols - 1) / blockCols));
+        subheader.getNumBlocksPerCol().setData(
+                String.valueOf((numRows + blockRows - 1) / blockRows));
+        subheader.getNumPixelsPerHorizBlock().setData(
+                String.valueOf(blockCols));
+        subheader.getNumPixelsPerVertBlock().setData(
+                String.valueOf(blockRows));
+        subheader.getNumBitsPerPixel().setData(
+                String.valueOf(pyramid.info.pixelSize * 8));
+        subheader.getImageDisplayLevel().setData(
+                String.valueOf(displayLevel));
+        subheader.getImageAttachmentLevel().setData("0");
+        subheader.getImageLocation().setData("0000000000");
+        subheader.getImageMagnification().setData(
+                getMagnification(1 << level));
+
+        BandInfo[] sourceInfos = source.getBandInfo();
+        subheader.createBands(sourceInfos.length);
+        BandInfo[] bandInfos = subheader.getBandInfo();
+        for (int i = 0; i < bandInfos.length; ++i)
+        {
+            bandInfos[i].getRepresentation().setData(
+                    sourceInfos[i].getRepresentation().getStringData());
+            bandInfos[i].getSubcategory().setData(
+                    sourceInfos[i].getSubcategory().getStringData());
+            bandInfos[i].getImageFilterCondition().setData("N");
+
+            LookupTable table = sourceInfos[i].getNumLUTs().getIntData() > 0 ? sourceInfos[i]
+                    .getLookupTable()
+                    : null;
+            if (table != null)
+            {
+                bandInfos[i].getNumLUTs().setData(
+                        String.valueOf(table.getNumTables()));
+                bandInfos[i].getBandEntriesPerLUT().setData(
+                        String.valueOf(table.getNumEntries()));
+                bandInfos[i].setLookupTable(new LookupTable(table
+                        .getNumTables(), table.getNumEntries(), table
+                        .getData()));
+            }
+            else
+                bandInfos[i].getNumLUTs().setData("0");
+        }
+    }
+
+    /**
+     * Formats the IMAG value for an image reduced by the given factor, using
+     * the "/2" form while it fits in the field
+     */
+    private static String getMagnification(int factor)
+    {
+        String value = "/" + factor;
+        if (value.length() > 4)
+        {
+            value = String.valueOf(1.0 / factor);
+            value = value.substring(value.indexOf('.'), Math.min(value
+                    .length(), value.indexOf('.') + 4));
+        }
+        return value;
+    }
+
+    /**
+     * The overview levels of one image segment, as laid out in the temp file:
+     * level after level, each band sequential within a level
+     */
+    private static final class Pyramid
+    {
+        final int imageIndex;
+
+        final NITFImageInfo info;
+
+        final int numLevels;
+
+        final boolean average;
+
+        final int[] levelCols;
+
+        final int[] levelRows;
+
+        final long[] levelOffsets;
+
+        Pyramid(int imageIndex, NITFImageInfo info, int numLevels,
+                long offset, boolean average)
+        {
+            this.imageIndex = imageIndex;
+            this.info = info;
+            this.numLevels = numLevels;
+            this.average = average;
+
+            levelCols = new int[numLevels + 1];
+            levelRows = new int[numLevels + 1];
+            levelOffsets = new long[numLevels + 2];
+            levelCols[0] = info.numCols;
+            levelRows[0] = info.numRows;
+            levelOffsets[1] = offset;
+            for (int level = 1; level <= numLevels; ++level)
+            {
+                levelCols[level] = (levelCols[level - 1] + 1) / 2;
+                levelRows[level] = (levelRows[level - 1] + 1) / 2;
+                levelOffsets[level + 1] = levelOffsets[level]
+                        + getBandSize(level) * info.numBands;
+            }
+        }
+
+        long getBandSize(int level)
+        {
+            return (long) levelCols[level] * levelRows[level]
+                    * info.pixelSize;
+        }
+
+        long getEndOffset()
+        {
+            return levelOffsets[numLevels + 1];
+        }
+
+        ImageSource createImageSource(IOHandle handle, int level)
+                throws NITFException
+        {
+            ImageSource imageSource = new ImageSource();
+            for (int band = 0; band < info.numBands; ++band)
+            {
+                imageSource.addBand(new FileSource(handle, levelOffsets[level]
+                        + band * getBandSize(level), info.pixelSize, 0));
+            }
+            return imageSource;
+        }
+
+        /**
+         * Reads the image a strip at a time and pushes each strip through the
+         * cascades. The next strip is read while the current one is reduced.
+         */
+        void build(nitf.ImageReader imageReader, FileChannel channel,
+                ExecutorService executor, int numThreads) throws IOException,
+                NITFException
+        {
+            int numCols = info.numCols;
+            int numRows = info.numRows;
+            long rowBytes = (long) numCols * info.pixelSize * info.numBands;
+            int stripRows = (int) Math.max(1, Math.min(info.numRowsPerBlock,
+                    MAX_STRIP_BYTES / rowBytes));
+
+            /*
+             * Split the columns into chunks that line up at every level, so
+             * that each (band, chunk) cascade is independent of the others.
+             */
+            int align = 1 << numLevels;
+            int numChunks = Math.max(1, (numThreads + info.numBands - 1)
+                    / info.numBands);
+            int chunkCols = (numCols + numChunks - 1) / numChunks;
+            chunkCols = (chunkCols + align - 1) / align * align;
+
+            List<Cascade> cascades = new ArrayList<Cascade>();
+            for (int band = 0; band < info.numBands; ++band)
+            {
+                for (int col = 0; col < numCols; col += chunkCols)
+                {
+                    cascades.add(new Cascade(this, channel, band, col, Math
+                            .min(col + chunkCols, numCols)));
+                }
+            }
+
+            int[] bands = new int[info.numBands];
+            for (int i = 0; i < bands.length; ++i)
+                bands[i] = i;
+            SubWindow window = new SubWindow();
+            window.setStartCol(0);
+            window.setNumCols(numCols);
+            window.setNumBands(bands.length);
+            window.setBandList(bands);
+
+            int stripBytes = stripRows * numCols * info.pixelSize;
+            byte[][] current = new byte[bands.length][stripBytes];
+            byte[][] next = new byte[bands.length][stripBytes];
+            readStrip(imageReader, window, 0, Math.min(stripRows, numRows),
+                    current);
+
+            for (int row = 0; row < numRows; row += stripRows)
+            {
+                int rows = Math.min(stripRows, numRows - row);
+                List<Future<Object>> futures = new ArrayList<Future<Object>>();
+                for (Cascade cascade : cascades)
+                {
+                    cascade.setStrip(current[cascade.band], rows);
+                    futures.add(executor.submit(cascade));
+                }
+
+                int nextRow = row + stripRows;
+                if (nextRow < numRows)
+                {
+                    readStrip(imageReader, window, nextRow, Math.min(
+                            stripRows, numRows - nextRow), next);
+                }
+
+                for (Future<Object> future : futures)
+                {
+                    try
+                    {
+                        future.get();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new IIOException("Interrupted", e);
+                    }
+                    catch (ExecutionException e)
+                    {
+                        throw new IIOException("Unable to build overviews",
+                                e.getCause());
+                    }
+                }
+
+                byte[][] tmp = current;
+                current = next;
+                next = tmp;
+            }
+        }
+
+        private static void readStrip(nitf.ImageReader imageReader,
+                SubWindow window, int row, int numRows, byte[][] buf)
+                throws NITFException
+        {
+            window.setStartRow(row);
+            window.setNumRows(numRows);
+            imageReader.read(window, buf);
+        }
+    }
+
+    /**
+     * Reduces the rows of one band, over one range of columns, through every
+     * level of a pyramid. Each level keeps the even row it is waiting to pair
+     * up, and writes its reduced rows to the temp file as soon as they are
+     * complete.
+     */
+    private static final class Cascade implements Callable<Object>
+    {
+        private final Pyramid pyramid;
+
+        private final FileChannel channel;
+
+        final int band;
+
+        /** The first column of the chunk, at each level */
+        private final int[] startCols;
+
+        /** The number of columns in the chunk, at each level */
+        private final int[] numCols;
+
+        /** The rows received so far, at each (input) level */
+        private final int[] rowCounts;
+
+        /** The even rows waiting for their odd neighbors */
+        private final double[][] pending;
+
+        private final double[][] reduced;
+
+        private final ByteBuffer[] outBuffers;
+
+        private byte[] strip;
+
+        private int stripRows;
+
+        Cascade(Pyramid pyramid, FileChannel channel, int band, int startCol,
+                int endCol)
+        {
+            this.pyramid = pyramid;
+            this.channel = channel;
+            this.band = band;
+
+            int levels = pyramid.numLevels;
+            startCols = new int[levels + 1];
+            numCols = new int[levels + 1];
+            rowCounts = new int[levels];
+            pending = new double[levels][];
+            reduced = new double[levels + 1][];
+            outBuffers = new ByteBuffer[levels + 1];
+            for (int level = 0; level <= levels; ++level)
+            {
+                // chunks start on a multiple of 2^levels, so this is exact
+                startCols[level] = startCol >> level;
+                int end = endCol == pyramid.info.numCols ? pyramid.levelCols[level]
+                        : endCol >> level;
+                numCols[level] = end - startCols[level];
+                reduced[level] = new double[numCols[level]];
+                if (level < levels)
+                    pending[level] = new double[numCols[level]];
+                if (level > 0)
+                    outBuffers[level] = ByteBuffer.allocate(
+                            numCols[level] * pyramid.info.pixelSize).order(
+                            ByteOrder.nativeOrder());
+            }
+        }
+
+        void setStrip(byte[] strip, int stripRows)
+        {
+            this.strip = strip;
+            this.stripRows = stripRows;
+        }
+
+        public Object call() throws IOException
+        {
+            NITFImageInfo info = pyramid.info;
+            ByteBuffer buf = ByteBuffer.wrap(strip).order(
+                    ByteOrder.nativeOrder());
+            double[] row = reduced[0];
+            for (int r = 0; r < stripRows; ++r)
+            {
+                int p = (r * info.numCols + startCols[0]) * info.pixelSize;
+                for (int col = 0; col < row.length; ++col, p += info.pixelSize)
+                    row[col] = getSample(buf, p);
+                push(0, row);
+            }
+            return null;
+        }
+
+        /**
+         * Hands a row of the given level to the next level down, which
+         * reduces it along with the previous row once it has both.
+         */
+        private void push(int level, double[] row) throws IOException
+        {
+            int r = rowCounts[level]++;
+            boolean lastRow = r == pyramid.levelRows[level] - 1;
+            if ((r & 1) == 0 && !lastRow)
+            {
+                System.arraycopy(row, 0, pending[level], 0, row.length);
+                return;
+            }
+
+            double[] top = (r & 1) == 1 ? pending[level] : null;
+            double[] out = reduced[level + 1];
+            int inCols = numCols[level];
+            for (int col = 0, c = 0; col < out.length; ++col, c += 2)
+            {
+                if (!pyramid.average)
+                {
+                    out[col] = top != null ? top[c] : row[c];
+                    continue;
+                }
+                double sum = row[c];
+                int count = 1;
+                if (c + 1 < inCols)
+                {
+                    sum += row[c + 1];
+                    ++count;
+                }
+                if (top != null)
+                {
+                    sum += top[c];
+                    ++count;
+                    if (c + 1 < inCols)
+                    {
+                        sum += top[c + 1];
+                        ++count;
+                    }
+                }
+                out[col] = sum / count;
+            }
+
+            write(level + 1, r / 2, out);
+            if (level + 1 < pyramid.numLevels)
+                push(level + 1, out);
+        }
+
+        private void write(int level, int row, double[] values)
+                throws IOException
+        {
+            ByteBuffer buf = outBuffers[level];
+            buf.clear();
+            for (int col = 0; col < values.length; ++col)
+                putSample(buf, values[col]);
+            buf.flip();
+
+            long position = pyramid.levelOffsets[level] + band
+                    * pyramid.getBandSize(level)
+                    + ((long) row * pyramid.levelCols[level] + startCols[level])
+                    * pyramid.info.pixelSize;
+            while (buf.hasRemaining())
+                position += channel.write(buf, position);
+        }
+
+        private double getSample(ByteBuffer buf, int p)
+        {
+            NITFImageInfo info = pyramid.info;
+            boolean signed = info.pvType.equals("SI");
+            switch (info.pixelSize)
+            {
+            case 1:
+                return signed ? buf.get(p) : buf.get(p) & 0xFF;
+            case 2:
+                return signed ? buf.getShort(p) : buf.getShort(p) & 0xFFFF;
+            case 4:
+                if (info.pvType.equals("R"))
+                    return buf.getFloat(p);
+                return signed ? buf.getInt(p) : buf.getInt(p) & 0xFFFFFFFFL;
+            default:
+                return buf.getDouble(p);
+            }
+        }
+
+        private void putSample(ByteBuffer buf, double value)
+        {
+            NITFImageInfo info = pyramid.info;
+            switch (info.pixelSize)
+            {
+            case 1:
+                buf.put((byte) Math.round(value));
+                break;
+            case 2:
+                buf.putShort((short) Math.round(value));
+                break;
+            case 4:
+                if (info.pvType.equals("R"))
+                    buf.putFloat((float) value);
+                else
+                    buf.putInt((int) Math.round(value));
+                break;
+            default:
+                buf.putDouble(value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nitf.IOHandle;
+import nitf.NITFException;
+import nitf.Reader;
+import nitf.Record;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The overviews of a NITF file, as written to its sidecar by
+ * {@link OverviewBuilder}. Level n of an image segment is the image reduced
+ * by a factor of 2^n.
+ */
+final class Overviews
+{
+    private static final Log log = LogFactory.getLog(Overviews.class);
+
+    /** Held so the sidecar stays open as long as the reader */
+    private final IOHandle handle;
+
+    private final Reader reader;
+
+    private final Record record;
+
+    /** The sidecar segment of each level, keyed by source image index */
+    private final Map<Integer, List<Integer>> levels = new HashMap<Integer, List<Integer>>();
+
+    private final Map<Integer, nitf.ImageReader> imageReaders = new HashMap<Integer, nitf.ImageReader>();
+
+    private Overviews(IOHandle handle, Reader reader, Record record)
+            throws NITFException
+    {
+        this.handle = handle;
+        this.reader = reader;
+        this.record = record;
+
+        int numImages = record.getHeader().getNumImages().getIntData();
+        String prefix = OverviewBuilder.OVERVIEW_ID;
+        for (int i = 0; i < numImages; ++i)
+        {
+            String id = record.getImages()[i].getSubheader().getImageId()
+                    .getStringData().trim();
+            if (!id.startsWith(prefix)
+                    || id.length() != prefix.length() + 5)
+                continue;
+
+            try
+            {
+                Integer imageIndex = Integer.valueOf(id.substring(prefix
+                        .length(), prefix.length() + 3));
+                int level = Integer.parseInt(id.substring(prefix.length() + 3));
+                List<Integer> segments = levels.get(imageIndex);
+                if (segments == null)
+                {
+                    segments = new ArrayList<Integer>();
+                    levels.put(imageIndex, segments);
+                }
+                // levels are written in order, so only take the next one
+                if (level == segments.size() + 1)
+                    segments.add(Integer.valueOf(i));
+            }
+            catch (NumberFormatException e)
+            {
+                continue;
+            }
+        }
+    }
+
+    /**
+     * Opens the overviews of the given file, if it has any. Sidecars older
+     * than the file itself are ignored.
+     *
+     * @return the overviews, or null if there are none
+     */
+    static Overviews open(File file)
+    {
+        File sidecar = OverviewBuilder.getSidecarFile(file);
+        if (!sidecar.isFile() || sidecar.lastModified() < file.lastModified())
+            return null;
+
+        IOHandle handle = null;
+        try
+        {
+            handle = new IOHandle(sidecar.getAbsolutePath());
+            Reader reader = new Reader();
+            return new Overviews(handle, reader, reader.read(handle));
+        }
+        catch (NITFException e)
+        {
+            if (handle != null)
+                close(handle);
+            log.warn("Unable to read overviews from "
+                    + sidecar.getAbsolutePath() + ": "
+                    + ExceptionUtils.getStackTrace(e));
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of overview levels of the given image segment
+     */
+    int getNumLevels(int imageIndex)
+    {
+        List<Integer> segments = levels.get(Integer.valueOf(imageIndex));
+        return segments != null ? segments.size() : 0;
+    }
+
+    private int getSegment(int imageIndex, int level)
+    {
+        if (level < 1 || level > getNumLevels(imageIndex))
+            throw new IndexOutOfBoundsException("bad level: " + level);
+        return levels.get(Integer.valueOf(imageIndex)).get(level - 1)
+                .intValue();
+    }
+
+    NITFImageInfo getImageInfo(int imageIndex, int level)
+            throws NITFException
+    {
+        return new NITFImageInfo(record.getImages()[getSegment(imageIndex,
+                level)].getSubheader());
+    }
+
+    synchronized nitf.ImageReader getImageReader(int imageIndex, int level)
+            throws NITFException
+    {
+        Integer key = Integer.valueOf(getSegment(imageIndex, level));
+        nitf.ImageReader imageReader = imageReaders.get(key);
+        if (imageReader == null)
+        {
+            imageReader = reader.getNewImageReader(key.intValue());
+            imageReaders.put(key, imageReader);
+        }
+        return imageReader;
+    }
+
+    /**
+     * Closes the sidecar and destructs its readers. The overviews must not be
+     * used afterwards.
+     */
+    synchronized void close()
+    {
+        for (nitf.ImageReader imageReader : imageReaders.values())
+            imageReader.release();
+        imageReaders.clear();
+        reader.release();
+        record.release();
+        close(handle);
+        handle.release();
+    }
+
+    private static void close(IOHandle handle)
+    {
+        try
+        {
+            handle.close();
+        }
+        catch (NITFException e)
+        {
+            log.warn("Unable to close overviews: "
+                    + ExceptionUtils.getStackTrace(e));
+        }
+    }
+}
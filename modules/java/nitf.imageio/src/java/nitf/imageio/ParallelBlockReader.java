@@ -0,0 +1,402 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOException;
+
+import nitf.IOHandle;
+import nitf.NITFException;
+import nitf.Reader;
+import nitf.Record;
+import nitf.SubWindow;
+
+/**
+ * Reads windows of one image segment a block at a time, decoding the blocks
+ * a window touches concurrently. A native reader decodes one block at a time
+ * (and must not be shared between threads), so this opens the file once per
+ * thread, and each thread reads (and so decompresses) whole blocks through
+ * its own reader. The decoded blocks are assembled into the window and kept
+ * in a {@link TileCache}, so that later windows over the same blocks are
+ * not decoded again.
+ * <p>
+ * This pays off for compressed (e.g. C8) segments, where decoding dominates
+ * the time taken. Call {@link #close()} when done, to close the file and
+ * drop the blocks from the cache.
+ */
+public class ParallelBlockReader
+{
+    private final NITFImageInfo info;
+
+    private final TileCache cache;
+
+    private final int numThreads;
+
+    /** Every decoder, whether idle or not */
+    private final List<Decoder> allDecoders = new ArrayList<Decoder>();
+
+    /** The idle decoders */
+    private final BlockingQueue<Decoder> decoders;
+
+    private final ExecutorService executor;
+
+    /**
+     * Reads through the shared {@link TileCache}
+     *
+     * @param file
+     *            the NITF file
+     * @param imageIndex
+     *            the (zero-based) index of the image segment
+     * @param numThreads
+     *            the number of blocks to decode at once
+     * @throws IOException
+     */
+    public ParallelBlockReader(File file, int imageIndex, int numThreads)
+            throws IOException
+    {
+        this(file, imageIndex, numThreads, TileCache.getDefaultInstance());
+    }
+
+    /**
+     * @param file
+     *            the NITF file
+     * @param imageIndex
+     *            the (zero-based) index of the image segment
+     * @param numThreads
+     *            the number of blocks to decode at once
+     * @param cache
+     *            the cache to keep decoded blocks in
+     * @throws IOException
+     */
+    public ParallelBlockReader(File file, int imageIndex, int numThreads,
+            TileCache cache) throws IOException
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + numThreads);
+
+        this.cache = cache;
+        this.numThreads = numThreads;
+        this.decoders = new ArrayBlockingQueue<Decoder>(numThreads);
+        try
+        {
+            for (int i = 0; i < numThreads; ++i)
+            {
+                Decoder decoder = new Decoder(file, imageIndex);
+                allDecoders.add(decoder);
+                decoders.add(decoder);
+            }
+            this.info = new NITFImageInfo(decoders.peek().record
+                    .getImages()[imageIndex].getSubheader());
+        }
+        catch (NITFException e)
+        {
+            closeDecoders();
+            throw new IIOException("Unable to open " + file, e);
+        }
+        this.executor = Executors.newFixedThreadPool(numThreads);
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Reads a window of the image.
+     *
+     * @param window
+     *            the region to read, which must lie within the image
+     * @param bands
+     *            the (zero-based) bands to read, or null for all bands
+     * @return a buffer per band of the pixels in row major order, in native
+     *         byte order, just as
+     *         {@link nitf.ImageReader#read(SubWindow, byte[][])} returns them
+     * @throws IOException
+     */
+    public byte[][] read(Rectangle window, int[] bands) throws IOException
+    {
+        if (window.isEmpty() || window.x < 0 || window.y < 0
+                || window.x + window.width > info.numCols
+                || window.y + window.height > info.numRows)
+            throw new IllegalArgumentException(
+                    "The window is not within the image: " + window);
+        if (bands == null)
+        {
+            bands = new int[info.numBands];
+            for (int i = 0; i < bands.length; ++i)
+                bands[i] = i;
+        }
+        for (int i = 0; i < bands.length; ++i)
+        {
+            if (bands[i] < 0 || bands[i] >= info.numBands)
+                throw new IllegalArgumentException("Invalid band: "
+                        + bands[i]);
+        }
+
+        int firstRow = window.y / info.numRowsPerBlock;
+        int lastRow = (window.y + window.height - 1) / info.numRowsPerBlock;
+        int firstCol = window.x / info.numColsPerBlock;
+        int lastCol = (window.x + window.width - 1) / info.numColsPerBlock;
+
+        // decode the blocks that are not cached, in file order
+        List<Raster> blocks = new ArrayList<Raster>();
+        List<Future<Raster>> decoded = new ArrayList<Future<Raster>>();
+        for (int row = firstRow; row <= lastRow; ++row)
+        {
+            for (int col = firstCol; col <= lastCol; ++col)
+            {
+                Raster block = cache.getTile(this, col, row);
+                if (block != null)
+                    blocks.add(block);
+                else
+                    decoded.add(executor.submit(new DecodeTask(col, row)));
+            }
+        }
+        try
+        {
+            for (Future<Raster> future : decoded)
+                blocks.add(future.get());
+        }
+        catch (InterruptedException e)
+        {
+            for (Future<Raster> future : decoded)
+                future.cancel(true);
+            throw new IIOException("Interrupted", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IIOException("Unable to read blocks", e.getCause());
+        }
+        catch (CancellationException e)
+        {
+            throw new IIOException("The reader is closed", e);
+        }
+
+        byte[][] data = new byte[bands.length][window.width * window.height
+                * info.pixelSize];
+        for (Raster block : blocks)
+            copy(block, window, bands, data);
+        return data;
+    }
+
+    /**
+     * Copies the part of the window within the block to the window
+     */
+    private void copy(Raster block, Rectangle window, int[] bands,
+            byte[][] data)
+    {
+        Rectangle bounds = new Rectangle(block.getMinX() / info.pixelSize,
+                block.getMinY(), block.getWidth() / info.pixelSize, block
+                        .getHeight());
+        Rectangle copied = bounds.intersection(window);
+        byte[][] buf = ((DataBufferByte) block.getDataBuffer()).getBankData();
+
+        int length = copied.width * info.pixelSize;
+        for (int y = copied.y; y < copied.y + copied.height; ++y)
+        {
+            int from = ((y - bounds.y) * bounds.width + copied.x - bounds.x)
+                    * info.pixelSize;
+            int to = ((y - window.y) * window.width + copied.x - window.x)
+                    * info.pixelSize;
+            for (int b = 0; b < bands.length; ++b)
+                System.arraycopy(buf[bands[b]], from, data[b], to, length);
+        }
+    }
+
+    /**
+     * Stops the worker threads, waiting for any block being decoded, then
+     * closes the file, destructs the native readers and removes the decoded
+     * blocks from the cache. The reader must not be used afterwards.
+     */
+    public void close()
+    {
+        // blocks that were never started are never decoded
+        for (Runnable task : executor.shutdownNow())
+        {
+            if (task instanceof Future<?>)
+                ((Future<?>) task).cancel(false);
+        }
+
+        // a native read cannot be interrupted, and must finish first
+        boolean interrupted = false;
+        while (!executor.isTerminated())
+        {
+            try
+            {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        closeDecoders();
+        cache.removeTiles(this);
+    }
+
+    private void closeDecoders()
+    {
+        for (Decoder decoder : allDecoders)
+            decoder.close();
+        allDecoders.clear();
+        decoders.clear();
+    }
+
+    /**
+     * Decodes one block with an idle decoder, and caches it
+     */
+    private final class DecodeTask implements Callable<Raster>
+    {
+        private final int col;
+
+        private final int row;
+
+        DecodeTask(int col, int row)
+        {
+            this.col = col;
+            this.row = row;
+        }
+
+        public Raster call() throws Exception
+        {
+            int x = col * info.numColsPerBlock;
+            int y = row * info.numRowsPerBlock;
+            int width = Math.min(info.numColsPerBlock, info.numCols - x);
+            int height = Math.min(info.numRowsPerBlock, info.numRows - y);
+            byte[][] buf = new byte[info.numBands][width * height
+                    * info.pixelSize];
+
+            Decoder decoder = decoders.take();
+            try
+            {
+                decoder.window.setStartRow(y);
+                decoder.window.setNumRows(height);
+                decoder.window.setStartCol(x);
+                decoder.window.setNumCols(width);
+                decoder.imageReader.read(decoder.window, buf);
+            }
+            finally
+            {
+                decoders.add(decoder);
+            }
+
+            // the pixels are held as bytes, so the raster is pixelSize wide
+            int stride = width * info.pixelSize;
+            int[] banks = new int[info.numBands];
+            for (int i = 0; i < banks.length; ++i)
+                banks[i] = i;
+            Raster block = Raster.createBandedRaster(new DataBufferByte(buf,
+                    buf[0].length), stride, height, stride, banks,
+                    new int[banks.length], new Point(x * info.pixelSize, y));
+            cache.addTile(ParallelBlockReader.this, col, row, block);
+            return block;
+        }
+    }
+
+    /**
+     * A native reader of its own, over its own handle
+     */
+    private static final class Decoder
+    {
+        final IOHandle handle;
+
+        final Reader reader;
+
+        final Record record;
+
+        final nitf.ImageReader imageReader;
+
+        final SubWindow window;
+
+        Decoder(File file, int imageIndex) throws NITFException
+        {
+            handle = new IOHandle(file.getAbsolutePath());
+            try
+            {
+                reader = new Reader();
+                record = reader.read(handle);
+                imageReader = reader.getNewImageReader(imageIndex);
+            }
+            catch (NITFException e)
+            {
+                handle.close();
+                throw e;
+            }
+
+            /*
+             * The native reader does not handle band subsets for every IMODE,
+             * so we read all bands, just like NITFReader does.
+             */
+            int numBands = record.getImages()[imageIndex].getSubheader()
+                    .getBandCount();
+            int[] bands = new int[numBands];
+            for (int i = 0; i < bands.length; ++i)
+                bands[i] = i;
+            window = new SubWindow();
+            window.setNumBands(numBands);
+            window.setBandList(bands);
+        }
+
+        /**
+         * Closes the handle and destructs the native objects, the readers
+         * first, as they hold the record and the handle
+         */
+        void close()
+        {
+            imageReader.release();
+            reader.release();
+            record.release();
+            window.release();
+            try
+            {
+                handle.close();
+            }
+            catch (NITFException e)
+            {
+                // nothing more to be done
+            }
+            handle.release();
+        }
+    }
+}
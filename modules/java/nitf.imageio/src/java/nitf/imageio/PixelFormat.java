@@ -0,0 +1,132 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes the native-order pixels handed back by the native reader, without
+ * converting whole buffers to Java samples first.
+ */
+final class PixelFormat
+{
+    final int pixelSize;
+
+    final boolean signed;
+
+    final boolean real;
+
+    PixelFormat(NITFImageInfo info)
+    {
+        pixelSize = info.pixelSize;
+        signed = info.pvType.equals("SI");
+        real = info.pvType.equals("R");
+    }
+
+    /**
+     * @return the number of possible values, for integer pixels of up to 16
+     *         bits, or 0
+     */
+    int getNumValues()
+    {
+        return !real && pixelSize <= 2 ? 1 << (8 * pixelSize) : 0;
+    }
+
+    /**
+     * @return the smallest possible value, for integer pixels of up to 16
+     *         bits
+     */
+    int getMinValue()
+    {
+        return signed ? -(getNumValues() / 2) : 0;
+    }
+
+    /**
+     * @return the value of the i'th pixel of buf
+     */
+    double get(byte[] buf, int i)
+    {
+        int p = i * pixelSize;
+        switch (pixelSize)
+        {
+        case 1:
+            return signed ? buf[p] : buf[p] & 0xFF;
+        case 2:
+        {
+            short value = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? (short) ((buf[p] << 8) | (buf[p + 1] & 0xFF))
+                    : (short) ((buf[p + 1] << 8) | (buf[p] & 0xFF));
+            return signed ? value : value & 0xFFFF;
+        }
+        case 4:
+        {
+            ByteBuffer bb = ByteBuffer.wrap(buf).order(ByteOrder.nativeOrder());
+            if (real)
+                return bb.getFloat(p);
+            return signed ? bb.getInt(p) : bb.getInt(p) & 0xFFFFFFFFL;
+        }
+        default:
+            return ByteBuffer.wrap(buf).order(ByteOrder.nativeOrder())
+                    .getDouble(p);
+        }
+    }
+
+    /**
+     * Decodes count pixels of buf, starting at pixel index, into values
+     */
+    void get(byte[] buf, int index, int count, double[] values)
+    {
+        ByteBuffer bb = ByteBuffer.wrap(buf, index * pixelSize,
+                count * pixelSize).slice().order(ByteOrder.nativeOrder());
+        switch (pixelSize)
+        {
+        case 1:
+            for (int i = 0, p = index; i < count; ++i, ++p)
+                values[i] = signed ? buf[p] : buf[p] & 0xFF;
+            break;
+        case 2:
+            for (int i = 0; i < count; ++i)
+            {
+                short value = bb.getShort();
+                values[i] = signed ? value : value & 0xFFFF;
+            }
+            break;
+        case 4:
+            for (int i = 0; i < count; ++i)
+            {
+                if (real)
+                    values[i] = bb.getFloat();
+                else
+                {
+                    int value = bb.getInt();
+                    values[i] = signed ? value : value & 0xFFFFFFFFL;
+                }
+            }
+            break;
+        default:
+            for (int i = 0; i < count; ++i)
+                values[i] = bb.getDouble();
+            break;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.util.Arrays;
+
+/**
+ * Pixel kernels for image data that is already in Java arrays, e.g. the banks
+ * of a DataBuffer. These mirror the native DownSamplers (pixel skip, max and
+ * average), for data that does not come through the native read loop, plus
+ * min/max scans.
+ * <p>
+ * Images are a band at a time, width x height pixels with no padding between
+ * rows. The row and column skip divide the image into non-overlapping sample
+ * windows, and the windows at the right and bottom edges may be partial, so
+ * the reduced image is ceil(width / colSkip) x ceil(height / rowSkip).
+ * <p>
+ * The inner loops are plain counted loops over contiguous array ranges, with
+ * no calls or object access, which is the shape HotSpot's loop optimizer
+ * unrolls and can vectorize. The reductions first combine the rows of each
+ * window row element-wise into a full-width accumulator row, which is a
+ * straight vectorizable loop, and only then reduce the accumulators across
+ * each window, once per window row rather than once per input row.
+ */
+public final class PixelKernels
+{
+    private PixelKernels()
+    {
+    }
+
+    /**
+     * @return the size of a dimension reduced by the given skip
+     */
+    public static int getReducedSize(int size, int skip)
+    {
+        return (size + skip - 1) / skip;
+    }
+
+    private static void checkArgs(int srcLength, int width, int height,
+            int rowSkip, int colSkip, int dstLength)
+    {
+        if (width <= 0 || height <= 0 || rowSkip <= 0 || colSkip <= 0)
+            throw new IllegalArgumentException("Invalid size or skip");
+        if (srcLength < width * height)
+            throw new IllegalArgumentException("Source is too small");
+        if (dstLength < getReducedSize(width, colSkip)
+                * getReducedSize(height, rowSkip))
+            throw new IllegalArgumentException("Destination is too small");
+    }
+
+    // ------------------------------------------------------------------
+    // min and max
+
+    /**
+     * @return the minimum and maximum of the unsigned bytes in the range
+     */
+    public static int[] findMinAndMax(byte[] buf, int offset, int length)
+    {
+        int min = 255;
+        int max = 0;
+        for (int i = offset, end = offset + length; i < end; ++i)
+        {
+            int value = buf[i] & 0xFF;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        return new int[] { min, max };
+    }
+
+    /**
+     * @return the minimum and maximum of the shorts in the range, which are
+     *         treated as unsigned if the flag is set
+     */
+    public static int[] findMinAndMax(short[] buf, int offset, int length,
+            boolean unsigned)
+    {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int end = offset + length;
+        if (unsigned)
+        {
+            for (int i = offset; i < end; ++i)
+            {
+                int value = buf[i] & 0xFFFF;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        else
+        {
+            for (int i = offset; i < end; ++i)
+            {
+                int value = buf[i];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        return new int[] { min, max };
+    }
+
+    /**
+     * @return the minimum and maximum of the finite values in the range, or
+     *         {Float.MAX_VALUE, -Float.MAX_VALUE} if there are none
+     */
+    public static float[] findMinAndMax(float[] buf, int offset, int length)
+    {
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        int end = offset + length;
+        // plain compares skip NaN, and are cheaper than Math.min/max
+        for (int i = offset; i < end; ++i)
+        {
+            float value = buf[i];
+            min = value < min ? value : min;
+            max = value > max ? value : max;
+        }
+        if (!Float.isInfinite(min) && !Float.isInfinite(max))
+            return new float[] { min, max };
+
+        // rare, so only then check each value
+        min = Float.MAX_VALUE;
+        max = -Float.MAX_VALUE;
+        for (int i = offset; i < end; ++i)
+        {
+            float value = buf[i];
+            if (!Float.isInfinite(value))
+            {
+                min = value < min ? value : min;
+                max = value > max ? value : max;
+            }
+        }
+        return new float[] { min, max };
+    }
+
+    /**
+     * @return the minimum and maximum of the finite values in the range, or
+     *         {Double.MAX_VALUE, -Double.MAX_VALUE} if there are none
+     */
+    public static double[] findMinAndMax(double[] buf, int offset, int length)
+    {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        int end = offset + length;
+        // plain compares skip NaN, and are cheaper than Math.min/max
+        for (int i = offset; i < end; ++i)
+        {
+            double value = buf[i];
+            min = value < min ? value : min;
+            max = value > max ? value : max;
+        }
+        if (!Double.isInfinite(min) && !Double.isInfinite(max))
+            return new double[] { min, max };
+
+        // rare, so only then check each value
+        min = Double.MAX_VALUE;
+        max = -Double.MAX_VALUE;
+        for (int i = offset; i < end; ++i)
+        {
+            double value = buf[i];
+            if (!Double.isInfinite(value))
+            {
+                min = value < min ? value : min;
+                max = value > max ? value : max;
+            }
+        }
+        return new double[] { min, max };
+    }
+
+    // ------------------------------------------------------------------
+    // pixel skip
+
+    /**
+     * Keeps the upper left pixel of each sample window
+     */
+    public static void skip(byte[] src, int width, int height, int rowSkip,
+            int colSkip, byte[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        for (int y = 0, d = 0; y < height; y += rowSkip, d += dstWidth)
+        {
+            int s = y * width;
+            if (colSkip == 1)
+                System.arraycopy(src, s, dst, d, dstWidth);
+            else
+                for (int x = 0; x < dstWidth; ++x)
+                    dst[d + x] = src[s + x * colSkip];
+        }
+    }
+
+    /**
+     * Keeps the upper left pixel of each sample window
+     */
+    public static void skip(short[] src, int width, int height, int rowSkip,
+            int colSkip, short[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        for (int y = 0, d = 0; y < height; y += rowSkip, d += dstWidth)
+        {
+            int s = y * width;
+            if (colSkip == 1)
+                System.arraycopy(src, s, dst, d, dstWidth);
+            else
+                for (int x = 0; x < dstWidth; ++x)
+                    dst[d + x] = src[s + x * colSkip];
+        }
+    }
+
+    /**
+     * Keeps the upper left pixel of each sample window
+     */
+    public static void skip(float[] src, int width, int height, int rowSkip,
+            int colSkip, float[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        for (int y = 0, d = 0; y < height; y += rowSkip, d += dstWidth)
+        {
+            int s = y * width;
+            if (colSkip == 1)
+                System.arraycopy(src, s, dst, d, dstWidth);
+            else
+                for (int x = 0; x < dstWidth; ++x)
+                    dst[d + x] = src[s + x * colSkip];
+        }
+    }
+
+    /**
+     * Keeps the upper left pixel of each sample window
+     */
+    public static void skip(double[] src, int width, int height, int rowSkip,
+            int colSkip, double[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        for (int y = 0, d = 0; y < height; y += rowSkip, d += dstWidth)
+        {
+            int s = y * width;
+            if (colSkip == 1)
+                System.arraycopy(src, s, dst, d, dstWidth);
+            else
+                for (int x = 0; x < dstWidth; ++x)
+                    dst[d + x] = src[s + x * colSkip];
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // max
+
+    /**
+     * Keeps the maximum (unsigned) pixel of each sample window
+     */
+    public static void max(byte[] src, int width, int height, int rowSkip,
+            int colSkip, byte[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        int[] acc = new int[width];
+        for (int y0 = 0, d = 0; y0 < height; y0 += rowSkip, d += dstWidth)
+        {
+            int y1 = Math.min(height, y0 + rowSkip);
+            Arrays.fill(acc, 0);
+            for (int y = y0, s = y0 * width; y < y1; ++y, s += width)
+                for (int x = 0; x < width; ++x)
+                    acc[x] = Math.max(acc[x], src[s + x] & 0xFF);
+            for (int x = 0, a = 0; x < dstWidth; ++x, a += colSkip)
+            {
+                int value = acc[a];
+                int end = Math.min(width, a + colSkip);
+                for (int k = a + 1; k < end; ++k)
+                    value = Math.max(value, acc[k]);
+                dst[d + x] = (byte) value;
+            }
+        }
+    }
+
+    /**
+     * Keeps the maximum pixel of each sample window, treating the pixels as
+     * unsigned if the flag is set
+     */
+    public static void max(short[] src, int width, int height, int rowSkip,
+            int colSkip, boolean unsigned, short[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        int mask = unsigned ? 0xFFFF : 0xFFFFFFFF;
+        int[] acc = new int[width];
+        for (int y0 = 0, d = 0; y0 < height; y0 += rowSkip, d += dstWidth)
+        {
+            int y1 = Math.min(height, y0 + rowSkip);
+            Arrays.fill(acc, Integer.MIN_VALUE);
+            for (int y = y0, s = y0 * width; y < y1; ++y, s += width)
+                for (int x = 0; x < width; ++x)
+                    acc[x] = Math.max(acc[x], src[s + x] & mask);
+            for (int x = 0, a = 0; x < dstWidth; ++x, a += colSkip)
+            {
+                int value = acc[a];
+                int end = Math.min(width, a + colSkip);
+                for (int k = a + 1; k < end; ++k)
+                    value = Math.max(value, acc[k]);
+                dst[d + x] = (short) value;
+            }
+        }
+    }
+
+    /**
+     * Keeps the maximum pixel of each sample window
+     */
+    public static void max(float[] src, int width, int height, int rowSkip,
+            int colSkip, float[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        float[] acc = new float[width];
+        for (int y0 = 0, d = 0; y0 < height; y0 += rowSkip, d += dstWidth)
+        {
+            int y1 = Math.min(height, y0 + rowSkip);
+            Arrays.fill(acc, Float.NEGATIVE_INFINITY);
+            for (int y = y0, s = y0 * width; y < y1; ++y, s += width)
+                for (int x = 0; x < width; ++x)
+                    acc[x] = Math.max(acc[x], src[s + x]);
+            for (int x = 0, a = 0; x < dstWidth; ++x, a += colSkip)
+            {
+                float value = acc[a];
+                int end = Math.min(width, a + colSkip);
+                for (int k = a + 1; k < end; ++k)
+                    value = Math.max(value, acc[k]);
+                dst[d + x] = value;
+            }
+        }
+    }
+
+    /**
+     * Keeps the maximum pixel of each sample window
+     */
+    public static void max(double[] src, int width, int height, int rowSkip,
+            int colSkip, double[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        double[] acc = new double[width];
+        for (int y0 = 0, d = 0; y0 < height; y0 += rowSkip, d += dstWidth)
+        {
+            int y1 = Math.min(height, y0 + rowSkip);
+            Arrays.fill(acc, Double.NEGATIVE_INFINITY);
+            for (int y = y0, s = y0 * width; y < y1; ++y, s += width)
+                for (int x = 0; x < width; ++x)
+                    acc[x] = Math.max(acc[x], src[s + x]);
+            for (int x = 0, a = 0; x < dstWidth; ++x, a += colSkip)
+            {
+                double value = acc[a];
+                int end = Math.min(width, a + colSkip);
+                for (int k = a + 1; k < end; ++k)
+                    value = Math.max(value, acc[k]);
+                dst[d + x] = value;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // average
+
+    /**
+     * Rounds the sum of count values to the nearest integer mean, with halves
+     * going away from zero like the native average DownSampler
+     */
+    private static long roundMean(long sum, int count)
+    {
+        return (sum >= 0 ? sum + count / 2 : sum - count / 2) / count;
+    }
+
+    /**
+     * Averages the (unsigned) pixels of each sample window, rounding to the
+     * nearest value. Windows must hold fewer than 2^23 pixels.
+     */
+    public static void average(byte[] src, int width, int height,
+            int rowSkip, int colSkip, byte[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        int[] acc = new int[width];
+        for (int y0 = 0, d = 0; y0 < height; y0 += rowSkip, d += dstWidth)
+        {
+            int y1 = Math.min(height, y0 + rowSkip);
+            Arrays.fill(acc, 0);
+            for (int y = y0, s = y0 * width; y < y1; ++y, s += width)
+                for (int x = 0; x < width; ++x)
+                    acc[x] += src[s + x] & 0xFF;
+            for (int x = 0, a = 0; x < dstWidth; ++x, a += colSkip)
+            {
+                long sum = 0;
+                int end = Math.min(width, a + colSkip);
+                for (int k = a; k < end; ++k)
+                    sum += acc[k];
+                dst[d + x] = (byte) roundMean(sum, (y1 - y0) * (end - a));
+            }
+        }
+    }
+
+    /**
+     * Averages the pixels of each sample window, rounding to the nearest
+     * value, and treating the pixels as unsigned if the flag is set
+     */
+    public static void average(short[] src, int width, int height,
+            int rowSkip, int colSkip, boolean unsigned, short[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        int mask = unsigned ? 0xFFFF : 0xFFFFFFFF;
+        long[] acc = new long[width];
+        for (int y0 = 0, d = 0; y0 < height; y0 += rowSkip, d += dstWidth)
+        {
+            int y1 = Math.min(height, y0 + rowSkip);
+            Arrays.fill(acc, 0);
+            for (int y = y0, s = y0 * width; y < y1; ++y, s += width)
+                for (int x = 0; x < width; ++x)
+                    acc[x] += src[s + x] & mask;
+            for (int x = 0, a = 0; x < dstWidth; ++x, a += colSkip)
+            {
+                long sum = 0;
+                int end = Math.min(width, a + colSkip);
+                for (int k = a; k < end; ++k)
+                    sum += acc[k];
+                dst[d + x] = (short) roundMean(sum, (y1 - y0) * (end - a));
+            }
+        }
+    }
+
+    /**
+     * Averages the pixels of each sample window
+     */
+    public static void average(float[] src, int width, int height,
+            int rowSkip, int colSkip, float[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        double[] acc = new double[width];
+        for (int y0 = 0, d = 0; y0 < height; y0 += rowSkip, d += dstWidth)
+        {
+            int y1 = Math.min(height, y0 + rowSkip);
+            Arrays.fill(acc, 0);
+            for (int y = y0, s = y0 * width; y < y1; ++y, s += width)
+                for (int x = 0; x < width; ++x)
+                    acc[x] += src[s + x];
+            for (int x = 0, a = 0; x < dstWidth; ++x, a += colSkip)
+            {
+                double sum = 0;
+                int end = Math.min(width, a + colSkip);
+                for (int k = a; k < end; ++k)
+                    sum += acc[k];
+                dst[d + x] = (float) (sum / ((y1 - y0) * (end - a)));
+            }
+        }
+    }
+
+    /**
+     * Averages the pixels of each sample window
+     */
+    public static void average(double[] src, int width, int height,
+            int rowSkip, int colSkip, double[] dst)
+    {
+        checkArgs(src.length, width, height, rowSkip, colSkip, dst.length);
+        int dstWidth = getReducedSize(width, colSkip);
+        double[] acc = new double[width];
+        for (int y0 = 0, d = 0; y0 < height; y0 += rowSkip, d += dstWidth)
+        {
+            int y1 = Math.min(height, y0 + rowSkip);
+            Arrays.fill(acc, 0);
+            for (int y = y0, s = y0 * width; y < y1; ++y, s += width)
+                for (int x = 0; x < width; ++x)
+                    acc[x] += src[s + x];
+            for (int x = 0, a = 0; x < dstWidth; ++x, a += colSkip)
+            {
+                double sum = 0;
+                int end = Math.min(width, a + colSkip);
+                for (int k = a; k < end; ++k)
+                    sum += acc[k];
+                dst[d + x] = sum / ((y1 - y0) * (end - a));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,402 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import nitf.BandSource;
+import nitf.ImageSource;
+import nitf.NITFException;
+
+/**
+ * Feeds a RenderedImage to the native image writer one strip of rows at a
+ * time. The native writer pulls a row of each band in turn, so we pull the
+ * tiles intersecting the current strip from the image once, convert them to
+ * native-order bytes for every band, and hand rows out of that strip to the
+ * per-band sources. Only a single strip is ever held in memory.
+ */
+class RenderedImageSource
+{
+    /** Upper bound on the bytes held by a single strip (all bands) */
+    static final int MAX_STRIP_BYTES = 16 * 1024 * 1024;
+
+    private final RenderedImage image;
+
+    private final Rectangle sourceRegion;
+
+    private final int xSubsampling;
+
+    private final int ySubsampling;
+
+    private final int[] sourceBands;
+
+    private final int numCols;
+
+    private final int numRows;
+
+    private final int dataType;
+
+    private final int pixelSize;
+
+    private final int rowBytes;
+
+    private final int stripRows;
+
+    private final byte[][] strip;
+
+    private final ByteBuffer[] stripBufs;
+
+    private int stripStart = -1;
+
+    private int[] intSamples = null;
+
+    private float[] floatSamples = null;
+
+    private double[] doubleSamples = null;
+
+    /**
+     * @param image
+     *            the image to write
+     * @param sourceRegion
+     *            the region of the image to write, in image coordinates
+     * @param xSubsampling
+     *            the column subsampling factor
+     * @param ySubsampling
+     *            the row subsampling factor
+     * @param sourceBands
+     *            the image bands to write, in output order
+     * @param maxStripRows
+     *            the most output rows to hold at once, typically the height
+     *            of an output block
+     */
+    RenderedImageSource(RenderedImage image, Rectangle sourceRegion,
+            int xSubsampling, int ySubsampling, int[] sourceBands,
+            int maxStripRows)
+    {
+        this.image = image;
+        this.sourceRegion = new Rectangle(sourceRegion);
+        this.xSubsampling = xSubsampling;
+        this.ySubsampling = ySubsampling;
+        this.sourceBands = sourceBands;
+        this.numCols = (sourceRegion.width + xSubsampling - 1) / xSubsampling;
+        this.numRows = (sourceRegion.height + ySubsampling - 1)
+                / ySubsampling;
+        this.dataType = getOutputDataType(image.getSampleModel(), sourceBands);
+        this.pixelSize = getPixelSize(dataType);
+        this.rowBytes = numCols * pixelSize;
+
+        // one strip per row of source tiles, as long as it stays reasonable
+        int tileRows = (image.getTileHeight() + ySubsampling - 1)
+                / ySubsampling;
+        int maxRows = Math.max(1, MAX_STRIP_BYTES
+                / Math.max(1, rowBytes * sourceBands.length));
+        this.stripRows = Math.max(1, Math.min(Math.min(numRows,
+                maxStripRows), Math.min(tileRows, maxRows)));
+
+        strip = new byte[sourceBands.length][stripRows * rowBytes];
+        stripBufs = new ByteBuffer[sourceBands.length];
+        for (int i = 0; i < sourceBands.length; ++i)
+            stripBufs[i] = ByteBuffer.wrap(strip[i]).order(
+                    ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @param dataType
+     *            a DataBuffer type
+     * @return the number of bytes per sample for the type
+     */
+    static int getPixelSize(int dataType)
+    {
+        switch (dataType)
+        {
+        case DataBuffer.TYPE_BYTE:
+            return 1;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+            return 2;
+        case DataBuffer.TYPE_INT:
+        case DataBuffer.TYPE_FLOAT:
+            return 4;
+        case DataBuffer.TYPE_DOUBLE:
+            return 8;
+        default:
+            throw new IllegalArgumentException("Unsupported data type: "
+                    + dataType);
+        }
+    }
+
+    /**
+     * Determines the data type to write for the given bands. Packed integral
+     * samples (e.g. TYPE_INT_RGB) are written in the smallest unsigned type
+     * that holds them, rather than the type of the backing DataBuffer.
+     *
+     * @param sampleModel
+     *            the SampleModel of the source image
+     * @param bands
+     *            the bands that will be written
+     * @return a DataBuffer type
+     */
+    static int getOutputDataType(SampleModel sampleModel, int[] bands)
+    {
+        int dataType = sampleModel.getDataType();
+        if (dataType == DataBuffer.TYPE_BYTE
+                || dataType == DataBuffer.TYPE_USHORT
+                || dataType == DataBuffer.TYPE_INT)
+        {
+            int maxBits = 0;
+            for (int i = 0; i < bands.length; ++i)
+                maxBits = Math.max(maxBits, sampleModel.getSampleSize(bands[i]));
+            if (maxBits <= 8)
+                return DataBuffer.TYPE_BYTE;
+            if (maxBits <= 16)
+                return DataBuffer.TYPE_USHORT;
+        }
+        return dataType;
+    }
+
+    /**
+     * @return the DataBuffer type of the samples that will be written
+     */
+    int getDataType()
+    {
+        return dataType;
+    }
+
+    /**
+     * @return the number of output columns
+     */
+    int getNumCols()
+    {
+        return numCols;
+    }
+
+    /**
+     * @return the number of output rows
+     */
+    int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * Creates an ImageSource with one band source per output band, all of
+     * which share this strip buffer.
+     *
+     * @return the ImageSource to attach to an ImageWriter
+     * @throws NITFException
+     */
+    ImageSource createImageSource() throws NITFException
+    {
+        ImageSource imageSource = new ImageSource();
+        for (int i = 0; i < sourceBands.length; ++i)
+            imageSource.addBand(new StripBandSource(this, i));
+        return imageSource;
+    }
+
+    /**
+     * Called each time a new strip has been pulled from the image. Subclasses
+     * can use this to report progress, or throw to abort the write.
+     *
+     * @param rowsLoaded
+     *            the number of output rows that have been loaded so far
+     * @throws NITFException
+     */
+    protected void stripLoaded(int rowsLoaded) throws NITFException
+    {
+    }
+
+    /**
+     * Copies a single output row of a band into the given buffer, loading the
+     * strip containing it if need be.
+     */
+    synchronized void readRow(int band, int row, byte[] buf, int size)
+            throws NITFException
+    {
+        if (row < 0 || row >= numRows)
+            throw new NITFException("Row out of bounds: " + row);
+        if (size > rowBytes)
+            throw new NITFException("Requested " + size
+                    + " bytes from a row of " + rowBytes + " bytes");
+
+        if (stripStart < 0 || row < stripStart || row >= stripStart + stripRows)
+            loadStrip(row / stripRows);
+
+        System.arraycopy(strip[band], (row - stripStart) * rowBytes, buf, 0,
+                size);
+    }
+
+    private void loadStrip(int stripIndex) throws NITFException
+    {
+        int firstRow = stripIndex * stripRows;
+        int lastRow = Math.min(firstRow + stripRows, numRows) - 1;
+
+        // the source rows covered by this strip
+        Rectangle needed = new Rectangle(sourceRegion.x, sourceRegion.y
+                + firstRow * ySubsampling, sourceRegion.width, (lastRow
+                - firstRow) * ySubsampling + 1);
+
+        int minTileX = toTile(needed.x, image.getTileGridXOffset(), image
+                .getTileWidth());
+        int maxTileX = toTile(needed.x + needed.width - 1, image
+                .getTileGridXOffset(), image.getTileWidth());
+        int minTileY = toTile(needed.y, image.getTileGridYOffset(), image
+                .getTileHeight());
+        int maxTileY = toTile(needed.y + needed.height - 1, image
+                .getTileGridYOffset(), image.getTileHeight());
+
+        for (int ty = minTileY; ty <= maxTileY; ++ty)
+        {
+            for (int tx = minTileX; tx <= maxTileX; ++tx)
+            {
+                Raster tile = image.getTile(tx, ty);
+                Rectangle area = tile.getBounds().intersection(needed);
+                if (area.isEmpty())
+                    continue;
+
+                // snap to the first subsampled column/row in the tile
+                int startX = sourceRegion.x
+                        + ceilDiv(area.x - sourceRegion.x, xSubsampling)
+                        * xSubsampling;
+                int startY = sourceRegion.y
+                        + ceilDiv(area.y - sourceRegion.y, ySubsampling)
+                        * ySubsampling;
+                int endX = area.x + area.width;
+                int endY = area.y + area.height;
+                if (startX >= endX || startY >= endY)
+                    continue;
+
+                int count = (endX - startX + xSubsampling - 1) / xSubsampling;
+                int span = (count - 1) * xSubsampling + 1;
+                int firstCol = (startX - sourceRegion.x) / xSubsampling;
+
+                for (int y = startY; y < endY; y += ySubsampling)
+                {
+                    int outRow = (y - sourceRegion.y) / ySubsampling
+                            - firstRow;
+                    int offset = (outRow * numCols + firstCol) * pixelSize;
+                    for (int i = 0; i < sourceBands.length; ++i)
+                        copySamples(tile, startX, y, span, count,
+                                sourceBands[i], i, offset);
+                }
+            }
+        }
+        stripStart = firstRow;
+        stripLoaded(lastRow + 1);
+    }
+
+    private void copySamples(Raster tile, int x, int y, int span, int count,
+            int sourceBand, int band, int offset)
+    {
+        ByteBuffer out = stripBufs[band];
+        switch (dataType)
+        {
+        case DataBuffer.TYPE_FLOAT:
+            if (floatSamples == null || floatSamples.length < span)
+                floatSamples = new float[span];
+            tile.getSamples(x, y, span, 1, sourceBand, floatSamples);
+            for (int i = 0, s = 0; i < count; ++i, s += xSubsampling)
+                out.putFloat(offset + i * 4, floatSamples[s]);
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            if (doubleSamples == null || doubleSamples.length < span)
+                doubleSamples = new double[span];
+            tile.getSamples(x, y, span, 1, sourceBand, doubleSamples);
+            for (int i = 0, s = 0; i < count; ++i, s += xSubsampling)
+                out.putDouble(offset + i * 8, doubleSamples[s]);
+            break;
+        default:
+            if (intSamples == null || intSamples.length < span)
+                intSamples = new int[span];
+            tile.getSamples(x, y, span, 1, sourceBand, intSamples);
+            switch (pixelSize)
+            {
+            case 1:
+                byte[] data = strip[band];
+                for (int i = 0, s = 0; i < count; ++i, s += xSubsampling)
+                    data[offset + i] = (byte) intSamples[s];
+                break;
+            case 2:
+                for (int i = 0, s = 0; i < count; ++i, s += xSubsampling)
+                    out.putShort(offset + i * 2, (short) intSamples[s]);
+                break;
+            default:
+                for (int i = 0, s = 0; i < count; ++i, s += xSubsampling)
+                    out.putInt(offset + i * 4, intSamples[s]);
+            }
+        }
+    }
+
+    private static int toTile(int pos, int gridOffset, int tileSize)
+    {
+        int delta = pos - gridOffset;
+        return delta >= 0 ? delta / tileSize : -((-delta + tileSize - 1)
+                / tileSize);
+    }
+
+    private static int ceilDiv(int value, int divisor)
+    {
+        return value <= 0 ? 0 : (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * A BandSource that pulls its rows from the shared strip. The native
+     * writer reads the rows of each band in order, so we just keep count.
+     */
+    private static class StripBandSource extends BandSource
+    {
+        private final RenderedImageSource owner;
+
+        private final int band;
+
+        private int row = 0;
+
+        StripBandSource(RenderedImageSource owner, int band)
+        {
+            super();
+            this.owner = owner;
+            this.band = band;
+        }
+
+        public void read(byte[] buf, int size) throws NITFException
+        {
+            owner.readRow(band, row++, buf, size);
+        }
+
+        public long getSize() throws NITFException
+        {
+            return (long) owner.numRows * owner.rowBytes;
+        }
+
+        public void setSize(long size) throws NITFException
+        {
+            throw new NITFException("Cannot resize an image band source");
+        }
+    }
+
+}
@@ -0,0 +1,570 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOException;
+
+import nitf.AverageDownSampler;
+import nitf.DownSampler;
+import nitf.ImageSubheader;
+import nitf.NITFException;
+import nitf.SubWindow;
+
+/**
+ * Reads a region of a NITF image segment resampled to an arbitrary size, with
+ * a bilinear, bicubic or Lanczos kernel.
+ * <p>
+ * The output is computed a tile at a time. Each tile reads just the source
+ * pixels its kernel taps cover, including the halo rows and columns around
+ * the region (clamped at the image edges), so the rescaled image comes
+ * straight from the NITF blocks. Tiles are resampled in parallel; the reads
+ * themselves are serialized on the native image reader, as they are in
+ * {@link NITFReader}.
+ * <p>
+ * When reducing by 2 or more, the source is first averaged by the native
+ * {@link AverageDownSampler} as it is read, to within 2x of the output size
+ * (the skip is limited to the block size), so a tile never holds its
+ * full-resolution source. The kernel is then widened by the remaining
+ * reduction factor so that every averaged pixel contributes, which avoids
+ * aliasing.
+ */
+public class Resampler
+{
+    /**
+     * The resampling kernels
+     */
+    public enum Kernel
+    {
+        /** Linear interpolation (a triangle filter), radius 1 */
+        BILINEAR(1),
+
+        /** Keys cubic convolution, with a = -0.5, radius 2 */
+        BICUBIC(2),
+
+        /** The Lanczos windowed sinc, radius 3 */
+        LANCZOS(3);
+
+        final int radius;
+
+        private Kernel(int radius)
+        {
+            this.radius = radius;
+        }
+
+        double weight(double x)
+        {
+            x = Math.abs(x);
+            if (x >= radius)
+                return 0;
+            switch (this)
+            {
+            case BILINEAR:
+                return 1 - x;
+            case BICUBIC:
+                if (x < 1)
+                    return (1.5 * x - 2.5) * x * x + 1;
+                return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+            default:
+                return sinc(x) * sinc(x / radius);
+            }
+        }
+
+        private static double sinc(double x)
+        {
+            if (x == 0)
+                return 1;
+            x *= Math.PI;
+            return Math.sin(x) / x;
+        }
+    }
+
+    /** The default width and height of the output tiles */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private final nitf.ImageReader imageReader;
+
+    private final NITFImageInfo info;
+
+    private Kernel kernel = Kernel.BILINEAR;
+
+    private int tileSize = DEFAULT_TILE_SIZE;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param imageReader
+     *            the reader of the image segment
+     * @param subheader
+     *            the subheader of the image segment
+     */
+    public Resampler(nitf.ImageReader imageReader, ImageSubheader subheader)
+            throws NITFException
+    {
+        this(imageReader, new NITFImageInfo(subheader));
+    }
+
+    Resampler(nitf.ImageReader imageReader, NITFImageInfo info)
+    {
+        this.imageReader = imageReader;
+        this.info = info;
+    }
+
+    public void setKernel(Kernel kernel)
+    {
+        if (kernel == null)
+            throw new IllegalArgumentException("null kernel");
+        this.kernel = kernel;
+    }
+
+    public Kernel getKernel()
+    {
+        return kernel;
+    }
+
+    /**
+     * Sets the width and height of the output tiles, which are resampled in
+     * parallel. Defaults to DEFAULT_TILE_SIZE.
+     */
+    public void setTileSize(int tileSize)
+    {
+        if (tileSize < 1)
+            throw new IllegalArgumentException("Invalid tile size: "
+                    + tileSize);
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize()
+    {
+        return tileSize;
+    }
+
+    /**
+     * Sets the number of threads used to resample the tiles. Defaults to the
+     * number of available processors.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Resamples a region of the image to the given size. The region and bands
+     * are taken from the window, whose down-sampler, if any, is ignored. The
+     * raster has the data type of the image, and integer samples are rounded
+     * and clipped to its range.
+     *
+     * @param window
+     *            the source region and bands
+     * @param width
+     *            the width of the output
+     * @param height
+     *            the height of the output
+     * @return the resampled raster, at (0, 0)
+     * @throws IOException
+     */
+    public WritableRaster resample(SubWindow window, int width, int height)
+            throws IOException
+    {
+        int startRow = window.getStartRow();
+        int startCol = window.getStartCol();
+        int numRows = window.getNumRows();
+        int numCols = window.getNumCols();
+        if (startRow < 0 || startCol < 0 || numRows < 1 || numCols < 1
+                || startRow + numRows > info.numRows
+                || startCol + numCols > info.numCols)
+        {
+            throw new IllegalArgumentException("Invalid source region: "
+                    + startCol + ", " + startRow + ", " + numCols + " x "
+                    + numRows);
+        }
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid output size: " + width
+                    + " x " + height);
+
+        int[] bands = window.getBandList();
+        if (bands == null || bands.length == 0)
+        {
+            bands = new int[info.numBands];
+            for (int i = 0; i < bands.length; ++i)
+                bands[i] = i;
+        }
+        for (int i = 0; i < bands.length; ++i)
+        {
+            if (bands[i] < 0 || bands[i] >= info.numBands)
+                throw new IllegalArgumentException("Invalid band: " + bands[i]);
+        }
+
+        int dataType = info.getDataType();
+        WritableRaster raster = Raster.createWritableRaster(info
+                .createSampleModel(width, height, bands.length), null);
+        Weights colWeights = new Weights(kernel, startCol, numCols,
+                info.numCols, width, info.numColsPerBlock);
+        Weights rowWeights = new Weights(kernel, startRow, numRows,
+                info.numRows, height, info.numRowsPerBlock);
+        DownSampler downSampler = null;
+        if (rowWeights.skip > 1 || colWeights.skip > 1)
+        {
+            downSampler = new AverageDownSampler(rowWeights.skip,
+                    colWeights.skip);
+        }
+
+        List<Tile> tiles = new ArrayList<Tile>();
+        for (int y = 0; y < height; y += tileSize)
+        {
+            for (int x = 0; x < width; x += tileSize)
+            {
+                tiles.add(new Tile(raster, bands, dataType, downSampler,
+                        colWeights, x, Math.min(x + tileSize, width),
+                        rowWeights, y, Math.min(y + tileSize, height)));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+                numThreads, tiles.size()));
+        try
+        {
+            List<Future<Object>> futures = executor.invokeAll(tiles);
+            for (Future<Object> future : futures)
+                future.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new IIOException("Interrupted", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IIOException("Unable to resample", e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return raster;
+    }
+
+    /**
+     * The kernel taps of each output row or column: the (clamped) source
+     * indexes and their normalized weights. The source is the image averaged
+     * over every skip pixels, starting at offset, so index k is the mean of
+     * the pixels from offset + k * skip.
+     */
+    private static final class Weights
+    {
+        final int skip;
+
+        final int offset;
+
+        final int numTaps;
+
+        final int[] indexes;
+
+        final double[] weights;
+
+        Weights(Kernel kernel, int start, int size, int limit, int outSize,
+                int maxSkip)
+        {
+            // the windows are aligned with the start of the region
+            skip = Math.max(1, Math.min(maxSkip, size / outSize));
+            offset = start % skip;
+            start /= skip;
+            limit = (limit - offset + skip - 1) / skip;
+
+            double scale = (double) size / skip / outSize;
+            double stretch = Math.max(1, scale);
+            double radius = kernel.radius * stretch;
+            numTaps = (int) Math.ceil(2 * radius) + 1;
+            indexes = new int[outSize * numTaps];
+            weights = new double[outSize * numTaps];
+
+            for (int i = 0; i < outSize; ++i)
+            {
+                // pixel k covers [k, k + 1), so its center is at k + 0.5
+                double center = start + (i + 0.5) * scale;
+                int first = (int) Math.floor(center - radius);
+                double sum = 0;
+                for (int t = 0; t < numTaps; ++t)
+                {
+                    int k = first + t;
+                    double w = kernel.weight((k + 0.5 - center) / stretch);
+                    indexes[i * numTaps + t] = Math.min(limit - 1, Math.max(0,
+                            k));
+                    weights[i * numTaps + t] = w;
+                    sum += w;
+                }
+                for (int t = 0; t < numTaps; ++t)
+                    weights[i * numTaps + t] /= sum;
+            }
+        }
+
+        int minIndex(int from, int to)
+        {
+            int min = Integer.MAX_VALUE;
+            for (int j = from * numTaps; j < to * numTaps; ++j)
+                if (weights[j] != 0)
+                    min = Math.min(min, indexes[j]);
+            return min;
+        }
+
+        int maxIndex(int from, int to)
+        {
+            int max = Integer.MIN_VALUE;
+            for (int j = from * numTaps; j < to * numTaps; ++j)
+                if (weights[j] != 0)
+                    max = Math.max(max, indexes[j]);
+            return max;
+        }
+    }
+
+    /**
+     * Reads the source pixels of one output tile and resamples them,
+     * horizontally then vertically
+     */
+    private final class Tile implements Callable<Object>
+    {
+        private final WritableRaster raster;
+
+        private final int[] bands;
+
+        private final int dataType;
+
+        private final DownSampler downSampler;
+
+        private final Weights colWeights;
+
+        private final int x0;
+
+        private final int x1;
+
+        private final Weights rowWeights;
+
+        private final int y0;
+
+        private final int y1;
+
+        /** The range of the integer data types, min > max for real types */
+        private final double min;
+
+        private final double max;
+
+        Tile(WritableRaster raster, int[] bands, int dataType,
+                DownSampler downSampler, Weights colWeights, int x0, int x1,
+                Weights rowWeights, int y0, int y1)
+        {
+            this.raster = raster;
+            this.bands = bands;
+            this.dataType = dataType;
+            this.downSampler = downSampler;
+            this.colWeights = colWeights;
+            this.x0 = x0;
+            this.x1 = x1;
+            this.rowWeights = rowWeights;
+            this.y0 = y0;
+            this.y1 = y1;
+
+            boolean signed = info.pvType.equals("SI");
+            int bits = DataBuffer.getDataTypeSize(dataType);
+            if (dataType == DataBuffer.TYPE_FLOAT
+                    || dataType == DataBuffer.TYPE_DOUBLE)
+            {
+                min = 1;
+                max = 0;
+            }
+            else if (signed)
+            {
+                min = -Math.pow(2, bits - 1);
+                max = Math.pow(2, bits - 1) - 1;
+            }
+            else
+            {
+                min = 0;
+                max = Math.pow(2, bits) - 1;
+            }
+        }
+
+        public Object call() throws NITFException
+        {
+            int srcCol = colWeights.minIndex(x0, x1);
+            int srcCols = colWeights.maxIndex(x0, x1) - srcCol + 1;
+            int srcRow = rowWeights.minIndex(y0, y1);
+            int srcRows = rowWeights.maxIndex(y0, y1) - srcRow + 1;
+
+            /*
+             * The native reader does not handle band subsets for every IMODE,
+             * so we read all bands and keep the ones we were asked for, just
+             * like NITFReader does.
+             */
+            int[] readBands = new int[info.numBands];
+            for (int i = 0; i < readBands.length; ++i)
+                readBands[i] = i;
+            byte[][] buf = new byte[readBands.length][srcRows * srcCols
+                    * info.pixelSize];
+
+            // with a down-sampler, the size is that of the averaged pixels
+            SubWindow window = new SubWindow();
+            window.setStartRow(rowWeights.offset + srcRow * rowWeights.skip);
+            window.setNumRows(srcRows);
+            window.setStartCol(colWeights.offset + srcCol * colWeights.skip);
+            window.setNumCols(srcCols);
+            window.setNumBands(readBands.length);
+            window.setBandList(readBands);
+            if (downSampler != null)
+                window.setDownSampler(downSampler);
+            synchronized (imageReader)
+            {
+                imageReader.read(window, buf);
+            }
+
+            int width = x1 - x0;
+            int height = y1 - y0;
+            double[] src = new double[srcRows * srcCols];
+            double[] tmp = new double[srcRows * width];
+            double[] out = new double[height * width];
+            for (int b = 0; b < bands.length; ++b)
+            {
+                toDoubles(buf[bands[b]], src);
+
+                int taps = colWeights.numTaps;
+                for (int row = 0; row < srcRows; ++row)
+                {
+                    int s = row * srcCols - srcCol;
+                    for (int x = 0; x < width; ++x)
+                    {
+                        int j = (x0 + x) * taps;
+                        double sum = 0;
+                        for (int t = 0; t < taps; ++t, ++j)
+                        {
+                            double w = colWeights.weights[j];
+                            if (w != 0)
+                                sum += w * src[s + colWeights.indexes[j]];
+                        }
+                        tmp[row * width + x] = sum;
+                    }
+                }
+
+                taps = rowWeights.numTaps;
+                for (int y = 0; y < height; ++y)
+                {
+                    int o = y * width;
+                    for (int x = 0; x < width; ++x)
+                        out[o + x] = 0;
+                    for (int t = 0, j = (y0 + y) * taps; t < taps; ++t, ++j)
+                    {
+                        double w = rowWeights.weights[j];
+                        if (w == 0)
+                            continue;
+                        int s = (rowWeights.indexes[j] - srcRow) * width;
+                        for (int x = 0; x < width; ++x)
+                            out[o + x] += w * tmp[s + x];
+                    }
+                }
+                setSamples(b, out);
+            }
+            return null;
+        }
+
+        /**
+         * Stores a band of the tile. Integer samples are rounded and clipped
+         * to the range of the pixel type, and stored as its bits, the way
+         * {@link NITFRenderedImage} does (i.e. signed bytes and unsigned
+         * 32-bit pixels).
+         */
+        private void setSamples(int band, double[] samples)
+        {
+            int width = x1 - x0;
+            int height = y1 - y0;
+            if (min > max)
+            {
+                raster.setSamples(x0, y0, width, height, band, samples);
+                return;
+            }
+
+            int[] bits = new int[samples.length];
+            for (int i = 0; i < samples.length; ++i)
+            {
+                double value = Math.floor(samples[i] + 0.5);
+                value = value < min ? min : (value > max ? max : value);
+                bits[i] = (int) (long) value;
+            }
+            raster.setSamples(x0, y0, width, height, band, bits);
+        }
+
+        /**
+         * Converts a band of native-order pixels to doubles
+         */
+        private void toDoubles(byte[] src, double[] dst)
+        {
+            ByteBuffer buf = ByteBuffer.wrap(src).order(ByteOrder.nativeOrder());
+            boolean signed = info.pvType.equals("SI");
+            switch (dataType)
+            {
+            case DataBuffer.TYPE_BYTE:
+                for (int i = 0; i < dst.length; ++i)
+                    dst[i] = signed ? src[i] : src[i] & 0xFF;
+                break;
+            case DataBuffer.TYPE_USHORT:
+                for (int i = 0; i < dst.length; ++i)
+                    dst[i] = buf.getShort(2 * i) & 0xFFFF;
+                break;
+            case DataBuffer.TYPE_SHORT:
+                for (int i = 0; i < dst.length; ++i)
+                    dst[i] = buf.getShort(2 * i);
+                break;
+            case DataBuffer.TYPE_INT:
+                for (int i = 0; i < dst.length; ++i)
+                    dst[i] = signed ? buf.getInt(4 * i)
+                            : buf.getInt(4 * i) & 0xFFFFFFFFL;
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                for (int i = 0; i < dst.length; ++i)
+                    dst[i] = buf.getFloat(4 * i);
+                break;
+            default:
+                for (int i = 0; i < dst.length; ++i)
+                    dst[i] = buf.getDouble(8 * i);
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,539 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOException;
+
+import nitf.ImageSubheader;
+import nitf.NITFException;
+import nitf.PixelSkipDownSampler;
+import nitf.SubWindow;
+
+/**
+ * Computes the min, max, mean, standard deviation and histogram of every
+ * band of an image segment, in a single pass over its blocks.
+ * <p>
+ * The blocks are shared out between worker threads. Each worker reads its
+ * blocks (all bands at once), accumulates them into its own partial
+ * statistics, and the partials are merged at the end. All workers read
+ * through the one native reader, synchronized on it, so the reads, including
+ * any decompression, happen one at a time; only the accumulation runs in
+ * parallel. For compressed images, where decoding dominates, more threads
+ * do not help. Blocks that the block mask marks as missing are all pad
+ * pixels, so they are skipped without being read.
+ * <p>
+ * Integer pixels of up to 16 bits get one histogram bin per value, so their
+ * percentiles are exact. Other pixels are binned over a fixed range, which
+ * is either set with {@link #setHistogramRange(double, double)} or taken from
+ * a quick subsampled scan before the pass; values outside of it are counted
+ * in the end bins.
+ */
+public class StatisticsCalculator
+{
+    /** The default number of histogram bins for 32-bit and real pixels */
+    public static final int DEFAULT_NUM_BINS = 4096;
+
+    /** The range of 32-bit and real pixels is scanned from this many pixels */
+    public static final int RANGE_SCAN_PIXELS = 1 << 16;
+
+    /** Blocks are read at most this many pixels at a time */
+    private static final int MAX_READ_PIXELS = 1 << 22;
+
+    private final nitf.ImageReader imageReader;
+
+    private final NITFImageInfo info;
+
+    private final PixelFormat format;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    private int numBins = DEFAULT_NUM_BINS;
+
+    private double histogramMin = Double.NaN;
+
+    private double histogramMax = Double.NaN;
+
+    private boolean hasPadValue = false;
+
+    private double padValue = 0;
+
+    private int overviewLevel = 0;
+
+    /**
+     * @param imageReader
+     *            the reader of the image segment
+     * @param subheader
+     *            the subheader of the image segment
+     */
+    public StatisticsCalculator(nitf.ImageReader imageReader,
+            ImageSubheader subheader) throws NITFException
+    {
+        this(imageReader, new NITFImageInfo(subheader));
+    }
+
+    StatisticsCalculator(nitf.ImageReader imageReader, NITFImageInfo info)
+    {
+        this.imageReader = imageReader;
+        this.info = info;
+        this.format = new PixelFormat(info);
+    }
+
+    /**
+     * Sets the number of threads the blocks are shared out between. Defaults
+     * to the number of processors. The threads share the native reader, so
+     * they read one block at a time.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Sets the number of histogram bins for 32-bit and real pixels. Defaults
+     * to DEFAULT_NUM_BINS.
+     */
+    public void setNumBins(int numBins)
+    {
+        if (numBins < 1)
+            throw new IllegalArgumentException("Invalid number of bins: "
+                    + numBins);
+        this.numBins = numBins;
+    }
+
+    public int getNumBins()
+    {
+        return numBins;
+    }
+
+    /**
+     * Sets the range binned by the histograms of 32-bit and real pixels,
+     * instead of scanning for it
+     */
+    public void setHistogramRange(double min, double max)
+    {
+        if (!(max > min))
+            throw new IllegalArgumentException("Invalid histogram range: "
+                    + min + " to " + max);
+        histogramMin = min;
+        histogramMax = max;
+    }
+
+    /**
+     * Sets the pad value. Pixels with this value, in any band, are not
+     * counted.
+     */
+    public void setPadValue(double padValue)
+    {
+        this.padValue = padValue;
+        hasPadValue = true;
+    }
+
+    /**
+     * Counts every pixel, the default
+     */
+    public void clearPadValue()
+    {
+        hasPadValue = false;
+    }
+
+    /**
+     * Records that the image segment is the given overview level of another
+     * one, so the statistics are only an estimate of the full image's
+     */
+    void setOverviewLevel(int overviewLevel)
+    {
+        this.overviewLevel = overviewLevel;
+    }
+
+    /**
+     * Computes the statistics of all bands
+     *
+     * @throws IOException
+     */
+    public ImageStatistics compute() throws IOException
+    {
+        final Histogram[] templates = new Histogram[info.numBands];
+        if (format.getNumValues() > 0)
+        {
+            for (int b = 0; b < info.numBands; ++b)
+                templates[b] = new Histogram(format.getMinValue(), format
+                        .getMinValue()
+                        + format.getNumValues(), format.getNumValues());
+        }
+        else
+        {
+            double[][] ranges = Double.isNaN(histogramMin) ? scanRanges()
+                    : null;
+            for (int b = 0; b < info.numBands; ++b)
+            {
+                templates[b] = ranges == null ? new Histogram(histogramMin,
+                        histogramMax, numBins) : new Histogram(ranges[b][0],
+                        ranges[b][1], numBins);
+            }
+        }
+
+        // the work units are blocks, or strips of them if they are very big
+        final int unitCols = Math.min(info.numColsPerBlock, info.numCols);
+        final int unitRows = Math.max(1, Math.min(info.numRowsPerBlock,
+                MAX_READ_PIXELS / unitCols));
+        final int unitsPerRow = (info.numCols + unitCols - 1) / unitCols;
+        final int numUnits = unitsPerRow
+                * ((info.numRows + unitRows - 1) / unitRows);
+        final AtomicInteger nextUnit = new AtomicInteger();
+
+        // blocks that are not recorded in the file are all pad, so skipped
+        final boolean[] present;
+        try
+        {
+            synchronized (imageReader)
+            {
+                present = imageReader.getPresentBlocks();
+            }
+        }
+        catch (NITFException e)
+        {
+            throw new IIOException("NITF Exception", e);
+        }
+
+        List<Callable<Partial>> workers = new ArrayList<Callable<Partial>>();
+        for (int i = 0; i < Math.min(numThreads, numUnits); ++i)
+        {
+            workers.add(new Callable<Partial>()
+            {
+                public Partial call() throws Exception
+                {
+                    Partial partial = new Partial(templates);
+                    byte[][] buf = new byte[info.numBands][unitRows
+                            * unitCols * info.pixelSize];
+                    SubWindow window = createWindow();
+                    for (int unit = nextUnit.getAndIncrement(); unit < numUnits; unit = nextUnit
+                            .getAndIncrement())
+                    {
+                        int col = (unit % unitsPerRow) * unitCols;
+                        int row = (unit / unitsPerRow) * unitRows;
+                        int numCols = Math.min(unitCols, info.numCols - col);
+                        int numRows = Math.min(unitRows, info.numRows - row);
+                        int block = (row / info.numRowsPerBlock)
+                                * info.numBlocksPerRow + col
+                                / info.numColsPerBlock;
+                        if (block < present.length && !present[block])
+                            continue;
+                        window.setStartCol(col);
+                        window.setNumCols(numCols);
+                        window.setStartRow(row);
+                        window.setNumRows(numRows);
+                        synchronized (imageReader)
+                        {
+                            imageReader.read(window, buf);
+                        }
+                        partial.add(buf, numRows * numCols);
+                    }
+                    return partial;
+                }
+            });
+        }
+
+        Partial total = new Partial(templates);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                workers.size()));
+        try
+        {
+            List<Future<Partial>> futures = executor.invokeAll(workers);
+            for (Future<Partial> future : futures)
+                total.add(future.get());
+        }
+        catch (InterruptedException e)
+        {
+            throw new IIOException("Interrupted", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IIOException("Unable to compute statistics", e
+                    .getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return total.toStatistics(overviewLevel);
+    }
+
+    private SubWindow createWindow() throws NITFException
+    {
+        /*
+         * The native reader does not handle band subsets for every IMODE, so
+         * we read all bands, just like NITFReader does.
+         */
+        int[] bands = new int[info.numBands];
+        for (int i = 0; i < bands.length; ++i)
+            bands[i] = i;
+        SubWindow window = new SubWindow();
+        window.setNumBands(bands.length);
+        window.setBandList(bands);
+        return window;
+    }
+
+    /**
+     * Scans a subsample of the image, a row at a time, for the range of each
+     * band
+     */
+    private double[][] scanRanges() throws IOException
+    {
+        double[][] ranges = new double[info.numBands][];
+        for (int b = 0; b < ranges.length; ++b)
+            ranges[b] = new double[] { Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY };
+
+        int sub = (int) Math.max(1, Math.ceil(Math.sqrt((double) info.numRows
+                * info.numCols / RANGE_SCAN_PIXELS)));
+        boolean nativeSkip = sub <= info.numColsPerBlock;
+        int outCols = (info.numCols + sub - 1) / sub;
+        int readCols = nativeSkip ? outCols : (outCols - 1) * sub + 1;
+        int colStep = nativeSkip ? 1 : sub;
+        byte[][] buf = new byte[info.numBands][readCols * info.pixelSize];
+        double[] values = new double[readCols];
+        try
+        {
+            SubWindow window = createWindow();
+            window.setStartCol(0);
+            window.setNumCols(readCols);
+            window.setNumRows(1);
+            if (nativeSkip && sub > 1)
+                window.setDownSampler(new PixelSkipDownSampler(1, sub));
+            for (int row = 0; row < info.numRows; row += sub)
+            {
+                window.setStartRow(row);
+                synchronized (imageReader)
+                {
+                    imageReader.read(window, buf);
+                }
+                for (int b = 0; b < info.numBands; ++b)
+                {
+                    format.get(buf[b], 0, readCols, values);
+                    for (int i = 0; i < readCols; i += colStep)
+                    {
+                        double value = values[i];
+                        if (value != value || isPad(buf, i))
+                            continue;
+                        if (value < ranges[b][0])
+                            ranges[b][0] = value;
+                        if (value > ranges[b][1])
+                            ranges[b][1] = value;
+                    }
+                }
+            }
+        }
+        catch (NITFException e)
+        {
+            throw new IIOException("NITF Exception", e);
+        }
+
+        for (int b = 0; b < ranges.length; ++b)
+        {
+            if (!(ranges[b][1] > ranges[b][0]))
+            {
+                // empty or constant, so any range holding it will do
+                ranges[b][0] = ranges[b][0] <= ranges[b][1] ? ranges[b][0] : 0;
+                ranges[b][1] = ranges[b][0] + 1;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * @return true if the i'th pixel is a pad pixel, that is, has the pad
+     *         value in any band
+     */
+    private boolean isPad(byte[][] buf, int i)
+    {
+        if (!hasPadValue)
+            return false;
+        for (int b = 0; b < buf.length; ++b)
+        {
+            if (format.get(buf[b], i) == padValue)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * The statistics of the pixels seen by one worker. The mean and the sum
+     * of the squared differences from it are accumulated as by Welford, and
+     * merged as by Chan et al, which keeps the variance accurate over many
+     * pixels.
+     */
+    private final class Partial
+    {
+        private final long[] counts;
+
+        private final double[] min;
+
+        private final double[] max;
+
+        private final double[] mean;
+
+        private final double[] m2;
+
+        private final Histogram[] histograms;
+
+        private double[][] values;
+
+        private boolean[] pad;
+
+        Partial(Histogram[] templates)
+        {
+            int numBands = templates.length;
+            counts = new long[numBands];
+            min = new double[numBands];
+            max = new double[numBands];
+            mean = new double[numBands];
+            m2 = new double[numBands];
+            histograms = new Histogram[numBands];
+            for (int b = 0; b < numBands; ++b)
+            {
+                min[b] = Double.POSITIVE_INFINITY;
+                max[b] = Double.NEGATIVE_INFINITY;
+                histograms[b] = new Histogram(templates[b].getMin(),
+                        templates[b].getMax(), templates[b].getNumBins());
+            }
+        }
+
+        /**
+         * Adds the first numPixels pixels of each band of buf
+         */
+        void add(byte[][] buf, int numPixels)
+        {
+            if (values == null || values[0].length < numPixels)
+            {
+                values = new double[buf.length][numPixels];
+                pad = new boolean[numPixels];
+            }
+            for (int b = 0; b < buf.length; ++b)
+                format.get(buf[b], 0, numPixels, values[b]);
+
+            if (hasPadValue)
+            {
+                for (int i = 0; i < numPixels; ++i)
+                {
+                    pad[i] = false;
+                    for (int b = 0; b < buf.length && !pad[i]; ++b)
+                        pad[i] = values[b][i] == padValue;
+                }
+            }
+
+            boolean exact = format.getNumValues() > 0;
+            for (int b = 0; b < buf.length; ++b)
+            {
+                double[] v = values[b];
+                Histogram histogram = histograms[b];
+                int binOffset = -format.getMinValue();
+                long n = counts[b];
+                double bandMin = min[b];
+                double bandMax = max[b];
+                double bandMean = mean[b];
+                double bandM2 = m2[b];
+                for (int i = 0; i < numPixels; ++i)
+                {
+                    double value = v[i];
+                    if (value != value || (hasPadValue && pad[i]))
+                        continue;
+                    ++n;
+                    double delta = value - bandMean;
+                    bandMean += delta / n;
+                    bandM2 += delta * (value - bandMean);
+                    if (value < bandMin)
+                        bandMin = value;
+                    if (value > bandMax)
+                        bandMax = value;
+                    if (exact)
+                        histogram.add((int) value + binOffset, 1);
+                    else
+                        histogram.add(value);
+                }
+                counts[b] = n;
+                min[b] = bandMin;
+                max[b] = bandMax;
+                mean[b] = bandMean;
+                m2[b] = bandM2;
+            }
+        }
+
+        /**
+         * Merges the statistics of another partial into this one
+         */
+        void add(Partial other)
+        {
+            for (int b = 0; b < counts.length; ++b)
+            {
+                if (other.counts[b] == 0)
+                    continue;
+                long n = counts[b] + other.counts[b];
+                double delta = other.mean[b] - mean[b];
+                mean[b] += delta * other.counts[b] / n;
+                m2[b] += other.m2[b] + delta * delta * counts[b]
+                        * other.counts[b] / n;
+                counts[b] = n;
+                min[b] = Math.min(min[b], other.min[b]);
+                max[b] = Math.max(max[b], other.max[b]);
+                histograms[b].add(other.histograms[b]);
+            }
+        }
+
+        ImageStatistics toStatistics(int overviewLevel)
+        {
+            int numBands = counts.length;
+            double[] stdDev = new double[numBands];
+            double[] bandMin = new double[numBands];
+            double[] bandMax = new double[numBands];
+            double[] bandMean = new double[numBands];
+            for (int b = 0; b < numBands; ++b)
+            {
+                boolean empty = counts[b] == 0;
+                bandMin[b] = empty ? Double.NaN : min[b];
+                bandMax[b] = empty ? Double.NaN : max[b];
+                bandMean[b] = empty ? Double.NaN : mean[b];
+                stdDev[b] = empty ? Double.NaN : Math.sqrt(m2[b] / counts[b]);
+            }
+            return new ImageStatistics(counts.clone(), bandMin, bandMax,
+                    bandMean, stdDev, histograms.clone(), overviewLevel);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of decoded tiles, bounded by the number of
+ * bytes held. Tiles are keyed by an owner (typically the image they belong
+ * to) and their tile indices. A single default instance is shared by all
+ * NITF images, so the memory bound applies process-wide.
+ * <p>
+ * Owners are held weakly: the tiles of an owner that is no longer used are
+ * dropped once it is collected, if it did not remove them itself. Cached
+ * tiles are shared by every caller, so they must not be modified.
+ */
+public final class TileCache
+{
+    /** The default memory capacity of the shared cache, in bytes */
+    public static final long DEFAULT_MEMORY_CAPACITY = 64L * 1024 * 1024;
+
+    private static final TileCache defaultInstance = new TileCache(
+            DEFAULT_MEMORY_CAPACITY);
+
+    private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<TileKey, CachedTile>(
+            64, 0.75f, true);
+
+    /** The keys whose owners have been collected */
+    private final ReferenceQueue<Object> collected =
+            new ReferenceQueue<Object>();
+
+    private long memoryCapacity;
+
+    private long memoryUsage = 0;
+
+    /**
+     * @param memoryCapacity
+     *            the most bytes of tile data to hold
+     */
+    public TileCache(long memoryCapacity)
+    {
+        this.memoryCapacity = memoryCapacity;
+    }
+
+    /**
+     * @return the TileCache shared by all NITF images
+     */
+    public static TileCache getDefaultInstance()
+    {
+        return defaultInstance;
+    }
+
+    /**
+     * Returns the cached tile, or null if it is not in the cache. The tile is
+     * shared, and must not be modified.
+     */
+    public synchronized Raster getTile(Object owner, int tileX, int tileY)
+    {
+        purge();
+        CachedTile cached = tiles.get(new TileKey(owner, tileX, tileY));
+        return cached != null ? cached.tile : null;
+    }
+
+    /**
+     * Adds a tile to the cache, evicting the least recently used tiles if the
+     * memory capacity is exceeded. Tiles larger than the capacity are not
+     * cached.
+     */
+    public synchronized void addTile(Object owner, int tileX, int tileY,
+            Raster tile)
+    {
+        purge();
+        long size = getTileSize(tile);
+        if (size > memoryCapacity)
+            return;
+
+        CachedTile old = tiles.put(new TileKey(owner, tileX, tileY, collected),
+                new CachedTile(tile, size));
+        if (old != null)
+            memoryUsage -= old.size;
+        memoryUsage += size;
+        evict(memoryCapacity);
+    }
+
+    /**
+     * Removes all tiles belonging to the given owner
+     */
+    public synchronized void removeTiles(Object owner)
+    {
+        for (Iterator<Map.Entry<TileKey, CachedTile>> it = tiles.entrySet()
+                .iterator(); it.hasNext();)
+        {
+            Map.Entry<TileKey, CachedTile> entry = it.next();
+            if (entry.getKey().get() == owner)
+            {
+                memoryUsage -= entry.getValue().size;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all tiles from the cache
+     */
+    public synchronized void flush()
+    {
+        tiles.clear();
+        memoryUsage = 0;
+    }
+
+    public synchronized long getMemoryCapacity()
+    {
+        return memoryCapacity;
+    }
+
+    /**
+     * Sets the memory capacity, evicting tiles if necessary
+     */
+    public synchronized void setMemoryCapacity(long memoryCapacity)
+    {
+        if (memoryCapacity < 0)
+            throw new IllegalArgumentException("Invalid memory capacity: "
+                    + memoryCapacity);
+        this.memoryCapacity = memoryCapacity;
+        evict(memoryCapacity);
+    }
+
+    /**
+     * @return the number of bytes of tile data currently held
+     */
+    public synchronized long getMemoryUsage()
+    {
+        purge();
+        return memoryUsage;
+    }
+
+    /**
+     * Removes the tiles of owners that have been collected
+     */
+    private void purge()
+    {
+        for (Object key; (key = collected.poll()) != null;)
+        {
+            CachedTile cached = tiles.remove(key);
+            if (cached != null)
+                memoryUsage -= cached.size;
+        }
+    }
+
+    private void evict(long capacity)
+    {
+        for (Iterator<CachedTile> it = tiles.values().iterator(); memoryUsage > capacity
+                && it.hasNext();)
+        {
+            memoryUsage -= it.next().size;
+            it.remove();
+        }
+    }
+
+    /**
+     * @return the number of bytes held by the tile's DataBuffer
+     */
+    static long getTileSize(Raster tile)
+    {
+        DataBuffer buffer = tile.getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+                * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Refers to its owner weakly, so that the cache does not keep it alive.
+     * Once the owner is collected a key only equals itself.
+     */
+    private static final class TileKey extends WeakReference<Object>
+    {
+        final int tileX;
+
+        final int tileY;
+
+        final int hash;
+
+        TileKey(Object owner, int tileX, int tileY)
+        {
+            this(owner, tileX, tileY, null);
+        }
+
+        TileKey(Object owner, int tileX, int tileY,
+                ReferenceQueue<Object> queue)
+        {
+            super(owner, queue);
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.hash = System.identityHashCode(owner) * 31 * 31 + tileY * 31
+                    + tileX;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (o == this)
+                return true;
+            if (!(o instanceof TileKey))
+                return false;
+            TileKey key = (TileKey) o;
+            Object owner = get();
+            return owner != null && key.get() == owner && key.tileX == tileX
+                    && key.tileY == tileY;
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    private static final class CachedTile
+    {
+        final Raster tile;
+
+        final long size;
+
+        CachedTile(Raster tile, long size)
+        {
+            this.tile = tile;
+            this.size = size;
+        }
+    }
+
+}
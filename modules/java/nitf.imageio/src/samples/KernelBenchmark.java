@@ -0,0 +1,192 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ * 
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import nitf.imageio.PixelKernels;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Compares the {@link PixelKernels} against the equivalent per-sample Raster
+ * loops, which is how this was done before. Run with an image size and the
+ * number of iterations, e.g. <code>KernelBenchmark 4096 20</code>.
+ */
+public class KernelBenchmark
+{
+    private static final Log log = LogFactory.getLog(KernelBenchmark.class);
+
+    private interface Task
+    {
+        void run();
+    }
+
+    private static void time(String name, int iterations, Task task)
+    {
+        // warm up, so the JIT has compiled the loops
+        for (int i = 0; i < Math.max(3, iterations / 4); ++i)
+            task.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i)
+            task.run();
+        double ms = (System.nanoTime() - start) / 1e6 / iterations;
+        log.info(name + ": " + String.format("%.3f", ms) + " ms");
+    }
+
+    private static void averageRaster(Raster src, int skip, WritableRaster dst)
+    {
+        for (int y = 0; y < dst.getHeight(); ++y)
+        {
+            for (int x = 0; x < dst.getWidth(); ++x)
+            {
+                double sum = 0;
+                int count = 0;
+                for (int dy = 0; dy < skip && y * skip + dy < src.getHeight(); ++dy)
+                {
+                    for (int dx = 0; dx < skip
+                            && x * skip + dx < src.getWidth(); ++dx)
+                    {
+                        sum += src.getSampleDouble(x * skip + dx, y * skip
+                                + dy, 0);
+                        ++count;
+                    }
+                }
+                dst.setSample(x, y, 0, Math.round(sum / count));
+            }
+        }
+    }
+
+    private static void maxRaster(Raster src, int skip, WritableRaster dst)
+    {
+        for (int y = 0; y < dst.getHeight(); ++y)
+        {
+            for (int x = 0; x < dst.getWidth(); ++x)
+            {
+                int max = 0;
+                for (int dy = 0; dy < skip && y * skip + dy < src.getHeight(); ++dy)
+                    for (int dx = 0; dx < skip
+                            && x * skip + dx < src.getWidth(); ++dx)
+                        max = Math.max(max, src.getSample(x * skip + dx, y
+                                * skip + dy, 0));
+                dst.setSample(x, y, 0, max);
+            }
+        }
+    }
+
+    /**
+     * The loop ImageIOUtils.findMinAndMax used for all buffers
+     */
+    private static float[] findMinAndMaxLoop(float[] buffer)
+    {
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (int i = 0; i < buffer.length; ++i)
+        {
+            float value = buffer[i];
+            if (!Float.isInfinite(value))
+            {
+                if (value < min)
+                    min = value;
+                if (value > max)
+                    max = value;
+            }
+        }
+        return new float[] { min, max };
+    }
+
+    public static void main(String[] args)
+    {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int skip = 4;
+        final int reduced = PixelKernels.getReducedSize(size, skip);
+
+        final BufferedImage image = new BufferedImage(size, size,
+                BufferedImage.TYPE_BYTE_GRAY);
+        final byte[] bytes = ((DataBufferByte) image.getRaster()
+                .getDataBuffer()).getData();
+        new Random(0).nextBytes(bytes);
+        final float[] floats = new float[size * size];
+        for (int i = 0; i < floats.length; ++i)
+            floats[i] = (bytes[i] & 0xFF) * 1.5f;
+        final DataBufferFloat floatBuffer = new DataBufferFloat(floats,
+                floats.length);
+
+        final WritableRaster out = new BufferedImage(reduced, reduced,
+                BufferedImage.TYPE_BYTE_GRAY).getRaster();
+        final byte[] outBytes = ((DataBufferByte) out.getDataBuffer())
+                .getData();
+
+        log.info("Image size " + size + " x " + size + ", skip " + skip);
+
+        time("average, Raster samples", iterations, new Task()
+        {
+            public void run()
+            {
+                averageRaster(image.getRaster(), skip, out);
+            }
+        });
+        time("average, PixelKernels", iterations, new Task()
+        {
+            public void run()
+            {
+                PixelKernels.average(bytes, size, size, skip, skip, outBytes);
+            }
+        });
+        time("max, Raster samples", iterations, new Task()
+        {
+            public void run()
+            {
+                maxRaster(image.getRaster(), skip, out);
+            }
+        });
+        time("max, PixelKernels", iterations, new Task()
+        {
+            public void run()
+            {
+                PixelKernels.max(bytes, size, size, skip, skip, outBytes);
+            }
+        });
+        time("findMinAndMax, previous loop", iterations, new Task()
+        {
+            public void run()
+            {
+                findMinAndMaxLoop(floatBuffer.getData());
+            }
+        });
+        time("findMinAndMax, PixelKernels", iterations, new Task()
+        {
+            public void run()
+            {
+                PixelKernels.findMinAndMax(floats, 0, floats.length);
+            }
+        });
+    }
+}
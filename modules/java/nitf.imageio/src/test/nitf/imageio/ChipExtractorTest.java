@@ -0,0 +1,135 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf.imageio;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.util.Arrays;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+
+import junit.framework.TestCase;
+
+public class ChipExtractorTest extends TestCase
+{
+    private File file;
+
+    private NITFReader reader;
+
+    protected void setUp() throws Exception
+    {
+        // three bands, in 32x32 blocks with partial edges
+        BufferedImage image = new BufferedImage(150, 100,
+                BufferedImage.TYPE_3BYTE_BGR);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                for (int b = 0; b < 3; ++b)
+                    raster.setSample(x, y, b, (x * 7 + y * 3 + b * 50) % 256);
+
+        file = File.createTempFile("ChipExtractorTest", ".ntf");
+        NITFWriter writer = (NITFWriter) new NITFWriterSpi()
+                .createWriterInstance(null);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(32, 32, 0, 0);
+        writer.setOutput(file);
+        writer.write(null, new IIOImage(image, null, null), param);
+
+        reader = (NITFReader) new NITFReaderSpi().createReaderInstance(null);
+        reader.setInput(file);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        reader.dispose();
+        file.delete();
+    }
+
+    public void testBatch() throws Exception
+    {
+        // overlapping, spanning blocks, within one block and at the edges
+        Rectangle[] windows = { new Rectangle(0, 0, 10, 10),
+                new Rectangle(5, 5, 60, 40), new Rectangle(30, 30, 4, 4),
+                new Rectangle(140, 90, 10, 10), new Rectangle(0, 0, 150, 100),
+                new Rectangle(33, 70, 1, 30), new Rectangle(5, 5, 60, 40) };
+        int[][] bandLists = { null, { 2, 0 }, { 1 }, null, { 0, 1, 2 },
+                { 2 }, { 1, 1 } };
+
+        ChipExtractor extractor = reader.getChipExtractor(0);
+        byte[][][] chips = extractor.read(windows, bandLists);
+        extractor.setNumThreads(4);
+        byte[][][] parallel = extractor.read(windows, bandLists);
+
+        WritableRaster raster = reader.read(0).getRaster();
+        for (int i = 0; i < windows.length; ++i)
+        {
+            Rectangle window = windows[i];
+            int[] bands = bandLists[i] != null ? bandLists[i] : new int[] {
+                    0, 1, 2 };
+            assertEquals(bands.length, chips[i].length);
+            for (int b = 0; b < bands.length; ++b)
+            {
+                assertEquals(window.width * window.height, chips[i][b].length);
+                for (int y = 0; y < window.height; ++y)
+                {
+                    for (int x = 0; x < window.width; ++x)
+                    {
+                        int expected = raster.getSample(window.x + x,
+                                window.y + y, bands[b]);
+                        assertEquals("chip " + i + " band " + bands[b]
+                                + " at " + x + ", " + y, expected,
+                                chips[i][b][y * window.width + x] & 0xff);
+                    }
+                }
+                assertTrue(Arrays.equals(chips[i][b], parallel[i][b]));
+            }
+        }
+    }
+
+    public void testInvalidWindow() throws Exception
+    {
+        ChipExtractor extractor = reader.getChipExtractor(0);
+        try
+        {
+            extractor.read(new Rectangle[] { new Rectangle(140, 0, 11, 5) },
+                    null);
+            fail("expected an exception for a window outside of the image");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        try
+        {
+            extractor.read(new Rectangle[] { new Rectangle(0, 0, 5, 5) },
+                    new int[][] { { 3 } });
+            fail("expected an exception for a bad band");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf.imageio;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+
+import junit.framework.TestCase;
+import nitf.BandInfo;
+import nitf.LookupTable;
+
+public class DisplayPipelineTest extends TestCase
+{
+    private File file;
+
+    private NITFReader reader;
+
+    /**
+     * Writes an image with the given sample at each column, in 64x64 blocks
+     */
+    private void write(int type, int[] samples) throws Exception
+    {
+        BufferedImage image = new BufferedImage(samples.length, 100, type);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, samples[x]);
+
+        file = File.createTempFile("DisplayPipelineTest", ".ntf");
+        NITFWriter writer = (NITFWriter) new NITFWriterSpi()
+                .createWriterInstance(null);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(64, 64, 0, 0);
+        writer.setOutput(file);
+        writer.write(null, new IIOImage(image, null, null), param);
+
+        reader = (NITFReader) new NITFReaderSpi().createReaderInstance(null);
+        reader.setInput(file);
+    }
+
+    /**
+     * Writes a 16-bit ramp, 1000 + 10 * x
+     */
+    private void writeRamp() throws Exception
+    {
+        int[] samples = new int[256];
+        for (int x = 0; x < samples.length; ++x)
+            samples[x] = 1000 + 10 * x;
+        write(BufferedImage.TYPE_USHORT_GRAY, samples);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        if (file != null)
+            file.delete();
+    }
+
+    private static void assertGray(String message, int expected, Raster raster,
+            int x, int y)
+    {
+        for (int b = 0; b < 3; ++b)
+            assertEquals(message + " at " + x + ", " + y, expected, raster
+                    .getSample(x, y, b));
+    }
+
+    public void testLinear() throws Exception
+    {
+        writeRamp();
+        DisplayPipeline pipeline = reader.getDisplayPipeline(0);
+        pipeline.setPercentiles(0, 100);
+        BufferedImage image = pipeline.render(null, 1, 1);
+        assertEquals(256, image.getWidth());
+        assertEquals(100, image.getHeight());
+        assertEquals(3, image.getRaster().getNumBands());
+        for (int y = 0; y < 100; y += 7)
+            for (int x = 0; x < 256; ++x)
+                assertGray("linear", x, image.getRaster(), x, y);
+    }
+
+    public void testPercentiles() throws Exception
+    {
+        writeRamp();
+        DisplayPipeline pipeline = reader.getDisplayPipeline(0);
+
+        // 2% and 98% of the pixels are below 1050 and 3500
+        Histogram histogram = pipeline.getHistogram(0);
+        assertSame(histogram, pipeline.getHistogram(0));
+        assertSame(reader.getStatistics(0).getHistogram(0), histogram);
+        assertEquals(25600, histogram.getTotal());
+        assertSame(pipeline, reader.getDisplayPipeline(0));
+
+        // a new input closes the old one, and has a pipeline of its own
+        reader.setInput(file);
+        assertTrue(pipeline != reader.getDisplayPipeline(0));
+        pipeline = reader.getDisplayPipeline(0);
+        assertEquals(1050.0, histogram.getPercentile(2), 0);
+        assertEquals(3500.0, histogram.getPercentile(98), 0);
+
+        Raster raster = pipeline.render(null, 1, 1).getRaster();
+        for (int x = 0; x < 256; ++x)
+        {
+            int expected = x <= 5 ? 0 : x >= 250 ? 255 : (int) Math
+                    .round(255.0 * (x - 5) / 245);
+            assertGray("clipped", expected, raster, x, 50);
+        }
+    }
+
+    public void testGammaAndSubsampling() throws Exception
+    {
+        writeRamp();
+        DisplayPipeline pipeline = reader.getDisplayPipeline(0);
+        pipeline.setPercentiles(0, 100);
+        pipeline.setGamma(2);
+
+        // within a block and across blocks
+        int[][] subs = { { 3, 2 }, { 70, 65 } };
+        for (int s = 0; s < subs.length; ++s)
+        {
+            int xSub = subs[s][0];
+            int ySub = subs[s][1];
+            Raster raster = pipeline.render(new Rectangle(10, 5, 200, 90),
+                    xSub, ySub).getRaster();
+            assertEquals((200 + xSub - 1) / xSub, raster.getWidth());
+            assertEquals((90 + ySub - 1) / ySub, raster.getHeight());
+            for (int y = 0; y < raster.getHeight(); ++y)
+            {
+                for (int x = 0; x < raster.getWidth(); ++x)
+                {
+                    int col = 10 + x * xSub;
+                    int expected = (int) (255 * Math.sqrt(col / 255.0) + 0.5);
+                    assertGray("gamma", expected, raster, x, y);
+                }
+            }
+        }
+    }
+
+    public void testLookupTables() throws Exception
+    {
+        int[] samples = new int[40];
+        for (int x = 0; x < samples.length; ++x)
+            samples[x] = x % 4;
+        write(BufferedImage.TYPE_BYTE_GRAY, samples);
+
+        // give the band a color table, of fewer entries than values, before
+        // the pipeline is created
+        byte[] lut = { 10, 20, 30, 11, 21, 31, 12, 22, 32 };
+        BandInfo band = reader.getRecord().getImages()[0].getSubheader()
+                .getBandInfo()[0];
+        band.setLookupTable(new LookupTable(3, 3, lut));
+        band.getNumLUTs().setData("3");
+
+        DisplayPipeline pipeline = reader.getDisplayPipeline(0);
+        Raster raster = pipeline.render(null, 1, 1).getRaster();
+        for (int x = 0; x < samples.length; ++x)
+        {
+            int index = Math.min(samples[x], 2);
+            for (int b = 0; b < 3; ++b)
+                assertEquals(lut[b * 3 + index], raster.getSample(x, 99, b));
+        }
+
+        // without the table, the values 0 to 3 are stretched
+        pipeline.setUseLookupTables(false);
+        pipeline.setPercentiles(0, 100);
+        raster = pipeline.render(null, 1, 1).getRaster();
+        for (int x = 0; x < samples.length; ++x)
+            assertGray("no LUT", samples[x] * 85, raster, x, 0);
+    }
+}
@@ -0,0 +1,258 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf.imageio;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageWriteParam;
+
+import junit.framework.TestCase;
+
+public class OverviewTest extends TestCase
+{
+
+    private File writeTestImage(BufferedImage image) throws Exception
+    {
+        File file = File.createTempFile("OverviewTest", ".ntf");
+        NITFWriter writer = (NITFWriter) new NITFWriterSpi()
+                .createWriterInstance(null);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(128, 128, 0, 0);
+        writer.setOutput(file);
+        writer.write(null, new IIOImage(image, null, null), param);
+        return file;
+    }
+
+    /**
+     * Averages 2x2 neighborhoods, the same way the overview cascade does
+     */
+    private static double[][] reduce(double[][] in)
+    {
+        int rows = (in.length + 1) / 2;
+        int cols = (in[0].length + 1) / 2;
+        double[][] out = new double[rows][cols];
+        for (int y = 0; y < rows; ++y)
+        {
+            for (int x = 0; x < cols; ++x)
+            {
+                double sum = 0;
+                int count = 0;
+                for (int dy = 0; dy < 2 && 2 * y + dy < in.length; ++dy)
+                {
+                    for (int dx = 0; dx < 2 && 2 * x + dx < in[0].length; ++dx)
+                    {
+                        sum += in[2 * y + dy][2 * x + dx];
+                        ++count;
+                    }
+                }
+                out[y][x] = sum / count;
+            }
+        }
+        return out;
+    }
+
+    private static double[][] getBand(Raster raster, int band)
+    {
+        double[][] data = new double[raster.getHeight()][raster.getWidth()];
+        for (int y = 0; y < data.length; ++y)
+            for (int x = 0; x < data[y].length; ++x)
+                data[y][x] = raster.getSample(x, y, band);
+        return data;
+    }
+
+    private static Raster read(NITFReader reader, Rectangle region,
+            int xSub, int ySub) throws Exception
+    {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(region);
+        param.setSourceSubsampling(xSub, ySub, 0, 0);
+        return reader.readRaster(0, param);
+    }
+
+    private static NITFReader createReader(File file) throws Exception
+    {
+        NITFReader reader = (NITFReader) new NITFReaderSpi()
+                .createReaderInstance(null);
+        reader.setInput(file);
+        return reader;
+    }
+
+    public void testBuildOverviews() throws Exception
+    {
+        // odd sizes, so the last row and column of each level are partial
+        BufferedImage image = new BufferedImage(601, 403,
+                BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, (x * 211 + y * 97) % 65536);
+
+        File file = writeTestImage(image);
+        File sidecar = OverviewBuilder.getSidecarFile(file);
+        try
+        {
+            OverviewBuilder builder = new OverviewBuilder(file);
+            builder.setNumThreads(3);
+            assertEquals(sidecar, builder.build());
+            assertTrue(sidecar.isFile());
+
+            double[][] level1 = reduce(getBand(raster, 0));
+            double[][] level2 = reduce(level1);
+
+            NITFReader reader = createReader(file);
+            assertEquals(2, reader.getNumOverviews(0));
+
+            // served entirely from level 2
+            Raster actual = read(reader, null, 4, 4);
+            assertEquals(151, actual.getWidth());
+            assertEquals(101, actual.getHeight());
+            for (int y = 0; y < actual.getHeight(); ++y)
+                for (int x = 0; x < actual.getWidth(); ++x)
+                    assertEquals(Math.round(level2[y][x]), actual.getSample(
+                            x, y, 0));
+
+            // level 1, skipping rows within it
+            actual = read(reader, new Rectangle(5, 7, 300, 200), 2, 6);
+            assertEquals(150, actual.getWidth());
+            assertEquals(34, actual.getHeight());
+            for (int y = 0; y < actual.getHeight(); ++y)
+                for (int x = 0; x < actual.getWidth(); ++x)
+                    assertEquals(Math.round(level1[(7 + 6 * y) / 2][(5 + 2 * x) / 2]),
+                            actual.getSample(x, y, 0));
+
+            // no overview matches, so the pixels are skipped as usual
+            actual = read(reader, null, 3, 3);
+            for (int y = 0; y < actual.getHeight(); ++y)
+                for (int x = 0; x < actual.getWidth(); ++x)
+                    assertEquals(raster.getSample(3 * x, 3 * y, 0), actual
+                            .getSample(x, y, 0));
+
+            reader.setUseOverviews(false);
+            actual = read(reader, null, 4, 4);
+            for (int y = 0; y < actual.getHeight(); ++y)
+                for (int x = 0; x < actual.getWidth(); ++x)
+                    assertEquals(raster.getSample(4 * x, 4 * y, 0), actual
+                            .getSample(x, y, 0));
+
+            // overviews older than the image are ignored
+            assertTrue(file.setLastModified(sidecar.lastModified() + 10000));
+            assertEquals(0, createReader(file).getNumOverviews(0));
+        }
+        finally
+        {
+            file.delete();
+            sidecar.delete();
+        }
+    }
+
+    public void testBuildMultiBandOverviews() throws Exception
+    {
+        BufferedImage image = new BufferedImage(520, 300,
+                BufferedImage.TYPE_INT_RGB);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                for (int b = 0; b < 3; ++b)
+                    raster.setSample(x, y, b, (x * (b + 1) + y * 3) % 256);
+
+        File file = writeTestImage(image);
+        File sidecar = OverviewBuilder.getSidecarFile(file);
+        try
+        {
+            OverviewBuilder builder = new OverviewBuilder(file);
+            builder.setMaxLevels(1);
+            builder.build();
+
+            NITFReader reader = createReader(file);
+            assertEquals(1, reader.getNumOverviews(0));
+
+            Raster actual = read(reader, null, 2, 2);
+            for (int b = 0; b < 3; ++b)
+            {
+                double[][] level1 = reduce(getBand(raster, b));
+                for (int y = 0; y < actual.getHeight(); ++y)
+                    for (int x = 0; x < actual.getWidth(); ++x)
+                        assertEquals(Math.round(level1[y][x]), actual
+                                .getSample(x, y, b));
+            }
+        }
+        finally
+        {
+            file.delete();
+            sidecar.delete();
+        }
+    }
+
+    /**
+     * @return the number of open file descriptors, or -1 if unknown
+     */
+    private static int countOpenFiles()
+    {
+        String[] fds = new File("/proc/self/fd").list();
+        return fds != null ? fds.length : -1;
+    }
+
+    public void testClose() throws Exception
+    {
+        BufferedImage image = new BufferedImage(300, 260,
+                BufferedImage.TYPE_BYTE_GRAY);
+        File file = writeTestImage(image);
+        File sidecar = OverviewBuilder.getSidecarFile(file);
+        try
+        {
+            new OverviewBuilder(file).build();
+            int before = countOpenFiles();
+            if (before < 0)
+                return;
+
+            // each new input closes the file and sidecar of the last
+            NITFReader reader = createReader(file);
+            int open = 0;
+            for (int i = 0; i < 5; ++i)
+            {
+                reader.setInput(file);
+                assertEquals(1, reader.getNumOverviews(0));
+                read(reader, null, 2, 2);
+                if (i == 0)
+                    open = countOpenFiles();
+                assertEquals(open, countOpenFiles());
+            }
+            assertTrue(open >= before + 2);
+
+            reader.dispose();
+            assertEquals(before, countOpenFiles());
+        }
+        finally
+        {
+            file.delete();
+            sidecar.delete();
+        }
+    }
+}
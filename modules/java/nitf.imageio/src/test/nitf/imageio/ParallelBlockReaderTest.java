@@ -0,0 +1,203 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf.imageio;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.util.Arrays;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+
+import junit.framework.TestCase;
+import nitf.IOHandle;
+import nitf.Reader;
+import nitf.SubWindow;
+
+public class ParallelBlockReaderTest extends TestCase
+{
+    private File file;
+
+    protected void setUp() throws Exception
+    {
+        // 3 bands of bytes, in 64x64 blocks with partial edges
+        BufferedImage image = new BufferedImage(150, 130,
+                BufferedImage.TYPE_INT_RGB);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                for (int b = 0; b < 3; ++b)
+                    raster.setSample(x, y, b, (x * 7 + y * 3 + b * 50) % 256);
+
+        file = File.createTempFile("ParallelBlockReaderTest", ".ntf");
+        NITFWriter writer = (NITFWriter) new NITFWriterSpi()
+                .createWriterInstance(null);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(64, 64, 0, 0);
+        writer.setOutput(file);
+        writer.write(null, new IIOImage(image, null, null), param);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        file.delete();
+    }
+
+    /**
+     * Reads all bands of the window through a single native reader
+     */
+    private byte[][] readDirect(Rectangle window) throws Exception
+    {
+        int[] bands = { 0, 1, 2 };
+        IOHandle handle = new IOHandle(file.getAbsolutePath());
+        try
+        {
+            Reader reader = new Reader();
+            reader.read(handle);
+            SubWindow subWindow = new SubWindow();
+            subWindow.setStartRow(window.y);
+            subWindow.setNumRows(window.height);
+            subWindow.setStartCol(window.x);
+            subWindow.setNumCols(window.width);
+            subWindow.setNumBands(bands.length);
+            subWindow.setBandList(bands);
+            byte[][] data = new byte[bands.length][window.width
+                    * window.height];
+            reader.getNewImageReader(0).read(subWindow, data);
+            return data;
+        }
+        finally
+        {
+            handle.close();
+        }
+    }
+
+    public void testRead() throws Exception
+    {
+        TileCache cache = new TileCache(TileCache.DEFAULT_MEMORY_CAPACITY);
+        ParallelBlockReader reader = new ParallelBlockReader(file, 0, 4,
+                cache);
+        try
+        {
+            Rectangle[] windows = { new Rectangle(0, 0, 150, 130),
+                    new Rectangle(60, 10, 30, 100),
+                    new Rectangle(130, 120, 20, 10),
+                    new Rectangle(5, 5, 1, 1) };
+            int[] bands = { 2, 0 };
+            for (Rectangle window : windows)
+            {
+                byte[][] expected = readDirect(window);
+                byte[][] actual = reader.read(window, bands);
+                assertEquals(2, actual.length);
+                for (int b = 0; b < bands.length; ++b)
+                    assertTrue("Window " + window + ", band " + b, Arrays
+                            .equals(expected[bands[b]], actual[b]));
+            }
+
+            // every block was decoded once, and is still cached
+            assertEquals(150L * 130 * 3, cache.getMemoryUsage());
+        }
+        finally
+        {
+            reader.close();
+        }
+        assertEquals(0, cache.getMemoryUsage());
+    }
+
+    public void testBoundedCache() throws Exception
+    {
+        // room for two full blocks
+        TileCache cache = new TileCache(2 * 64 * 64 * 3);
+        ParallelBlockReader reader = new ParallelBlockReader(file, 0, 3,
+                cache);
+        try
+        {
+            Rectangle window = new Rectangle(0, 0, 150, 130);
+            byte[][] expected = readDirect(window);
+            for (int i = 0; i < 2; ++i)
+            {
+                byte[][] actual = reader.read(window, null);
+                assertEquals(3, actual.length);
+                for (int b = 0; b < 3; ++b)
+                    assertTrue(Arrays.equals(expected[b], actual[b]));
+                assertTrue(cache.getMemoryUsage() <= cache.getMemoryCapacity());
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    public void testCloseWhileReading() throws Exception
+    {
+        // nothing is cached, so every read decodes
+        final ParallelBlockReader reader = new ParallelBlockReader(file, 0, 4,
+                new TileCache(0));
+        final Rectangle window = new Rectangle(0, 0, 150, 130);
+        reader.read(window, null);
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    while (true)
+                        reader.read(window, null);
+                }
+                catch (Exception e)
+                {
+                    // expected once the reader is closed
+                }
+            }
+        };
+        thread.start();
+        Thread.sleep(50);
+
+        // the blocks being decoded finish before the readers are destructed
+        reader.close();
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        reader.close();
+    }
+
+    public void testInvalidWindow() throws Exception
+    {
+        ParallelBlockReader reader = new ParallelBlockReader(file, 0, 1);
+        try
+        {
+            reader.read(new Rectangle(100, 100, 60, 10), null);
+            fail("Expected the window to be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf.imageio;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class PixelKernelsTest extends TestCase
+{
+    private static final int WIDTH = 37;
+
+    private static final int HEIGHT = 23;
+
+    private static final int ROW_SKIP = 3;
+
+    private static final int COL_SKIP = 4;
+
+    private static final int DST_WIDTH = PixelKernels.getReducedSize(WIDTH,
+            COL_SKIP);
+
+    private static final int DST_HEIGHT = PixelKernels.getReducedSize(
+            HEIGHT, ROW_SKIP);
+
+    /**
+     * Computes the windows the slow way, as the reference
+     */
+    private static double[] reduce(double[] src, boolean max)
+    {
+        double[] dst = new double[DST_WIDTH * DST_HEIGHT];
+        for (int y = 0; y < DST_HEIGHT; ++y)
+        {
+            for (int x = 0; x < DST_WIDTH; ++x)
+            {
+                double sum = 0;
+                double maxValue = Double.NEGATIVE_INFINITY;
+                int count = 0;
+                for (int dy = 0; dy < ROW_SKIP && y * ROW_SKIP + dy < HEIGHT; ++dy)
+                {
+                    for (int dx = 0; dx < COL_SKIP
+                            && x * COL_SKIP + dx < WIDTH; ++dx)
+                    {
+                        double value = src[(y * ROW_SKIP + dy) * WIDTH + x
+                                * COL_SKIP + dx];
+                        sum += value;
+                        maxValue = Math.max(maxValue, value);
+                        ++count;
+                    }
+                }
+                dst[y * DST_WIDTH + x] = max ? maxValue : sum / count;
+            }
+        }
+        return dst;
+    }
+
+    public void testByteKernels()
+    {
+        byte[] src = new byte[WIDTH * HEIGHT];
+        new Random(1).nextBytes(src);
+        double[] values = new double[src.length];
+        for (int i = 0; i < src.length; ++i)
+            values[i] = src[i] & 0xFF;
+
+        byte[] dst = new byte[DST_WIDTH * DST_HEIGHT];
+        PixelKernels.average(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, dst);
+        double[] expected = reduce(values, false);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals(Math.round(expected[i]), dst[i] & 0xFF);
+
+        PixelKernels.max(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, dst);
+        expected = reduce(values, true);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals((int) expected[i], dst[i] & 0xFF);
+
+        PixelKernels.skip(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, dst);
+        for (int y = 0; y < DST_HEIGHT; ++y)
+            for (int x = 0; x < DST_WIDTH; ++x)
+                assertEquals(src[y * ROW_SKIP * WIDTH + x * COL_SKIP],
+                        dst[y * DST_WIDTH + x]);
+
+        int[] minMax = PixelKernels.findMinAndMax(new byte[] { 5, -1, 7, 0 },
+                0, 4);
+        assertEquals(0, minMax[0]);
+        assertEquals(255, minMax[1]);
+    }
+
+    public void testShortKernels()
+    {
+        short[] src = new short[WIDTH * HEIGHT];
+        Random random = new Random(2);
+        double[] signed = new double[src.length];
+        double[] unsigned = new double[src.length];
+        for (int i = 0; i < src.length; ++i)
+        {
+            src[i] = (short) random.nextInt();
+            signed[i] = src[i];
+            unsigned[i] = src[i] & 0xFFFF;
+        }
+
+        short[] dst = new short[DST_WIDTH * DST_HEIGHT];
+        PixelKernels.max(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, true, dst);
+        double[] expected = reduce(unsigned, true);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals((int) expected[i], dst[i] & 0xFFFF);
+
+        PixelKernels.max(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, false, dst);
+        expected = reduce(signed, true);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals((int) expected[i], dst[i]);
+
+        PixelKernels.average(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, false,
+                dst);
+        expected = reduce(signed, false);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals(expected[i], dst[i], 0.5);
+
+        int[] minMax = PixelKernels.findMinAndMax(new short[] { -2, 3, 9 }, 0,
+                3, true);
+        assertEquals(3, minMax[0]);
+        assertEquals(65534, minMax[1]);
+    }
+
+    public void testFloatKernels()
+    {
+        float[] src = new float[WIDTH * HEIGHT];
+        double[] values = new double[src.length];
+        Random random = new Random(3);
+        for (int i = 0; i < src.length; ++i)
+            values[i] = src[i] = random.nextFloat() * 100 - 50;
+
+        float[] dst = new float[DST_WIDTH * DST_HEIGHT];
+        PixelKernels.average(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, dst);
+        double[] expected = reduce(values, false);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals(expected[i], dst[i], 1e-4);
+
+        PixelKernels.max(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, dst);
+        expected = reduce(values, true);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals(expected[i], dst[i], 0);
+
+        // infinities and NaN are ignored
+        float[] minMax = PixelKernels.findMinAndMax(new float[] { 1f,
+                Float.POSITIVE_INFINITY, -3f, Float.NaN,
+                Float.NEGATIVE_INFINITY }, 0, 5);
+        assertEquals(-3f, minMax[0], 0f);
+        assertEquals(1f, minMax[1], 0f);
+    }
+
+    public void testDoubleKernels()
+    {
+        double[] src = new double[WIDTH * HEIGHT];
+        Random random = new Random(4);
+        for (int i = 0; i < src.length; ++i)
+            src[i] = random.nextGaussian();
+
+        double[] dst = new double[DST_WIDTH * DST_HEIGHT];
+        PixelKernels.average(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, dst);
+        double[] expected = reduce(src, false);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals(expected[i], dst[i], 1e-12);
+
+        PixelKernels.max(src, WIDTH, HEIGHT, ROW_SKIP, COL_SKIP, dst);
+        expected = reduce(src, true);
+        for (int i = 0; i < dst.length; ++i)
+            assertEquals(expected[i], dst[i], 0);
+
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < src.length; ++i)
+        {
+            min = Math.min(min, src[i]);
+            max = Math.max(max, src[i]);
+        }
+        double[] minMax = PixelKernels.findMinAndMax(src, 0, src.length);
+        assertEquals(min, minMax[0], 0);
+        assertEquals(max, minMax[1], 0);
+    }
+}
@@ -22,10 +22,43 @@
 
 package nitf.imageio;
 
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOReadProgressListener;
 import javax.imageio.spi.IIORegistry;
 
 import junit.framework.TestCase;
+import nitf.DetectDownSampler;
+import nitf.DownSampler;
+import nitf.GaussianDownSampler;
+import nitf.IOHandle;
+import nitf.ImageSource;
+import nitf.ImageSubheader;
+import nitf.MemorySource;
+import nitf.NITFException;
+import nitf.Reader;
+import nitf.Record;
+import nitf.SubWindow;
+import nitf.Version;
+import nitf.Writer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -38,6 +71,7 @@ public class ReaderTest extends TestCase
     {
         IIORegistry registry = IIORegistry.getDefaultInstance();
         registry.registerServiceProvider(new NITFReaderSpi());
+        registry.registerServiceProvider(new NITFWriterSpi());
     }
 
     public void testInstalled()
@@ -46,4 +80,829 @@ public class ReaderTest extends TestCase
         assertTrue(ImageIO.getImageReadersBySuffix("nitf").hasNext());
         assertTrue(ImageIO.getImageReadersBySuffix("nsf").hasNext());
     }
+
+    public void testReadAsRenderedImage() throws Exception
+    {
+        BufferedImage image = new BufferedImage(300, 200,
+                BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, (x * 211 + y * 17) % 65536);
+
+        File file = File.createTempFile("ReaderTest", ".ntf");
+        try
+        {
+            ImageWriter writer = ImageIO.getImageWritersBySuffix("ntf").next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(128, 64, 0, 0);
+            writer.setOutput(file);
+            writer.write(null, new IIOImage(image, null, null), param);
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+            RenderedImage rendered = reader.readAsRenderedImage(0, null);
+            assertEquals(128, rendered.getTileWidth());
+            assertEquals(64, rendered.getTileHeight());
+            assertEquals(3, rendered.getNumXTiles());
+            assertEquals(4, rendered.getNumYTiles());
+
+            Raster tile = rendered.getTile(2, 3);
+            assertEquals(256, tile.getMinX());
+            assertEquals(192, tile.getMinY());
+            assertEquals(raster.getSample(299, 199, 0), tile.getSample(299,
+                    199, 0));
+
+            Raster data = rendered.getData();
+            for (int y = 0; y < image.getHeight(); ++y)
+                for (int x = 0; x < image.getWidth(); ++x)
+                    assertEquals(raster.getSample(x, y, 0), data.getSample(x,
+                            y, 0));
+            ((NITFRenderedImage) rendered).dispose();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testTileCacheReleasesOwners() throws Exception
+    {
+        TileCache cache = new TileCache(TileCache.DEFAULT_MEMORY_CAPACITY);
+        Object owner = new Object();
+        cache.addTile(owner, 0, 0, Raster.createBandedRaster(
+                DataBuffer.TYPE_BYTE, 8, 8, 1, null));
+        assertEquals(64, cache.getMemoryUsage());
+        assertNotNull(cache.getTile(owner, 0, 0));
+
+        // the cache does not keep the owner alive
+        owner = null;
+        for (int i = 0; i < 100 && cache.getMemoryUsage() > 0; ++i)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, cache.getMemoryUsage());
+    }
+
+    private File writeTestImage(BufferedImage image, int tileWidth,
+            int tileHeight) throws Exception
+    {
+        File file = File.createTempFile("ReaderTest", ".ntf");
+        ImageWriter writer = ImageIO.getImageWritersBySuffix("ntf").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(tileWidth, tileHeight, 0, 0);
+        writer.setOutput(file);
+        writer.write(null, new IIOImage(image, null, null), param);
+        return file;
+    }
+
+    public void testReadSubsampledRegion() throws Exception
+    {
+        BufferedImage image = new BufferedImage(150, 100,
+                BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, x * 300 + y);
+
+        File file = writeTestImage(image, 16, 16);
+        try
+        {
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+
+            // the column skip is larger than a block
+            int[][] subsampling = { { 1, 1 }, { 2, 3 }, { 20, 3 } };
+            for (int i = 0; i < subsampling.length; ++i)
+            {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new java.awt.Rectangle(5, 7, 120, 80));
+                param.setSourceSubsampling(subsampling[i][0],
+                        subsampling[i][1], 0, 0);
+                Raster actual = reader.readRaster(0, param);
+                assertEquals((120 + subsampling[i][0] - 1)
+                        / subsampling[i][0], actual.getWidth());
+                for (int y = 0; y < actual.getHeight(); ++y)
+                    for (int x = 0; x < actual.getWidth(); ++x)
+                        assertEquals(raster.getSample(5 + x
+                                * subsampling[i][0], 7 + y * subsampling[i][1],
+                                0), actual.getSample(x, y, 0));
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testReadProgressAndAbort() throws Exception
+    {
+        BufferedImage image = new BufferedImage(64, 128,
+                BufferedImage.TYPE_BYTE_GRAY);
+        File file = writeTestImage(image, 64, 16);
+        try
+        {
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+            final int[] counts = new int[3];
+            reader.addIIOReadProgressListener(new IIOReadProgressListener()
+            {
+                public void imageProgress(ImageReader source,
+                        float percentageDone)
+                {
+                    counts[0]++;
+                    if (percentageDone >= 50)
+                        source.abort();
+                }
+
+                public void imageComplete(ImageReader source)
+                {
+                    counts[1]++;
+                }
+
+                public void readAborted(ImageReader source)
+                {
+                    counts[2]++;
+                }
+
+                public void imageStarted(ImageReader source, int imageIndex)
+                {
+                }
+
+                public void sequenceStarted(ImageReader source, int minIndex)
+                {
+                }
+
+                public void sequenceComplete(ImageReader source)
+                {
+                }
+
+                public void thumbnailStarted(ImageReader source,
+                        int imageIndex, int thumbnailIndex)
+                {
+                }
+
+                public void thumbnailProgress(ImageReader source,
+                        float percentageDone)
+                {
+                }
+
+                public void thumbnailComplete(ImageReader source)
+                {
+                }
+            });
+            reader.read(0);
+
+            // one progress report per block row, until the abort
+            assertEquals(4, counts[0]);
+            assertEquals(0, counts[1]);
+            assertEquals(1, counts[2]);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testReadThumbnail() throws Exception
+    {
+        BufferedImage image = new BufferedImage(1000, 600,
+                BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, (x + y * 3) % 256);
+
+        File file = writeTestImage(image, 128, 128);
+        File sidecar = OverviewBuilder.getSidecarFile(file);
+        try
+        {
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+            assertTrue(reader.readerSupportsThumbnails());
+            assertTrue(reader.hasThumbnails(0));
+            assertEquals(250, reader.getThumbnailWidth(0, 0));
+            assertEquals(150, reader.getThumbnailHeight(0, 0));
+
+            // no overviews, so every 4th pixel of every 4th row
+            BufferedImage thumbnail = reader.readThumbnail(0, 0);
+            assertEquals(250, thumbnail.getWidth());
+            assertEquals(150, thumbnail.getHeight());
+            Raster actual = thumbnail.getRaster();
+            for (int y = 0; y < actual.getHeight(); ++y)
+                for (int x = 0; x < actual.getWidth(); ++x)
+                    assertEquals(raster.getSample(4 * x, 4 * y, 0), actual
+                            .getSample(x, y, 0));
+
+            // with overviews, the thumbnail is the 4x level
+            new OverviewBuilder(file).build();
+            reader = ImageIO.getImageReadersBySuffix("ntf").next();
+            reader.setInput(file);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(4, 4, 0, 0);
+            Raster expected = reader.readRaster(0, param);
+            actual = reader.readThumbnail(0, 0).getRaster();
+            for (int y = 0; y < actual.getHeight(); ++y)
+                for (int x = 0; x < actual.getWidth(); ++x)
+                    assertEquals(expected.getSample(x, y, 0), actual
+                            .getSample(x, y, 0));
+        }
+        finally
+        {
+            file.delete();
+            sidecar.delete();
+        }
+    }
+
+    /**
+     * Averages byte pixels over each sample window, in Java
+     */
+    private static class MeanDownSampler extends DownSampler
+    {
+        private final int rowSkip;
+
+        private final int colSkip;
+
+        int numCalls = 0;
+
+        MeanDownSampler(int rowSkip, int colSkip)
+        {
+            this.rowSkip = rowSkip;
+            this.colSkip = colSkip;
+        }
+
+        protected boolean apply(ByteBuffer[] inputWindows,
+                ByteBuffer[] outputWindows, int numBands, int numWindowRows,
+                int numWindowCols, int numInputCols, int numSubWindowCols,
+                int pixelType, int pixelSize, int rowsInLastWindow,
+                int colsInLastWindow) throws NITFException
+        {
+            ++numCalls;
+            if (pixelSize != 1)
+                return false;
+            for (int band = 0; band < numBands; ++band)
+            {
+                ByteBuffer in = inputWindows[band];
+                ByteBuffer out = outputWindows[band];
+                for (int row = 0; row < numWindowRows; ++row)
+                {
+                    int rows = row < numWindowRows - 1 ? rowSkip
+                            : rowsInLastWindow;
+                    for (int col = 0; col < numWindowCols; ++col)
+                    {
+                        int cols = col < numWindowCols - 1 ? colSkip
+                                : colsInLastWindow;
+                        int sum = 0;
+                        for (int y = 0; y < rows; ++y)
+                            for (int x = 0; x < cols; ++x)
+                                sum += in.get((row * rowSkip + y)
+                                        * numInputCols + col * colSkip + x) & 0xFF;
+                        out.put(row * numSubWindowCols + col,
+                                (byte) (sum / (rows * cols)));
+                    }
+                }
+            }
+            return true;
+        }
+
+        public int getRowSkip()
+        {
+            return rowSkip;
+        }
+
+        public int getColSkip()
+        {
+            return colSkip;
+        }
+
+        public int getMinSupportedBands()
+        {
+            return 1;
+        }
+
+        public int getMaxSupportedBands()
+        {
+            return 0;
+        }
+
+        public boolean isMultiBand()
+        {
+            return false;
+        }
+    }
+
+    public void testReadWithJavaDownSampler() throws Exception
+    {
+        BufferedImage image = new BufferedImage(100, 70,
+                BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, (x * 7 + y * 13) % 256);
+
+        File file = writeTestImage(image, 32, 32);
+        try
+        {
+            IOHandle handle = new IOHandle(file.getAbsolutePath());
+            Reader reader = new Reader();
+            Record record = reader.read(handle);
+            assertEquals(1, record.getImages().length);
+            nitf.ImageReader imageReader = reader.getNewImageReader(0);
+
+            MeanDownSampler downSampler = new MeanDownSampler(3, 2);
+            SubWindow window = new SubWindow();
+            window.setStartRow(4);
+            window.setStartCol(1);
+            window.setNumRows(20);
+            window.setNumCols(45);
+            window.setNumBands(1);
+            window.setBandList(new int[] { 0 });
+            window.setDownSampler(downSampler);
+            assertSame(downSampler, window.getDownSampler());
+
+            byte[][] buf = new byte[1][20 * 45];
+            imageReader.read(window, buf);
+            assertTrue(downSampler.numCalls > 0);
+
+            for (int y = 0; y < 20; ++y)
+            {
+                for (int x = 0; x < 45; ++x)
+                {
+                    int sum = 0;
+                    for (int dy = 0; dy < 3; ++dy)
+                        for (int dx = 0; dx < 2; ++dx)
+                            sum += raster.getSample(1 + 2 * x + dx, 4 + 3 * y
+                                    + dy, 0);
+                    assertEquals("pixel " + x + ", " + y, sum / 6,
+                            buf[0][y * 45 + x] & 0xFF);
+                }
+            }
+
+            handle.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Gaussian weights of the skip + 2 * halo rows or columns of a kernel
+     */
+    private static double[] gaussianWeights(int skip, int halo, double sigma)
+    {
+        double[] weights = new double[skip + 2 * halo];
+        double center = halo + (skip - 1) / 2.0;
+        double sum = 0;
+        for (int i = 0; i < weights.length; ++i)
+        {
+            weights[i] = Math.exp(-(i - center) * (i - center)
+                    / (2 * sigma * sigma));
+            sum += weights[i];
+        }
+        for (int i = 0; i < weights.length; ++i)
+            weights[i] /= sum;
+        return weights;
+    }
+
+    public void testReadGaussian() throws Exception
+    {
+        BufferedImage image = new BufferedImage(100, 70,
+                BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, (x * 7 + y * 13) % 256);
+
+        File file = writeTestImage(image, 32, 32);
+        try
+        {
+            IOHandle handle = new IOHandle(file.getAbsolutePath());
+            Reader reader = new Reader();
+            reader.read(handle);
+            nitf.ImageReader imageReader = reader.getNewImageReader(0);
+
+            // sigmas of 1 row and 1.5 columns reach 5 pixels past a window
+            GaussianDownSampler downSampler = new GaussianDownSampler(2, 3);
+            assertEquals(5, downSampler.getHalo());
+            double[] rowWeights = gaussianWeights(2, 5, 1);
+            double[] colWeights = gaussianWeights(3, 5, 1.5);
+
+            // the whole image, in several strips, and a window inside it
+            int[][] windows = { { 0, 0, 35, 34 }, { 9, 13, 20, 20 } };
+            for (int[] w : windows)
+            {
+                SubWindow window = new SubWindow();
+                window.setStartRow(w[0]);
+                window.setStartCol(w[1]);
+                window.setNumRows(w[2]);
+                window.setNumCols(w[3]);
+                window.setNumBands(1);
+                window.setBandList(new int[] { 0 });
+                window.setDownSampler(downSampler);
+
+                byte[][] buf = new byte[1][w[2] * w[3]];
+                imageReader.read(window, buf);
+
+                for (int y = 0; y < w[2]; ++y)
+                {
+                    for (int x = 0; x < w[3]; ++x)
+                    {
+                        // the edge pixels are repeated past the edges
+                        double sum = 0;
+                        for (int ky = 0; ky < rowWeights.length; ++ky)
+                        {
+                            int row = Math.min(69, Math.max(0, w[0] + 2 * y
+                                    + ky - 5));
+                            double rowSum = 0;
+                            for (int kx = 0; kx < colWeights.length; ++kx)
+                            {
+                                int col = Math.min(99, Math.max(0, w[1] + 3
+                                        * x + kx - 5));
+                                rowSum += colWeights[kx]
+                                        * raster.getSample(col, row, 0);
+                            }
+                            sum += rowWeights[ky] * rowSum;
+                        }
+                        assertEquals("pixel " + x + ", " + y, sum,
+                                buf[0][y * w[3] + x] & 0xFF, 0.5 + 1e-6);
+                    }
+                }
+            }
+
+            handle.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static short[] readShorts(nitf.ImageReader imageReader,
+            SubWindow window, int band) throws NITFException
+    {
+        byte[][] buf = new byte[window.getNumBands()][window.getNumRows()
+                * window.getNumCols() * 2];
+        imageReader.read(window, buf);
+        ShortBuffer shorts = ByteBuffer.wrap(buf[band]).order(
+                ByteOrder.nativeOrder()).asShortBuffer();
+        short[] data = new short[shorts.remaining()];
+        shorts.get(data);
+        return data;
+    }
+
+    public void testReadDetected() throws Exception
+    {
+        // two band I/Q, written band interleaved by pixel
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace
+                .getInstance(ColorSpace.CS_GRAY), true, false,
+                Transparency.TRANSLUCENT, DataBuffer.TYPE_SHORT);
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(70,
+                50);
+        for (int y = 0; y < raster.getHeight(); ++y)
+        {
+            for (int x = 0; x < raster.getWidth(); ++x)
+            {
+                raster.setSample(x, y, 0, (x * 7 + y * 5) % 200 - 100);
+                raster.setSample(x, y, 1, (x * 3 + y * 11) % 150 - 75);
+            }
+        }
+        BufferedImage image = new BufferedImage(colorModel, raster, false,
+                null);
+
+        File file = File.createTempFile("ReaderTest", ".ntf");
+        try
+        {
+            NITFWriter writer = (NITFWriter) new NITFWriterSpi()
+                    .createWriterInstance(null);
+            NITFImageWriteParam param = (NITFImageWriteParam) writer
+                    .getDefaultWriteParam();
+            param.setImageMode(NITFImageWriteParam.MODE_PIXEL);
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(32, 32, 0, 0);
+            writer.setOutput(file);
+            writer.write(null, new IIOImage(image, null, null), param);
+
+            IOHandle handle = new IOHandle(file.getAbsolutePath());
+            Reader reader = new Reader();
+            Record record = reader.read(handle);
+            assertEquals("P", record.getImages()[0].getSubheader()
+                    .getImageMode().getStringData());
+            nitf.ImageReader imageReader = reader.getNewImageReader(0);
+
+            // full resolution magnitude
+            SubWindow window = new SubWindow();
+            window.setNumRows(50);
+            window.setNumCols(70);
+            window.setNumBands(2);
+            window.setBandList(new int[] { 0, 1 });
+            window.setDownSampler(new DetectDownSampler(1, 1,
+                    DetectDownSampler.MAGNITUDE));
+            short[] actual = readShorts(imageReader, window, 1);
+            for (int y = 0; y < 50; ++y)
+            {
+                for (int x = 0; x < 70; ++x)
+                {
+                    double i = raster.getSample(x, y, 0);
+                    double q = raster.getSample(x, y, 1);
+                    assertEquals("pixel " + x + ", " + y, Math.round(Math
+                            .sqrt(i * i + q * q)), actual[y * 70 + x]);
+                }
+            }
+
+            // reduced resolution decibels, remapped, with partial windows
+            window.setStartRow(3);
+            window.setStartCol(2);
+            window.setNumRows(24);
+            window.setNumCols(23);
+            window.setDownSampler(new DetectDownSampler(2, 3,
+                    DetectDownSampler.DECIBELS, 10, 50));
+            actual = readShorts(imageReader, window, 0);
+            for (int y = 0; y < 24; ++y)
+            {
+                for (int x = 0; x < 23; ++x)
+                {
+                    double power = 0;
+                    int count = 0;
+                    for (int dy = 0; dy < 2 && 3 + 2 * y + dy < 50; ++dy)
+                    {
+                        for (int dx = 0; dx < 3 && 2 + 3 * x + dx < 70; ++dx)
+                        {
+                            double i = raster.getSample(2 + 3 * x + dx, 3 + 2
+                                    * y + dy, 0);
+                            double q = raster.getSample(2 + 3 * x + dx, 3 + 2
+                                    * y + dy, 1);
+                            power += i * i + q * q;
+                            ++count;
+                        }
+                    }
+                    double db = 10 * Math.log10(power / count);
+                    double expected = Math.min(255, Math.max(0,
+                            (db - 10) * 255 / 40));
+                    assertEquals("pixel " + x + ", " + y, expected,
+                            actual[y * 23 + x], 0.5);
+                }
+            }
+
+            handle.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes a single band image, in 8x4 blocks, from the unpacked (ABPP bit)
+     * values, which are bit packed if NBPP is not a multiple of 8
+     */
+    private static File writeBlockedImage(int[][] values, String pvType,
+            int nbpp, int abpp, String pjust, String compression)
+            throws Exception
+    {
+        int numRows = values.length;
+        int numCols = values[0].length;
+        int pixelSize = nbpp <= 8 ? 1 : 2;
+        ByteBuffer data = ByteBuffer.allocate(numRows * numCols * pixelSize)
+                .order(ByteOrder.nativeOrder());
+        for (int y = 0; y < numRows; ++y)
+        {
+            for (int x = 0; x < numCols; ++x)
+            {
+                if (pixelSize == 1)
+                    data.put((byte) values[y][x]);
+                else
+                    data.putShort((short) values[y][x]);
+            }
+        }
+
+        Record record = new Record(Version.NITF_21);
+        NITFWriter.fillHeader(record.getHeader());
+        ImageSubheader subheader = record.newImageSegment().getSubheader();
+        subheader.getFilePartType().setData("IM");
+        subheader.getImageId().setData("PACKED");
+        subheader.getImageSecurityClass().setData("U");
+        subheader.getEncrypted().setData("0");
+        subheader.getImageSource().setData(" ");
+        subheader.getNumRows().setData(String.valueOf(numRows));
+        subheader.getNumCols().setData(String.valueOf(numCols));
+        subheader.getPixelValueType().setData(pvType);
+        subheader.getImageRepresentation().setData("MONO");
+        subheader.getImageCategory().setData("VIS");
+        subheader.getActualBitsPerPixel().setData(String.valueOf(abpp));
+        subheader.getPixelJustification().setData(pjust);
+        subheader.getImageCoordinateSystem().setData(" ");
+        subheader.getImageCompression().setData(compression);
+        subheader.getImageSyncCode().setData("0");
+        subheader.getImageMode().setData("B");
+        subheader.getNumBlocksPerRow().setData(
+                String.valueOf((numCols + 7) / 8));
+        subheader.getNumBlocksPerCol().setData(
+                String.valueOf((numRows + 3) / 4));
+        subheader.getNumPixelsPerHorizBlock().setData("8");
+        subheader.getNumPixelsPerVertBlock().setData("4");
+        subheader.getNumBitsPerPixel().setData(String.valueOf(nbpp));
+        subheader.getImageDisplayLevel().setData("1");
+        subheader.getImageAttachmentLevel().setData("0");
+        subheader.getImageLocation().setData("0000000000");
+        subheader.getImageMagnification().setData("1.0");
+        subheader.createBands(1);
+        subheader.getBandInfo()[0].getRepresentation().setData("M");
+        subheader.getBandInfo()[0].getImageFilterCondition().setData("N");
+        subheader.getBandInfo()[0].getNumLUTs().setData("0");
+
+        ImageSource source = new ImageSource();
+        source.addBand(new MemorySource(data.array(), data.capacity(), 0, 0,
+                0));
+
+        File file = File.createTempFile("ReaderTest", ".ntf");
+        IOHandle handle = new IOHandle(file.getAbsolutePath(),
+                IOHandle.NITF_ACCESS_WRITEONLY, IOHandle.NITF_CREATE);
+        try
+        {
+            Writer writer = new Writer();
+            writer.prepare(record, handle);
+            nitf.ImageWriter imageWriter = writer.getNewImageWriter(0);
+            imageWriter.setWriteCaching(true);
+            imageWriter.attachSource(source);
+            writer.write();
+        }
+        finally
+        {
+            handle.close();
+        }
+        return file;
+    }
+
+    public void testReadPacked() throws Exception
+    {
+        // {nbpp, abpp, signed, left justified}
+        int[][] formats = { { 12, 10, 0, 1 }, { 12, 9, 0, 0 },
+                { 11, 11, 1, 0 }, { 5, 3, 1, 1 }, { 1, 1, 0, 0 },
+                { 4, 4, 0, 0 } };
+        for (int f = 0; f < formats.length; ++f)
+        {
+            int nbpp = formats[f][0];
+            int abpp = formats[f][1];
+            boolean signed = formats[f][2] != 0;
+            boolean left = formats[f][3] != 0;
+            String name = nbpp + "/" + abpp + (signed ? " SI" : " INT")
+                    + (left ? " L" : " R");
+
+            int[][] values = new int[7][13];
+            for (int y = 0; y < values.length; ++y)
+            {
+                for (int x = 0; x < values[y].length; ++x)
+                {
+                    int value = (x * 37 + y * 101) % (1 << abpp);
+                    if (signed)
+                        value -= 1 << (abpp - 1);
+                    values[y][x] = value;
+                }
+            }
+
+            File file = writeBlockedImage(values, signed ? "SI" : "INT",
+                    nbpp, abpp, left ? "L" : "R", "NC");
+            try
+            {
+                // the first block is packed MSB first, then padded to a byte
+                long expected = 0;
+                int numBits = 0;
+                byte[] packed = new byte[(32 * nbpp + 7) / 8];
+                int n = 0;
+                for (int y = 0; y < 4; ++y)
+                {
+                    for (int x = 0; x < 8; ++x)
+                    {
+                        int field = values[y][x] & ((1 << abpp) - 1);
+                        if (left)
+                            field <<= nbpp - abpp;
+                        expected = (expected << nbpp) | field;
+                        numBits += nbpp;
+                        while (numBits >= 8)
+                        {
+                            numBits -= 8;
+                            packed[n++] = (byte) (expected >> numBits);
+                        }
+                    }
+                }
+                if (numBits > 0)
+                    packed[n++] = (byte) (expected << (8 - numBits));
+
+                IOHandle handle = new IOHandle(file.getAbsolutePath());
+                try
+                {
+                    Reader reader = new Reader();
+                    long offset = reader.read(handle).getImages()[0]
+                            .getImageOffset();
+                    byte[] actual = new byte[packed.length];
+                    RandomAccessFile raf = new RandomAccessFile(file, "r");
+                    raf.seek(offset);
+                    raf.readFully(actual);
+                    raf.close();
+                    for (int i = 0; i < packed.length; ++i)
+                        assertEquals(name + " byte " + i, packed[i],
+                                actual[i]);
+
+                    // and unpacked to whole bytes or shorts when read
+                    SubWindow window = new SubWindow();
+                    window.setNumRows(7);
+                    window.setNumCols(13);
+                    window.setNumBands(1);
+                    window.setBandList(new int[] { 0 });
+                    short[] shorts = null;
+                    byte[][] bytes = new byte[1][7 * 13];
+                    if (nbpp > 8)
+                        shorts = readShorts(reader.getNewImageReader(0),
+                                window, 0);
+                    else
+                        reader.getNewImageReader(0).read(window, bytes);
+                    for (int y = 0; y < values.length; ++y)
+                    {
+                        for (int x = 0; x < values[y].length; ++x)
+                        {
+                            int i = y * 13 + x;
+                            int sample = nbpp > 8 ? shorts[i] : bytes[0][i];
+                            if (!signed)
+                                sample &= nbpp > 8 ? 0xffff : 0xff;
+                            assertEquals(name + " pixel " + x + ", " + y,
+                                    values[y][x], sample);
+                        }
+                    }
+                }
+                finally
+                {
+                    handle.close();
+                }
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+    }
+
+    public void testReadBlockMask() throws Exception
+    {
+        // 3x2 blocks, where the middle block of each row is blank
+        int[][] values = new int[8][24];
+        for (int y = 0; y < values.length; ++y)
+            for (int x = 0; x < values[y].length; ++x)
+                values[y][x] = x / 8 == 1 ? 0 : 1 + (x * 7 + y * 3) % 200;
+
+        File file = writeBlockedImage(values, "INT", 8, 8, "R", "NM");
+        IOHandle handle = new IOHandle(file.getAbsolutePath());
+        try
+        {
+            Reader reader = new Reader();
+            Record record = reader.read(handle);
+            nitf.ImageReader imageReader = reader.getNewImageReader(0);
+
+            // blank blocks are not written, so missing from the block mask
+            byte[] status = imageReader.getBlockStatus();
+            assertEquals(6, status.length);
+            boolean[] present = imageReader.getPresentBlocks();
+            assertEquals(6, present.length);
+            for (int i = 0; i < 6; ++i)
+            {
+                boolean blank = i % 3 == 1;
+                assertEquals("block " + i, !blank, present[i]);
+                assertEquals("block " + i,
+                        blank ? nitf.ImageReader.BLOCK_MISSING : 0,
+                        status[i]);
+            }
+
+            // missing blocks read as pad, and the rest as written
+            SubWindow window = new SubWindow();
+            window.setNumRows(8);
+            window.setNumCols(24);
+            window.setNumBands(1);
+            window.setBandList(new int[] { 0 });
+            byte[][] buf = new byte[1][8 * 24];
+            imageReader.read(window, buf);
+            for (int y = 0; y < values.length; ++y)
+                for (int x = 0; x < values[y].length; ++x)
+                    assertEquals("pixel " + x + ", " + y, values[y][x],
+                            buf[0][y * 24 + x] & 0xff);
+
+            // statistics skip the missing blocks
+            ImageStatistics statistics = new StatisticsCalculator(
+                    imageReader, record.getImages()[0].getSubheader())
+                    .compute();
+            assertEquals(4 * 32, statistics.getCount(0));
+            assertTrue(statistics.getMin(0) >= 1);
+        }
+        finally
+        {
+            handle.close();
+            file.delete();
+        }
+    }
 }
@@ -0,0 +1,188 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf.imageio;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+
+import junit.framework.TestCase;
+import nitf.SubWindow;
+
+public class ResamplerTest extends TestCase
+{
+    private File file;
+
+    private NITFReader reader;
+
+    /**
+     * Writes a 16-bit ramp, 3 per column and 5 per row
+     */
+    protected void setUp() throws Exception
+    {
+        BufferedImage image = new BufferedImage(300, 200,
+                BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, 1000 + 3 * x + 5 * y);
+
+        file = File.createTempFile("ResamplerTest", ".ntf");
+        NITFWriter writer = (NITFWriter) new NITFWriterSpi()
+                .createWriterInstance(null);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(64, 64, 0, 0);
+        writer.setOutput(file);
+        writer.write(null, new IIOImage(image, null, null), param);
+
+        reader = (NITFReader) new NITFReaderSpi().createReaderInstance(null);
+        reader.setInput(file);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        file.delete();
+    }
+
+    private static SubWindow createWindow(int x, int y, int width, int height)
+            throws Exception
+    {
+        SubWindow window = new SubWindow();
+        window.setStartCol(x);
+        window.setStartRow(y);
+        window.setNumCols(width);
+        window.setNumRows(height);
+        window.setNumBands(1);
+        window.setBandList(new int[] { 0 });
+        return window;
+    }
+
+    /**
+     * The kernels reproduce a ramp, away from the image edges, when enlarging
+     * and when reducing. Reductions are averaged as they are read, which
+     * leaves the kernel fewer, coarser taps, so they are less exact.
+     */
+    public void testRamp() throws Exception
+    {
+        Resampler resampler = reader.getResampler(0);
+        Resampler.Kernel[] kernels = Resampler.Kernel.values();
+        int[][] sizes = { { 97, 61 }, { 25, 17 } };
+        for (int k = 0; k < kernels.length; ++k)
+        {
+            resampler.setKernel(kernels[k]);
+            for (int s = 0; s < sizes.length; ++s)
+            {
+                int width = sizes[s][0];
+                int height = sizes[s][1];
+                double tolerance = width < 150 ? 2.5 : 1.0;
+                Raster actual = resampler.resample(createWindow(60, 50, 150,
+                        100), width, height);
+                assertEquals(DataBuffer.TYPE_USHORT, actual.getSampleModel()
+                        .getDataType());
+                assertEquals(width, actual.getWidth());
+                assertEquals(height, actual.getHeight());
+                for (int y = 0; y < height; ++y)
+                {
+                    for (int x = 0; x < width; ++x)
+                    {
+                        // source position of the output pixel center
+                        double srcX = 60 + (x + 0.5) * 150 / width - 0.5;
+                        double srcY = 50 + (y + 0.5) * 100 / height - 0.5;
+                        assertEquals(kernels[k] + " pixel " + x + ", " + y,
+                                1000 + 3 * srcX + 5 * srcY, actual.getSample(
+                                        x, y, 0), tolerance);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The result does not depend on how the output is split into tiles
+     */
+    public void testTiling() throws Exception
+    {
+        Resampler resampler = reader.getResampler(0);
+        resampler.setKernel(Resampler.Kernel.LANCZOS);
+        SubWindow window = createWindow(0, 0, 300, 200);
+        resampler.setNumThreads(1);
+        resampler.setTileSize(1000);
+        Raster expected = resampler.resample(window, 410, 133);
+
+        resampler.setNumThreads(3);
+        resampler.setTileSize(37);
+        Raster actual = resampler.resample(window, 410, 133);
+        for (int y = 0; y < expected.getHeight(); ++y)
+            for (int x = 0; x < expected.getWidth(); ++x)
+                assertEquals(expected.getSample(x, y, 0), actual.getSample(x,
+                        y, 0));
+
+        // the edges are clamped, not faded to zero
+        assertTrue(actual.getSample(0, 0, 0) >= 1000);
+        assertTrue(actual.getSample(409, 132, 0) <= 1000 + 3 * 299 + 5 * 199);
+    }
+
+    /**
+     * Large reductions are averaged as they are read; the mean of each window
+     * of a ramp is the ramp at its center
+     */
+    public void testLargeReduction() throws Exception
+    {
+        Resampler resampler = reader.getResampler(0);
+        Resampler.Kernel[] kernels = Resampler.Kernel.values();
+        for (int k = 0; k < kernels.length; ++k)
+        {
+            resampler.setKernel(kernels[k]);
+            Raster actual = resampler.resample(createWindow(0, 0, 300, 200),
+                    5, 4);
+            for (int y = 0; y < 4; ++y)
+            {
+                for (int x = 0; x < 5; ++x)
+                {
+                    double srcX = (x + 0.5) * 60 - 0.5;
+                    double srcY = (y + 0.5) * 50 - 0.5;
+                    assertEquals(kernels[k] + " pixel " + x + ", " + y,
+                            1000 + 3 * srcX + 5 * srcY, actual.getSample(x,
+                                    y, 0), 1.0);
+                }
+            }
+        }
+    }
+
+    public void testSameSize() throws Exception
+    {
+        Resampler resampler = reader.getResampler(0);
+        resampler.setKernel(Resampler.Kernel.BICUBIC);
+        Raster actual = resampler.resample(createWindow(17, 9, 40, 30), 40, 30);
+        for (int y = 0; y < 30; ++y)
+            for (int x = 0; x < 40; ++x)
+                assertEquals(1000 + 3 * (17 + x) + 5 * (9 + y), actual
+                        .getSample(x, y, 0));
+    }
+}
@@ -0,0 +1,275 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf.imageio;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.util.Arrays;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+
+import junit.framework.TestCase;
+import nitf.IOHandle;
+import nitf.Reader;
+import nitf.Record;
+
+public class StatisticsCalculatorTest extends TestCase
+{
+    private File file;
+
+    protected void tearDown() throws Exception
+    {
+        if (file != null)
+        {
+            OverviewBuilder.getSidecarFile(file).delete();
+            file.delete();
+        }
+    }
+
+    private void write(BufferedImage image) throws Exception
+    {
+        file = File.createTempFile("StatisticsCalculatorTest", ".ntf");
+        NITFWriter writer = (NITFWriter) new NITFWriterSpi()
+                .createWriterInstance(null);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(64, 64, 0, 0);
+        writer.setOutput(file);
+        writer.write(null, new IIOImage(image, null, null), param);
+    }
+
+    private NITFReader createReader() throws Exception
+    {
+        NITFReader reader = (NITFReader) new NITFReaderSpi()
+                .createReaderInstance(null);
+        reader.setInput(file);
+        return reader;
+    }
+
+    private StatisticsCalculator createCalculator() throws Exception
+    {
+        IOHandle handle = new IOHandle(file.getAbsolutePath());
+        Reader reader = new Reader();
+        Record record = reader.read(handle);
+        return new StatisticsCalculator(reader.getNewImageReader(0), record
+                .getImages()[0].getSubheader());
+    }
+
+    /**
+     * Writes a 16-bit image of 0 to 999, in blocks with partial edges
+     */
+    private Raster writeShorts(int width, int height) throws Exception
+    {
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                raster.setSample(x, y, 0, (x * 37 + y * 11) % 1000);
+        write(image);
+        return raster;
+    }
+
+    private static void assertStatistics(Raster raster, double padValue,
+            ImageStatistics statistics)
+    {
+        long count = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < raster.getHeight(); ++y)
+        {
+            for (int x = 0; x < raster.getWidth(); ++x)
+            {
+                double value = raster.getSampleDouble(x, y, 0);
+                if (value == padValue)
+                    continue;
+                ++count;
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        double mean = sum / count;
+        double sumSquares = 0;
+        for (int y = 0; y < raster.getHeight(); ++y)
+        {
+            for (int x = 0; x < raster.getWidth(); ++x)
+            {
+                double value = raster.getSampleDouble(x, y, 0);
+                if (value != padValue)
+                    sumSquares += (value - mean) * (value - mean);
+            }
+        }
+
+        assertEquals(1, statistics.getNumBands());
+        assertEquals(count, statistics.getCount(0));
+        assertEquals(count, statistics.getHistogram(0).getTotal());
+        assertEquals(min, statistics.getMin(0), 0);
+        assertEquals(max, statistics.getMax(0), 0);
+        assertEquals(mean, statistics.getMean(0), 1e-6);
+        assertEquals(Math.sqrt(sumSquares / count), statistics
+                .getStandardDeviation(0), 1e-6);
+    }
+
+    public void testIntegers() throws Exception
+    {
+        Raster raster = writeShorts(150, 130);
+        StatisticsCalculator calculator = createCalculator();
+        calculator.setNumThreads(4);
+        ImageStatistics statistics = calculator.compute();
+        assertStatistics(raster, Double.NaN, statistics);
+        assertFalse(statistics.isEstimate());
+
+        // one bin per value, so the percentiles are exact
+        Histogram histogram = statistics.getHistogram(0);
+        assertEquals(65536, histogram.getNumBins());
+        long below = 0;
+        for (int y = 0; y < raster.getHeight(); ++y)
+            for (int x = 0; x < raster.getWidth(); ++x)
+                if (raster.getSample(x, y, 0) < 500)
+                    ++below;
+        long cumulative = 0;
+        for (int i = 0; i < 500; ++i)
+            cumulative += histogram.getCount(i);
+        assertEquals(below, cumulative);
+        assertEquals(0.0, statistics.getPercentile(0, 0), 0);
+        assertEquals(999.0, statistics.getPercentile(0, 100), 0);
+
+        // the same with one thread
+        calculator.setNumThreads(1);
+        ImageStatistics single = calculator.compute();
+        assertEquals(statistics.getMean(0), single.getMean(0), 1e-9);
+        assertEquals(statistics.getStandardDeviation(0), single
+                .getStandardDeviation(0), 1e-9);
+        for (int i = 0; i < 1000; ++i)
+            assertEquals(histogram.getCount(i), single.getHistogram(0)
+                    .getCount(i));
+    }
+
+    public void testPadValue() throws Exception
+    {
+        Raster raster = writeShorts(150, 130);
+        StatisticsCalculator calculator = createCalculator();
+        calculator.setPadValue(0);
+        ImageStatistics statistics = calculator.compute();
+        assertStatistics(raster, 0, statistics);
+        assertEquals(0, statistics.getHistogram(0).getCount(0));
+        assertTrue(statistics.getMin(0) > 0);
+    }
+
+    public void testReals() throws Exception
+    {
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace
+                .getInstance(ColorSpace.CS_GRAY), false, false,
+                Transparency.OPAQUE, DataBuffer.TYPE_FLOAT);
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(140,
+                90);
+        for (int y = 0; y < raster.getHeight(); ++y)
+            for (int x = 0; x < raster.getWidth(); ++x)
+                raster.setSample(x, y, 0, (float) Math.sin(x * 0.1 + y * 0.03)
+                        * 50 - 7.25f);
+        write(new BufferedImage(colorModel, raster, false, null));
+
+        StatisticsCalculator calculator = createCalculator();
+        calculator.setNumThreads(3);
+        ImageStatistics statistics = calculator.compute();
+        assertStatistics(raster, Double.NaN, statistics);
+        Histogram histogram = statistics.getHistogram(0);
+        assertEquals(StatisticsCalculator.DEFAULT_NUM_BINS, histogram
+                .getNumBins());
+        float[] sorted = raster.getSamples(0, 0, raster.getWidth(), raster
+                .getHeight(), 0, (float[]) null);
+        Arrays.sort(sorted);
+        assertEquals(sorted[(sorted.length - 1) / 2], statistics.getPercentile(
+                0, 50), histogram.getBinWidth());
+
+        calculator.setHistogramRange(-100, 100);
+        calculator.setNumBins(200);
+        histogram = calculator.compute().getHistogram(0);
+        assertEquals(-100.0, histogram.getMin(), 0);
+        assertEquals(200, histogram.getNumBins());
+        assertEquals(0, histogram.getCount(0));
+        assertEquals(raster.getWidth() * raster.getHeight(), histogram
+                .getTotal());
+    }
+
+    public void testCachedAndEstimated() throws Exception
+    {
+        // large enough for one overview level
+        writeShorts(300, 260);
+        new OverviewBuilder(file).build();
+
+        NITFReader reader = createReader();
+        ImageStatistics statistics = reader.getStatistics(0);
+        assertSame(statistics, createReader().getStatistics(0));
+
+        assertEquals(1, reader.getNumOverviews(0));
+        ImageStatistics estimate = reader.getStatistics(0, 1);
+        assertTrue(estimate.isEstimate());
+        assertEquals(1, estimate.getOverviewLevel());
+        assertEquals(150 * 130, estimate.getCount(0));
+        assertEquals(statistics.getMean(0), estimate.getMean(0), 5);
+    }
+
+    public void testSetInput() throws Exception
+    {
+        Raster first = writeShorts(100, 80);
+        File firstFile = file;
+        try
+        {
+            BufferedImage image = new BufferedImage(70, 90,
+                    BufferedImage.TYPE_USHORT_GRAY);
+            WritableRaster second = image.getRaster();
+            for (int y = 0; y < image.getHeight(); ++y)
+                for (int x = 0; x < image.getWidth(); ++x)
+                    second.setSample(x, y, 0, 2000 + x * y);
+            write(image);
+
+            // one reader reads both files, and caches the second correctly
+            NITFReader reader = createReader();
+            reader.setInput(firstFile);
+            assertStatistics(first, Double.NaN, reader.getStatistics(0));
+            assertEquals(100, reader.getWidth(0));
+            reader.setInput(file);
+            assertEquals(70, reader.getWidth(0));
+            assertStatistics(second, Double.NaN, reader.getStatistics(0));
+            assertStatistics(second, Double.NaN, reader.getDisplayPipeline(0)
+                    .getStatistics());
+            assertStatistics(second, Double.NaN, createReader()
+                    .getStatistics(0));
+            reader.dispose();
+        }
+        finally
+        {
+            firstFile.delete();
+        }
+    }
+}
@@ -0,0 +1,1007 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf.imageio;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.spi.IIORegistry;
+
+import junit.framework.TestCase;
+import nitf.ByteProvider;
+import nitf.CompressionOptions;
+import nitf.DirectBlockSource;
+import nitf.HeaderUpdater;
+import nitf.IOHandle;
+import nitf.ImageSource;
+import nitf.ImageSubheader;
+import nitf.MemorySource;
+import nitf.NITFException;
+import nitf.ParallelWriter;
+import nitf.PipelinedWriter;
+import nitf.Reader;
+import nitf.Record;
+import nitf.Version;
+import nitf.Writer;
+
+public class WriterTest extends TestCase
+{
+    static
+    {
+        IIORegistry registry = IIORegistry.getDefaultInstance();
+        registry.registerServiceProvider(new NITFReaderSpi());
+        registry.registerServiceProvider(new NITFWriterSpi());
+    }
+
+    public void testInstalled()
+    {
+        assertTrue(ImageIO.getImageWritersBySuffix("ntf").hasNext());
+        assertTrue(ImageIO.getImageWritersBySuffix("nitf").hasNext());
+        assertTrue(ImageIO.getImageWritersBySuffix("nsf").hasNext());
+    }
+
+    public void testWriteBlocked() throws Exception
+    {
+        BufferedImage image = new BufferedImage(300, 200,
+                BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                image.setRGB(x, y, (x % 256) << 16 | (y % 256) << 8
+                        | ((x + y) % 256));
+
+        File file = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            ImageWriter writer = ImageIO.getImageWritersBySuffix("ntf").next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(128, 128, 0, 0);
+            writer.setOutput(file);
+            writer.write(null, new IIOImage(image, null, null), param);
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+            assertEquals(300, reader.getWidth(0));
+            assertEquals(200, reader.getHeight(0));
+
+            Raster expected = image.getRaster();
+            Raster actual = reader.readRaster(0, null);
+            assertEquals(3, actual.getNumBands());
+            for (int y = 0; y < image.getHeight(); ++y)
+                for (int x = 0; x < image.getWidth(); ++x)
+                    for (int b = 0; b < 3; ++b)
+                        assertEquals(expected.getSample(x, y, b), actual
+                                .getSample(x, y, b) & 0xFF);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testWriteAbortDeletesFile() throws Exception
+    {
+        BufferedImage image = new BufferedImage(300, 400,
+                BufferedImage.TYPE_BYTE_GRAY);
+        File file = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            final ImageWriter writer = ImageIO.getImageWritersBySuffix("ntf")
+                    .next();
+            final boolean[] aborted = { false };
+            writer.addIIOWriteProgressListener(new IIOWriteProgressAdapter()
+            {
+                public void imageProgress(ImageWriter source,
+                        float percentageDone)
+                {
+                    writer.abort();
+                }
+
+                public void writeAborted(ImageWriter source)
+                {
+                    aborted[0] = true;
+                }
+            });
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(64, 64, 0, 0);
+            writer.setOutput(file);
+            writer.write(null, new IIOImage(image, null, null), param);
+
+            // the partial file is not left behind
+            assertTrue(aborted[0]);
+            assertFalse(file.exists());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * An IIOWriteProgressListener that does nothing
+     */
+    private static class IIOWriteProgressAdapter implements
+            IIOWriteProgressListener
+    {
+        public void imageComplete(ImageWriter source)
+        {
+        }
+
+        public void imageProgress(ImageWriter source, float percentageDone)
+        {
+        }
+
+        public void imageStarted(ImageWriter source, int imageIndex)
+        {
+        }
+
+        public void thumbnailComplete(ImageWriter source)
+        {
+        }
+
+        public void thumbnailProgress(ImageWriter source,
+                float percentageDone)
+        {
+        }
+
+        public void thumbnailStarted(ImageWriter source, int imageIndex,
+                int thumbnailIndex)
+        {
+        }
+
+        public void writeAborted(ImageWriter source)
+        {
+        }
+    }
+
+    public void testWriteKeepsTiling() throws Exception
+    {
+        BufferedImage image = new BufferedImage(200, 150,
+                BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                image.getRaster().setSample(x, y, 0, (x + y * 3) % 256);
+
+        File tiled = File.createTempFile("WriterTest", ".ntf");
+        File file = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            ImageWriter writer = ImageIO.getImageWritersBySuffix("ntf").next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(64, 64, 0, 0);
+            writer.setOutput(tiled);
+            writer.write(null, new IIOImage(image, null, null), param);
+
+            // the deferred image is tiled by block
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(tiled);
+            RenderedImage source = reader.readAsRenderedImage(0, null);
+            assertEquals(64, source.getTileWidth());
+
+            writer = ImageIO.getImageWritersBySuffix("ntf").next();
+            writer.setOutput(file);
+            writer.write(null, new IIOImage(source, null, null), writer
+                    .getDefaultWriteParam());
+            reader.dispose();
+
+            IOHandle handle = new IOHandle(file.getAbsolutePath());
+            try
+            {
+                ImageSubheader subheader = new Reader().read(handle)
+                        .getImages()[0].getSubheader();
+                assertEquals(64, subheader.getNumPixelsPerHorizBlock()
+                        .getIntData());
+                assertEquals(64, subheader.getNumPixelsPerVertBlock()
+                        .getIntData());
+            }
+            finally
+            {
+                handle.close();
+            }
+        }
+        finally
+        {
+            tiled.delete();
+            file.delete();
+        }
+    }
+
+    public void testWriteSubsampled() throws Exception
+    {
+        BufferedImage image = new BufferedImage(101, 77,
+                BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                image.getRaster().setSample(x, y, 0, (x * 3 + y) % 256);
+
+        File file = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            ImageWriter writer = ImageIO.getImageWritersBySuffix("ntf").next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setSourceSubsampling(2, 3, 1, 0);
+            writer.setOutput(file);
+            writer.write(null, new IIOImage(image, null, null), param);
+
+            Iterator<ImageReader> readers = ImageIO
+                    .getImageReadersBySuffix("ntf");
+            ImageReader reader = readers.next();
+            reader.setInput(file);
+            assertEquals(50, reader.getWidth(0));
+            assertEquals(26, reader.getHeight(0));
+
+            Raster actual = reader.readRaster(0, null);
+            for (int y = 0; y < actual.getHeight(); ++y)
+                for (int x = 0; x < actual.getWidth(); ++x)
+                    assertEquals(image.getRaster().getSample(1 + x * 2, y * 3,
+                            0), actual.getSample(x, y, 0) & 0xFF);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testDirectBlockWrite() throws Exception
+    {
+        BufferedImage image = new BufferedImage(150, 100,
+                BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                image.getRaster().setSample(x, y, 0, (x * 5 + y * 3) % 256);
+
+        File file = File.createTempFile("WriterTest", ".ntf");
+        File copy = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            ImageWriter imageIOWriter = ImageIO.getImageWritersBySuffix("ntf")
+                    .next();
+            ImageWriteParam param = imageIOWriter.getDefaultWriteParam();
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(64, 64, 0, 0);
+            imageIOWriter.setOutput(file);
+            imageIOWriter.write(null, new IIOImage(image, null, null), param);
+
+            // copy the blocks, inverting them on the way
+            final List<Integer> blocks = new ArrayList<Integer>();
+            DirectBlockSource.BlockTransform invert = new DirectBlockSource.BlockTransform()
+            {
+                public void transform(int blockNumber, ByteBuffer block)
+                        throws NITFException
+                {
+                    assertEquals(64 * 64, block.remaining());
+                    blocks.add(blockNumber);
+                    for (int i = 0; i < block.limit(); ++i)
+                        block.put(i, (byte) ~block.get(i));
+                }
+            };
+            IOHandle input = new IOHandle(file.getAbsolutePath());
+            IOHandle output = new IOHandle(copy.getAbsolutePath(),
+                    IOHandle.NITF_ACCESS_WRITEONLY, IOHandle.NITF_CREATE);
+            try
+            {
+                Reader reader = new Reader();
+                Record record = reader.read(input);
+                Writer writer = new Writer();
+                writer.prepare(record, output);
+                nitf.ImageWriter imageWriter = writer.getNewImageWriter(0);
+                imageWriter.setDirectBlockWrite(true);
+                ImageSource source = new ImageSource();
+                source.addBand(new DirectBlockSource(reader
+                        .getNewImageReader(0), 1, invert));
+                imageWriter.attachSource(source);
+                writer.write();
+            }
+            finally
+            {
+                input.close();
+                output.close();
+            }
+            assertEquals(6, blocks.size());
+            for (int i = 0; i < blocks.size(); ++i)
+                assertEquals(i, blocks.get(i).intValue());
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(copy);
+            Raster actual = reader.readRaster(0, null);
+            for (int y = 0; y < image.getHeight(); ++y)
+                for (int x = 0; x < image.getWidth(); ++x)
+                    assertEquals(255 - image.getRaster().getSample(x, y, 0),
+                            actual.getSample(x, y, 0) & 0xFF);
+        }
+        finally
+        {
+            file.delete();
+            copy.delete();
+        }
+    }
+
+    /**
+     * Compression options are only used by compressors, so passing them for
+     * an uncompressed image must still copy it exactly
+     */
+    public void testCompressionOptionsUncompressed() throws Exception
+    {
+        BufferedImage image = new BufferedImage(70, 40,
+                BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < image.getHeight(); ++y)
+            for (int x = 0; x < image.getWidth(); ++x)
+                image.getRaster().setSample(x, y, 0, (x * 7 + y) % 256);
+
+        File file = File.createTempFile("WriterTest", ".ntf");
+        File copy = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            ImageWriter imageIOWriter = ImageIO.getImageWritersBySuffix("ntf")
+                    .next();
+            imageIOWriter.setOutput(file);
+            imageIOWriter.write(image);
+
+            CompressionOptions options = new CompressionOptions();
+            options.setCompressionRatio(8);
+            options.setNumResolutions(3);
+            options.setNumThreads(4);
+            IOHandle input = new IOHandle(file.getAbsolutePath());
+            IOHandle output = new IOHandle(copy.getAbsolutePath(),
+                    IOHandle.NITF_ACCESS_WRITEONLY, IOHandle.NITF_CREATE);
+            try
+            {
+                Reader reader = new Reader();
+                Record record = reader.read(input);
+                Writer writer = new Writer();
+                writer.prepare(record, output);
+                ImageSource source = new ImageSource();
+                source.addBand(new DirectBlockSource(reader
+                        .getNewImageReader(0), 1));
+                nitf.ImageWriter imageWriter = writer.getNewImageWriter(0,
+                        options);
+                imageWriter.setDirectBlockWrite(true);
+                imageWriter.attachSource(source);
+                writer.write();
+            }
+            finally
+            {
+                input.close();
+                output.close();
+            }
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(copy);
+            Raster actual = reader.readRaster(0, null);
+            for (int y = 0; y < image.getHeight(); ++y)
+                for (int x = 0; x < image.getWidth(); ++x)
+                    assertEquals(image.getRaster().getSample(x, y, 0), actual
+                            .getSample(x, y, 0) & 0xFF);
+        }
+        finally
+        {
+            file.delete();
+            copy.delete();
+        }
+    }
+
+    /**
+     * Rewrites a 150x100 gray image through a pipeline, which computes each
+     * block row from its pixels
+     */
+    private void writePipelined(File file, File copy,
+            PipelinedWriter.BlockRowProducer producer, int numThreads,
+            int queueCapacity) throws Exception
+    {
+        PipelinedWriter pipeline = new PipelinedWriter(producer, 1, 100, 150,
+                32);
+        pipeline.setNumThreads(numThreads);
+        pipeline.setQueueCapacity(queueCapacity);
+        IOHandle input = new IOHandle(file.getAbsolutePath());
+        IOHandle output = new IOHandle(copy.getAbsolutePath(),
+                IOHandle.NITF_ACCESS_WRITEONLY, IOHandle.NITF_CREATE);
+        try
+        {
+            Record record = new Reader().read(input);
+            Writer writer = new Writer();
+            writer.prepare(record, output);
+            pipeline.attach(writer.getNewImageWriter(0));
+            pipeline.write(writer);
+            assertEquals(150 * 100, pipeline.getBytesWritten());
+            assertTrue(pipeline.getThroughput() > 0);
+        }
+        finally
+        {
+            input.close();
+            output.close();
+        }
+    }
+
+    public void testPipelinedWrite() throws Exception
+    {
+        File file = File.createTempFile("WriterTest", ".ntf");
+        File copy = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            ImageWriter imageIOWriter = ImageIO.getImageWritersBySuffix("ntf")
+                    .next();
+            imageIOWriter.setOutput(file);
+            imageIOWriter.write(new BufferedImage(150, 100,
+                    BufferedImage.TYPE_BYTE_GRAY));
+
+            // more threads than room in the queue, so producers must wait
+            final List<Integer> produced = new ArrayList<Integer>();
+            writePipelined(file, copy, new PipelinedWriter.BlockRowProducer()
+            {
+                public void produce(int blockRow, int startRow, int numRows,
+                        byte[][] bands) throws Exception
+                {
+                    assertEquals(blockRow < 3 ? 32 : 4, numRows);
+                    synchronized (produced)
+                    {
+                        produced.add(blockRow);
+                    }
+                    for (int y = 0; y < numRows; ++y)
+                        for (int x = 0; x < 150; ++x)
+                            bands[0][y * 150 + x] = (byte) (x + startRow + y);
+                }
+            }, 4, 2);
+            assertEquals(4, produced.size());
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(copy);
+            Raster actual = reader.readRaster(0, null);
+            for (int y = 0; y < 100; ++y)
+                for (int x = 0; x < 150; ++x)
+                    assertEquals((x + y) & 0xFF, actual.getSample(x, y, 0)
+                            & 0xFF);
+        }
+        finally
+        {
+            file.delete();
+            copy.delete();
+        }
+    }
+
+    public void testPipelinedWriteError() throws Exception
+    {
+        File file = File.createTempFile("WriterTest", ".ntf");
+        File copy = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            ImageWriter imageIOWriter = ImageIO.getImageWritersBySuffix("ntf")
+                    .next();
+            imageIOWriter.setOutput(file);
+            imageIOWriter.write(new BufferedImage(150, 100,
+                    BufferedImage.TYPE_BYTE_GRAY));
+
+            final IllegalStateException error = new IllegalStateException(
+                    "No pixels");
+            try
+            {
+                writePipelined(file, copy,
+                        new PipelinedWriter.BlockRowProducer()
+                        {
+                            public void produce(int blockRow, int startRow,
+                                    int numRows, byte[][] bands)
+                            {
+                                if (blockRow == 2)
+                                    throw error;
+                            }
+                        }, 2, 2);
+                fail("Expected the producer's exception");
+            }
+            catch (NITFException e)
+            {
+                assertSame(error, e.getCause());
+            }
+        }
+        finally
+        {
+            file.delete();
+            copy.delete();
+        }
+    }
+
+    /**
+     * Fills in the subheader of an 8-bit gray image
+     */
+    private static void fillSubheader(ImageSubheader subheader, int numCols,
+            int numRows, int blockSize) throws NITFException
+    {
+        subheader.getFilePartType().setData("IM");
+        subheader.getImageSecurityClass().setData("U");
+        subheader.getEncrypted().setData("0");
+        subheader.getNumRows().setData(String.valueOf(numRows));
+        subheader.getNumCols().setData(String.valueOf(numCols));
+        subheader.getPixelValueType().setData("INT");
+        subheader.getImageRepresentation().setData("MONO");
+        subheader.getImageCategory().setData("VIS");
+        subheader.getActualBitsPerPixel().setData("8");
+        subheader.getPixelJustification().setData("R");
+        subheader.getImageCoordinateSystem().setData(" ");
+        subheader.getImageCompression().setData("NC");
+        subheader.getImageMode().setData("B");
+        subheader.getNumBlocksPerRow().setData(
+                String.valueOf((numCols + blockSize - 1) / blockSize));
+        subheader.getNumBlocksPerCol().setData(
+                String.valueOf((numRows + blockSize - 1) / blockSize));
+        subheader.getNumPixelsPerHorizBlock().setData(
+                String.valueOf(blockSize));
+        subheader.getNumPixelsPerVertBlock().setData(
+                String.valueOf(blockSize));
+        subheader.getNumBitsPerPixel().setData("8");
+        subheader.getImageDisplayLevel().setData("1");
+        subheader.getImageAttachmentLevel().setData("0");
+        subheader.getImageLocation().setData("0000000000");
+        subheader.getImageMagnification().setData("1.0 ");
+        subheader.createBands(1);
+        subheader.getBandInfo()[0].getRepresentation().setData("M");
+        subheader.getBandInfo()[0].getImageFilterCondition().setData("N");
+    }
+
+    public void testParallelWrite() throws Exception
+    {
+        int[][] sizes = { { 150, 100 }, { 64, 64 }, { 33, 70 } };
+        File file = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            Record record = new Record(Version.NITF_21);
+            NITFWriter.fillHeader(record.getHeader());
+            for (int[] size : sizes)
+                fillSubheader(record.newImageSegment().getSubheader(),
+                        size[0], size[1], 32);
+
+            // the file is only created (or truncated) by the write
+            RandomAccessFile existing = new RandomAccessFile(file, "rw");
+            existing.write(new byte[100]);
+            existing.close();
+            ParallelWriter writer = new ParallelWriter(record, file
+                    .getAbsolutePath());
+            assertEquals(100, file.length());
+            writer.setNumThreads(3);
+            for (int i = 0; i < sizes.length; ++i)
+            {
+                byte[] pixels = new byte[sizes[i][0] * sizes[i][1]];
+                for (int p = 0; p < pixels.length; ++p)
+                    pixels[p] = (byte) (p * (i + 1));
+                ImageSource source = new ImageSource();
+                source.addBand(new MemorySource(pixels, pixels.length, 0, 1,
+                        0));
+                writer.getNewImageWriter(i).attachSource(source);
+            }
+            writer.write();
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+            assertEquals(sizes.length, reader.getNumImages(true));
+            for (int i = 0; i < sizes.length; ++i)
+            {
+                Raster actual = reader.readRaster(i, null);
+                assertEquals(sizes[i][0], actual.getWidth());
+                assertEquals(sizes[i][1], actual.getHeight());
+                for (int y = 0; y < sizes[i][1]; ++y)
+                    for (int x = 0; x < sizes[i][0]; ++x)
+                        assertEquals(((y * sizes[i][0] + x) * (i + 1)) & 0xFF,
+                                actual.getSample(x, y, 0) & 0xFF);
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testParallelWrite12Bit() throws Exception
+    {
+        // 5x5 blocks have an odd number of pixels, so each is padded to a
+        // whole byte
+        File file = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            Record record = new Record(Version.NITF_21);
+            NITFWriter.fillHeader(record.getHeader());
+            ImageSubheader subheader = record.newImageSegment()
+                    .getSubheader();
+            fillSubheader(subheader, 22, 13, 5);
+            subheader.getNumBitsPerPixel().setData("12");
+            subheader.getActualBitsPerPixel().setData("12");
+
+            ParallelWriter writer = new ParallelWriter(record, file
+                    .getAbsolutePath());
+            ByteBuffer pixels = ByteBuffer.allocate(22 * 13 * 2).order(
+                    ByteOrder.nativeOrder());
+            for (int p = 0; p < 22 * 13; ++p)
+                pixels.putShort((short) (p * 13 % 4096));
+            ImageSource source = new ImageSource();
+            source.addBand(new MemorySource(pixels.array(), pixels
+                    .capacity(), 0, 2, 0));
+            writer.getNewImageWriter(0).attachSource(source);
+            writer.write();
+
+            IOHandle handle = new IOHandle(file.getAbsolutePath());
+            try
+            {
+                Record written = new Reader().read(handle);
+                assertEquals(5 * 3 * ((25 * 12 + 7) / 8), Long
+                        .parseLong(written.getHeader().getImageInfo()[0]
+                                .getLengthData().getStringData().trim()));
+            }
+            finally
+            {
+                handle.close();
+            }
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+            Raster actual = reader.readRaster(0, null);
+            for (int y = 0; y < 13; ++y)
+                for (int x = 0; x < 22; ++x)
+                    assertEquals((y * 22 + x) * 13 % 4096, actual.getSample(
+                            x, y, 0) & 0xFFFF);
+            reader.dispose();
+
+            // the native writer does not pack bi-level pixels
+            subheader.getPixelValueType().setData("B");
+            subheader.getNumBitsPerPixel().setData("1");
+            subheader.getActualBitsPerPixel().setData("1");
+            try
+            {
+                new ParallelWriter(record, file.getAbsolutePath());
+                fail("Expected bi-level pixels to be rejected");
+            }
+            catch (NITFException e)
+            {
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Fills the given range of a blocked image, whose pixels are x + y
+     */
+    private static byte[] blocks(ByteProvider.ByteRange range, int numCols,
+            int numRows, int blockSize, int blocksPerRow, int firstBlock)
+    {
+        byte[] data = new byte[(int) range.getLength()];
+        int blockLength = blockSize * blockSize;
+        for (int b = 0; b < data.length / blockLength; ++b)
+        {
+            int block = firstBlock + b;
+            for (int p = 0; p < blockLength; ++p)
+            {
+                int x = block % blocksPerRow * blockSize + p % blockSize;
+                int y = block / blocksPerRow * blockSize + p / blockSize;
+                if (x < numCols && y < numRows)
+                    data[b * blockLength + p] = (byte) (x + y);
+            }
+        }
+        return data;
+    }
+
+    public void testByteProvider() throws Exception
+    {
+        Record record = new Record(Version.NITF_21);
+        NITFWriter.fillHeader(record.getHeader());
+        fillSubheader(record.newImageSegment().getSubheader(), 150, 100, 32);
+        fillSubheader(record.newImageSegment().getSubheader(), 33, 70, 64);
+        ByteProvider provider = new ByteProvider(record);
+
+        // the first image is 5 blocks wide, so only whole rows of blocks
+        try
+        {
+            provider.getRowRange(0, 10, 32);
+            fail("Expected the rows to be rejected");
+        }
+        catch (NITFException e)
+        {
+        }
+
+        File file = File.createTempFile("WriterTest", ".ntf");
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try
+        {
+            // write the pieces backwards, as independent writers might
+            List<ByteProvider.ByteRange> pieces =
+                    new ArrayList<ByteProvider.ByteRange>();
+            for (int y = 0; y < 70; y += 7)
+                pieces.add(0, provider.getRowRange(1, y, 7));
+            for (int col = 0; col < 5; ++col)
+                pieces.add(0, provider.getBlockRange(0, 3, col));
+            pieces.add(0, provider.getRowRange(0, 32, 64));
+            pieces.add(0, provider.getRowRange(0, 0, 32));
+            pieces.addAll(0, provider.getHeaderRanges());
+            assertEquals(2, provider.getHeaderRanges().size());
+
+            for (ByteProvider.ByteRange piece : pieces)
+            {
+                byte[] data = piece.getData();
+                long offset = piece.getOffset();
+                if (data == null)
+                {
+                    int image = offset < provider.getImageDataRange(1)
+                            .getOffset() ? 0 : 1;
+                    ByteProvider.ByteRange whole = provider
+                            .getImageDataRange(image);
+                    int first = (int) (offset - whole.getOffset())
+                            / (32 * 32);
+                    if (image == 0)
+                        data = blocks(piece, 150, 100, 32, 5, first);
+                    else
+                    {
+                        // single block wide, so a row is 64 bytes
+                        data = new byte[(int) piece.getLength()];
+                        int startRow = (int) (offset - whole.getOffset()) / 64;
+                        for (int r = 0; startRow + r < 70
+                                && r < data.length / 64; ++r)
+                            for (int x = 0; x < 33; ++x)
+                                data[r * 64 + x] = (byte) (x + startRow + r);
+                    }
+                }
+                assertEquals(piece.getLength(), data.length);
+                out.seek(offset);
+                out.write(data);
+            }
+            assertEquals(provider.getFileLength(), out.length());
+            out.close();
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+            assertEquals(2, reader.getNumImages(true));
+            int[][] sizes = { { 150, 100 }, { 33, 70 } };
+            for (int i = 0; i < sizes.length; ++i)
+            {
+                Raster actual = reader.readRaster(i, null);
+                assertEquals(sizes[i][0], actual.getWidth());
+                assertEquals(sizes[i][1], actual.getHeight());
+                for (int y = 0; y < sizes[i][1]; ++y)
+                    for (int x = 0; x < sizes[i][0]; ++x)
+                        assertEquals((x + y) & 0xFF,
+                                actual.getSample(x, y, 0) & 0xFF);
+            }
+        }
+        finally
+        {
+            out.close();
+            file.delete();
+        }
+    }
+
+    public void testByteProvider12Bit() throws Exception
+    {
+        // a row is 60 bits, and a block of 3 rows is padded to 23 bytes
+        Record record = new Record(Version.NITF_21);
+        NITFWriter.fillHeader(record.getHeader());
+        ImageSubheader subheader = record.newImageSegment().getSubheader();
+        fillSubheader(subheader, 5, 10, 5);
+        subheader.getNumPixelsPerVertBlock().setData("3");
+        subheader.getNumBlocksPerCol().setData("4");
+        subheader.getNumBitsPerPixel().setData("12");
+        subheader.getActualBitsPerPixel().setData("12");
+        ByteProvider provider = new ByteProvider(record);
+
+        long offset = provider.getImageDataRange(0).getOffset();
+        assertEquals(4 * 23, provider.getImageDataRange(0).getLength());
+        ByteProvider.ByteRange range = provider.getRowRange(0, 0, 2);
+        assertEquals(offset, range.getOffset());
+        assertEquals(15, range.getLength());
+        range = provider.getRowRange(0, 2, 1);
+        assertEquals(offset + 15, range.getOffset());
+        assertEquals(8, range.getLength());
+        range = provider.getRowRange(0, 3, 2);
+        assertEquals(offset + 23, range.getOffset());
+        assertEquals(15, range.getLength());
+        range = provider.getRowRange(0, 8, 2);
+        assertEquals(offset + 2 * 23 + 15, range.getOffset());
+        assertEquals(8 + 23, range.getLength());
+
+        // odd rows of a block start half way through a byte
+        int[][] rows = { { 1, 2 }, { 0, 1 } };
+        for (int[] r : rows)
+        {
+            try
+            {
+                provider.getRowRange(0, r[0], r[1]);
+                fail("Expected rows " + r[0] + " to " + (r[0] + r[1])
+                        + " to be rejected");
+            }
+            catch (NITFException e)
+            {
+            }
+        }
+    }
+
+    /**
+     * Checks the title and the pixels of the single image, which are x + y
+     */
+    private static void checkFile(File file, String title, int numCols,
+            int numRows) throws Exception
+    {
+        IOHandle handle = new IOHandle(file.getAbsolutePath());
+        try
+        {
+            Record record = new Reader().read(handle);
+            assertEquals(title, record.getHeader().getFileTitle()
+                    .getStringData().trim());
+            assertEquals(file.length(), Long.parseLong(record.getHeader()
+                    .getFileLength().getStringData().trim()));
+        }
+        finally
+        {
+            handle.close();
+        }
+
+        ImageReader reader = ImageIO.getImageReadersBySuffix("ntf").next();
+        reader.setInput(file);
+        Raster actual = reader.readRaster(0, null);
+        for (int y = 0; y < numRows; ++y)
+            for (int x = 0; x < numCols; ++x)
+                assertEquals((x + y) & 0xFF, actual.getSample(x, y, 0) & 0xFF);
+        reader.dispose();
+    }
+
+    public void testHeaderUpdater() throws Exception
+    {
+        File file = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            Record record = new Record(Version.NITF_21);
+            NITFWriter.fillHeader(record.getHeader());
+            record.getHeader().getFileTitle().setData("before");
+            fillSubheader(record.newImageSegment().getSubheader(), 100, 90,
+                    32);
+            ParallelWriter writer = new ParallelWriter(record, file
+                    .getAbsolutePath());
+            byte[] pixels = new byte[100 * 90];
+            for (int p = 0; p < pixels.length; ++p)
+                pixels[p] = (byte) (p % 100 + p / 100);
+            ImageSource source = new ImageSource();
+            source.addBand(new MemorySource(pixels, pixels.length, 0, 1, 0));
+            writer.getNewImageWriter(0).attachSource(source);
+            writer.write();
+            long length = file.length();
+
+            // same length, so only the header is rewritten
+            HeaderUpdater updater = new HeaderUpdater(file.getAbsolutePath());
+            updater.getRecord().getHeader().getFileTitle().setData("after");
+            assertEquals(0, updater.update());
+            assertEquals(length, file.length());
+            checkFile(file, "after", 100, 90);
+
+            // a comment makes the image subheader longer
+            ImageSubheader subheader = updater.getRecord().getImages()[0]
+                    .getSubheader();
+            subheader.insertImageComment("moved", 0);
+            assertTrue(updater.update() > 0);
+            assertEquals(length + 80, file.length());
+            checkFile(file, "after", 100, 90);
+
+            // and removing it moves the data back
+            subheader.removeImageComment(0);
+            updater.getRecord().getHeader().getFileTitle().setData("back");
+            assertTrue(updater.update() > 0);
+            assertEquals(length, file.length());
+            checkFile(file, "back", 100, 90);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testHeaderUpdaterSegments() throws Exception
+    {
+        int[][] sizes = { { 100, 90 }, { 40, 50 }, { 70, 30 } };
+        File file = File.createTempFile("WriterTest", ".ntf");
+        try
+        {
+            Record record = new Record(Version.NITF_21);
+            NITFWriter.fillHeader(record.getHeader());
+            for (int[] size : sizes)
+                fillSubheader(record.newImageSegment().getSubheader(),
+                        size[0], size[1], 32);
+            record.getImages()[2].getSubheader().insertImageComment("first",
+                    0);
+            record.getImages()[2].getSubheader().insertImageComment(
+                    "second", 1);
+            ParallelWriter writer = new ParallelWriter(record, file
+                    .getAbsolutePath());
+            for (int i = 0; i < sizes.length; ++i)
+            {
+                byte[] pixels = new byte[sizes[i][0] * sizes[i][1]];
+                for (int p = 0; p < pixels.length; ++p)
+                    pixels[p] = (byte) (p % sizes[i][0] + p / sizes[i][0]);
+                ImageSource source = new ImageSource();
+                source.addBand(new MemorySource(pixels, pixels.length, 0, 1,
+                        0));
+                writer.getNewImageWriter(i).attachSource(source);
+            }
+            writer.write();
+            long length = file.length();
+
+            // the first subheader grows, and the last shrinks more
+            HeaderUpdater updater = new HeaderUpdater(file.getAbsolutePath());
+            Record updated = updater.getRecord();
+            updated.getImages()[0].getSubheader().insertImageComment("grown",
+                    0);
+            updated.getImages()[2].getSubheader().removeImageComment(1);
+            updated.getImages()[2].getSubheader().removeImageComment(0);
+            assertTrue(updater.update() > 0);
+            assertEquals(length - 80, file.length());
+
+            // the data is too short for the subheader
+            ImageSubheader subheader = updated.getImages()[1].getSubheader();
+            subheader.getNumBitsPerPixel().setData("16");
+            try
+            {
+                updater.update();
+                fail("Expected the change of size to be rejected");
+            }
+            catch (NITFException e)
+            {
+            }
+            assertEquals(length - 80, file.length());
+
+            ImageReader reader = ImageIO.getImageReadersBySuffix("ntf")
+                    .next();
+            reader.setInput(file);
+            for (int i = 0; i < sizes.length; ++i)
+            {
+                Raster actual = reader.readRaster(i, null);
+                assertEquals(sizes[i][0], actual.getWidth());
+                assertEquals(sizes[i][1], actual.getHeight());
+                for (int y = 0; y < sizes[i][1]; ++y)
+                    for (int x = 0; x < sizes[i][0]; ++x)
+                        assertEquals((x + y) & 0xFF,
+                                actual.getSample(x, y, 0) & 0xFF);
+            }
+            reader.dispose();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
@@ -34,11 +34,14 @@ import ij.util.Java2;
 
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.Graphics;
 import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferUShort;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintStream;
@@ -48,6 +51,7 @@ import java.util.Vector;
 
 import javax.imageio.ImageReadParam;
 import javax.imageio.spi.IIORegistry;
+import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.filechooser.FileFilter;
 
@@ -105,6 +109,67 @@ public class NITF_Reader extends PlugInFrame
             }
         };
         fileChooser.setFileFilter(fileFilter);
+        fileChooser.setAccessory(new ThumbnailPreview(fileChooser));
+    }
+
+    /**
+     * Shows the thumbnail of the first image of the selected NITF, next to the
+     * file chooser
+     */
+    private class ThumbnailPreview extends JComponent implements
+            PropertyChangeListener
+    {
+        private static final long serialVersionUID = 1L;
+
+        private BufferedImage thumbnail = null;
+
+        public ThumbnailPreview(JFileChooser chooser)
+        {
+            int size = NITFReader.MAX_THUMBNAIL_SIZE + 10;
+            setPreferredSize(new Dimension(size, size));
+            chooser.addPropertyChangeListener(this);
+        }
+
+        public void propertyChange(PropertyChangeEvent e)
+        {
+            if (!JFileChooser.SELECTED_FILE_CHANGED_PROPERTY.equals(e
+                    .getPropertyName()))
+                return;
+
+            thumbnail = null;
+            File file = (File) e.getNewValue();
+            if (file != null && file.isFile() && fileFilter.accept(file))
+            {
+                NITFReader imageReader = null;
+                try
+                {
+                    imageReader = (NITFReader) ImageIOUtils.getImageReader(
+                            "nitf", file);
+                    if (imageReader.getNumImages(true) > 0)
+                        thumbnail = imageReader.readThumbnail(0, 0);
+                }
+                catch (Exception ex)
+                {
+                    log.debug(ExceptionUtils.getStackTrace(ex));
+                }
+                finally
+                {
+                    if (imageReader != null)
+                        imageReader.dispose();
+                }
+            }
+            repaint();
+        }
+
+        protected void paintComponent(Graphics g)
+        {
+            if (thumbnail != null)
+            {
+                g.drawImage(thumbnail,
+                        (getWidth() - thumbnail.getWidth()) / 2,
+                        (getHeight() - thumbnail.getHeight()) / 2, null);
+            }
+        }
     }
 
     private List<File> chooseFiles()
@@ -0,0 +1,115 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/**
+ * 
+ */
+package nitf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>AverageDownSampler</code>
+ * 
+ * The average down-sampler is a box filter. <p/> The row and column skip
+ * factors divide the sub-window into non-overlaping sample windows. The mean of
+ * the pixels in each sample window is the down-sampled value for that window.
+ * Integer results are rounded to the nearest value, and complex pixels have
+ * their real and imaginary parts averaged separately. Unlike pixel skipping,
+ * this does not alias.
+ */
+public final class AverageDownSampler extends DownSampler
+{
+
+    /**
+     * @param address
+     */
+    public AverageDownSampler(long address)
+    {
+        super(address);
+    }
+
+    /**
+     * 
+     * @param skipRows
+     * @param skipCols
+     */
+    public AverageDownSampler(int skipRows, int skipCols)
+    {
+        construct(skipRows, skipCols);
+    }
+
+    /**
+     * 
+     * @param skipRows
+     * @param skipCols
+     */
+    private native void construct(int skipRows, int skipCols);
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#apply(ByteBuffer[], ByteBuffer[], int, int, int,
+     *      int, int, int, int, int, int)
+     */
+    protected native boolean apply(ByteBuffer[] inputWindows,
+            ByteBuffer[] outputWindows, int numBands, int numWindowRows,
+            int numWindowCols, int numInputCols, int numSubWindowCols,
+            int pixelType, int pixelSize, int rowsInLastWindow,
+            int colsInLastWindow) throws NITFException;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getRowSkip()
+     */
+    public native int getRowSkip();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getColSkip()
+     */
+    public native int getColSkip();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getMinSupportedBands()
+     */
+    public native int getMinSupportedBands();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getMaxSupportedBands()
+     */
+    public native int getMaxSupportedBands();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#isMultiBand()
+     */
+    public native boolean isMultiBand();
+
+}
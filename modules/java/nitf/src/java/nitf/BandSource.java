@@ -78,7 +78,10 @@ public abstract class BandSource extends DestructibleObject
                     caller.getClassName());
             // Class.forName(caller.getClassName());
             if (!callerClass.equals(MemorySource.class)
-                    && !callerClass.equals(FileSource.class))
+                    && !callerClass.equals(FileSource.class)
+                    && !callerClass.equals(DirectBlockSource.class)
+                    && !callerClass.equals(DirectMemorySource.class)
+                    && !callerClass.equals(RowSource.class))
                 construct();
         }
         catch (ClassNotFoundException e)
@@ -0,0 +1,403 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lays out a NITF without writing its image data, so that the file can be
+ * written in pieces, in any order, by separate threads, processes or
+ * machines. It provides the bytes of everything but the image data (the file
+ * header, the image subheaders and any other segments), and the offset and
+ * length within the file of any range of rows or any block of an image.
+ * Writing each of these at its offset gives the whole file.
+ * <p>
+ * The record is written once, to memory, by a {@link Writer}, which gives
+ * every header its final lengths. The data of each image is only reserved,
+ * so only uncompressed (NC) image segments are supported, as their length is
+ * known from their subheaders. The record itself is not modified.
+ * <p>
+ * Image data is written just as it is in the file: blocked, padded, and with
+ * multi-byte pixels in big endian order.
+ */
+public final class ByteProvider
+{
+    /**
+     * A range of bytes of the file
+     */
+    public static final class ByteRange
+    {
+        private final long offset;
+
+        private final long length;
+
+        private final byte[] data;
+
+        ByteRange(long offset, long length, byte[] data)
+        {
+            this.offset = offset;
+            this.length = length;
+            this.data = data;
+        }
+
+        /**
+         * @return the offset of the range within the file
+         */
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * @return the number of bytes in the range
+         */
+        public long getLength()
+        {
+            return length;
+        }
+
+        /**
+         * @return the bytes of the range, or null for image data, which the
+         *         caller provides
+         */
+        public byte[] getData()
+        {
+            return data;
+        }
+
+        public String toString()
+        {
+            return "[" + offset + ", " + (offset + length) + ")";
+        }
+    }
+
+    private final Record record;
+
+    private final Writer writer = new Writer();
+
+    private final LayoutIO output = new LayoutIO();
+
+    private final ImageLayout[] images;
+
+    private List<ByteRange> headerRanges;
+
+    /**
+     * Prepares to lay out the record. Set the write handlers of any text,
+     * graphic or DE segments before asking for the layout.
+     *
+     * @param record
+     *            the record, with every field (and TRE) set
+     * @throws NITFException
+     *             if an image segment is compressed, or its pixels cannot
+     *             be packed
+     */
+    public ByteProvider(Record record) throws NITFException
+    {
+        // the writer sets the lengths of the record it writes
+        this.record = record.makeClone();
+
+        ImageSegment[] segments = this.record.getImages();
+        images = new ImageLayout[segments.length];
+        for (int i = 0; i < segments.length; ++i)
+            images[i] = new ImageLayout(segments[i].getSubheader());
+        writer.prepare(this.record, output);
+    }
+
+    /**
+     * @see Writer#setTextWriteHandler(int, WriteHandler)
+     */
+    public void setTextWriteHandler(int index, WriteHandler writeHandler)
+            throws NITFException
+    {
+        checkNotLaidOut();
+        writer.setTextWriteHandler(index, writeHandler);
+    }
+
+    /**
+     * @see Writer#setGraphicWriteHandler(int, WriteHandler)
+     */
+    public void setGraphicWriteHandler(int index, WriteHandler writeHandler)
+            throws NITFException
+    {
+        checkNotLaidOut();
+        writer.setGraphicWriteHandler(index, writeHandler);
+    }
+
+    /**
+     * @see Writer#setDEWriteHandler(int, WriteHandler)
+     */
+    public void setDEWriteHandler(int index, WriteHandler writeHandler)
+            throws NITFException
+    {
+        checkNotLaidOut();
+        writer.setDEWriteHandler(index, writeHandler);
+    }
+
+    private void checkNotLaidOut()
+    {
+        if (headerRanges != null)
+            throw new IllegalStateException("The file is already laid out");
+    }
+
+    /**
+     * Writes the record to memory, reserving the image data, the first time
+     * the layout is needed
+     */
+    private synchronized void layOut() throws NITFException
+    {
+        if (headerRanges != null)
+            return;
+
+        LayoutIO.Reservation[] reservations =
+                new LayoutIO.Reservation[images.length];
+        for (int i = 0; i < images.length; ++i)
+        {
+            reservations[i] = output.newReservation(images[i].length);
+            writer.setImageWriteHandler(i, reservations[i]);
+        }
+        writer.write();
+        for (int i = 0; i < images.length; ++i)
+            images[i].offset = reservations[i].getOffset();
+        headerRanges = Collections.unmodifiableList(output.getRanges());
+    }
+
+    /**
+     * @return the length of the whole file
+     * @throws NITFException
+     */
+    public long getFileLength() throws NITFException
+    {
+        layOut();
+        return output.getSize();
+    }
+
+    /**
+     * Returns the bytes of everything but the image data, in file order: the
+     * file header and first image subheader, each later image subheader, and
+     * the segments after the images.
+     *
+     * @throws NITFException
+     */
+    public List<ByteRange> getHeaderRanges() throws NITFException
+    {
+        layOut();
+        return headerRanges;
+    }
+
+    public int getNumImages()
+    {
+        return images.length;
+    }
+
+    /**
+     * @return the range of the whole data of an image
+     * @throws NITFException
+     */
+    public ByteRange getImageDataRange(int image) throws NITFException
+    {
+        layOut();
+        return new ByteRange(getImage(image).offset, images[image].length,
+                null);
+    }
+
+    /**
+     * Returns the range of the given rows of an image. Rows are contiguous
+     * in the file when the image is a single block wide and its bands are
+     * interleaved by pixel (P) or row (R), or it has only one band; then any
+     * rows may be asked for. Otherwise the rows must be whole rows of blocks,
+     * so they start on a block boundary and end on one (or at the last row),
+     * and the bands must not be in separate blocks (S).
+     * <p>
+     * Pixels whose NBPP is not a multiple of 8 are packed, so rows of them
+     * may not start on a byte. The range must then start and end on a byte
+     * (or on a block, or at the last row).
+     * <p>
+     * A range that ends at the last row includes the padding of the last row
+     * of blocks.
+     *
+     * @param image
+     *            the index of the image
+     * @param startRow
+     *            the first row
+     * @param numRows
+     *            the number of rows
+     * @throws NITFException
+     *             if the rows are not contiguous in the file, or do not
+     *             start and end on a byte
+     */
+    public ByteRange getRowRange(int image, int startRow, int numRows)
+            throws NITFException
+    {
+        layOut();
+        ImageLayout layout = getImage(image);
+        int endRow = startRow + numRows;
+        if (startRow < 0 || numRows < 1 || endRow > layout.numRows)
+            throw new IllegalArgumentException("Invalid rows of image "
+                    + image + ": " + numRows + " from " + startRow);
+
+        long offset;
+        long length;
+        if (layout.blocksPerRow == 1 && layout.rowsInterleaved())
+        {
+            offset = layout.getRowOffset(image, startRow);
+            length = endRow == layout.numRows ? layout.length - offset
+                    : layout.getRowOffset(image, endRow) - offset;
+        }
+        else
+        {
+            if (startRow % layout.rowsPerBlock != 0
+                    || (endRow % layout.rowsPerBlock != 0
+                            && endRow != layout.numRows))
+                throw new NITFException("Rows " + startRow + " to " + endRow
+                        + " of image " + image
+                        + " are not whole rows of blocks of "
+                        + layout.rowsPerBlock);
+            layout.checkBandsInterleaved(image);
+
+            long blockRowLength = layout.blocksPerRow * layout.blockLength;
+            int firstBlockRow = startRow / layout.rowsPerBlock;
+            int endBlockRow = (endRow + layout.rowsPerBlock - 1)
+                    / layout.rowsPerBlock;
+            offset = firstBlockRow * blockRowLength;
+            length = (endBlockRow - firstBlockRow) * blockRowLength;
+        }
+        return new ByteRange(layout.offset + offset, length, null);
+    }
+
+    /**
+     * Returns the range of a block of an image, which holds all of its bands.
+     *
+     * @param image
+     *            the index of the image
+     * @param blockRow
+     *            the row of the block
+     * @param blockCol
+     *            the column of the block
+     * @throws NITFException
+     *             if the bands are in separate blocks (S)
+     */
+    public ByteRange getBlockRange(int image, int blockRow, int blockCol)
+            throws NITFException
+    {
+        layOut();
+        ImageLayout layout = getImage(image);
+        if (blockRow < 0 || blockRow >= layout.blocksPerCol || blockCol < 0
+                || blockCol >= layout.blocksPerRow)
+            throw new IllegalArgumentException("Invalid block of image "
+                    + image + ": " + blockRow + ", " + blockCol);
+        layout.checkBandsInterleaved(image);
+
+        long block = (long) blockRow * layout.blocksPerRow + blockCol;
+        return new ByteRange(layout.offset + block * layout.blockLength,
+                layout.blockLength, null);
+    }
+
+    private ImageLayout getImage(int image)
+    {
+        if (image < 0 || image >= images.length)
+            throw new IllegalArgumentException("Invalid image: " + image);
+        return images[image];
+    }
+
+    /**
+     * The blocking of an image, and where its data lies
+     */
+    private static final class ImageLayout
+    {
+        final int numRows;
+
+        final int rowsPerBlock;
+
+        final int blocksPerRow;
+
+        final int blocksPerCol;
+
+        final int numBands;
+
+        final String mode;
+
+        /** The length of a block, of all bands */
+        final long blockLength;
+
+        /** The number of bits in a row of a block, of all bands */
+        final long rowBits;
+
+        final long length;
+
+        long offset;
+
+        ImageLayout(ImageSubheader subheader) throws NITFException
+        {
+            length = ParallelWriter.getDataLength(subheader);
+            numRows = subheader.getNumRows().getIntData();
+            numBands = subheader.getBandCount();
+            mode = subheader.getImageMode().getStringData().trim();
+            blocksPerRow = subheader.getNumBlocksPerRow().getIntData();
+            blocksPerCol = subheader.getNumBlocksPerCol().getIntData();
+            int colsPerBlock = subheader.getNumPixelsPerHorizBlock()
+                    .getIntData();
+            int rows = subheader.getNumPixelsPerVertBlock().getIntData();
+
+            // 0 means the blocks span the image
+            if (colsPerBlock == 0)
+                colsPerBlock = subheader.getNumCols().getIntData();
+            rowsPerBlock = rows == 0 ? numRows : rows;
+            blockLength = ParallelWriter.getBlockLength(subheader);
+            rowBits = (long) colsPerBlock * numBands
+                    * subheader.getNumBitsPerPixel().getIntData();
+        }
+
+        /**
+         * Returns the offset of a row within the data of a single block wide
+         * image whose rows are interleaved. Packed blocks may end with
+         * padding, so this is from the start of its block.
+         *
+         * @throws NITFException
+         *             if the row does not start on a byte
+         */
+        long getRowOffset(int image, int row) throws NITFException
+        {
+            long bits = row % rowsPerBlock * rowBits;
+            if (bits % 8 != 0)
+                throw new NITFException("Row " + row + " of image " + image
+                        + " does not start on a byte");
+            return row / rowsPerBlock * blockLength + bits / 8;
+        }
+
+        /**
+         * @return whether the rows of a block are contiguous, with all bands
+         */
+        boolean rowsInterleaved()
+        {
+            return numBands == 1 || mode.equals("P") || mode.equals("R");
+        }
+
+        void checkBandsInterleaved(int image) throws NITFException
+        {
+            if (numBands > 1 && mode.equals("S"))
+                throw new NITFException("The bands of image " + image
+                        + " are in separate blocks");
+        }
+    }
+}
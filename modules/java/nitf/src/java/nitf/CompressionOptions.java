@@ -0,0 +1,221 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf;
+
+/**
+ * Settings for writing a compressed image segment. Apply them to the
+ * segment's subheader before {@link Writer#prepare(Record, IOInterface)} and
+ * pass them to {@link Writer#getNewImageWriter(int, CompressionOptions)}, so
+ * that the compression plugin is opened with them.
+ * <p>
+ * Only JPEG 2000 (C8) can currently be written, by the j2k plugin, which
+ * must be on the plugin path. Each block is encoded as a tile, in order;
+ * given more than one thread the codec encodes the code-blocks of each tile
+ * in parallel, while the output is still written sequentially.
+ */
+public final class CompressionOptions
+{
+    public static final String JPEG2000 = "C8";
+
+    /** The largest number of pixels per block (NPPBH and NPPBV) */
+    public static final int MAX_BLOCK_SIZE = 8192;
+
+    private String compression = JPEG2000;
+
+    private double compressionRatio;
+
+    private int numResolutions;
+
+    private int tileWidth = 1024;
+
+    private int tileHeight = 1024;
+
+    private int numThreads = 1;
+
+    private boolean visuallyLossless;
+
+    /**
+     * Returns the IC code of the compression. Defaults to C8.
+     */
+    public String getCompression()
+    {
+        return compression;
+    }
+
+    /**
+     * Sets the IC code of the compression
+     *
+     * @param compression
+     */
+    public void setCompression(String compression)
+    {
+        if (!JPEG2000.equals(compression))
+            throw new IllegalArgumentException(
+                    "Unsupported compression for writing: " + compression);
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the compression ratio, or 0 for (numerically) lossless, which
+     * is the default
+     */
+    public double getCompressionRatio()
+    {
+        return compressionRatio;
+    }
+
+    /**
+     * Sets the ratio of the uncompressed to the compressed size. Anything
+     * greater than 1 makes the compression lossy; 0 makes it lossless.
+     *
+     * @param compressionRatio
+     */
+    public void setCompressionRatio(double compressionRatio)
+    {
+        if (compressionRatio < 0 || Double.isNaN(compressionRatio))
+            throw new IllegalArgumentException("Invalid compression ratio: "
+                    + compressionRatio);
+        this.compressionRatio = compressionRatio;
+    }
+
+    /**
+     * Returns whether lossy output is marked visually lossless. Defaults to
+     * false.
+     */
+    public boolean isVisuallyLossless()
+    {
+        return visuallyLossless;
+    }
+
+    /**
+     * Sets whether lossy output is marked visually lossless (COMRAT Vxyz).
+     * Otherwise lossy output records its bit rate (xx.x), and lossless output
+     * is always marked numerically lossless (Nxyz).
+     *
+     * @param visuallyLossless
+     */
+    public void setVisuallyLossless(boolean visuallyLossless)
+    {
+        this.visuallyLossless = visuallyLossless;
+    }
+
+    /**
+     * Returns the number of resolution levels, or 0 to let the plugin choose
+     * as many as the tile size allows, which is the default
+     */
+    public int getNumResolutions()
+    {
+        return numResolutions;
+    }
+
+    /**
+     * Sets the number of resolution levels
+     *
+     * @param numResolutions
+     */
+    public void setNumResolutions(int numResolutions)
+    {
+        if (numResolutions < 0)
+            throw new IllegalArgumentException(
+                    "Invalid number of resolutions: " + numResolutions);
+        this.numResolutions = numResolutions;
+    }
+
+    public int getTileWidth()
+    {
+        return tileWidth;
+    }
+
+    public int getTileHeight()
+    {
+        return tileHeight;
+    }
+
+    /**
+     * Sets the size of the tiles (blocks). Defaults to 1024 by 1024.
+     *
+     * @param tileWidth
+     * @param tileHeight
+     */
+    public void setTileSize(int tileWidth, int tileHeight)
+    {
+        if (tileWidth < 1 || tileHeight < 1)
+            throw new IllegalArgumentException("Invalid tile size: "
+                    + tileWidth + "x" + tileHeight);
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Sets the number of threads each tile is encoded with. Defaults to 1.
+     * It is only a hint, as the codec may not be able to encode with threads.
+     *
+     * @param numThreads
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets the compression, image mode and blocking of the subheader. The
+     * number of rows and columns must already be set. Tiles larger than the
+     * image are shrunk to it.
+     *
+     * @param subheader
+     * @throws NITFException
+     *             if the image size is not set, or the tiles are still
+     *             larger than MAX_BLOCK_SIZE
+     */
+    public void apply(ImageSubheader subheader) throws NITFException
+    {
+        int numRows = subheader.getNumRows().getIntData();
+        int numCols = subheader.getNumCols().getIntData();
+        if (numRows < 1 || numCols < 1)
+            throw new NITFException("The image size must be set first");
+
+        int width = Math.min(tileWidth, numCols);
+        int height = Math.min(tileHeight, numRows);
+        if (width > MAX_BLOCK_SIZE || height > MAX_BLOCK_SIZE)
+            throw new NITFException("Invalid tile size: " + width + "x"
+                    + height + " (the limit is " + MAX_BLOCK_SIZE + ")");
+        subheader.getImageCompression().setData(compression);
+        subheader.getImageMode().setData("B");
+        subheader.getNumPixelsPerHorizBlock().setData(
+                String.valueOf(width));
+        subheader.getNumPixelsPerVertBlock().setData(
+                String.valueOf(height));
+        subheader.getNumBlocksPerRow().setData(
+                String.valueOf((numCols + width - 1) / width));
+        subheader.getNumBlocksPerCol().setData(
+                String.valueOf((numRows + height - 1) / height));
+    }
+}
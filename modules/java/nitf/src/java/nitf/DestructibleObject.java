@@ -84,11 +84,29 @@ public abstract class DestructibleObject extends NITFObject
         // NITFResourceManager.getInstance().decrementRefCount(this);
     }
 
+    /**
+     * Drops this reference to the underlying object now, rather than when
+     * this is finalized, destructing the object if it is not referenced
+     * elsewhere (by other Java objects, or by native objects). This object is
+     * no longer valid afterwards, so it must not be used again.
+     */
+    public synchronized void release()
+    {
+        if (isValid())
+        {
+            NITFResourceManager.getInstance().decrementRefCount(getAddress(),
+                    false);
+            address = INVALID_ADDRESS;
+        }
+    }
+
     @Override
     protected void finalize() throws Throwable
     {
-        NITFResourceManager.getInstance()
-                .decrementRefCount(getAddress(), false);
+        // a released object has already dropped its reference
+        if (isValid())
+            NITFResourceManager.getInstance().decrementRefCount(getAddress(),
+                    false);
         super.finalize();
     }
 
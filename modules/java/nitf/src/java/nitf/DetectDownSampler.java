@@ -0,0 +1,154 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/**
+ * 
+ */
+package nitf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>DetectDownSampler</code>
+ * 
+ * The detect down-sampler detects complex (i.e. SAR) data while it is read, in
+ * one pass over the pixels. <p/> The input is either two bands, in-phase then
+ * quadrature, of any integer (up to four byte) or real type, or one band of
+ * complex pixels. Band interleaved by pixel (IMODE P) I/Q images are read the
+ * same way as the other modes. The power of the pixels of each sample window
+ * is averaged, and the mean is converted to the magnitude, the power or the
+ * power in decibels. Both skips may be one, for detection at full resolution.
+ * <p/> The output has the input pixel type; two band reads get the detected
+ * value in both bands, complex reads get it as the real part. If a remap range
+ * is given, the detected values are mapped linearly onto 0 to 255, so an
+ * 8-bit display image can be taken from the read without converting the
+ * detected values in Java.
+ */
+public final class DetectDownSampler extends DownSampler
+{
+
+    /**
+     * Detects the magnitude, sqrt(I*I + Q*Q)
+     */
+    public static final int MAGNITUDE = 0;
+
+    /**
+     * Detects the power, I*I + Q*Q
+     */
+    public static final int POWER = 1;
+
+    /**
+     * Detects the power in decibels, 10*log10(I*I + Q*Q)
+     */
+    public static final int DECIBELS = 2;
+
+    /**
+     * @param address
+     */
+    public DetectDownSampler(long address)
+    {
+        super(address);
+    }
+
+    /**
+     * 
+     * @param skipRows
+     * @param skipCols
+     * @param mode
+     *            one of MAGNITUDE, POWER or DECIBELS
+     */
+    public DetectDownSampler(int skipRows, int skipCols, int mode)
+            throws NITFException
+    {
+        construct(skipRows, skipCols, mode, false, 0, 0);
+    }
+
+    /**
+     * Creates a down-sampler that remaps the detected values to 0 to 255
+     * 
+     * @param skipRows
+     * @param skipCols
+     * @param mode
+     *            one of MAGNITUDE, POWER or DECIBELS
+     * @param minValue
+     *            the detected value mapped to 0
+     * @param maxValue
+     *            the detected value mapped to 255
+     */
+    public DetectDownSampler(int skipRows, int skipCols, int mode,
+            double minValue, double maxValue) throws NITFException
+    {
+        construct(skipRows, skipCols, mode, true, minValue, maxValue);
+    }
+
+    private native void construct(int skipRows, int skipCols, int mode,
+            boolean remap, double minValue, double maxValue)
+            throws NITFException;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#apply(ByteBuffer[], ByteBuffer[], int, int, int,
+     *      int, int, int, int, int, int)
+     */
+    protected native boolean apply(ByteBuffer[] inputWindows,
+            ByteBuffer[] outputWindows, int numBands, int numWindowRows,
+            int numWindowCols, int numInputCols, int numSubWindowCols,
+            int pixelType, int pixelSize, int rowsInLastWindow,
+            int colsInLastWindow) throws NITFException;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getRowSkip()
+     */
+    public native int getRowSkip();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getColSkip()
+     */
+    public native int getColSkip();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getMinSupportedBands()
+     */
+    public native int getMinSupportedBands();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getMaxSupportedBands()
+     */
+    public native int getMaxSupportedBands();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#isMultiBand()
+     */
+    public native boolean isMultiBand();
+
+}
@@ -0,0 +1,132 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>DirectBlockSource</code>
+ * 
+ * The DirectBlockSource class extends the BandSource class, allowing you to
+ * copy the blocks of an image straight from an ImageReader, without reading
+ * them a row at a time and blocking them again. It is for use with an
+ * {@link ImageWriter} that has {@link ImageWriter#setDirectBlockWrite(boolean)
+ * direct block writes} enabled, when the output image is blocked just like the
+ * input, such as when the headers of a file are being rewritten. Direct block
+ * writes only support single band images.
+ * 
+ * Uncompressed blocks are copied as they are. Compressed blocks go through
+ * the decompression and compression plugins a block at a time. To copy
+ * compressed image data without touching it at all, use a
+ * {@link StreamIOWriteHandler} over the image data of the input instead.
+ * 
+ * This class is final because the BandSource class uses special logic when it
+ * gets constructed from a subclass.
+ */
+public final class DirectBlockSource extends BandSource
+{
+    /**
+     * Changes each block on its way through
+     */
+    public interface BlockTransform
+    {
+        /**
+         * Transforms a block in place
+         * 
+         * @param blockNumber
+         *            the number of the block, in row major order
+         * @param block
+         *            a direct buffer over the block that is about to be
+         *            written, positioned at 0 and limited to the block size.
+         *            The buffer is native memory that is only valid during
+         *            the call, so it must not be kept.
+         * @throws NITFException
+         */
+        void transform(int blockNumber, ByteBuffer block)
+                throws NITFException;
+    }
+
+    /**
+     * @param address
+     */
+    protected DirectBlockSource(long address)
+    {
+        super(address);
+    }
+
+    /**
+     * Constructs a BandSource that copies the blocks of an image
+     * 
+     * @see #DirectBlockSource(ImageReader, int, BlockTransform)
+     */
+    public DirectBlockSource(ImageReader imageReader, int numBands)
+            throws NITFException
+    {
+        this(imageReader, numBands, null);
+    }
+
+    /**
+     * Constructs a BandSource that copies the blocks of an image, optionally
+     * transforming them
+     * 
+     * @param imageReader
+     *            the reader of the image to copy, which must not be used for
+     *            anything else until the write is done
+     * @param numBands
+     *            the number of bands of the image
+     * @param transform
+     *            the transform of each block, or null to copy the blocks
+     *            as they are
+     * @throws NITFException
+     */
+    public DirectBlockSource(ImageReader imageReader, int numBands,
+            BlockTransform transform) throws NITFException
+    {
+        if (imageReader == null)
+            throw new NITFException("An image reader is required");
+        construct(imageReader, numBands, transform);
+    }
+
+    /**
+     * Constructs the underlying source
+     */
+    private native void construct(ImageReader imageReader, int numBands,
+            BlockTransform transform) throws NITFException;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.BandSource#read(byte[], int)
+     */
+    public native void read(byte[] buf, int size) throws NITFException;
+
+    /**
+     * @return the number of blocks
+     */
+    @Override
+    public native long getSize() throws NITFException;
+
+    @Override
+    public native void setSize(long size) throws NITFException;
+
+}
@@ -0,0 +1,118 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>DirectMemorySource</code>
+ * 
+ * The DirectMemorySource class extends the BandSource class, allowing you to
+ * provide data from direct (off-heap) buffers, such as the ones returned by
+ * {@link ByteBuffer#allocateDirect(int)} or by mapping a file. Unlike the
+ * {@link MemorySource}, which copies its array, the buffers are read in
+ * place, and a list of them is treated as one run of bytes, so bands bigger
+ * than an array can hold can be written.
+ * 
+ * The buffers must not be changed or freed until the write is done.
+ * 
+ * This class is final because the BandSource class uses special logic when it
+ * gets constructed from a subclass.
+ */
+public final class DirectMemorySource extends BandSource
+{
+
+    /**
+     * @param address
+     */
+    protected DirectMemorySource(long address)
+    {
+        super(address);
+    }
+
+    /**
+     * Constructs and returns a BandSource from a direct buffer
+     * 
+     * @see #DirectMemorySource(ByteBuffer[], long, long, int, int)
+     */
+    public DirectMemorySource(ByteBuffer data, long size, long start,
+            int numBytesPerPixel, int pixelSkip) throws NITFException
+    {
+        this(new ByteBuffer[] { data }, size, start, numBytesPerPixel,
+                pixelSkip);
+    }
+
+    /**
+     * Constructs and returns a BandSource from a list of direct buffers, which
+     * are read one after the other, as if they were one
+     * 
+     * @param data
+     *            the direct buffers. The buffers are read from the start of
+     *            their memory, whatever their position and limit, to their
+     *            capacity.
+     * @param size
+     *            the size (in bytes) of data for this band
+     * @param start
+     *            the start offset, from the start of the first buffer
+     * @param numBytesPerPixel
+     *            the number of bytes per pixel this is ignored if pixelSkip ==
+     *            0
+     * @param pixelSkip
+     *            the number of pixels to skip, that are between pixels of this
+     *            band. i.e. the number of bands in the data buffers - 1 If
+     *            this is 0, it signifies a contiguous read.
+     * @throws NITFException
+     */
+    public DirectMemorySource(ByteBuffer[] data, long size, long start,
+            int numBytesPerPixel, int pixelSkip) throws NITFException
+    {
+        if (data == null || data.length == 0)
+            throw new NITFException("At least one buffer is required");
+        for (int i = 0; i < data.length; ++i)
+        {
+            if (data[i] == null || !data[i].isDirect())
+                throw new NITFException("Buffer " + i + " is not direct");
+        }
+        construct(data, size, start, numBytesPerPixel, pixelSkip);
+    }
+
+    /**
+     * Constructs the underlying memory
+     */
+    private native void construct(ByteBuffer[] data, long size, long start,
+            int numBytesPerPixel, int pixelSkip);
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.BandSource#read(byte[], int)
+     */
+    public native void read(byte[] buf, int size) throws NITFException;
+
+    @Override
+    public native long getSize() throws NITFException;
+
+    @Override
+    public native void setSize(long size) throws NITFException;
+
+}
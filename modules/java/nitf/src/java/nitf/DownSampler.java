@@ -22,6 +22,7 @@
 
 package nitf;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -30,7 +31,15 @@ import java.util.Map;
  * <code>DownSampler</code>
  * 
  * The abstract DownSampler class.
- * 
+ * <p/>
+ * Besides the built-in DownSamplers, you can extend this class to implement
+ * your own reduction in Java. Once set on a SubWindow, the native reader
+ * calls back into {@link #apply(ByteBuffer[], ByteBuffer[], int, int, int,
+ * int, int, int, int, int, int)} from inside its read loop, handing it direct
+ * ByteBuffers that wrap the native input and output windows. The buffers are
+ * in native byte order, and wrap memory that is only valid during the call,
+ * so they must not be kept past it. The skip and band settings are taken from the getters
+ * when the DownSampler is set on a SubWindow.
  */
 public abstract class DownSampler extends DestructibleObject
 {
@@ -64,7 +73,8 @@ public abstract class DownSampler extends DestructibleObject
         // DOWNSAMPLER TYPES (PIXELSKIP)
         // IF SO, WE DO NOT CONSTRUCT THE UNDERLYING MEMORY
         // BECAUSE WE ALREADY DO SO FOR THOSE TYPES
-        // THIS IS MORE MEANT FOR USER-EXTENDED DOWNSAMPLERS
+        // USER-EXTENDED DOWNSAMPLERS GET A NATIVE OBJECT THAT
+        // CALLS BACK INTO apply
 
         // parse the stack trace to get the calling class
         Throwable t = new Throwable();
@@ -77,14 +87,14 @@ public abstract class DownSampler extends DestructibleObject
             Class callerClass = Class.forName(caller.getClassName());
             if (!callerClass.equals(PixelSkipDownSampler.class)
                     && !callerClass.equals(MaxDownSampler.class)
-                    && !callerClass.equals(SumSq2BandDownSampler.class))
+                    && !callerClass.equals(SumSq2BandDownSampler.class)
+                    && !callerClass.equals(AverageDownSampler.class)
+                    && !callerClass.equals(GaussianDownSampler.class)
+                    && !callerClass.equals(MedianDownSampler.class)
+                    && !callerClass.equals(DetectDownSampler.class))
             {
-                // construct();
-
-                // TODO implement the JNI code that allows a callback...
-                // for now, we do not allow any other subclasses
-                throw new InstantiationError(
-                        "Cannot create a subclass of DownSampler. This is currently unsupported.");
+                construct();
+                userDefined = true;
             }
         }
         catch (ClassNotFoundException e)
@@ -93,11 +103,32 @@ public abstract class DownSampler extends DestructibleObject
         }
     }
 
+    /** True if this is implemented in Java, rather than natively */
+    private boolean userDefined = false;
+
     /**
      * Constructs the underlying memory
      */
     private native void construct();
 
+    /**
+     * Copies the settings of a user-extended DownSampler to its native
+     * object. This is called when the DownSampler is set on a SubWindow,
+     * since the getters can't be relied on until the subclass has been
+     * constructed.
+     */
+    final void updateNative()
+    {
+        if (userDefined)
+        {
+            setNativeSettings(getRowSkip(), getColSkip(), isMultiBand(),
+                    getMinSupportedBands(), getMaxSupportedBands());
+        }
+    }
+
+    private native void setNativeSettings(int rowSkip, int colSkip,
+            boolean multiBand, int minBands, int maxBands);
+
     /**
      * This callback provides the interface for applying a sampling method while
      * reading. The object argument gives access to the userData field which
@@ -106,9 +137,12 @@ public abstract class DownSampler extends DestructibleObject
      * this method.
      * 
      * @param inputWindows
-     *            Array of input image fragments (one/band)
-     * @param outputWindow
-     *            Array of sub-sampled image fragments (one/band)
+     *            Array of input image fragments (one/band). Each holds
+     *            numWindowRows * rowSkip rows of numInputCols pixels.
+     * @param outputWindows
+     *            Array of sub-sampled image fragments (one/band). Output rows
+     *            are numSubWindowCols pixels apart, and numWindowCols of them
+     *            are filled per row.
      * @param numBands
      *            Number of bands to down-sample
      * @param numWindowRows
@@ -127,7 +161,7 @@ public abstract class DownSampler extends DestructibleObject
      *            The number of rows in the final window
      * @param colsInLastWindow
      *            The number of cols in the final window
-     * @return NITF_SUCCESS on success, NITF_FAILURE on failure
+     * @return true on success, false on failure
      * 
      *         Note:
      * 
@@ -153,8 +187,8 @@ public abstract class DownSampler extends DestructibleObject
      *         sample
      *         windows per row (numWindowCols) for the current request
      */
-    protected abstract boolean apply(byte[][] inputWindows,
-                                     byte[][] outputWindows, int numBands,
+    protected abstract boolean apply(ByteBuffer[] inputWindows,
+                                     ByteBuffer[] outputWindows, int numBands,
                                      int numWindowRows, int numWindowCols,
                                      int numInputCols, int numSubWindowCols,
                                      int pixelType, int pixelSize,
@@ -0,0 +1,140 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+/**
+ * 
+ */
+package nitf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>GaussianDownSampler</code>
+ * 
+ * The Gaussian down-sampler low-pass filters the image before it is
+ * sub-sampled. <p/> The row and column skip factors divide the sub-window into
+ * non-overlaping sample windows. The down-sampled value of each window is the
+ * mean of the pixels around its center, weighted by a Gaussian. The weights
+ * reach ceil(3 * sigma) pixels (the halo) past the window on every side, and
+ * the reader supplies those pixels, repeating the edge pixels of the image
+ * past its edges. Integer results are rounded to the nearest value, and
+ * complex pixels have their real and imaginary parts filtered separately.
+ * <p/> Called directly, the input windows hold the halo around the windows:
+ * numWindowRows * rowSkip + 2 * halo rows, with the first window halo rows
+ * down and halo columns in.
+ */
+public final class GaussianDownSampler extends DownSampler
+{
+
+    /**
+     * @param address
+     */
+    public GaussianDownSampler(long address)
+    {
+        super(address);
+    }
+
+    /**
+     * Creates a down-sampler with a standard deviation of half of each skip
+     * 
+     * @param skipRows
+     * @param skipCols
+     */
+    public GaussianDownSampler(int skipRows, int skipCols)
+            throws NITFException
+    {
+        construct(skipRows, skipCols, 0);
+    }
+
+    /**
+     * 
+     * @param skipRows
+     * @param skipCols
+     * @param sigma
+     *            the standard deviation of the Gaussian, in full resolution
+     *            pixels
+     */
+    public GaussianDownSampler(int skipRows, int skipCols, double sigma)
+            throws NITFException
+    {
+        if (!(sigma > 0))
+            throw new NITFException("Invalid Gaussian sigma: " + sigma);
+        construct(skipRows, skipCols, sigma);
+    }
+
+    private native void construct(int skipRows, int skipCols, double sigma)
+            throws NITFException;
+
+    /**
+     * @return the number of pixels the method reads past each side of its
+     *         sample windows
+     */
+    public native int getHalo();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#apply(ByteBuffer[], ByteBuffer[], int, int, int,
+     *      int, int, int, int, int, int)
+     */
+    protected native boolean apply(ByteBuffer[] inputWindows,
+            ByteBuffer[] outputWindows, int numBands, int numWindowRows,
+            int numWindowCols, int numInputCols, int numSubWindowCols,
+            int pixelType, int pixelSize, int rowsInLastWindow,
+            int colsInLastWindow) throws NITFException;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getRowSkip()
+     */
+    public native int getRowSkip();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getColSkip()
+     */
+    public native int getColSkip();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getMinSupportedBands()
+     */
+    public native int getMinSupportedBands();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#getMaxSupportedBands()
+     */
+    public native int getMaxSupportedBands();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.DownSampler#isMultiBand()
+     */
+    public native boolean isMultiBand();
+
+}
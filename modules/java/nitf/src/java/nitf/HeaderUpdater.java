@@ -0,0 +1,317 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Updates the headers of a NITF in place, without rewriting the data of its
+ * segments. The record is read from the file, changed by the caller, and
+ * then laid out again by a {@link Writer}, with the data of each segment
+ * only reserved. If no header changed length, only the headers that changed
+ * are overwritten. Otherwise the data of each segment is moved to its new
+ * offset, once, directly within the file.
+ * <p>
+ * Segments cannot be added or removed, and files with label or reserved
+ * extension segments are not supported. Changes that make TREs overflow
+ * their headers are rejected too, as the writer would add a segment to hold
+ * them. Nor can the length of the data of a segment change: the subheader of
+ * an uncompressed image must still describe the data it has. (The subheaders
+ * of other segments do not describe the length of their data.) The file is
+ * not updated atomically: if an update that moves data fails, the file is
+ * left corrupt.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * HeaderUpdater updater = new HeaderUpdater(fileName);
+ * updater.getRecord().getHeader().getFileTitle().setData(title);
+ * updater.update();
+ * </pre>
+ */
+public final class HeaderUpdater
+{
+    /** The most bytes of data moved at a time */
+    private static final int COPY_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final String fileName;
+
+    private final Reader reader = new Reader();
+
+    private final Record record;
+
+    /** The offset of the data of each segment, in file order */
+    private long[] offsets;
+
+    /** The length of the data of each segment, in file order */
+    private long[] lengths;
+
+    /**
+     * Reads the record of the file
+     *
+     * @param fileName
+     *            the path of the file
+     * @throws NITFException
+     *             if the file cannot be read, or has label or reserved
+     *             extension segments
+     */
+    public HeaderUpdater(String fileName) throws NITFException
+    {
+        this.fileName = fileName;
+        IOHandle handle = new IOHandle(fileName);
+        try
+        {
+            record = reader.read(handle);
+        }
+        finally
+        {
+            handle.close();
+        }
+
+        FileHeader header = record.getHeader();
+        if (header.getNumLabels().getIntData() > 0
+                || header.getNumReservedExtensions().getIntData() > 0)
+            throw new NITFException("Unable to update " + fileName
+                    + " in place: it has label or reserved extension segments");
+        readLayout(header);
+    }
+
+    /**
+     * @return the record read from the file, to change before calling
+     *         {@link #update()}
+     */
+    public Record getRecord()
+    {
+        return record;
+    }
+
+    /**
+     * Finds where the data of each segment is, from the lengths in the file
+     * header
+     */
+    private void readLayout(FileHeader header) throws NITFException
+    {
+        ComponentInfo[][] infos = { header.getImageInfo(),
+                header.getGraphicInfo(), header.getTextInfo(),
+                header.getDataExtensionInfo() };
+        int numSegments = 0;
+        for (ComponentInfo[] info : infos)
+            numSegments += info.length;
+
+        offsets = new long[numSegments];
+        lengths = new long[numSegments];
+        long offset = getLong(header.getHeaderLength());
+        int i = 0;
+        for (ComponentInfo[] info : infos)
+        {
+            for (ComponentInfo segment : info)
+            {
+                offset += getLong(segment.getLengthSubheader());
+                offsets[i] = offset;
+                lengths[i] = getLong(segment.getLengthData());
+                offset += lengths[i++];
+            }
+        }
+    }
+
+    /**
+     * @return the value of a length field, which may not fit an int
+     */
+    private static long getLong(Field field)
+    {
+        return Long.parseLong(field.getStringData().trim());
+    }
+
+    /**
+     * Writes the changes made to the record to the file.
+     *
+     * @return the number of bytes of data moved, which is 0 if no header
+     *         changed length
+     * @throws NITFException
+     *             if segments were added or removed (including those the
+     *             writer adds for TREs that overflow), an uncompressed image
+     *             subheader no longer describes the length of its data, or
+     *             the file cannot be written
+     */
+    public long update() throws NITFException
+    {
+        // the writer sets the lengths of the record it writes
+        Record copy = record.makeClone();
+        Writer writer = new Writer();
+        LayoutIO output = new LayoutIO();
+        writer.prepare(copy, output);
+
+        // the writer may add segments, to hold TREs that overflow, which
+        // have no room in the file
+        int[] counts = { copy.getImages().length, copy.getGraphics().length,
+                copy.getTexts().length, copy.getDataExtensions().length };
+        int numSegments = 0;
+        for (int count : counts)
+            numSegments += count;
+        if (numSegments != offsets.length)
+            throw new NITFException("Unable to update " + fileName
+                    + " in place: it has " + offsets.length
+                    + " segments, but the record has " + numSegments);
+
+        // the data is kept, so it must still fit its subheader
+        ImageSegment[] images = copy.getImages();
+        for (int j = 0; j < images.length; ++j)
+        {
+            ImageSubheader subheader = images[j].getSubheader();
+            if (!subheader.getImageCompression().getStringData().trim()
+                    .equals("NC"))
+                continue;
+
+            long length = ParallelWriter.getUncompressedLength(subheader);
+            if (length != lengths[j])
+                throw new NITFException("Unable to update " + fileName
+                        + " in place: image " + j + " has " + lengths[j]
+                        + " bytes of data, but its subheader describes "
+                        + length);
+        }
+
+        LayoutIO.Reservation[] reservations =
+                new LayoutIO.Reservation[numSegments];
+        for (int i = 0; i < numSegments; ++i)
+            reservations[i] = output.newReservation(lengths[i]);
+        int i = 0;
+        for (int j = 0; j < counts[0]; ++j)
+            writer.setImageWriteHandler(j, reservations[i++]);
+        for (int j = 0; j < counts[1]; ++j)
+            writer.setGraphicWriteHandler(j, reservations[i++]);
+        for (int j = 0; j < counts[2]; ++j)
+            writer.setTextWriteHandler(j, reservations[i++]);
+        for (int j = 0; j < counts[3]; ++j)
+            writer.setDEWriteHandler(j, reservations[i++]);
+        writer.write();
+
+        long moved = 0;
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(fileName, "rw");
+            FileChannel channel = file.getChannel();
+
+            /*
+             * Moving data back in file order, and then data forward in reverse
+             * order, never overwrites data that has yet to be moved
+             */
+            for (i = 0; i < numSegments; ++i)
+            {
+                if (reservations[i].getOffset() < offsets[i])
+                    moved += move(channel, offsets[i], reservations[i]
+                            .getOffset(), lengths[i]);
+            }
+            for (i = numSegments - 1; i >= 0; --i)
+            {
+                if (reservations[i].getOffset() > offsets[i])
+                    moved += move(channel, offsets[i], reservations[i]
+                            .getOffset(), lengths[i]);
+            }
+
+            for (ByteProvider.ByteRange range : output.getRanges())
+            {
+                byte[] data = range.getData();
+                if (!Arrays.equals(data, read(file, range.getOffset(),
+                        data.length)))
+                {
+                    file.seek(range.getOffset());
+                    file.write(data);
+                }
+            }
+            if (file.length() != output.getSize())
+                file.setLength(output.getSize());
+        }
+        catch (IOException e)
+        {
+            throw new NITFException(e);
+        }
+        finally
+        {
+            try
+            {
+                if (file != null)
+                    file.close();
+            }
+            catch (IOException e)
+            {
+                // nothing more to be done
+            }
+        }
+
+        readLayout(copy.getHeader());
+        return moved;
+    }
+
+    /**
+     * @return the bytes of the file at the offset, or null if the file is too
+     *         short
+     */
+    private static byte[] read(RandomAccessFile file, long offset, int length)
+            throws IOException
+    {
+        if (offset + length > file.length())
+            return null;
+        byte[] data = new byte[length];
+        file.seek(offset);
+        file.readFully(data);
+        return data;
+    }
+
+    /**
+     * Moves bytes within the file. When they move forward they are copied
+     * from the end, so that each is read before it is overwritten.
+     *
+     * @return the number of bytes moved
+     */
+    private static long move(FileChannel channel, long from, long to,
+            long length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(length,
+                COPY_BUFFER_SIZE));
+        for (long done = 0; done < length;)
+        {
+            int size = (int) Math.min(buffer.capacity(), length - done);
+            long at = to > from ? length - done - size : done;
+
+            buffer.clear();
+            buffer.limit(size);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer, from + at + buffer.position()) < 0)
+                    throw new EOFException("Unexpected end of file at "
+                            + (from + at + buffer.position()));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer, to + at + buffer.position());
+            done += size;
+        }
+        return length;
+    }
+}
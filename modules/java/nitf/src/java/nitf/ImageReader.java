@@ -27,6 +27,16 @@ package nitf;
  */
 public final class ImageReader extends DestructibleObject
 {
+    /**
+     * {@link #getBlockStatus()} value of a block that is not recorded in the
+     * file. Reads fill it with the pad value, without any I/O.
+     */
+    public static final byte BLOCK_MISSING = 1;
+
+    /**
+     * {@link #getBlockStatus()} value of a recorded block that has pad pixels
+     */
+    public static final byte BLOCK_PADDED = 2;
 
     /**
      * @see DestructibleObject#DestructibleObject(long)
@@ -51,6 +61,43 @@ public final class ImageReader extends DestructibleObject
      */
     public native BlockingInfo getBlockingInfo() throws NITFException;
 
+    /**
+     * Returns the block mask state of each block: 0 for an ordinary block,
+     * {@link #BLOCK_MISSING} or {@link #BLOCK_PADDED}. The blocks are in row
+     * major order, and for band sequential (IMODE S) images all of the blocks
+     * of the first band come before those of the second, and so on. Images
+     * without masks only have ordinary blocks.
+     * 
+     * @return the status of each block
+     * @throws NITFException
+     */
+    public native byte[] getBlockStatus() throws NITFException;
+
+    /**
+     * Returns whether each block, in row major order, is recorded in the file
+     * for any band. Everything within blocks that are not present is pad
+     * pixels, so a caller can answer an empty tile without reading it.
+     * 
+     * @return true for each block that is present
+     * @throws NITFException
+     */
+    public boolean[] getPresentBlocks() throws NITFException
+    {
+        byte[] status = getBlockStatus();
+        BlockingInfo info = getBlockingInfo();
+        int numBlocks = info.getNumBlocksPerRow() * info.getNumBlocksPerCol();
+        if (numBlocks <= 0 || status.length % numBlocks != 0)
+            numBlocks = status.length;
+
+        boolean[] present = new boolean[numBlocks];
+        for (int i = 0; i < status.length; ++i)
+        {
+            if (status[i] != BLOCK_MISSING)
+                present[i % numBlocks] = true;
+        }
+        return present;
+    }
+
     /**
      * Reads the data specified by the SubWindow into the byte[][] buffer
      * 
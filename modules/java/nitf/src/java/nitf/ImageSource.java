@@ -25,7 +25,7 @@ package nitf;
 /**
  * Class used to compile an image together, based on its constituent bands.
  */
-public final class ImageSource extends DestructibleObject
+public class ImageSource extends DestructibleObject
 {
 
     /**
@@ -36,6 +36,39 @@ public final class ImageWriter extends DestructibleObject
         super(address);
     }
 
+    /**
+     * Creates an ImageWriter for the image segment with the given subheader,
+     * which is not attached to any {@link Writer}. Its data is written with
+     * {@link #write(IOInterface)}. The subheader must outlive the writer.
+     * 
+     * @param subheader
+     *            the subheader of the image segment
+     * @throws NITFException
+     *             if the subheader does not describe a writable image
+     */
+    public ImageWriter(ImageSubheader subheader) throws NITFException
+    {
+        construct(subheader);
+    }
+
+    /**
+     * Constructs the underlying memory
+     */
+    private native void construct(ImageSubheader subheader)
+            throws NITFException;
+
+    /**
+     * Writes the image data, starting at the current position of the given
+     * IOInterface. This is what a {@link Writer} does for each image segment
+     * once its subheader is written.
+     * 
+     * @param io
+     *            the output
+     * @throws NITFException
+     *             if the write fails
+     */
+    public native void write(IOInterface io) throws NITFException;
+
     /**
      * Attaches the specified ImageSource to this ImageWriter
      * 
@@ -64,6 +97,19 @@ public final class ImageWriter extends DestructibleObject
      */
     public native boolean setWriteCaching(boolean flag);
 
+    /**
+     * Enables/disables direct block writes. When enabled, the attached
+     * ImageSource is read a whole block at a time, in block order, and each
+     * block is written as it is, with no reblocking. This is meant for a
+     * {@link DirectBlockSource}, and is only supported for single band images.
+     * 
+     * @param enable
+     * @throws NITFException
+     *             if the image has more than one band
+     */
+    public native void setDirectBlockWrite(boolean enable)
+            throws NITFException;
+
     @Override
     protected MemoryDestructor getDestructor()
     {
@@ -0,0 +1,149 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>InterleavedImageSource</code>
+ * 
+ * An ImageSource for pixel interleaved data, which has all of the bands of
+ * each pixel together, such as an RGB raster. Instead of a MemorySource per
+ * band, each of which strides through the whole buffer, the band sources
+ * share one native splitter that takes each interleaved row apart into its
+ * bands in a single pass. The image writer then lays the bands out for the
+ * IMODE of the image, so any IMODE can be written from the same data.
+ * 
+ * The data is either a direct buffer, which is read in place, or rows from a
+ * {@link RowProducer}. Either way the band sources must be read in step, a
+ * row at a time, as the image writer does, and the image source can only be
+ * used for one write.
+ */
+public final class InterleavedImageSource extends ImageSource
+{
+    /**
+     * Produces the interleaved rows of the image
+     */
+    public interface RowProducer
+    {
+        /**
+         * Fills the buffer with the next row of the image
+         * 
+         * @param buffer
+         *            a direct buffer, positioned at 0, with its limit at the
+         *            end of the row. The buffer is native memory that is
+         *            reused from call to call, so it must not be kept.
+         * @throws NITFException
+         */
+        void nextRow(ByteBuffer buffer) throws NITFException;
+    }
+
+    /**
+     * Constructs an ImageSource from interleaved data in a direct buffer
+     * 
+     * @param data
+     *            the direct buffer, which is read from the start of its
+     *            memory, whatever its position, and must not be changed or
+     *            freed until the write is done
+     * @param numRows
+     *            the number of rows
+     * @param numCols
+     *            the number of columns
+     * @param numBands
+     *            the number of bands
+     * @param numBytesPerPixel
+     *            the number of bytes in each band of a pixel
+     * @throws NITFException
+     */
+    public InterleavedImageSource(ByteBuffer data, int numRows, int numCols,
+            int numBands, int numBytesPerPixel) throws NITFException
+    {
+        super(construct(data, numRows, numCols, numBands, numBytesPerPixel));
+    }
+
+    /**
+     * Constructs an ImageSource from interleaved data in an array, which is
+     * copied once
+     * 
+     * @see #InterleavedImageSource(ByteBuffer, int, int, int, int)
+     */
+    public InterleavedImageSource(byte[] data, int numRows, int numCols,
+            int numBands, int numBytesPerPixel) throws NITFException
+    {
+        this(toDirect(data), numRows, numCols, numBands, numBytesPerPixel);
+    }
+
+    /**
+     * Constructs an ImageSource from interleaved rows produced one at a time
+     * 
+     * @param producer
+     *            produces the rows, in order
+     * @see #InterleavedImageSource(ByteBuffer, int, int, int, int)
+     */
+    public InterleavedImageSource(RowProducer producer, int numRows,
+            int numCols, int numBands, int numBytesPerPixel)
+            throws NITFException
+    {
+        super(constructRows(producer, numRows, numCols, numBands,
+                numBytesPerPixel));
+    }
+
+    private static ByteBuffer toDirect(byte[] data)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        return buffer;
+    }
+
+    private static native long construct(ByteBuffer data, int numRows,
+            int numCols, int numBands, int numBytesPerPixel)
+            throws NITFException;
+
+    private static native long constructRows(RowProducer producer,
+            int numRows, int numCols, int numBands, int numBytesPerPixel)
+            throws NITFException;
+
+    /**
+     * A band of an interleaved image source, which is made natively
+     */
+    private static final class Band extends BandSource
+    {
+        Band(long address)
+        {
+            super(address);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see nitf.BandSource#read(byte[], int)
+         */
+        public native void read(byte[] buf, int size) throws NITFException;
+
+        @Override
+        public native long getSize() throws NITFException;
+
+        @Override
+        public native void setSize(long size) throws NITFException;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An output that keeps what is written in memory, and skips over what is
+ * reserved. Writing a record to it, with a {@link Reservation} standing in
+ * for the data of each segment, lays out the file without its data.
+ */
+final class LayoutIO extends IOInterface
+{
+    /** The runs of written bytes, in file order */
+    private final List<Run> runs = new ArrayList<Run>();
+
+    private long position = 0;
+
+    private long size = 0;
+
+    /**
+     * Skips the given number of bytes, at the end of the output
+     */
+    private void reserve(long length) throws NITFException
+    {
+        if (position != size)
+            throw new NITFException("Can only reserve at the end");
+        position += length;
+        size = position;
+    }
+
+    /**
+     * @return the runs of written bytes, in file order
+     */
+    List<ByteProvider.ByteRange> getRanges()
+    {
+        List<ByteProvider.ByteRange> ranges =
+                new ArrayList<ByteProvider.ByteRange>(runs.size());
+        for (Run run : runs)
+        {
+            byte[] data = new byte[run.length];
+            System.arraycopy(run.data, 0, data, 0, run.length);
+            ranges.add(new ByteProvider.ByteRange(run.offset, run.length,
+                    data));
+        }
+        return ranges;
+    }
+
+    @Override
+    public void write(byte[] buf, int size) throws NITFException
+    {
+        Run run = null;
+        for (int i = runs.size() - 1; i >= 0 && run == null; --i)
+        {
+            Run r = runs.get(i);
+            if (r.offset <= position && position <= r.offset + r.length)
+                run = r;
+        }
+        if (run == null)
+        {
+            if (position < this.size)
+                throw new NITFException(
+                        "Cannot write within reserved bytes");
+            run = new Run(position);
+            runs.add(run);
+        }
+        run.write((int) (position - run.offset), buf, size);
+        position += size;
+        this.size = Math.max(this.size, position);
+    }
+
+    @Override
+    public void read(byte[] buf, int size) throws NITFException
+    {
+        throw new NITFException("Cannot read the layout");
+    }
+
+    @Override
+    public boolean canSeek()
+    {
+        return true;
+    }
+
+    @Override
+    public long seek(long offset, int whence) throws NITFException
+    {
+        switch (whence)
+        {
+        case IOInterface.SEEK_CUR:
+            offset += position;
+            break;
+        case IOInterface.SEEK_END:
+            offset += size;
+            break;
+        }
+        if (offset < 0 || offset > size)
+            throw new NITFException("Invalid seek to " + offset);
+        position = offset;
+        return position;
+    }
+
+    @Override
+    public long tell() throws NITFException
+    {
+        return position;
+    }
+
+    @Override
+    public long getSize() throws NITFException
+    {
+        return size;
+    }
+
+    @Override
+    public int getMode() throws NITFException
+    {
+        return NITF_ACCESS_WRITEONLY;
+    }
+
+    @Override
+    public void close() throws NITFException
+    {
+        // nothing to release
+    }
+
+    /**
+     * @return a handler that stands in for the data of a segment, by
+     *         reserving the given length where the data would be
+     */
+    Reservation newReservation(long length)
+    {
+        return new Reservation(length);
+    }
+
+    /**
+     * Stands in for the data of a segment: notes its offset and reserves its
+     * length
+     */
+    final class Reservation extends WriteHandler
+    {
+        private final long length;
+
+        private long offset = -1;
+
+        Reservation(long length)
+        {
+            this.length = length;
+        }
+
+        /**
+         * @return the offset of the data, or -1 if it was never written
+         */
+        long getOffset()
+        {
+            return offset;
+        }
+
+        long getLength()
+        {
+            return length;
+        }
+
+        public void write(IOInterface io) throws NITFException
+        {
+            offset = tell();
+            reserve(length);
+        }
+    }
+
+    /**
+     * Contiguous written bytes
+     */
+    private static final class Run
+    {
+        final long offset;
+
+        byte[] data = new byte[1024];
+
+        int length = 0;
+
+        Run(long offset)
+        {
+            this.offset = offset;
+        }
+
+        void write(int at, byte[] buf, int size)
+        {
+            if (at + size > data.length)
+            {
+                byte[] grown = new byte[Math.max(2 * data.length, at + size)];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+            System.arraycopy(buf, 0, data, at, size);
+            length = Math.max(length, at + size);
+        }
+    }
+}
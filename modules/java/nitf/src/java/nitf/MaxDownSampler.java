@@ -25,6 +25,8 @@
  */
 package nitf;
 
+import java.nio.ByteBuffer;
+
 /**
  * <code>MaxDownSampler</code>
  * 
@@ -69,11 +71,11 @@ public final class MaxDownSampler extends DownSampler
     /*
      * (non-Javadoc)
      * 
-     * @see nitf.DownSampler#apply(byte[][], byte[][], int, int, int, int, int,
-     *      int, int, int, int)
+     * @see nitf.DownSampler#apply(ByteBuffer[], ByteBuffer[], int, int, int,
+     *      int, int, int, int, int, int)
      */
-    protected native boolean apply(byte[][] inputWindows,
-            byte[][] outputWindows, int numBands, int numWindowRows,
+    protected native boolean apply(ByteBuffer[] inputWindows,
+            ByteBuffer[] outputWindows, int numBands, int numWindowRows,
             int numWindowCols, int numInputCols, int numSubWindowCols,
             int pixelType, int pixelSize, int rowsInLastWindow,
             int colsInLastWindow) throws NITFException;
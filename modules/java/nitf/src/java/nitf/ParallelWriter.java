@@ -0,0 +1,339 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a NITF whose image segments are written concurrently. The length of
+ * an uncompressed image segment is known from its subheader, so the layout of
+ * the whole file is known up front. The record is first written to memory by
+ * a {@link Writer}, with the data of each image segment only reserved, which
+ * gives the header and subheaders their final lengths and the data of each
+ * image its offset. Then the file is created at its full length, each image
+ * is written at its offset, through a handle of its own, on a pool of
+ * threads, and the headers are written last. A write that fails leaves no
+ * headers in the file.
+ * <p>
+ * Only uncompressed (NC) image segments are supported. Text, graphic and DE
+ * segments are written with the header, through the write handlers set on
+ * this writer.
+ */
+public final class ParallelWriter
+{
+    private final Record record;
+
+    private final String fileName;
+
+    private final Writer writer = new Writer();
+
+    private final LayoutIO output = new LayoutIO();
+
+    private final ImageWriter[] imageWriters;
+
+    /** The length of each image segment's data */
+    private final long[] lengths;
+
+    /** Stands in for each image segment's data while it is laid out */
+    private final LayoutIO.Reservation[] reservations;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Prepares to write the record to the file. The file is not created (or
+     * truncated) until the record is written.
+     *
+     * @param record
+     *            the record to write
+     * @param fileName
+     *            the path of the file
+     * @throws NITFException
+     *             if an image segment is compressed, or its pixels cannot
+     *             be packed
+     */
+    public ParallelWriter(Record record, String fileName) throws NITFException
+    {
+        this.record = record;
+        this.fileName = fileName;
+
+        ImageSegment[] images = record.getImages();
+        lengths = new long[images.length];
+        reservations = new LayoutIO.Reservation[images.length];
+        imageWriters = new ImageWriter[images.length];
+        for (int i = 0; i < images.length; ++i)
+        {
+            lengths[i] = getDataLength(images[i].getSubheader());
+            reservations[i] = output.newReservation(lengths[i]);
+        }
+        writer.prepare(record, output);
+    }
+
+    /**
+     * @return the length of the data of an uncompressed image segment, which
+     *         is written a whole (padded) block at a time
+     * @throws NITFException
+     *             if the image is compressed, or its pixels cannot be packed
+     */
+    static long getDataLength(ImageSubheader subheader)
+            throws NITFException
+    {
+        checkWritable(subheader);
+        return getUncompressedLength(subheader);
+    }
+
+    /**
+     * @return the length of a block of an uncompressed image segment
+     * @throws NITFException
+     *             if the image is compressed, or its pixels cannot be packed
+     * @see #getUncompressedBlockLength(ImageSubheader)
+     */
+    static long getBlockLength(ImageSubheader subheader)
+            throws NITFException
+    {
+        checkWritable(subheader);
+        return getUncompressedBlockLength(subheader);
+    }
+
+    private static void checkWritable(ImageSubheader subheader)
+            throws NITFException
+    {
+        String compression = subheader.getImageCompression().getStringData()
+                .trim();
+        if (!compression.equals("NC"))
+            throw new NITFException(
+                    "Only uncompressed images can be written in parallel, not "
+                            + compression);
+
+        // the native writer packs these as it writes each block
+        int nbpp = subheader.getNumBitsPerPixel().getIntData();
+        int abpp = subheader.getActualBitsPerPixel().getIntData();
+        String type = subheader.getPixelValueType().getStringData().trim();
+        if (nbpp % 8 != 0 && !(nbpp == 12 && abpp == 12)
+                && (!(type.equals("INT") || type.equals("SI"))
+                        || (nbpp > 16 && nbpp < 24) || nbpp > 32))
+            throw new NITFException("Unable to write " + nbpp
+                    + "-bit pixels of type " + type);
+    }
+
+    /**
+     * @return the length of the data of an uncompressed (NC) image segment,
+     *         as its subheader describes it
+     */
+    static long getUncompressedLength(ImageSubheader subheader)
+            throws NITFException
+    {
+        long numBlocks = (long) subheader.getNumBlocksPerCol().getIntData()
+                * subheader.getNumBlocksPerRow().getIntData();
+        if (subheader.getImageMode().getStringData().trim().equals("S"))
+            numBlocks *= subheader.getBandCount();
+        return numBlocks * getUncompressedBlockLength(subheader);
+    }
+
+    /**
+     * Returns the length of a block of an uncompressed (NC) image segment,
+     * which holds one band in band sequential (S) mode, and every band
+     * otherwise. Pixels whose NBPP is not a multiple of 8 (such as 12-bit or
+     * bi-level pixels) are packed, so a block takes ceil(pixels * NBPP / 8)
+     * bytes.
+     */
+    private static long getUncompressedBlockLength(ImageSubheader subheader)
+            throws NITFException
+    {
+        long rowsPerBlock = subheader.getNumPixelsPerVertBlock().getIntData();
+        long colsPerBlock = subheader.getNumPixelsPerHorizBlock().getIntData();
+
+        // 0 means the blocks span the image
+        if (rowsPerBlock == 0)
+            rowsPerBlock = subheader.getNumRows().getIntData();
+        if (colsPerBlock == 0)
+            colsPerBlock = subheader.getNumCols().getIntData();
+        long numPixels = rowsPerBlock * colsPerBlock;
+        if (!subheader.getImageMode().getStringData().trim().equals("S"))
+            numPixels *= subheader.getBandCount();
+        return (numPixels * subheader.getNumBitsPerPixel().getIntData() + 7)
+                / 8;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Sets the number of image segments written at once. Defaults to the
+     * number of processors.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the ImageWriter of the image at the given index, to attach its
+     * source to
+     *
+     * @param imageNumber
+     *            the index of the image
+     * @throws NITFException
+     */
+    public ImageWriter getNewImageWriter(int imageNumber) throws NITFException
+    {
+        imageWriters[imageNumber] = new ImageWriter(record.getImages()[imageNumber]
+                .getSubheader());
+        return imageWriters[imageNumber];
+    }
+
+    /**
+     * @see Writer#setTextWriteHandler(int, WriteHandler)
+     */
+    public void setTextWriteHandler(int index, WriteHandler writeHandler)
+            throws NITFException
+    {
+        writer.setTextWriteHandler(index, writeHandler);
+    }
+
+    /**
+     * @see Writer#setGraphicWriteHandler(int, WriteHandler)
+     */
+    public void setGraphicWriteHandler(int index, WriteHandler writeHandler)
+            throws NITFException
+    {
+        writer.setGraphicWriteHandler(index, writeHandler);
+    }
+
+    /**
+     * @see Writer#setDEWriteHandler(int, WriteHandler)
+     */
+    public void setDEWriteHandler(int index, WriteHandler writeHandler)
+            throws NITFException
+    {
+        writer.setDEWriteHandler(index, writeHandler);
+    }
+
+    /**
+     * Creates (or truncates) the file, writes the image segments concurrently
+     * and then the rest of the record. The file is closed when done.
+     *
+     * @throws NITFException
+     *             if any part of the write fails
+     */
+    public void write() throws NITFException
+    {
+        for (int i = 0; i < imageWriters.length; ++i)
+        {
+            if (imageWriters[i] == null)
+                throw new NITFException("No ImageWriter for image " + i);
+        }
+
+        for (int i = 0; i < imageWriters.length; ++i)
+            writer.setImageWriteHandler(i, reservations[i]);
+        writer.write();
+
+        IOHandle handle = new IOHandle(fileName,
+                IOHandle.NITF_ACCESS_WRITEONLY, IOHandle.NITF_CREATE);
+        try
+        {
+            if (output.getSize() > 0)
+            {
+                handle.seek(output.getSize() - 1, IOInterface.SEEK_SET);
+                handle.write(new byte[1]);
+            }
+        }
+        finally
+        {
+            handle.close();
+        }
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i = 0; i < imageWriters.length; ++i)
+        {
+            final int index = i;
+            tasks.add(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    // opening write-only would truncate the file
+                    IOHandle handle = new IOHandle(fileName,
+                            IOHandle.NITF_ACCESS_READWRITE,
+                            IOHandle.NITF_OPEN_EXISTING);
+                    try
+                    {
+                        handle.seek(reservations[index].getOffset(),
+                                IOInterface.SEEK_SET);
+                        imageWriters[index].write(handle);
+                    }
+                    finally
+                    {
+                        handle.close();
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(numThreads, tasks.size())));
+        try
+        {
+            for (Future<Object> future : executor.invokeAll(tasks))
+                future.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new NITFException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new NITFException(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // opening write-only would truncate the file
+        handle = new IOHandle(fileName, IOHandle.NITF_ACCESS_READWRITE,
+                IOHandle.NITF_OPEN_EXISTING);
+        try
+        {
+            for (ByteProvider.ByteRange range : output.getRanges())
+            {
+                handle.seek(range.getOffset(), IOInterface.SEEK_SET);
+                handle.write(range.getData());
+            }
+        }
+        finally
+        {
+            handle.close();
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ *
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes an image segment whose pixels are computed while they are written.
+ * Producer threads compute block rows (bands of rows, typically a row of
+ * blocks) in any order, while the native writer, on the thread calling
+ * {@link #write(Writer)}, takes them in file order through a
+ * {@link RowSource} per band.
+ * <p>
+ * At most {@link #getQueueCapacity()} block rows are held at once, counting
+ * those being computed; a producer waits for the writer to take the oldest
+ * before starting another. If a producer fails the write fails with its
+ * exception, and if the write fails the producers are stopped.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * PipelinedWriter pipeline = new PipelinedWriter(producer, numBands, numRows,
+ *         rowLength, rowsPerBlockRow);
+ * writer.prepare(record, output);
+ * pipeline.attach(writer.getNewImageWriter(0));
+ * pipeline.write(writer);
+ * </pre>
+ */
+public final class PipelinedWriter
+{
+    /**
+     * Computes block rows
+     */
+    public interface BlockRowProducer
+    {
+        /**
+         * Fills one buffer per band with the given rows. It is called
+         * concurrently, for different block rows.
+         *
+         * @param blockRow
+         *            the index of the block row
+         * @param startRow
+         *            the first row
+         * @param numRows
+         *            the number of rows, which is the same for all block rows
+         *            but (perhaps) the last
+         * @param bands
+         *            a buffer per band, each numRows rows long
+         * @throws Exception
+         */
+        void produce(int blockRow, int startRow, int numRows, byte[][] bands)
+                throws Exception;
+    }
+
+    private final BlockRowProducer producer;
+
+    private final int numBands;
+
+    private final int numRows;
+
+    private final int rowLength;
+
+    private final int rowsPerBlockRow;
+
+    private final int numBlockRows;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    private int queueCapacity = -1;
+
+    /** The block rows produced and not yet taken by every band */
+    private final Map<Integer, BlockRow> ready = new HashMap<Integer, BlockRow>();
+
+    /** The next block row of each band */
+    private final int[] next;
+
+    private final AtomicInteger nextProduced = new AtomicInteger();
+
+    private Semaphore slots;
+
+    private volatile Throwable failure;
+
+    private boolean written = false;
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private final AtomicLong producerWaitNanos = new AtomicLong();
+
+    private final AtomicLong writerWaitNanos = new AtomicLong();
+
+    private long elapsedNanos;
+
+    /**
+     * @param producer
+     *            computes the block rows
+     * @param numBands
+     *            the number of bands
+     * @param numRows
+     *            the number of rows of the image
+     * @param rowLength
+     *            the length of a row of a band, in bytes
+     * @param rowsPerBlockRow
+     *            the number of rows computed at a time, usually the number of
+     *            rows per block
+     * @throws NITFException
+     */
+    public PipelinedWriter(BlockRowProducer producer, int numBands,
+            int numRows, int rowLength, int rowsPerBlockRow)
+            throws NITFException
+    {
+        if (producer == null)
+            throw new NITFException("A block row producer is required");
+        if (numBands <= 0 || numRows <= 0 || rowLength <= 0
+                || rowsPerBlockRow <= 0)
+            throw new NITFException("Invalid pipeline dimensions: "
+                    + numBands + " bands of " + numRows + " rows of "
+                    + rowLength + " bytes, " + rowsPerBlockRow + " at a time");
+        if ((long) rowLength * rowsPerBlockRow > Integer.MAX_VALUE)
+            throw new NITFException("Block row is too big: "
+                    + rowsPerBlockRow + " rows of " + rowLength + " bytes");
+        this.producer = producer;
+        this.numBands = numBands;
+        this.numRows = numRows;
+        this.rowLength = rowLength;
+        this.rowsPerBlockRow = Math.min(rowsPerBlockRow, numRows);
+        this.numBlockRows = (numRows + this.rowsPerBlockRow - 1)
+                / this.rowsPerBlockRow;
+        this.next = new int[numBands];
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Sets the number of producer threads. Defaults to the number of
+     * processors.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the most block rows held at once. Defaults to twice the number
+     * of threads.
+     */
+    public int getQueueCapacity()
+    {
+        return queueCapacity > 0 ? queueCapacity : 2 * numThreads;
+    }
+
+    /**
+     * Sets the most block rows held at once
+     */
+    public void setQueueCapacity(int queueCapacity)
+    {
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("Invalid queue capacity: "
+                    + queueCapacity);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Attaches a {@link RowSource} per band to the image writer
+     *
+     * @throws NITFException
+     */
+    public void attach(ImageWriter imageWriter) throws NITFException
+    {
+        ImageSource source = new ImageSource();
+        RowSource.RowProducer rows = new RowSource.RowProducer()
+        {
+            public void nextRows(int band, ByteBuffer buffer)
+                    throws NITFException
+            {
+                take(band, buffer);
+            }
+        };
+        for (int band = 0; band < numBands; ++band)
+            source.addBand(new RowSource(rows, band, numRows, rowLength,
+                    rowsPerBlockRow));
+        imageWriter.attachSource(source);
+    }
+
+    /**
+     * Writes the record, producing the block rows of the attached image as
+     * they are needed. A pipeline can only be written once.
+     *
+     * @throws NITFException
+     *             if the write fails, or a producer fails, in which case the
+     *             producer's exception is the cause
+     */
+    public void write(Writer writer) throws NITFException
+    {
+        synchronized (this)
+        {
+            if (written)
+                throw new NITFException("The pipeline has already been written");
+            written = true;
+        }
+
+        slots = new Semaphore(getQueueCapacity());
+        int threads = Math.min(numThreads, numBlockRows);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try
+        {
+            for (int i = 0; i < threads; ++i)
+            {
+                executor.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        produce();
+                    }
+                });
+            }
+            writer.write();
+        }
+        catch (NITFException e)
+        {
+            if (failure != null)
+                throw new NITFException(failure);
+            throw e;
+        }
+        finally
+        {
+            // stop any producers still waiting
+            executor.shutdownNow();
+            elapsedNanos = System.nanoTime() - start;
+        }
+        if (failure != null)
+            throw new NITFException(failure);
+    }
+
+    /**
+     * Produces block rows until they run out, or something fails
+     */
+    private void produce()
+    {
+        try
+        {
+            while (failure == null)
+            {
+                long start = System.nanoTime();
+                slots.acquire();
+                producerWaitNanos.addAndGet(System.nanoTime() - start);
+
+                int blockRow = nextProduced.getAndIncrement();
+                if (blockRow >= numBlockRows)
+                    return;
+
+                int startRow = blockRow * rowsPerBlockRow;
+                int rows = Math.min(rowsPerBlockRow, numRows - startRow);
+                byte[][] bands = new byte[numBands][rows * rowLength];
+                producer.produce(blockRow, startRow, rows, bands);
+                synchronized (ready)
+                {
+                    ready.put(blockRow, new BlockRow(bands));
+                    ready.notifyAll();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // the write is over
+        }
+        catch (Throwable t)
+        {
+            synchronized (ready)
+            {
+                if (failure == null)
+                    failure = t;
+                ready.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Copies the next block row of the band to the buffer, waiting for it to
+     * be produced
+     */
+    private void take(int band, ByteBuffer buffer) throws NITFException
+    {
+        Integer blockRow = next[band]++;
+        BlockRow row;
+        synchronized (ready)
+        {
+            long start = System.nanoTime();
+            try
+            {
+                while ((row = ready.get(blockRow)) == null && failure == null)
+                    ready.wait();
+            }
+            catch (InterruptedException e)
+            {
+                throw new NITFException(e);
+            }
+            finally
+            {
+                writerWaitNanos.addAndGet(System.nanoTime() - start);
+            }
+            if (failure != null)
+                throw new NITFException(failure);
+
+            if (++row.taken == numBands)
+            {
+                ready.remove(blockRow);
+                slots.release();
+            }
+        }
+        buffer.put(row.bands[band], 0, buffer.remaining());
+        bytesWritten.addAndGet(buffer.limit());
+    }
+
+    /**
+     * @return the number of bytes of pixels handed to the writer so far
+     */
+    public long getBytesWritten()
+    {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return the time the producers spent waiting for room in the queue, in
+     *         milliseconds, summed over the producers. A large share means
+     *         the writing is the bottleneck.
+     */
+    public long getProducerWaitMillis()
+    {
+        return producerWaitNanos.get() / 1000000;
+    }
+
+    /**
+     * @return the time the writer spent waiting for block rows, in
+     *         milliseconds. A large share means producing is the bottleneck.
+     */
+    public long getWriterWaitMillis()
+    {
+        return writerWaitNanos.get() / 1000000;
+    }
+
+    /**
+     * @return the time the write took, in milliseconds
+     */
+    public long getElapsedMillis()
+    {
+        return elapsedNanos / 1000000;
+    }
+
+    /**
+     * @return the bytes of pixels written per second, over the whole write
+     */
+    public double getThroughput()
+    {
+        return elapsedNanos > 0 ? bytesWritten.get() * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * A produced block row, and how many bands have taken it
+     */
+    private static final class BlockRow
+    {
+        final byte[][] bands;
+
+        int taken = 0;
+
+        BlockRow(byte[][] bands)
+        {
+            this.bands = bands;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package nitf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <code>RowSource</code>
+ * 
+ * The RowSource class extends the BandSource class, allowing you to provide
+ * data that is produced a row, or a batch of rows, at a time. It is backed by
+ * the native row source, which asks a {@link RowProducer} for the next rows
+ * whenever it runs out, so a band of any size can be written with memory
+ * bounded by one batch.
+ * 
+ * The rows are requested in order, each once, so a RowSource can only be
+ * used for one write.
+ * 
+ * This class is final because the BandSource class uses special logic when it
+ * gets constructed from a subclass.
+ */
+public final class RowSource extends BandSource
+{
+    /**
+     * Produces the rows of a band
+     */
+    public interface RowProducer
+    {
+        /**
+         * Fills the buffer with the next rows of the band
+         * 
+         * @param band
+         *            the band the rows are for
+         * @param buffer
+         *            a direct buffer, positioned at 0, with its limit at the
+         *            end of the rows wanted. This is a whole batch, except
+         *            for the last one if the batch size does not divide the
+         *            number of rows. The buffer is native memory that is
+         *            reused from call to call, so it must not be kept.
+         * @throws NITFException
+         */
+        void nextRows(int band, ByteBuffer buffer) throws NITFException;
+    }
+
+    private long size;
+
+    /**
+     * @param address
+     */
+    protected RowSource(long address)
+    {
+        super(address);
+    }
+
+    /**
+     * Constructs a BandSource whose rows are produced one at a time
+     * 
+     * @see #RowSource(RowProducer, int, int, int, int)
+     */
+    public RowSource(RowProducer producer, int band, int numRows,
+            int rowLength) throws NITFException
+    {
+        this(producer, band, numRows, rowLength, 1);
+    }
+
+    /**
+     * Constructs a BandSource whose rows are produced in batches
+     * 
+     * @param producer
+     *            produces the rows
+     * @param band
+     *            the band passed to the producer
+     * @param numRows
+     *            the number of rows in the band
+     * @param rowLength
+     *            the length of each row in bytes
+     * @param rowsPerBatch
+     *            the number of rows the producer is asked for at a time
+     * @throws NITFException
+     */
+    public RowSource(RowProducer producer, int band, int numRows,
+            int rowLength, int rowsPerBatch) throws NITFException
+    {
+        if (producer == null)
+            throw new NITFException("A row producer is required");
+        if (numRows <= 0 || rowLength <= 0 || rowsPerBatch <= 0)
+            throw new NITFException("Invalid row source dimensions: "
+                    + numRows + " rows of " + rowLength + " bytes, "
+                    + rowsPerBatch + " at a time");
+        if ((long) rowLength * rowsPerBatch > Integer.MAX_VALUE)
+            throw new NITFException("Row batch is too big: " + rowsPerBatch
+                    + " rows of " + rowLength + " bytes");
+        construct(producer, band, numRows, rowLength, rowsPerBatch);
+        size = (long) numRows * rowLength;
+    }
+
+    /**
+     * Constructs the underlying memory
+     */
+    private native void construct(RowProducer producer, int band,
+            int numRows, int rowLength, int rowsPerBatch);
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see nitf.BandSource#read(byte[], int)
+     */
+    public native void read(byte[] buf, int size) throws NITFException;
+
+    @Override
+    public long getSize() throws NITFException
+    {
+        return size;
+    }
+
+    /**
+     * The size is fixed by the rows, so this does nothing
+     */
+    @Override
+    public void setSize(long size) throws NITFException
+    {
+    }
+
+}
@@ -148,6 +148,31 @@ public final class Writer extends DestructibleObject
     public native ImageWriter getNewImageWriter(int imageNumber)
             throws NITFException;
 
+    /**
+     * Returns an ImageWriter pertaining to the image at the given index,
+     * whose compression plugin is opened with the given options. The options
+     * must already have been applied to the image's subheader.
+     * 
+     * @param imageNumber
+     *            the index of the image
+     * @param options
+     *            the compression options
+     * @return an ImageWriter pertaining to the image at the given index
+     * @throws NITFException
+     *             if a native error occurs
+     */
+    public ImageWriter getNewImageWriter(int imageNumber,
+            CompressionOptions options) throws NITFException
+    {
+        return newImageWriter(imageNumber, options.getCompressionRatio(),
+                options.getNumResolutions(), options.getNumThreads(), options
+                        .isVisuallyLossless());
+    }
+
+    private native ImageWriter newImageWriter(int imageNumber,
+            double compressionRatio, int numResolutions, int numThreads,
+            boolean visuallyLossless) throws NITFException;
+
     /**
      * Returns a SegmentWriter pertaining to the text at the given index
      * 
@@ -17,6 +17,14 @@ extern "C" {
 JNIEXPORT void JNICALL Java_nitf_DownSampler_construct
   (JNIEnv *, jobject);
 
+/*
+ * Class:     nitf_DownSampler
+ * Method:    setNativeSettings
+ * Signature: (IIZII)V
+ */
+JNIEXPORT void JNICALL Java_nitf_DownSampler_setNativeSettings
+  (JNIEnv *, jobject, jint, jint, jboolean, jint, jint);
+
 #ifdef __cplusplus
 }
 #endif
@@ -9,6 +9,10 @@ extern "C" {
 #endif
 #undef nitf_ImageReader_INVALID_ADDRESS
 #define nitf_ImageReader_INVALID_ADDRESS 0LL
+#undef nitf_ImageReader_BLOCK_MISSING
+#define nitf_ImageReader_BLOCK_MISSING 1L
+#undef nitf_ImageReader_BLOCK_PADDED
+#define nitf_ImageReader_BLOCK_PADDED 2L
 /*
  * Class:     nitf_ImageReader
  * Method:    getInput
@@ -25,6 +29,14 @@ JNIEXPORT jobject JNICALL Java_nitf_ImageReader_getInput
 JNIEXPORT jobject JNICALL Java_nitf_ImageReader_getBlockingInfo
   (JNIEnv *, jobject);
 
+/*
+ * Class:     nitf_ImageReader
+ * Method:    getBlockStatus
+ * Signature: ()[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_nitf_ImageReader_getBlockStatus
+  (JNIEnv *, jobject);
+
 /*
  * Class:     nitf_ImageReader
  * Method:    read
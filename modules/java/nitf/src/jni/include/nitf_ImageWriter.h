@@ -9,6 +9,22 @@ extern "C" {
 #endif
 #undef nitf_ImageWriter_INVALID_ADDRESS
 #define nitf_ImageWriter_INVALID_ADDRESS 0LL
+/*
+ * Class:     nitf_ImageWriter
+ * Method:    construct
+ * Signature: (Lnitf/ImageSubheader;)V
+ */
+JNIEXPORT void JNICALL Java_nitf_ImageWriter_construct
+  (JNIEnv *, jobject, jobject);
+
+/*
+ * Class:     nitf_ImageWriter
+ * Method:    write
+ * Signature: (Lnitf/IOInterface;)V
+ */
+JNIEXPORT void JNICALL Java_nitf_ImageWriter_write
+  (JNIEnv *, jobject, jobject);
+
 /*
  * Class:     nitf_ImageWriter
  * Method:    attachSource
@@ -25,6 +41,14 @@ JNIEXPORT jboolean JNICALL Java_nitf_ImageWriter_attachSource
 JNIEXPORT jboolean JNICALL Java_nitf_ImageWriter_setWriteCaching
   (JNIEnv *, jobject, jboolean);
 
+/*
+ * Class:     nitf_ImageWriter
+ * Method:    setDirectBlockWrite
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_nitf_ImageWriter_setDirectBlockWrite
+  (JNIEnv *, jobject, jboolean);
+
 #ifdef __cplusplus
 }
 #endif
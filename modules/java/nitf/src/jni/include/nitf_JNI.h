@@ -52,6 +52,14 @@ NITFPROT(void) _ThrowNITFException(JNIEnv *env, const char *message);
 
 NITFPROT(int) _GetJNIEnv(JavaVM** vm, JNIEnv** env);
 
+/**
+ * Checks whether a Java exception is pending after a callback into Java code.
+ * If so, the exception is cleared and its description is stored in the given
+ * error, so the failure can be propagated through the native library.
+ * Returns NITF_SUCCESS if no exception was pending, otherwise NITF_FAILURE.
+ */
+NITFPROT(NITF_BOOL) _CatchJavaException(JNIEnv* env, nitf_Error* error);
+
 /**
  * If the object is told to be managed, it means that you want Java to take
  * ownership of the object, and thus, you want the native memory to be deleted
@@ -63,6 +71,22 @@ NITFPROT(void) _ManageObject(JNIEnv* env, jlong address, jboolean flag);
 
 NITFPROT(jobject) _NewObject(JNIEnv* env, jlong address, const char* clazzName);
 
+/**
+ * Applies a native DownSampler to the given arrays of direct ByteBuffers.
+ * This lets Java code call apply on the built-in DownSamplers. Every band
+ * must have a buffer large enough for the windows it is given. A
+ * NITFException is thrown on failure.
+ */
+NITFPROT(jboolean) _ApplyDownSampler(JNIEnv* env,
+                                     nitf_DownSampler* downSampler,
+                                     jobjectArray inputWindows,
+                                     jobjectArray outputWindows,
+                                     jint numBands, jint numWindowRows,
+                                     jint numWindowCols, jint numInputCols,
+                                     jint numSubWindowCols, jint pixelType,
+                                     jint pixelSize, jint rowsInLastWindow,
+                                     jint colsInLastWindow);
+
 NITF_CXX_ENDGUARD
 
 #endif
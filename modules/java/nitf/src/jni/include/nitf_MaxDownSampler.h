@@ -20,7 +20,7 @@ JNIEXPORT void JNICALL Java_nitf_MaxDownSampler_construct
 /*
  * Class:     nitf_MaxDownSampler
  * Method:    apply
- * Signature: ([[B[[BIIIIIIIII)Z
+ * Signature: ([Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;IIIIIIIII)Z
  */
 JNIEXPORT jboolean JNICALL Java_nitf_MaxDownSampler_apply
   (JNIEnv *, jobject, jobjectArray, jobjectArray, jint, jint, jint, jint, jint, jint, jint, jint, jint);
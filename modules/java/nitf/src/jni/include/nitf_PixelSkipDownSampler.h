@@ -20,7 +20,7 @@ JNIEXPORT void JNICALL Java_nitf_PixelSkipDownSampler_construct
 /*
  * Class:     nitf_PixelSkipDownSampler
  * Method:    apply
- * Signature: ([[B[[BIIIIIIIII)Z
+ * Signature: ([Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;IIIIIIIII)Z
  */
 JNIEXPORT jboolean JNICALL Java_nitf_PixelSkipDownSampler_apply
   (JNIEnv *, jobject, jobjectArray, jobjectArray, jint, jint, jint, jint, jint, jint, jint, jint, jint);
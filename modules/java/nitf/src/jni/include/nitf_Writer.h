@@ -113,6 +113,14 @@ JNIEXPORT void JNICALL Java_nitf_Writer_setDEWriteHandler
 JNIEXPORT jobject JNICALL Java_nitf_Writer_getNewImageWriter
   (JNIEnv *, jobject, jint);
 
+/*
+ * Class:     nitf_Writer
+ * Method:    newImageWriter
+ * Signature: (IDIIZ)Lnitf/ImageWriter;
+ */
+JNIEXPORT jobject JNICALL Java_nitf_Writer_newImageWriter
+  (JNIEnv *, jobject, jint, jdouble, jint, jint, jboolean);
+
 /*
  * Class:     nitf_Writer
  * Method:    getNewTextWriter
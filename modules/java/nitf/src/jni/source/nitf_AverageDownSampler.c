@@ -0,0 +1,145 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2014, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+#include <import/nitf.h>
+#include "nitf_AverageDownSampler.h"
+#include "nitf_JNI.h"
+
+/*  This creates the _SetObj and _GetObj accessors  */
+NITF_JNI_DECLARE_OBJ(nitf_DownSampler)
+
+/*
+ * Class:     nitf_AverageDownSampler
+ * Method:    construct
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_nitf_AverageDownSampler_construct
+  (JNIEnv *env, jobject self, jint rowSkip, jint colSkip)
+{
+    nitf_Error error;
+    jmethodID methodID;
+    nitf_DownSampler *downSampler;
+
+    jclass downSamplerClass = (*env)->FindClass(env, "nitf/DownSampler");
+    jmethodID downSamplerMethodID = (*env)->GetStaticMethodID(env,
+        downSamplerClass, "register", "(Lnitf/DownSampler;)V");
+
+    if (rowSkip <= 0)
+        rowSkip = 1;
+    if (colSkip <= 0)
+        colSkip = 1;
+
+    downSampler =
+        nitf_AverageDownSample_construct(rowSkip, colSkip, &error);
+    if (!downSampler)
+    {
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+
+    _SetObj(env, self, downSampler);
+
+    /* now, we must also register this type */
+    (*env)->CallStaticVoidMethod(env, downSamplerClass,
+        downSamplerMethodID, self);
+
+    return;
+}
+
+/*
+ * Class:     nitf_AverageDownSampler
+ * Method:    apply
+ * Signature: ([Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;IIIIIIIII)Z
+ */
+JNIEXPORT jboolean JNICALL Java_nitf_AverageDownSampler_apply
+  (JNIEnv *env, jobject self, jobjectArray inputWindows, jobjectArray outputWindows,
+  jint numBands, jint numWindowRows, jint numWindowCols, jint numInputCols,
+  jint numCols, jint pixelType, jint pixelSize, jint rowsInLastWindow,
+  jint colsInLastWindow)
+{
+    nitf_DownSampler *downSampler = _GetObj(env, self);
+    return _ApplyDownSampler(env, downSampler, inputWindows, outputWindows,
+        numBands, numWindowRows, numWindowCols, numInputCols, numCols,
+        pixelType, pixelSize, rowsInLastWindow, colsInLastWindow);
+}
+
+/*
+ * Class:     nitf_AverageDownSampler
+ * Method:    getRowSkip
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_nitf_AverageDownSampler_getRowSkip
+  (JNIEnv *env, jobject self)
+{
+	nitf_DownSampler *downSampler = _GetObj(env, self);
+	return (jint)downSampler->rowSkip;
+}
+
+/*
+ * Class:     nitf_AverageDownSampler
+ * Method:    getColSkip
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_nitf_AverageDownSampler_getColSkip
+  (JNIEnv *env, jobject self)
+{
+	nitf_DownSampler *downSampler = _GetObj(env, self);
+	return (jint)downSampler->colSkip;
+}
+
+/*
+ * Class:     nitf_AverageDownSampler
+ * Method:    getMinSupportedBands
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_nitf_AverageDownSampler_getMinSupportedBands
+  (JNIEnv *env, jobject self)
+{
+	nitf_DownSampler *downSampler = _GetObj(env, self);
+	return (jint)downSampler->minBands;
+}
+
+/*
+ * Class:     nitf_AverageDownSampler
+ * Method:    getMaxSupportedBands
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_nitf_AverageDownSampler_getMaxSupportedBands
+  (JNIEnv *env, jobject self)
+{
+	nitf_DownSampler *downSampler = _GetObj(env, self);
+	return (jint)downSampler->maxBands;
+}
+
+/*
+ * Class:     nitf_AverageDownSampler
+ * Method:    isMultiBand
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_nitf_AverageDownSampler_isMultiBand
+  (JNIEnv *env, jobject self)
+{
+	nitf_DownSampler *downSampler = _GetObj(env, self);
+	return downSampler->multiBand == 0 ? JNI_FALSE : JNI_TRUE;
+}
+
+
@@ -31,6 +31,8 @@ NITF_JNI_DECLARE_OBJ(nitf_BandSource)
 typedef struct _BandSourceImpl
 {
     jobject self;               /* The current object */
+    jbyteArray buffer;          /* Reusable transfer buffer (global ref) */
+    jsize bufferSize;           /* The size of the transfer buffer */
 } BandSourceImpl;
 
 
@@ -38,16 +40,15 @@ typedef struct _BandSourceImpl
  *  Private read implementation for file source.
  */
 NITFPRIV(NITF_BOOL) BandSource_read
-    (NITF_DATA * data, char *buf, nitf_Off size, nitf_Error * error)
+    (NITF_DATA * data, void *buf, nitf_Off size, nitf_Error * error)
 {
     jclass bandSourceClass = NULL;
     jmethodID methodID = NULL;
     BandSourceImpl *impl = NULL;
-    jbyteArray byteArray = NULL;
-    jbyte* temp;
     JNIEnv *env = NULL;
     JavaVM *vm = NULL;
     int detach;
+    NITF_BOOL status = NITF_SUCCESS;
 
     /* cast it to the structure we know about */
     impl = (BandSourceImpl *) data;
@@ -58,36 +59,45 @@ NITFPRIV(NITF_BOOL) BandSource_read
     methodID =
         (*env)->GetMethodID(env, bandSourceClass, "read",
                                   "([BI)V");
+    (*env)->DeleteLocalRef(env, bandSourceClass);
 
-    /* create new array */
-    byteArray = (*env)->NewByteArray(env, (jsize) size);
-    
-    if (!byteArray)
+    /* the writer asks for the same row size over and over, so reuse */
+    if (!impl->buffer || impl->bufferSize != (jsize) size)
     {
-        if (detach)
-            (*vm)->DetachCurrentThread(vm);
-    	return NITF_FAILURE;
+        jbyteArray byteArray = (*env)->NewByteArray(env, (jsize) size);
+        if (!byteArray)
+        {
+            (*env)->ExceptionClear(env);
+            nitf_Error_init(error, "Unable to allocate read buffer",
+                            NITF_CTXT, NITF_ERR_MEMORY);
+            if (detach)
+                (*vm)->DetachCurrentThread(vm);
+            return NITF_FAILURE;
+        }
+        if (impl->buffer)
+            (*env)->DeleteGlobalRef(env, impl->buffer);
+        impl->buffer = (jbyteArray)(*env)->NewGlobalRef(env, byteArray);
+        impl->bufferSize = (jsize) size;
+        (*env)->DeleteLocalRef(env, byteArray);
     }
 
     /* read the data */
     (*env)->CallVoidMethod(env, impl->self, methodID,
-                                 byteArray, size);
+                                 impl->buffer, (jint) size);
 
-    /* copy to the char buffer */
-    temp = (*env)->GetByteArrayElements(env, byteArray, 0);
-    if (!temp)
+    /* make sure the Java code didn't fail on us */
+    if (!_CatchJavaException(env, error))
+        status = NITF_FAILURE;
+    else
     {
-        return NITF_FAILURE;
+        /* copy to the char buffer */
+        (*env)->GetByteArrayRegion(env, impl->buffer, 0, (jsize) size,
+                                   (jbyte*) buf);
     }
-    memcpy(buf, (char*)temp, size);
-    
-    /* delete the local refs */ 
-    (*env)->ReleaseByteArrayElements(env, byteArray, temp, 0);
-    (*env)->DeleteLocalRef(env, byteArray);
-    
+
     if (detach)
         (*vm)->DetachCurrentThread(vm);
-    return NITF_SUCCESS;
+    return status;
 }
 
 
@@ -111,7 +121,9 @@ NITFPRIV(void) BandSource_destruct(NITF_DATA * data)
         /* Call the Java object to tell it we are done using it */
         /*(*env)->CallVoidMethod(env, impl->self, methodID); */
 
-        /* Delete the global ref */
+        /* Delete the global refs */
+        if (impl->buffer)
+            (*env)->DeleteGlobalRef(env, impl->buffer);
         (*env)->DeleteGlobalRef(env, impl->self);
         NITF_FREE(data);
     }
@@ -137,8 +149,10 @@ NITFPRIV(nitf_Off) BandSource_getSize(NITF_DATA *data, nitf_Error *error)
         (*env)->GetObjectClass(env, (jobject) impl->self);
 
     methodID = (*env)->GetMethodID(env, bandSourceClass, "getSize",
-                                      "()L");
+                                      "()J");
     val = (*env)->CallLongMethod(env, impl->self, methodID);
+    if (!_CatchJavaException(env, error))
+        val = -1;
 
     if (detach)
         (*vm)->DetachCurrentThread(vm);
@@ -153,6 +167,7 @@ NITFPRIV(NITF_BOOL) BandSource_setSize(NITF_DATA * data, nitf_Off size, nitf_Err
     JNIEnv *env = NULL;
     JavaVM *vm = NULL;
     int detach;
+    NITF_BOOL status;
 
     detach = _GetJNIEnv(&vm, &env);
 
@@ -161,12 +176,13 @@ NITFPRIV(NITF_BOOL) BandSource_setSize(NITF_DATA * data, nitf_Off size, nitf_Err
         (*env)->GetObjectClass(env, (jobject) impl->self);
 
     methodID = (*env)->GetMethodID(env, bandSourceClass, "setSize",
-                                      "(L)V");
+                                      "(J)V");
     (*env)->CallVoidMethod(env, impl->self, methodID, (jlong)size);
+    status = _CatchJavaException(env, error);
 
     if (detach)
         (*vm)->DetachCurrentThread(vm);
-    return NITF_SUCCESS;
+    return status;
 }
 
 
@@ -201,6 +217,8 @@ JNIEXPORT void JNICALL Java_nitf_BandSource_construct
     /* THIS IS VERY IMPORTANT... WE MUST MAKE A STRONG GLOBAL REF */
     /**************************************************************/
     impl->self = (*env)->NewGlobalRef(env, self);
+    impl->buffer = NULL;
+    impl->bufferSize = 0;
 
     bandSource = (nitf_BandSource *) NITF_MALLOC(sizeof(nitf_BandSource));
     if (!bandSource)
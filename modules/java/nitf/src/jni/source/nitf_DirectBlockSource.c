@@ -0,0 +1,267 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2014, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+#include <import/nitf.h>
+#include "nitf_DirectBlockSource.h"
+#include "nitf_JNI.h"
+
+/*  This creates the _SetObj and _GetObj accessors  */
+NITF_JNI_DECLARE_OBJ(nitf_BandSource)
+
+/*
+ * The Java direct block source wraps a native one, whose algorithm object is
+ * this, so that the Java objects it uses live as long as it does
+ */
+typedef struct _DirectBlockSourceImpl
+{
+    nitf_BandSource *blocks;    /* The native direct block source */
+    jobject imageReader;        /* The ImageReader (global ref) */
+    jobject transform;          /* The BlockTransform, if any (global ref) */
+    jmethodID transformID;      /* BlockTransform.transform */
+} DirectBlockSourceImpl;
+
+
+/*
+ *  Next block function for the native direct block source
+ */
+NITFPRIV(NITF_BOOL) DirectBlockSource_nextBlock(void *algorithm, void *buf,
+                                                const void *block,
+                                                nitf_Uint32 blockNumber,
+                                                nitf_Uint64 blockSize,
+                                                nitf_Error * error)
+{
+    DirectBlockSourceImpl *impl = (DirectBlockSourceImpl *) algorithm;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+    jobject byteBuffer;
+    NITF_BOOL status;
+
+    memcpy(buf, block, (size_t) blockSize);
+    if (!impl->transform)
+        return NITF_SUCCESS;
+
+    detach = _GetJNIEnv(&vm, &env);
+
+    byteBuffer = (*env)->NewDirectByteBuffer(env, buf, (jlong) blockSize);
+    if (!byteBuffer)
+    {
+        (*env)->ExceptionClear(env);
+        nitf_Error_init(error, "Unable to create block buffer",
+                        NITF_CTXT, NITF_ERR_MEMORY);
+        if (detach)
+            (*vm)->DetachCurrentThread(vm);
+        return NITF_FAILURE;
+    }
+    (*env)->CallVoidMethod(env, impl->transform, impl->transformID,
+                           (jint) blockNumber, byteBuffer);
+
+    /* make sure the Java code didn't fail on us */
+    status = _CatchJavaException(env, error);
+    (*env)->DeleteLocalRef(env, byteBuffer);
+
+    if (detach)
+        (*vm)->DetachCurrentThread(vm);
+    return status;
+}
+
+
+NITFPRIV(NITF_BOOL) DirectBlockSource_read
+    (NITF_DATA * data, void *buf, nitf_Off size, nitf_Error * error)
+{
+    DirectBlockSourceImpl *impl = (DirectBlockSourceImpl *) data;
+    return impl->blocks->iface->read(impl->blocks->data, buf, size, error);
+}
+
+
+NITFPRIV(void) DirectBlockSource_destruct(NITF_DATA * data)
+{
+    DirectBlockSourceImpl *impl = (DirectBlockSourceImpl *) data;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+
+    if (!impl)
+        return;
+
+    detach = _GetJNIEnv(&vm, &env);
+
+    /* Delete the global refs */
+    if (impl->transform)
+        (*env)->DeleteGlobalRef(env, impl->transform);
+    (*env)->DeleteGlobalRef(env, impl->imageReader);
+
+    if (detach)
+        (*vm)->DetachCurrentThread(vm);
+
+    if (impl->blocks)
+        nitf_BandSource_destruct(&impl->blocks);
+    NITF_FREE(impl);
+}
+
+
+NITFPRIV(nitf_Off) DirectBlockSource_getSize(NITF_DATA * data,
+                                             nitf_Error * error)
+{
+    DirectBlockSourceImpl *impl = (DirectBlockSourceImpl *) data;
+    return impl->blocks->iface->getSize(impl->blocks->data, error);
+}
+
+
+NITFPRIV(NITF_BOOL) DirectBlockSource_setSize(NITF_DATA * data,
+                                              nitf_Off size,
+                                              nitf_Error * error)
+{
+    DirectBlockSourceImpl *impl = (DirectBlockSourceImpl *) data;
+    return impl->blocks->iface->setSize(impl->blocks->data, size, error);
+}
+
+
+/*
+ * Class:     nitf_DirectBlockSource
+ * Method:    construct
+ * Signature: (Lnitf/ImageReader;ILnitf/DirectBlockSource/BlockTransform;)V
+ */
+JNIEXPORT void JNICALL Java_nitf_DirectBlockSource_construct
+    (JNIEnv * env, jobject self, jobject jImageReader, jint numBands,
+     jobject transform)
+{
+    /* make the interface */
+    static nitf_IDataSource iDirectBlockSource = {
+        &DirectBlockSource_read,
+        &DirectBlockSource_destruct,
+        &DirectBlockSource_getSize,
+        &DirectBlockSource_setSize
+    };
+
+    nitf_BandSource *bandSource;
+    DirectBlockSourceImpl *impl;
+    nitf_ImageReader *imageReader;
+    nitf_Error error;
+    jclass bandSourceClass = (*env)->FindClass(env, "nitf/BandSource");
+    jmethodID methodID = (*env)->GetStaticMethodID(env, bandSourceClass,
+        "register", "(Lnitf/BandSource;)V");
+    jclass imageReaderClass = (*env)->FindClass(env, "nitf/ImageReader");
+    jmethodID addressID = (*env)->GetMethodID(env, imageReaderClass,
+        "getAddress", "()J");
+
+    imageReader = (nitf_ImageReader *) (*env)->CallLongMethod(env,
+        jImageReader, addressID);
+
+    impl = (DirectBlockSourceImpl *) NITF_MALLOC(sizeof(DirectBlockSourceImpl));
+    if (!impl)
+    {
+        _ThrowNITFException(env, "Out of memory");
+        return;
+    }
+    memset(impl, 0, sizeof(DirectBlockSourceImpl));
+
+    /**************************************************************/
+    /* THIS IS VERY IMPORTANT... WE MUST MAKE A STRONG GLOBAL REF */
+    /**************************************************************/
+    impl->imageReader = (*env)->NewGlobalRef(env, jImageReader);
+    if (transform)
+    {
+        jclass transformClass = (*env)->GetObjectClass(env, transform);
+        impl->transformID = (*env)->GetMethodID(env, transformClass,
+            "transform", "(ILjava/nio/ByteBuffer;)V");
+        impl->transform = (*env)->NewGlobalRef(env, transform);
+    }
+
+    impl->blocks = nitf_DirectBlockSource_construct(impl,
+        &DirectBlockSource_nextBlock, imageReader, (nitf_Uint32) numBands,
+        &error);
+    if (!impl->blocks)
+    {
+        DirectBlockSource_destruct(impl);
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+
+    bandSource = (nitf_BandSource *) NITF_MALLOC(sizeof(nitf_BandSource));
+    if (!bandSource)
+    {
+        DirectBlockSource_destruct(impl);
+        _ThrowNITFException(env, "Out of memory");
+        return;
+    }
+    bandSource->data = impl;
+    bandSource->iface = &iDirectBlockSource;
+
+    _SetObj(env, self, bandSource);
+
+    /* now, we must also register this type */
+    (*env)->CallStaticVoidMethod(env, bandSourceClass, methodID, self);
+}
+
+
+/*
+ * Class:     nitf_DirectBlockSource
+ * Method:    read
+ * Signature: ([BI)V
+ */
+JNIEXPORT void JNICALL Java_nitf_DirectBlockSource_read
+    (JNIEnv * env, jobject self, jbyteArray buf, jint size)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    jbyte *byteBuf;
+    nitf_Error error;
+
+    byteBuf = (*env)->GetByteArrayElements(env, buf, 0);
+    if (!byteBuf)
+    {
+        _ThrowNITFException(env, "ERROR getting data from array");
+        return;
+    }
+
+    if (!source->iface->read(source->data, (char *) byteBuf, size, &error))
+    {
+        (*env)->ReleaseByteArrayElements(env, buf, byteBuf, JNI_ABORT);
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+
+    (*env)->ReleaseByteArrayElements(env, buf, byteBuf, 0);
+}
+
+
+JNIEXPORT jlong JNICALL Java_nitf_DirectBlockSource_getSize
+    (JNIEnv * env, jobject self)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    nitf_Error error;
+    return (jlong) source->iface->getSize(source->data, &error);
+}
+
+
+JNIEXPORT void JNICALL Java_nitf_DirectBlockSource_setSize
+    (JNIEnv * env, jobject self, jlong size)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    nitf_Error error;
+
+    if (!source->iface->setSize(source->data, (nitf_Off) size, &error))
+    {
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+}
@@ -0,0 +1,319 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2014, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+#include <import/nitf.h>
+#include "nitf_DirectMemorySource.h"
+#include "nitf_JNI.h"
+
+/*  This creates the _SetObj and _GetObj accessors  */
+NITF_JNI_DECLARE_OBJ(nitf_BandSource)
+
+/*
+ * A memory source over direct buffers, which are read in place as if they
+ * were one
+ */
+typedef struct _DirectMemorySourceImpl
+{
+    jobject *buffers;           /* The buffers (global refs) */
+    nitf_Uint8 **data;          /* The address of each buffer */
+    nitf_Off *lengths;          /* The capacity of each buffer */
+    int numBuffers;
+    int current;                /* The buffer the mark is in */
+    nitf_Off offset;            /* The mark within the current buffer */
+    nitf_Off mark;
+    nitf_Off length;            /* The total of the capacities */
+    nitf_Off size;
+    int numBytesPerPixel;
+    int pixelSkip;
+} DirectMemorySourceImpl;
+
+
+NITFPRIV(void) DirectMemorySource_advance(DirectMemorySourceImpl * impl,
+                                          nitf_Off n)
+{
+    impl->mark += n;
+    impl->offset += n;
+    while (impl->current < impl->numBuffers
+           && impl->offset >= impl->lengths[impl->current])
+    {
+        impl->offset -= impl->lengths[impl->current];
+        ++impl->current;
+    }
+}
+
+
+NITFPRIV(void) DirectMemorySource_copy(DirectMemorySourceImpl * impl,
+                                       nitf_Uint8 * dest, nitf_Off n)
+{
+    while (n > 0)
+    {
+        nitf_Off length = impl->lengths[impl->current] - impl->offset;
+        if (length > n)
+            length = n;
+        memcpy(dest, impl->data[impl->current] + impl->offset,
+               (size_t) length);
+        dest += length;
+        n -= length;
+        DirectMemorySource_advance(impl, length);
+    }
+}
+
+
+NITFPRIV(NITF_BOOL) DirectMemorySource_read(NITF_DATA * data, void *buf,
+                                            nitf_Off size, nitf_Error * error)
+{
+    DirectMemorySourceImpl *impl = (DirectMemorySourceImpl *) data;
+    nitf_Uint8 *dest = (nitf_Uint8 *) buf;
+    nitf_Off needed = size;
+    nitf_Off skip;
+    nitf_Off destOffset;
+
+    skip = (nitf_Off) impl->pixelSkip * impl->numBytesPerPixel;
+    if (skip > 0 && size > 0)
+        needed += (size / impl->numBytesPerPixel - 1) * skip;
+    if (needed > impl->length - impl->mark)
+    {
+        nitf_Error_init(error, "Read past the end of the buffers",
+                        NITF_CTXT, NITF_ERR_READING_FROM_FILE);
+        return NITF_FAILURE;
+    }
+
+    /*  The contiguous read is one copy per buffer  */
+    if (skip == 0)
+    {
+        DirectMemorySource_copy(impl, dest, size);
+        return NITF_SUCCESS;
+    }
+
+    for (destOffset = 0; destOffset < size;
+         destOffset += impl->numBytesPerPixel)
+    {
+        DirectMemorySource_copy(impl, dest + destOffset,
+                                impl->numBytesPerPixel);
+        DirectMemorySource_advance(impl, skip);
+    }
+    return NITF_SUCCESS;
+}
+
+
+NITFPRIV(void) DirectMemorySource_destruct(NITF_DATA * data)
+{
+    DirectMemorySourceImpl *impl = (DirectMemorySourceImpl *) data;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+    int i;
+
+    if (!impl)
+        return;
+
+    if (impl->buffers)
+    {
+        detach = _GetJNIEnv(&vm, &env);
+        for (i = 0; i < impl->numBuffers; ++i)
+        {
+            if (impl->buffers[i])
+                (*env)->DeleteGlobalRef(env, impl->buffers[i]);
+        }
+        if (detach)
+            (*vm)->DetachCurrentThread(vm);
+        NITF_FREE(impl->buffers);
+    }
+    if (impl->data)
+        NITF_FREE(impl->data);
+    if (impl->lengths)
+        NITF_FREE(impl->lengths);
+    NITF_FREE(impl);
+}
+
+
+NITFPRIV(nitf_Off) DirectMemorySource_getSize(NITF_DATA * data,
+                                              nitf_Error * error)
+{
+    DirectMemorySourceImpl *impl = (DirectMemorySourceImpl *) data;
+    return impl ? impl->size : 0;
+}
+
+
+NITFPRIV(NITF_BOOL) DirectMemorySource_setSize(NITF_DATA * data,
+                                               nitf_Off size,
+                                               nitf_Error * error)
+{
+    DirectMemorySourceImpl *impl = (DirectMemorySourceImpl *) data;
+    impl->size = size;
+    return NITF_SUCCESS;
+}
+
+
+/*
+ * Class:     nitf_DirectMemorySource
+ * Method:    construct
+ * Signature: ([Ljava/nio/ByteBuffer;JJII)V
+ */
+JNIEXPORT void JNICALL Java_nitf_DirectMemorySource_construct
+    (JNIEnv * env, jobject self, jobjectArray data, jlong size, jlong start,
+     jint numBytesPerPixel, jint pixelSkip)
+{
+    /* make the interface */
+    static nitf_IDataSource iDirectMemorySource = {
+        &DirectMemorySource_read,
+        &DirectMemorySource_destruct,
+        &DirectMemorySource_getSize,
+        &DirectMemorySource_setSize
+    };
+
+    nitf_BandSource *bandSource;
+    DirectMemorySourceImpl *impl;
+    int i;
+    jclass bandSourceClass = (*env)->FindClass(env, "nitf/BandSource");
+    jmethodID methodID = (*env)->GetStaticMethodID(env, bandSourceClass,
+        "register", "(Lnitf/BandSource;)V");
+
+    if (!data)
+    {
+        _ThrowNITFException(env, "ERROR, data array is null");
+        return;
+    }
+
+    impl = (DirectMemorySourceImpl *)
+        NITF_MALLOC(sizeof(DirectMemorySourceImpl));
+    if (!impl)
+    {
+        _ThrowNITFException(env, "Out of memory");
+        return;
+    }
+    memset(impl, 0, sizeof(DirectMemorySourceImpl));
+    impl->numBuffers = (*env)->GetArrayLength(env, data);
+    impl->size = (nitf_Off) size;
+    impl->numBytesPerPixel = numBytesPerPixel > 0 ? numBytesPerPixel : 1;
+    impl->pixelSkip = pixelSkip >= 0 ? pixelSkip : 0;
+
+    impl->buffers = (jobject *) NITF_MALLOC(sizeof(jobject) *
+                                            impl->numBuffers);
+    impl->data = (nitf_Uint8 **) NITF_MALLOC(sizeof(nitf_Uint8 *) *
+                                             impl->numBuffers);
+    impl->lengths = (nitf_Off *) NITF_MALLOC(sizeof(nitf_Off) *
+                                             impl->numBuffers);
+    if (!impl->buffers || !impl->data || !impl->lengths)
+    {
+        DirectMemorySource_destruct(impl);
+        _ThrowNITFException(env, "Out of memory");
+        return;
+    }
+    memset(impl->buffers, 0, sizeof(jobject) * impl->numBuffers);
+
+    for (i = 0; i < impl->numBuffers; ++i)
+    {
+        jobject buffer = (*env)->GetObjectArrayElement(env, data, i);
+        impl->data[i] = buffer ?
+            (nitf_Uint8 *) (*env)->GetDirectBufferAddress(env, buffer) : NULL;
+        if (!impl->data[i])
+        {
+            DirectMemorySource_destruct(impl);
+            _ThrowNITFException(env, "ERROR, buffer is not direct");
+            return;
+        }
+        impl->lengths[i] =
+            (nitf_Off) (*env)->GetDirectBufferCapacity(env, buffer);
+        impl->length += impl->lengths[i];
+
+        /* the buffers must live as long as we do */
+        impl->buffers[i] = (*env)->NewGlobalRef(env, buffer);
+        (*env)->DeleteLocalRef(env, buffer);
+    }
+
+    if (start < 0 || (nitf_Off) start > impl->length)
+    {
+        DirectMemorySource_destruct(impl);
+        _ThrowNITFException(env, "ERROR, start is outside of the buffers");
+        return;
+    }
+    DirectMemorySource_advance(impl, (nitf_Off) start);
+
+    bandSource = (nitf_BandSource *) NITF_MALLOC(sizeof(nitf_BandSource));
+    if (!bandSource)
+    {
+        DirectMemorySource_destruct(impl);
+        _ThrowNITFException(env, "Out of memory");
+        return;
+    }
+    bandSource->data = impl;
+    bandSource->iface = &iDirectMemorySource;
+
+    _SetObj(env, self, bandSource);
+
+    /* now, we must also register this type */
+    (*env)->CallStaticVoidMethod(env, bandSourceClass, methodID, self);
+}
+
+
+/*
+ * Class:     nitf_DirectMemorySource
+ * Method:    read
+ * Signature: ([BI)V
+ */
+JNIEXPORT void JNICALL Java_nitf_DirectMemorySource_read
+    (JNIEnv * env, jobject self, jbyteArray buf, jint size)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    jbyte *byteBuf;
+    nitf_Error error;
+
+    byteBuf = (*env)->GetByteArrayElements(env, buf, 0);
+    if (!byteBuf)
+    {
+        _ThrowNITFException(env, "ERROR getting data from array");
+        return;
+    }
+
+    if (!source->iface->read(source->data, (char *) byteBuf, size, &error))
+    {
+        (*env)->ReleaseByteArrayElements(env, buf, byteBuf, JNI_ABORT);
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+
+    (*env)->ReleaseByteArrayElements(env, buf, byteBuf, 0);
+}
+
+
+JNIEXPORT jlong JNICALL Java_nitf_DirectMemorySource_getSize
+    (JNIEnv * env, jobject self)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    nitf_Error error;
+    return (jlong) source->iface->getSize(source->data, &error);
+}
+
+
+JNIEXPORT void JNICALL Java_nitf_DirectMemorySource_setSize
+    (JNIEnv * env, jobject self, jlong size)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    nitf_Error error;
+
+    if (!source->iface->setSize(source->data, (nitf_Off) size, &error))
+    {
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+}
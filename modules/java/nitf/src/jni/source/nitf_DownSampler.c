@@ -1,7 +1,7 @@
 /* =========================================================================
  * This file is part of NITRO
  * =========================================================================
- * 
+ *
  * (C) Copyright 2004 - 2014, MDA Information Systems LLC
  *
  * NITRO is free software; you can redistribute it and/or modify
@@ -14,8 +14,8 @@
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
  * GNU Lesser General Public License for more details.
  *
- * You should have received a copy of the GNU Lesser General Public 
- * License along with this program; if not, If not, 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
  * see <http://www.gnu.org/licenses/>.
  *
  */
@@ -27,6 +27,271 @@
 
 NITF_JNI_DECLARE_OBJ(nitf_DownSampler)
 
+/* The windows of one side (input or output) of the apply calls */
+typedef struct _DownSamplerWindows
+{
+    jobjectArray windows;       /* The array handed to apply (global ref) */
+    jobjectArray cache;         /* The wrapper of each window (global ref) */
+    NITF_DATA **addresses;      /* The memory each wrapper holds */
+    jlong *sizes;               /* The size of each wrapper */
+} DownSamplerWindows;
+
+/* Temporary data structure for holding important data */
+typedef struct _DownSamplerImpl
+{
+    jobject self;               /* The current object */
+    jmethodID applyID;          /* The Java apply method */
+    DownSamplerWindows inputs;  /* Reusable input windows */
+    DownSamplerWindows outputs; /* Reusable output windows */
+    jsize numBuffers;           /* The length of the window arrays */
+    jobject nativeOrder;        /* ByteOrder.nativeOrder() (global ref) */
+    jmethodID orderID;          /* ByteBuffer.order(ByteOrder) */
+    jmethodID clearID;          /* Buffer.clear() */
+} DownSamplerImpl;
+
+
+/*
+ *  Sets the window at the given index to a native-order direct ByteBuffer
+ *  over the given memory. The reader reuses its buffers from call to call,
+ *  so the wrapper of the last call is reused (and cleared, in case apply
+ *  moved it) unless the memory moved or changed size.
+ */
+NITFPRIV(NITF_BOOL) DownSampler_setBuffer(JNIEnv * env,
+                                          DownSamplerImpl * impl,
+                                          DownSamplerWindows * windows,
+                                          jsize index, void *address,
+                                          jlong size)
+{
+    jobject buffer, result;
+
+    if (windows->addresses[index] == address && windows->sizes[index] == size)
+    {
+        buffer = (*env)->GetObjectArrayElement(env, windows->cache, index);
+        result = (*env)->CallObjectMethod(env, buffer, impl->clearID);
+        if (!result)
+        {
+            (*env)->DeleteLocalRef(env, buffer);
+            return NITF_FAILURE;
+        }
+        (*env)->DeleteLocalRef(env, result);
+    }
+    else
+    {
+        buffer = (*env)->NewDirectByteBuffer(env, address, size);
+        if (!buffer)
+            return NITF_FAILURE;
+        (*env)->SetObjectArrayElement(env, windows->cache, index, buffer);
+        windows->addresses[index] = address;
+        windows->sizes[index] = size;
+    }
+
+    /* order returns the buffer itself */
+    result = (*env)->CallObjectMethod(env, buffer, impl->orderID,
+                                      impl->nativeOrder);
+    (*env)->DeleteLocalRef(env, buffer);
+    if (!result)
+        return NITF_FAILURE;
+
+    (*env)->SetObjectArrayElement(env, windows->windows, index, result);
+    (*env)->DeleteLocalRef(env, result);
+    return NITF_SUCCESS;
+}
+
+NITFPRIV(void) DownSampler_freeWindows(JNIEnv * env,
+                                       DownSamplerWindows * windows)
+{
+    if (windows->windows)
+        (*env)->DeleteGlobalRef(env, windows->windows);
+    if (windows->cache)
+        (*env)->DeleteGlobalRef(env, windows->cache);
+    if (windows->addresses)
+        NITF_FREE(windows->addresses);
+    if (windows->sizes)
+        NITF_FREE(windows->sizes);
+    memset(windows, 0, sizeof(DownSamplerWindows));
+}
+
+NITFPRIV(NITF_BOOL) DownSampler_allocWindows(JNIEnv * env,
+                                             DownSamplerWindows * windows,
+                                             jclass bufferClass,
+                                             jsize numBands)
+{
+    jobjectArray array;
+
+    array = (*env)->NewObjectArray(env, numBands, bufferClass, NULL);
+    if (!array)
+        return NITF_FAILURE;
+    windows->windows = (jobjectArray) (*env)->NewGlobalRef(env, array);
+    (*env)->DeleteLocalRef(env, array);
+
+    array = (*env)->NewObjectArray(env, numBands, bufferClass, NULL);
+    if (!array)
+        return NITF_FAILURE;
+    windows->cache = (jobjectArray) (*env)->NewGlobalRef(env, array);
+    (*env)->DeleteLocalRef(env, array);
+
+    windows->addresses =
+        (NITF_DATA **) NITF_MALLOC(sizeof(NITF_DATA *) * numBands);
+    windows->sizes = (jlong *) NITF_MALLOC(sizeof(jlong) * numBands);
+    if (!windows->addresses || !windows->sizes)
+        return NITF_FAILURE;
+    memset(windows->addresses, 0, sizeof(NITF_DATA *) * numBands);
+    memset(windows->sizes, 0, sizeof(jlong) * numBands);
+    return NITF_SUCCESS;
+}
+
+/*
+ *  Makes sure the window arrays hold enough ByteBuffers
+ */
+NITFPRIV(NITF_BOOL) DownSampler_allocBuffers(JNIEnv * env,
+                                             DownSamplerImpl * impl,
+                                             jsize numBands)
+{
+    jclass bufferClass;
+    NITF_BOOL status;
+
+    if (impl->inputs.windows && impl->numBuffers == numBands)
+        return NITF_SUCCESS;
+
+    DownSampler_freeWindows(env, &impl->inputs);
+    DownSampler_freeWindows(env, &impl->outputs);
+    impl->numBuffers = 0;
+
+    bufferClass = (*env)->FindClass(env, "java/nio/ByteBuffer");
+    if (!bufferClass)
+        return NITF_FAILURE;
+    status = DownSampler_allocWindows(env, &impl->inputs, bufferClass,
+                                      numBands)
+        && DownSampler_allocWindows(env, &impl->outputs, bufferClass,
+                                    numBands);
+    (*env)->DeleteLocalRef(env, bufferClass);
+    if (!status)
+    {
+        DownSampler_freeWindows(env, &impl->inputs);
+        DownSampler_freeWindows(env, &impl->outputs);
+        return NITF_FAILURE;
+    }
+    impl->numBuffers = numBands;
+    return NITF_SUCCESS;
+}
+
+
+/*
+ *  Calls back into the Java apply method, handing it ByteBuffers that wrap
+ *  the native windows
+ */
+NITFPRIV(NITF_BOOL) DownSampler_apply(nitf_DownSampler * object,
+                                      NITF_DATA ** inputWindows,
+                                      NITF_DATA ** outputWindows,
+                                      nitf_Uint32 numBands,
+                                      nitf_Uint32 numWindowRows,
+                                      nitf_Uint32 numWindowCols,
+                                      nitf_Uint32 numInputCols,
+                                      nitf_Uint32 numSubWindowCols,
+                                      nitf_Uint32 pixelType,
+                                      nitf_Uint32 pixelSize,
+                                      nitf_Uint32 rowsInLastWindow,
+                                      nitf_Uint32 colsInLastWindow,
+                                      nitf_Error * error)
+{
+    DownSamplerImpl *impl = NULL;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+    jlong inputSize, outputSize;
+    jsize band;
+    jboolean result;
+    NITF_BOOL status = NITF_SUCCESS;
+
+    impl = (DownSamplerImpl *) object->data;
+    detach = _GetJNIEnv(&vm, &env);
+
+    /* the inputs hold rowSkip rows of each window, the outputs are strided */
+    inputSize = (jlong) numWindowRows * object->rowSkip * numInputCols
+        * pixelSize;
+    outputSize = ((jlong) (numWindowRows - 1) * numSubWindowCols
+                  + numWindowCols) * pixelSize;
+
+    /* the window arrays are shared, so only one read at a time */
+    (*env)->MonitorEnter(env, impl->self);
+
+    if (!DownSampler_allocBuffers(env, impl, (jsize) numBands))
+        status = NITF_FAILURE;
+    for (band = 0; status && band < (jsize) numBands; ++band)
+    {
+        if (!DownSampler_setBuffer(env, impl, &impl->inputs, band,
+                                   inputWindows[band], inputSize)
+            || !DownSampler_setBuffer(env, impl, &impl->outputs, band,
+                                      outputWindows[band], outputSize))
+            status = NITF_FAILURE;
+    }
+
+    if (!status)
+    {
+        (*env)->ExceptionClear(env);
+        nitf_Error_init(error, "Unable to wrap the down-sample windows",
+                        NITF_CTXT, NITF_ERR_MEMORY);
+    }
+    else
+    {
+        result = (*env)->CallBooleanMethod(env, impl->self, impl->applyID,
+                                           impl->inputs.windows,
+                                           impl->outputs.windows,
+                                           (jint) numBands,
+                                           (jint) numWindowRows,
+                                           (jint) numWindowCols,
+                                           (jint) numInputCols,
+                                           (jint) numSubWindowCols,
+                                           (jint) pixelType,
+                                           (jint) pixelSize,
+                                           (jint) rowsInLastWindow,
+                                           (jint) colsInLastWindow);
+
+        /* make sure the Java code didn't fail on us */
+        if (!_CatchJavaException(env, error))
+            status = NITF_FAILURE;
+        else if (!result)
+        {
+            nitf_Error_init(error, "DownSampler apply failed",
+                            NITF_CTXT, NITF_ERR_UNK);
+            status = NITF_FAILURE;
+        }
+    }
+
+    (*env)->MonitorExit(env, impl->self);
+
+    if (detach)
+        (*vm)->DetachCurrentThread(vm);
+    return status;
+}
+
+
+NITFPRIV(void) DownSampler_destruct(NITF_DATA * data)
+{
+    DownSamplerImpl *impl = NULL;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+
+    detach = _GetJNIEnv(&vm, &env);
+
+    if (data)
+    {
+        impl = (DownSamplerImpl *) data;
+
+        /* Delete the global refs */
+        DownSampler_freeWindows(env, &impl->inputs);
+        DownSampler_freeWindows(env, &impl->outputs);
+        (*env)->DeleteGlobalRef(env, impl->nativeOrder);
+        (*env)->DeleteGlobalRef(env, impl->self);
+        NITF_FREE(data);
+    }
+
+    if (detach)
+        (*vm)->DetachCurrentThread(vm);
+}
+
+
 /*
  * Class:     nitf_DownSampler
  * Method:    construct
@@ -35,11 +300,116 @@ NITF_JNI_DECLARE_OBJ(nitf_DownSampler)
 JNIEXPORT void JNICALL Java_nitf_DownSampler_construct
   (JNIEnv *env, jobject self)
 {
-	/* Do nothing for now!!! */
-	
-	/* TODO - in the future provide a callback mechanism like
-	 * nitf_BandSource does
-	 */
+    /* make the interface */
+    static nitf_IDownSampler iDownSampler = {
+        &DownSampler_apply,
+        &DownSampler_destruct
+    };
+
+    nitf_DownSampler *downSampler = NULL;
+    DownSamplerImpl *impl;      /* gets malloc'd for this object */
+    jclass clazz;
+    jclass downSamplerClass = (*env)->FindClass(env, "nitf/DownSampler");
+    jmethodID methodID;
+    jobject order;
+
+    impl = (DownSamplerImpl *) NITF_MALLOC(sizeof(DownSamplerImpl));
+    if (!impl)
+    {
+        _ThrowNITFException(env, "Out of memory");
+        return;
+    }
+    memset(impl, 0, sizeof(DownSamplerImpl));
+
+    clazz = (*env)->GetObjectClass(env, self);
+    impl->applyID = (*env)->GetMethodID(env, clazz, "apply",
+        "([Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;IIIIIIIII)Z");
+    (*env)->DeleteLocalRef(env, clazz);
+    if (!impl->applyID)
+    {
+        NITF_FREE(impl);
+        return;
+    }
+
+    /* the windows are wrapped in native-order ByteBuffers */
+    clazz = (*env)->FindClass(env, "java/nio/ByteOrder");
+    methodID = (*env)->GetStaticMethodID(env, clazz, "nativeOrder",
+                                         "()Ljava/nio/ByteOrder;");
+    order = (*env)->CallStaticObjectMethod(env, clazz, methodID);
+    (*env)->DeleteLocalRef(env, clazz);
+    clazz = (*env)->FindClass(env, "java/nio/ByteBuffer");
+    impl->orderID = (*env)->GetMethodID(env, clazz, "order",
+        "(Ljava/nio/ByteOrder;)Ljava/nio/ByteBuffer;");
+    (*env)->DeleteLocalRef(env, clazz);
+    clazz = (*env)->FindClass(env, "java/nio/Buffer");
+    impl->clearID = (*env)->GetMethodID(env, clazz, "clear",
+                                        "()Ljava/nio/Buffer;");
+    (*env)->DeleteLocalRef(env, clazz);
+    if (!order || !impl->orderID || !impl->clearID)
+    {
+        NITF_FREE(impl);
+        return;
+    }
+    impl->nativeOrder = (*env)->NewGlobalRef(env, order);
+    (*env)->DeleteLocalRef(env, order);
+
+    downSampler = (nitf_DownSampler *) NITF_MALLOC(sizeof(nitf_DownSampler));
+    if (!downSampler)
+    {
+        (*env)->DeleteGlobalRef(env, impl->nativeOrder);
+        NITF_FREE(impl);
+        _ThrowNITFException(env, "Out of Memory");
+        return;
+    }
+
+    /* the real settings are copied over by setNativeSettings */
+    downSampler->rowSkip = 1;
+    downSampler->colSkip = 1;
+    downSampler->multiBand = 0;
+    downSampler->minBands = 1;
+    downSampler->maxBands = 0;
+    downSampler->types = NITF_DOWNSAMPLER_TYPE_ALL;
+    downSampler->fullResolution = 0;
+    downSampler->halo = 0;
+
+    /**************************************************************/
+    /* THIS IS VERY IMPORTANT... WE MUST MAKE A STRONG GLOBAL REF */
+    /**************************************************************/
+    impl->self = (*env)->NewGlobalRef(env, self);
+
+    downSampler->data = impl;
+    downSampler->iface = &iDownSampler;
+
+    _SetObj(env, self, downSampler);
+
+    /* now, we must also register this type */
+    methodID = (*env)->GetStaticMethodID(env, downSamplerClass, "register",
+                                         "(Lnitf/DownSampler;)V");
+    (*env)->CallStaticVoidMethod(env, downSamplerClass, methodID, self);
+}
+
+/*
+ * Class:     nitf_DownSampler
+ * Method:    setNativeSettings
+ * Signature: (IIZII)V
+ */
+JNIEXPORT void JNICALL Java_nitf_DownSampler_setNativeSettings
+  (JNIEnv *env, jobject self, jint rowSkip, jint colSkip, jboolean multiBand,
+   jint minBands, jint maxBands)
+{
+    nitf_DownSampler *downSampler = _GetObj(env, self);
+
+    if (rowSkip <= 0 || colSkip <= 0)
+    {
+        _ThrowNITFException(env, "Invalid DownSampler skip size");
+        return;
+    }
+
+    downSampler->rowSkip = (nitf_Uint32) rowSkip;
+    downSampler->colSkip = (nitf_Uint32) colSkip;
+    downSampler->multiBand = multiBand == JNI_TRUE ? 1 : 0;
+    downSampler->minBands = minBands > 0 ? (nitf_Uint32) minBands : 1;
+    downSampler->maxBands = maxBands > 0 ? (nitf_Uint32) maxBands : 0;
 }
 
 JNIEXPORT jboolean JNICALL Java_nitf_DownSampler_00024Destructor_destructMemory
@@ -53,5 +423,3 @@ JNIEXPORT jboolean JNICALL Java_nitf_DownSampler_00024Destructor_destructMemory
     }
     return JNI_FALSE;
 }
-
-
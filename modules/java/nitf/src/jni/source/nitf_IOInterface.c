@@ -49,23 +49,29 @@ NITFPRIV(NITF_BOOL) IOInterfaceImpl_read(NITF_DATA* data,
     JavaVM *vm = NULL;
     int detach;
     jbyteArray byteArray;
+    NITF_BOOL status;
 
     /* cast it to the structure we know about */
     impl = (IOInterfaceImpl *) data;
     detach = _GetJNIEnv(&vm, &env);
 
     byteArray = (*env)->NewByteArray(env, size);
-    (*env)->SetByteArrayRegion(env, byteArray, 0, size, buf);
 
     ioClass = (*env)->GetObjectClass(env, impl->self);
     methodID = (*env)->GetMethodID(env, ioClass, "read", "([BI)V");
     (*env)->CallVoidMethod(env, impl->self, methodID, byteArray, (jint)size);
 
-    (*env)->ReleaseByteArrayElements(env, byteArray, buf, 0);
+    /* copy what was read back out, unless the Java code failed */
+    status = _CatchJavaException(env, error);
+    if (status)
+        (*env)->GetByteArrayRegion(env, byteArray, 0, size, (jbyte*)buf);
+
+    (*env)->DeleteLocalRef(env, byteArray);
+    (*env)->DeleteLocalRef(env, ioClass);
 
     if (detach)
         (*vm)->DetachCurrentThread(vm);
-    return NITF_SUCCESS;
+    return status;
 }
 
 NITFPRIV(NITF_BOOL) IOInterfaceImpl_write(NITF_DATA* data,
@@ -80,23 +86,27 @@ NITFPRIV(NITF_BOOL) IOInterfaceImpl_write(NITF_DATA* data,
     JavaVM *vm = NULL;
     int detach;
     jbyteArray byteArray;
+    NITF_BOOL status;
 
     /* cast it to the structure we know about */
     impl = (IOInterfaceImpl *) data;
     detach = _GetJNIEnv(&vm, &env);
 
     byteArray = (*env)->NewByteArray(env, size);
-    (*env)->SetByteArrayRegion(env, byteArray, 0, size, buf);
+    (*env)->SetByteArrayRegion(env, byteArray, 0, size, (const jbyte*)buf);
 
     ioClass = (*env)->GetObjectClass(env, impl->self);
     methodID = (*env)->GetMethodID(env, ioClass, "write", "([BI)V");
     (*env)->CallVoidMethod(env, impl->self, methodID, byteArray, (jint)size);
+    status = _CatchJavaException(env, error);
 
-    /*(*env)->ReleaseByteArrayElements(env, byteArray, buf, JNI_COMMIT);*/
+    /* a write per row would otherwise fill up the local reference table */
+    (*env)->DeleteLocalRef(env, byteArray);
+    (*env)->DeleteLocalRef(env, ioClass);
 
     if (detach)
         (*vm)->DetachCurrentThread(vm);
-    return NITF_SUCCESS;
+    return status;
 }
 
 NITFPRIV(NITF_BOOL) IOInterfaceImpl_canSeek(NITF_DATA* data, nitf_Error* error)
@@ -159,8 +169,9 @@ NITFPRIV(nitf_Off) IOInterfaceImpl_seek(NITF_DATA* data,
     ioClass = (*env)->GetObjectClass(env, impl->self);
     methodID = (*env)->GetMethodID(env, ioClass, "seek", "(JI)J");
     seekResult = (*env)->CallLongMethod(env, impl->self, methodID, offset, jWhence);
-
-    /* TODO check for result ? */
+    if (!_CatchJavaException(env, error))
+        seekResult = -1;
+    (*env)->DeleteLocalRef(env, ioClass);
 
     if (detach)
         (*vm)->DetachCurrentThread(vm);
@@ -185,6 +196,9 @@ NITFPRIV(nitf_Off) IOInterfaceImpl_tell(NITF_DATA* data,
     ioClass = (*env)->GetObjectClass(env, impl->self);
     methodID = (*env)->GetMethodID(env, ioClass, "tell", "()J");
     tell = (*env)->CallLongMethod(env, impl->self, methodID);
+    if (!_CatchJavaException(env, error))
+        tell = -1;
+    (*env)->DeleteLocalRef(env, ioClass);
 
     if (detach)
         (*vm)->DetachCurrentThread(vm);
@@ -200,6 +214,7 @@ NITFPRIV(nitf_Off) IOInterfaceImpl_getSize(NITF_DATA* data,
     JNIEnv *env = NULL;
     JavaVM *vm = NULL;
     int detach;
+    nitf_Off size;
 
     /* cast it to the structure we know about */
     impl = (IOInterfaceImpl *) data;
@@ -207,11 +222,14 @@ NITFPRIV(nitf_Off) IOInterfaceImpl_getSize(NITF_DATA* data,
 
     ioClass = (*env)->GetObjectClass(env, impl->self);
     methodID = (*env)->GetMethodID(env, ioClass, "getSize", "()J");
-    (*env)->CallLongMethod(env, impl->self, methodID);
+    size = (*env)->CallLongMethod(env, impl->self, methodID);
+    if (!_CatchJavaException(env, error))
+        size = -1;
+    (*env)->DeleteLocalRef(env, ioClass);
 
     if (detach)
         (*vm)->DetachCurrentThread(vm);
-    return NITF_SUCCESS;
+    return size;
 }
 
 NITFPRIV(int) IOInterfaceImpl_getMode(NITF_DATA* data, nitf_Error* error)
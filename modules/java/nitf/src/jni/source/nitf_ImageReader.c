@@ -85,6 +85,35 @@ JNIEXPORT jobject JNICALL Java_nitf_ImageReader_getBlockingInfo(JNIEnv * env,
     return blockingInfo;
 }
 
+/*
+ * Class:     nitf_ImageReader
+ * Method:    getBlockStatus
+ * Signature: ()[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_nitf_ImageReader_getBlockStatus(JNIEnv * env,
+                                                                  jobject self)
+{
+    nitf_ImageReader *reader = _GetObj(env, self);
+    nitf_Error error;
+    nitf_Uint8 *status;
+    nitf_Uint32 numBlocks;
+    jbyteArray byteArray;
+
+    status = nitf_ImageReader_getBlockStatus(reader, &numBlocks, &error);
+    if (!status)
+    {
+        _ThrowNITFException(env, error.message);
+        return NULL;
+    }
+
+    byteArray = (*env)->NewByteArray(env, (jsize) numBlocks);
+    if (byteArray)
+        (*env)->SetByteArrayRegion(env, byteArray, 0, (jsize) numBlocks,
+                                   (jbyte *) status);
+    NITF_FREE(status);
+    return byteArray;
+}
+
 /*
  * Class:     nitf_ImageReader
  * Method:    read
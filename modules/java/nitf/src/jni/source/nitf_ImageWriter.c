@@ -41,6 +41,53 @@ JNIEXPORT jboolean JNICALL Java_nitf_ImageWriter_00024Destructor_destructMemory
 }
 
 
+/*
+ * Class:     nitf_ImageWriter
+ * Method:    construct
+ * Signature: (Lnitf/ImageSubheader;)V
+ */
+JNIEXPORT void JNICALL Java_nitf_ImageWriter_construct
+    (JNIEnv * env, jobject self, jobject jSubheader)
+{
+    jclass subheaderClass = (*env)->GetObjectClass(env, jSubheader);
+    jmethodID methodID =
+        (*env)->GetMethodID(env, subheaderClass, "getAddress", "()J");
+    nitf_ImageSubheader *subheader = (nitf_ImageSubheader *)
+        (*env)->CallLongMethod(env, jSubheader, methodID);
+    nitf_ImageWriter *writer;
+    nitf_Error error;
+
+    writer = nitf_ImageWriter_construct(subheader, NULL, &error);
+    if (!writer)
+    {
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+    _SetObj(env, self, writer);
+}
+
+
+/*
+ * Class:     nitf_ImageWriter
+ * Method:    write
+ * Signature: (Lnitf/IOInterface;)V
+ */
+JNIEXPORT void JNICALL Java_nitf_ImageWriter_write
+    (JNIEnv * env, jobject self, jobject jIO)
+{
+    nitf_WriteHandler *writer = _GetObj(env, self);
+    jclass ioClass = (*env)->GetObjectClass(env, jIO);
+    jmethodID methodID =
+        (*env)->GetMethodID(env, ioClass, "getAddress", "()J");
+    nitf_IOInterface *io = (nitf_IOInterface *)
+        (*env)->CallLongMethod(env, jIO, methodID);
+    nitf_Error error;
+
+    if (!(*writer->iface->write)(writer->data, io, &error))
+        _ThrowNITFException(env, error.message);
+}
+
+
 /*
  * Class:     nitf_ImageWriter
  * Method:    attachSource
@@ -87,3 +134,21 @@ JNIEXPORT jboolean JNICALL Java_nitf_ImageWriter_setWriteCaching
     return intFlag ? JNI_TRUE : JNI_FALSE;
 }
 
+
+/*
+ * Class:     nitf_ImageWriter
+ * Method:    setDirectBlockWrite
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_nitf_ImageWriter_setDirectBlockWrite
+  (JNIEnv *env, jobject self, jboolean enable)
+{
+    nitf_ImageWriter *writer = _GetObj(env, self);
+    nitf_Error error;
+
+    if (!nitf_ImageWriter_setDirectBlockWrite(writer,
+            (enable == JNI_TRUE) ? 1 : 0, &error))
+    {
+        _ThrowNITFException(env, error.message);
+    }
+}
@@ -0,0 +1,333 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2014, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+#include <import/nitf.h>
+#include "nitf_InterleavedImageSource.h"
+#include "nitf_InterleavedImageSource_Band.h"
+#include "nitf_JNI.h"
+
+/*  This creates the _SetObj and _GetObj accessors  */
+NITF_JNI_DECLARE_OBJ(nitf_BandSource)
+
+/*
+ * The algorithm object of the native interleaved source, which gets the rows
+ * from a direct buffer, or from a Java RowProducer
+ */
+typedef struct _InterleavedImageSourceImpl
+{
+    jobject object;             /* The buffer or producer (global ref) */
+    jobject buffer;             /* Direct buffer over the row (global ref) */
+    jmethodID nextRow;          /* RowProducer.nextRow */
+    jmethodID clear;            /* Buffer.clear */
+    const nitf_Uint8 *data;     /* The memory of the buffer */
+    size_t rowLength;           /* Length of an interleaved row in bytes */
+} InterleavedImageSourceImpl;
+
+
+NITFPRIV(const NITF_DATA *) InterleavedImageSource_bufferRow(void *algorithm,
+        nitf_Uint32 row, NITF_DATA * buffer, nitf_Error * error)
+{
+    InterleavedImageSourceImpl *impl = (InterleavedImageSourceImpl *) algorithm;
+    return impl->data + (size_t) row * impl->rowLength;
+}
+
+
+NITFPRIV(const NITF_DATA *) InterleavedImageSource_producerRow(
+        void *algorithm, nitf_Uint32 row, NITF_DATA * buffer,
+        nitf_Error * error)
+{
+    InterleavedImageSourceImpl *impl = (InterleavedImageSourceImpl *) algorithm;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+    NITF_BOOL status;
+
+    detach = _GetJNIEnv(&vm, &env);
+
+    /* the native row buffer never moves, so it is only wrapped once */
+    if (!impl->buffer)
+    {
+        jobject byteBuffer = (*env)->NewDirectByteBuffer(env, buffer,
+            (jlong) impl->rowLength);
+        if (!byteBuffer)
+        {
+            (*env)->ExceptionClear(env);
+            nitf_Error_init(error, "Unable to create row buffer",
+                            NITF_CTXT, NITF_ERR_MEMORY);
+            if (detach)
+                (*vm)->DetachCurrentThread(vm);
+            return NULL;
+        }
+        impl->buffer = (*env)->NewGlobalRef(env, byteBuffer);
+        (*env)->DeleteLocalRef(env, byteBuffer);
+    }
+
+    (*env)->DeleteLocalRef(env,
+        (*env)->CallObjectMethod(env, impl->buffer, impl->clear));
+    (*env)->CallVoidMethod(env, impl->object, impl->nextRow, impl->buffer);
+
+    /* make sure the Java code didn't fail on us */
+    status = _CatchJavaException(env, error);
+
+    if (detach)
+        (*vm)->DetachCurrentThread(vm);
+    return status ? buffer : NULL;
+}
+
+
+NITFPRIV(void) InterleavedImageSource_destruct(NITF_DATA * data)
+{
+    InterleavedImageSourceImpl *impl = (InterleavedImageSourceImpl *) data;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+
+    if (!impl)
+        return;
+
+    detach = _GetJNIEnv(&vm, &env);
+
+    /* Delete the global refs */
+    if (impl->buffer)
+        (*env)->DeleteGlobalRef(env, impl->buffer);
+    (*env)->DeleteGlobalRef(env, impl->object);
+
+    if (detach)
+        (*vm)->DetachCurrentThread(vm);
+    NITF_FREE(impl);
+}
+
+
+/*
+ * Makes the Java objects for the bands of the image source, which it owns
+ */
+NITFPRIV(jlong) InterleavedImageSource_bind(JNIEnv * env,
+                                            nitf_ImageSource * imageSource)
+{
+    jclass bandSourceClass = (*env)->FindClass(env, "nitf/BandSource");
+    jmethodID methodID = (*env)->GetStaticMethodID(env, bandSourceClass,
+        "register", "(Lnitf/BandSource;)V");
+    nitf_ListIterator iter, end;
+    jlong address;
+    jobject band;
+
+    iter = nitf_List_begin(imageSource->bandSources);
+    end = nitf_List_end(imageSource->bandSources);
+    while (nitf_ListIterator_notEqualTo(&iter, &end))
+    {
+        address = (jlong) ((nitf_BandSource *) nitf_ListIterator_get(&iter));
+        band = _NewObject(env, address, "nitf/InterleavedImageSource$Band");
+
+        /* the image source destructs the bands, not Java */
+        _ManageObject(env, address, JNI_FALSE);
+        (*env)->CallStaticVoidMethod(env, bandSourceClass, methodID, band);
+        (*env)->DeleteLocalRef(env, band);
+        nitf_ListIterator_increment(&iter);
+    }
+    return (jlong) imageSource;
+}
+
+
+NITFPRIV(InterleavedImageSourceImpl *) InterleavedImageSource_createImpl(
+        JNIEnv * env, jobject object, jint numRows, jint numCols,
+        jint numBands, jint numBytesPerPixel)
+{
+    InterleavedImageSourceImpl *impl;
+
+    if (!object)
+    {
+        _ThrowNITFException(env, "ERROR, no interleaved data");
+        return NULL;
+    }
+    if (numRows <= 0 || numCols <= 0 || numBands <= 0
+        || numBytesPerPixel <= 0)
+    {
+        _ThrowNITFException(env, "Invalid interleaved image dimensions");
+        return NULL;
+    }
+
+    impl = (InterleavedImageSourceImpl *)
+        NITF_MALLOC(sizeof(InterleavedImageSourceImpl));
+    if (!impl)
+    {
+        _ThrowNITFException(env, "Out of memory");
+        return NULL;
+    }
+    memset(impl, 0, sizeof(InterleavedImageSourceImpl));
+    impl->rowLength = (size_t) numCols * numBands * numBytesPerPixel;
+    return impl;
+}
+
+
+/*
+ * Class:     nitf_InterleavedImageSource
+ * Method:    construct
+ * Signature: (Ljava/nio/ByteBuffer;IIII)J
+ */
+JNIEXPORT jlong JNICALL Java_nitf_InterleavedImageSource_construct
+    (JNIEnv * env, jclass clazz, jobject data, jint numRows, jint numCols,
+     jint numBands, jint numBytesPerPixel)
+{
+    InterleavedImageSourceImpl *impl;
+    nitf_ImageSource *imageSource;
+    nitf_Error error;
+
+    impl = InterleavedImageSource_createImpl(env, data, numRows, numCols,
+                                             numBands, numBytesPerPixel);
+    if (!impl)
+        return 0;
+
+    impl->data = (const nitf_Uint8 *) (*env)->GetDirectBufferAddress(env,
+                                                                     data);
+    if (!impl->data)
+    {
+        NITF_FREE(impl);
+        _ThrowNITFException(env, "ERROR, buffer is not direct");
+        return 0;
+    }
+    if ((*env)->GetDirectBufferCapacity(env, data) <
+        (jlong) impl->rowLength * numRows)
+    {
+        NITF_FREE(impl);
+        _ThrowNITFException(env, "ERROR, buffer is too small for the image");
+        return 0;
+    }
+
+    /**************************************************************/
+    /* THIS IS VERY IMPORTANT... WE MUST MAKE A STRONG GLOBAL REF */
+    /**************************************************************/
+    impl->object = (*env)->NewGlobalRef(env, data);
+
+    imageSource = nitf_InterleavedSource_constructRows(impl,
+        &InterleavedImageSource_bufferRow, &InterleavedImageSource_destruct,
+        (nitf_Uint32) numRows, (nitf_Uint32) numCols, (nitf_Uint32) numBands,
+        (nitf_Uint32) numBytesPerPixel, &error);
+    if (!imageSource)
+    {
+        InterleavedImageSource_destruct(impl);
+        _ThrowNITFException(env, error.message);
+        return 0;
+    }
+    return InterleavedImageSource_bind(env, imageSource);
+}
+
+
+/*
+ * Class:     nitf_InterleavedImageSource
+ * Method:    constructRows
+ * Signature: (Lnitf/InterleavedImageSource/RowProducer;IIII)J
+ */
+JNIEXPORT jlong JNICALL Java_nitf_InterleavedImageSource_constructRows
+    (JNIEnv * env, jclass clazz, jobject producer, jint numRows,
+     jint numCols, jint numBands, jint numBytesPerPixel)
+{
+    InterleavedImageSourceImpl *impl;
+    nitf_ImageSource *imageSource;
+    nitf_Error error;
+    jclass producerClass;
+    jclass bufferClass;
+
+    impl = InterleavedImageSource_createImpl(env, producer, numRows, numCols,
+                                             numBands, numBytesPerPixel);
+    if (!impl)
+        return 0;
+
+    producerClass = (*env)->GetObjectClass(env, producer);
+    bufferClass = (*env)->FindClass(env, "java/nio/Buffer");
+    impl->nextRow = (*env)->GetMethodID(env, producerClass, "nextRow",
+                                        "(Ljava/nio/ByteBuffer;)V");
+    impl->clear = (*env)->GetMethodID(env, bufferClass, "clear",
+                                      "()Ljava/nio/Buffer;");
+    impl->object = (*env)->NewGlobalRef(env, producer);
+
+    imageSource = nitf_InterleavedSource_constructRows(impl,
+        &InterleavedImageSource_producerRow, &InterleavedImageSource_destruct,
+        (nitf_Uint32) numRows, (nitf_Uint32) numCols, (nitf_Uint32) numBands,
+        (nitf_Uint32) numBytesPerPixel, &error);
+    if (!imageSource)
+    {
+        InterleavedImageSource_destruct(impl);
+        _ThrowNITFException(env, error.message);
+        return 0;
+    }
+    return InterleavedImageSource_bind(env, imageSource);
+}
+
+
+/*
+ * Class:     nitf_InterleavedImageSource_Band
+ * Method:    read
+ * Signature: ([BI)V
+ */
+JNIEXPORT void JNICALL Java_nitf_InterleavedImageSource_00024Band_read
+    (JNIEnv * env, jobject self, jbyteArray buf, jint size)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    jbyte *byteBuf;
+    nitf_Error error;
+
+    byteBuf = (*env)->GetByteArrayElements(env, buf, 0);
+    if (!byteBuf)
+    {
+        _ThrowNITFException(env, "ERROR getting data from array");
+        return;
+    }
+
+    if (!source->iface->read(source->data, (char *) byteBuf, size, &error))
+    {
+        (*env)->ReleaseByteArrayElements(env, buf, byteBuf, JNI_ABORT);
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+
+    (*env)->ReleaseByteArrayElements(env, buf, byteBuf, 0);
+}
+
+
+/*
+ * Class:     nitf_InterleavedImageSource_Band
+ * Method:    getSize
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_nitf_InterleavedImageSource_00024Band_getSize
+    (JNIEnv * env, jobject self)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    nitf_Error error;
+    return (jlong) source->iface->getSize(source->data, &error);
+}
+
+
+/*
+ * Class:     nitf_InterleavedImageSource_Band
+ * Method:    setSize
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_nitf_InterleavedImageSource_00024Band_setSize
+    (JNIEnv * env, jobject self, jlong size)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    nitf_Error error;
+
+    if (!source->iface->setSize(source->data, (nitf_Off) size, &error))
+        _ThrowNITFException(env, error.message);
+}
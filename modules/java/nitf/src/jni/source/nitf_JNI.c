@@ -85,13 +85,48 @@ NITFPROT(void) _ThrowNITFException(JNIEnv *env, const char *message)
     (*env)->ThrowNew(env, exceptClass, message);
 }
 
+NITFPROT(NITF_BOOL) _CatchJavaException(JNIEnv* env, nitf_Error* error)
+{
+    jthrowable exception = NULL;
+    jclass throwableClass = NULL;
+    jmethodID methodID = NULL;
+    jstring jMessage = NULL;
+    const char *message = NULL;
+
+    if (!(*env)->ExceptionCheck(env))
+        return NITF_SUCCESS;
+
+    exception = (*env)->ExceptionOccurred(env);
+    (*env)->ExceptionClear(env);
+
+    throwableClass = (*env)->FindClass(env, "java/lang/Throwable");
+    methodID = (*env)->GetMethodID(env, throwableClass, "toString",
+                                   "()Ljava/lang/String;");
+    jMessage = (jstring)(*env)->CallObjectMethod(env, exception, methodID);
+    if (jMessage && !(*env)->ExceptionCheck(env))
+        message = (*env)->GetStringUTFChars(env, jMessage, 0);
+    else
+        (*env)->ExceptionClear(env);
+
+    nitf_Error_init(error, message ? message : "Java exception in callback",
+                    NITF_CTXT, NITF_ERR_UNK);
+
+    if (message)
+        (*env)->ReleaseStringUTFChars(env, jMessage, message);
+    if (jMessage)
+        (*env)->DeleteLocalRef(env, jMessage);
+    (*env)->DeleteLocalRef(env, throwableClass);
+    (*env)->DeleteLocalRef(env, exception);
+    return NITF_FAILURE;
+}
+
 NITFPROT(int) _GetJNIEnv(JavaVM** vm, JNIEnv** env)
 {
     jsize num = 0;
     jint status = JNI_GetCreatedJavaVMs(vm, 1, &num);
     status = (**vm)->GetEnv(*vm, (void**)env, JNI_VERSION_1_4);
     
-    if (env == NULL && status == JNI_EDETACHED)
+    if (status == JNI_EDETACHED)
     {
         //attach the current thread
         status = (**vm)->AttachCurrentThread(*vm, (void**)env, NULL);
@@ -132,3 +167,126 @@ NITFPROT(jobject) _NewObject(JNIEnv* env, jlong address, const char* clazzName)
     jmethodID methodID = (*env)->GetMethodID(env, clazz, "<init>", "(J)V");
     return (*env)->NewObject(env, clazz, methodID, address);
 }
+
+/*
+ *  Gets the memory of a DownSampler window, which must be a direct
+ *  ByteBuffer of at least the given size. Throws a NITFException otherwise.
+ */
+NITFPRIV(jboolean) _GetWindow(JNIEnv* env, jobjectArray windows, jint band,
+                              jlong size, NITF_DATA** address)
+{
+    char message[NITF_MAX_EMESSAGE];
+    jobject buffer;
+    jlong capacity = 0;
+
+    *address = NULL;
+    buffer = (*env)->GetObjectArrayElement(env, windows, band);
+    if (buffer)
+    {
+        *address = (*env)->GetDirectBufferAddress(env, buffer);
+        capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+        (*env)->DeleteLocalRef(env, buffer);
+    }
+
+    if (!*address)
+    {
+        NITF_SNPRINTF(message, NITF_MAX_EMESSAGE, "The DownSampler window "
+                      "of band %d is not a direct ByteBuffer", (int) band);
+        _ThrowNITFException(env, message);
+        return JNI_FALSE;
+    }
+    if (capacity < size)
+    {
+        NITF_SNPRINTF(message, NITF_MAX_EMESSAGE, "The DownSampler window "
+                      "of band %d holds %ld bytes, but needs %ld",
+                      (int) band, (long) capacity, (long) size);
+        _ThrowNITFException(env, message);
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+NITFPROT(jboolean) _ApplyDownSampler(JNIEnv* env,
+                                     nitf_DownSampler* downSampler,
+                                     jobjectArray inputWindows,
+                                     jobjectArray outputWindows,
+                                     jint numBands, jint numWindowRows,
+                                     jint numWindowCols, jint numInputCols,
+                                     jint numSubWindowCols, jint pixelType,
+                                     jint pixelSize, jint rowsInLastWindow,
+                                     jint colsInLastWindow)
+{
+    NITF_DATA **inputs = NULL;
+    NITF_DATA **outputs = NULL;
+    jlong inputSize, outputSize;
+    jint band;
+    nitf_Error error;
+    jboolean status = JNI_FALSE;
+
+    if (numBands <= 0 || !inputWindows || !outputWindows
+        || (*env)->GetArrayLength(env, inputWindows) < numBands
+        || (*env)->GetArrayLength(env, outputWindows) < numBands)
+    {
+        _ThrowNITFException(env, "Invalid number of bands");
+        return JNI_FALSE;
+    }
+    if (numWindowRows <= 0 || numWindowCols <= 0 || pixelSize <= 0
+        || numInputCols <= 0 || numSubWindowCols < numWindowCols)
+    {
+        _ThrowNITFException(env, "Invalid DownSampler window size");
+        return JNI_FALSE;
+    }
+
+    /* the windows of a method with a halo need it on every side */
+    if (downSampler->halo != 0 && (jlong) numWindowCols * downSampler->colSkip
+        + 2 * downSampler->halo > numInputCols)
+    {
+        _ThrowNITFException(env, "Invalid DownSampler window size");
+        return JNI_FALSE;
+    }
+
+    /* the inputs hold rowSkip rows of each window, the outputs are strided */
+    inputSize = ((jlong) numWindowRows * downSampler->rowSkip
+                 + 2 * downSampler->halo) * numInputCols * pixelSize;
+    outputSize = ((jlong) (numWindowRows - 1) * numSubWindowCols
+                  + numWindowCols) * pixelSize;
+
+    inputs = (NITF_DATA **) NITF_MALLOC(sizeof(NITF_DATA *) * numBands);
+    outputs = (NITF_DATA **) NITF_MALLOC(sizeof(NITF_DATA *) * numBands);
+    if (!inputs || !outputs)
+    {
+        _ThrowNITFException(env, "Out of memory");
+        goto CATCH_ERROR;
+    }
+
+    for (band = 0; band < numBands; ++band)
+    {
+        if (!_GetWindow(env, inputWindows, band, inputSize, &inputs[band])
+            || !_GetWindow(env, outputWindows, band, outputSize,
+                           &outputs[band]))
+            goto CATCH_ERROR;
+    }
+
+    if (!nitf_DownSampler_apply(downSampler, inputs, outputs,
+                                (nitf_Uint32) numBands,
+                                (nitf_Uint32) numWindowRows,
+                                (nitf_Uint32) numWindowCols,
+                                (nitf_Uint32) numInputCols,
+                                (nitf_Uint32) numSubWindowCols,
+                                (nitf_Uint32) pixelType,
+                                (nitf_Uint32) pixelSize,
+                                (nitf_Uint32) rowsInLastWindow,
+                                (nitf_Uint32) colsInLastWindow, &error))
+    {
+        _ThrowNITFException(env, error.message);
+        goto CATCH_ERROR;
+    }
+    status = JNI_TRUE;
+
+CATCH_ERROR:
+    if (inputs)
+        NITF_FREE(inputs);
+    if (outputs)
+        NITF_FREE(outputs);
+    return status;
+}
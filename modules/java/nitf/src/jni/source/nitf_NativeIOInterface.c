@@ -97,7 +97,9 @@ JNIEXPORT jlong JNICALL Java_nitf_NativeIOInterface_seek
         break;
     }
 
-    if (interface->iface->seek(interface->data, offset, cWhence, &error))
+    /* the new offset is returned, so seeking to 0 succeeds too */
+    if (NITF_IO_SUCCESS(interface->iface->seek(interface->data, offset,
+                                               cWhence, &error)))
     {
         return interface->iface->tell(interface->data, &error);
     }
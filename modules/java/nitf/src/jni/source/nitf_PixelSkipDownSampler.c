@@ -68,7 +68,7 @@ JNIEXPORT void JNICALL Java_nitf_PixelSkipDownSampler_construct
 /*
  * Class:     nitf_PixelSkipDownSampler
  * Method:    apply
- * Signature: ([[B[[BIIIIIIIII)Z
+ * Signature: ([Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;IIIIIIIII)Z
  */
 JNIEXPORT jboolean JNICALL Java_nitf_PixelSkipDownSampler_apply
   (JNIEnv *env, jobject self, jobjectArray inputWindows, jobjectArray outputWindows,
@@ -76,8 +76,10 @@ JNIEXPORT jboolean JNICALL Java_nitf_PixelSkipDownSampler_apply
   jint numCols, jint pixelType, jint pixelSize, jint rowsInLastWindow,
   jint colsInLastWindow)
 {
-	/* TODO for now, do nothing */
-	return JNI_TRUE;	
+    nitf_DownSampler *downSampler = _GetObj(env, self);
+    return _ApplyDownSampler(env, downSampler, inputWindows, outputWindows,
+        numBands, numWindowRows, numWindowCols, numInputCols, numCols,
+        pixelType, pixelSize, rowsInLastWindow, colsInLastWindow);
 }
 
 /*
@@ -0,0 +1,263 @@
+/* =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2014, MDA Information Systems LLC
+ *
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public 
+ * License along with this program; if not, If not, 
+ * see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+#include <import/nitf.h>
+#include "nitf_RowSource.h"
+#include "nitf_JNI.h"
+
+/*  This creates the _SetObj and _GetObj accessors  */
+NITF_JNI_DECLARE_OBJ(nitf_BandSource)
+
+/*
+ * The Java row source wraps a native row source, whose algorithm object is
+ * this, so the rows are requested from the Java RowProducer in batches
+ */
+typedef struct _RowSourceImpl
+{
+    nitf_BandSource *rows;      /* The native row source */
+    jobject producer;           /* The RowProducer (global ref) */
+    jobject buffer;             /* Direct buffer over the batch (global ref) */
+    jmethodID nextRows;         /* RowProducer.nextRows */
+    jmethodID clear;            /* Buffer.clear */
+    jmethodID limit;            /* Buffer.limit */
+    nitf_Uint32 numRows;        /* Number of rows in the band */
+    nitf_Uint32 rowLength;      /* Length of each row in bytes */
+    nitf_Uint32 rowsPerBatch;   /* Rows requested at a time */
+    nitf_Uint32 rowsDone;       /* Rows produced so far */
+} RowSourceImpl;
+
+
+/*
+ *  Next row function for the native row source, a "row" being a batch
+ */
+NITFPRIV(NITF_BOOL) RowSource_nextRows(void *algorithm, nitf_Uint32 band,
+                                       NITF_DATA * buffer, nitf_Error * error)
+{
+    RowSourceImpl *impl = (RowSourceImpl *) algorithm;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+    nitf_Uint32 numRows;
+    NITF_BOOL status;
+
+    if (impl->rowsDone >= impl->numRows)
+    {
+        nitf_Error_init(error, "Read past the last row", NITF_CTXT,
+                        NITF_ERR_READING_FROM_FILE);
+        return NITF_FAILURE;
+    }
+
+    detach = _GetJNIEnv(&vm, &env);
+
+    /* the native row buffer never moves, so it is only wrapped once */
+    if (!impl->buffer)
+    {
+        jobject byteBuffer = (*env)->NewDirectByteBuffer(env, buffer,
+            (jlong) impl->rowLength * impl->rowsPerBatch);
+        if (!byteBuffer)
+        {
+            (*env)->ExceptionClear(env);
+            nitf_Error_init(error, "Unable to create row buffer",
+                            NITF_CTXT, NITF_ERR_MEMORY);
+            if (detach)
+                (*vm)->DetachCurrentThread(vm);
+            return NITF_FAILURE;
+        }
+        impl->buffer = (*env)->NewGlobalRef(env, byteBuffer);
+        (*env)->DeleteLocalRef(env, byteBuffer);
+    }
+
+    numRows = impl->numRows - impl->rowsDone;
+    if (numRows > impl->rowsPerBatch)
+        numRows = impl->rowsPerBatch;
+
+    (*env)->DeleteLocalRef(env,
+        (*env)->CallObjectMethod(env, impl->buffer, impl->clear));
+    (*env)->DeleteLocalRef(env,
+        (*env)->CallObjectMethod(env, impl->buffer, impl->limit,
+                                 (jint) (numRows * impl->rowLength)));
+    (*env)->CallVoidMethod(env, impl->producer, impl->nextRows,
+                           (jint) band, impl->buffer);
+
+    /* make sure the Java code didn't fail on us */
+    status = _CatchJavaException(env, error);
+    impl->rowsDone += numRows;
+
+    if (detach)
+        (*vm)->DetachCurrentThread(vm);
+    return status;
+}
+
+
+NITFPRIV(NITF_BOOL) RowSource_read
+    (NITF_DATA * data, void *buf, nitf_Off size, nitf_Error * error)
+{
+    RowSourceImpl *impl = (RowSourceImpl *) data;
+    return impl->rows->iface->read(impl->rows->data, buf, size, error);
+}
+
+
+NITFPRIV(void) RowSource_destruct(NITF_DATA * data)
+{
+    RowSourceImpl *impl = (RowSourceImpl *) data;
+    JNIEnv *env = NULL;
+    JavaVM *vm = NULL;
+    int detach;
+
+    if (!impl)
+        return;
+
+    detach = _GetJNIEnv(&vm, &env);
+
+    /* Delete the global refs */
+    if (impl->buffer)
+        (*env)->DeleteGlobalRef(env, impl->buffer);
+    (*env)->DeleteGlobalRef(env, impl->producer);
+
+    if (detach)
+        (*vm)->DetachCurrentThread(vm);
+
+    nitf_BandSource_destruct(&impl->rows);
+    NITF_FREE(impl);
+}
+
+
+NITFPRIV(nitf_Off) RowSource_getSize(NITF_DATA * data, nitf_Error * error)
+{
+    RowSourceImpl *impl = (RowSourceImpl *) data;
+    return (nitf_Off) impl->numRows * (nitf_Off) impl->rowLength;
+}
+
+
+NITFPRIV(NITF_BOOL) RowSource_setSize(NITF_DATA * data, nitf_Off size,
+                                      nitf_Error * error)
+{
+    return NITF_SUCCESS;
+}
+
+
+/*
+ * Class:     nitf_RowSource
+ * Method:    construct
+ * Signature: (Lnitf/RowSource/RowProducer;IIII)V
+ */
+JNIEXPORT void JNICALL Java_nitf_RowSource_construct
+    (JNIEnv * env, jobject self, jobject producer, jint band, jint numRows,
+     jint rowLength, jint rowsPerBatch)
+{
+    /* make the interface */
+    static nitf_IDataSource iRowSource = {
+        &RowSource_read,
+        &RowSource_destruct,
+        &RowSource_getSize,
+        &RowSource_setSize
+    };
+
+    nitf_BandSource *bandSource;
+    RowSourceImpl *impl;
+    nitf_Error error;
+    jclass producerClass = (*env)->GetObjectClass(env, producer);
+    jclass bufferClass = (*env)->FindClass(env, "java/nio/Buffer");
+    jclass bandSourceClass = (*env)->FindClass(env, "nitf/BandSource");
+    jmethodID methodID = (*env)->GetStaticMethodID(env, bandSourceClass,
+        "register", "(Lnitf/BandSource;)V");
+
+    impl = (RowSourceImpl *) NITF_MALLOC(sizeof(RowSourceImpl));
+    if (!impl)
+    {
+        _ThrowNITFException(env, "Out of memory");
+        return;
+    }
+    impl->nextRows = (*env)->GetMethodID(env, producerClass, "nextRows",
+                                         "(ILjava/nio/ByteBuffer;)V");
+    impl->clear = (*env)->GetMethodID(env, bufferClass, "clear",
+                                      "()Ljava/nio/Buffer;");
+    impl->limit = (*env)->GetMethodID(env, bufferClass, "limit",
+                                      "(I)Ljava/nio/Buffer;");
+    impl->numRows = (nitf_Uint32) numRows;
+    impl->rowLength = (nitf_Uint32) rowLength;
+    impl->rowsPerBatch = (nitf_Uint32) rowsPerBatch;
+    impl->rowsDone = 0;
+    impl->buffer = NULL;
+
+    impl->rows = nitf_RowSource_construct(impl, &RowSource_nextRows,
+        (nitf_Uint32) band,
+        (impl->numRows + impl->rowsPerBatch - 1) / impl->rowsPerBatch,
+        impl->rowLength * impl->rowsPerBatch, &error);
+    if (!impl->rows)
+    {
+        NITF_FREE(impl);
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+
+    bandSource = (nitf_BandSource *) NITF_MALLOC(sizeof(nitf_BandSource));
+    if (!bandSource)
+    {
+        nitf_BandSource_destruct(&impl->rows);
+        NITF_FREE(impl);
+        _ThrowNITFException(env, "Out of memory");
+        return;
+    }
+
+    /**************************************************************/
+    /* THIS IS VERY IMPORTANT... WE MUST MAKE A STRONG GLOBAL REF */
+    /**************************************************************/
+    impl->producer = (*env)->NewGlobalRef(env, producer);
+    bandSource->data = impl;
+    bandSource->iface = &iRowSource;
+
+    _SetObj(env, self, bandSource);
+
+    /* now, we must also register this type */
+    (*env)->CallStaticVoidMethod(env, bandSourceClass, methodID, self);
+}
+
+
+/*
+ * Class:     nitf_RowSource
+ * Method:    read
+ * Signature: ([BI)V
+ */
+JNIEXPORT void JNICALL Java_nitf_RowSource_read
+    (JNIEnv * env, jobject self, jbyteArray buf, jint size)
+{
+    nitf_BandSource *source = _GetObj(env, self);
+    jbyte *byteBuf;
+    nitf_Error error;
+
+    byteBuf = (*env)->GetByteArrayElements(env, buf, 0);
+    if (!byteBuf)
+    {
+        _ThrowNITFException(env, "ERROR getting data from array");
+        return;
+    }
+
+    if (!source->iface->read(source->data, (char *) byteBuf, size, &error))
+    {
+        (*env)->ReleaseByteArrayElements(env, buf, byteBuf, JNI_ABORT);
+        _ThrowNITFException(env, error.message);
+        return;
+    }
+
+    (*env)->ReleaseByteArrayElements(env, buf, byteBuf, 0);
+}
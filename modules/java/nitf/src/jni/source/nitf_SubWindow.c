@@ -247,6 +247,14 @@ JNIEXPORT void JNICALL Java_nitf_SubWindow_setDownSampler
 
     if (downSamplerObject != NULL)
     {
+        /* Java DownSamplers need their settings copied over first */
+        jclass downSamplerClass = (*env)->FindClass(env, "nitf/DownSampler");
+        jmethodID methodID = (*env)->GetMethodID(env, downSamplerClass,
+                                                 "updateNative", "()V");
+        (*env)->CallVoidMethod(env, downSamplerObject, methodID);
+        if ((*env)->ExceptionCheck(env))
+            return;
+
         downSampler = (nitf_DownSampler*)_GetObj(env, downSamplerObject);
         subWindow->downsampler = downSampler;
     }
@@ -268,11 +276,13 @@ JNIEXPORT jobject JNICALL Java_nitf_SubWindow_getDownSampler
 
     if (subWindow->downsampler)
     {
-        methodID =
-            (*env)->GetMethodID(env, downSamplerClass, "<init>", "(J)V");
+        /* DownSampler is abstract, so look up the registered instance */
+        methodID = (*env)->GetStaticMethodID(env, downSamplerClass,
+                                             "getByAddress",
+                                             "(J)Lnitf/DownSampler;");
         downSampler =
-            (*env)->NewObject(env, downSamplerClass, methodID,
-                              subWindow->downsampler);
+            (*env)->CallStaticObjectMethod(env, downSamplerClass, methodID,
+                                           (jlong) subWindow->downsampler);
         return downSampler;
     }
     /* otherwise, return NULL */
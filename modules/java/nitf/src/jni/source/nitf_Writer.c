@@ -25,6 +25,9 @@
 #include "nitf_Writer_Destructor.h"
 #include "nitf_JNI.h"
 
+/* the number of buckets of the compression options */
+#define NUM_OPTION_BUCKETS 3
+
 NITF_JNI_DECLARE_OBJ(nitf_Writer)
 /*
  * Class:     nitf_Writer
@@ -348,12 +351,11 @@ JNIEXPORT void JNICALL Java_nitf_Writer_setDEWriteHandler
 }
 
 /*
- * Class:     nitf_Writer
- * Method:    getNewImageWriter
- * Signature: (I)Lnitf/ImageWriter;
+ * Creates an ImageWriter, whose compression plugin (if any) is opened with
+ * the given options, and wraps it
  */
-JNIEXPORT jobject JNICALL Java_nitf_Writer_getNewImageWriter
-    (JNIEnv * env, jobject self, jint imageNumber)
+static jobject newImageWriter(JNIEnv * env, jobject self, jint imageNumber,
+                              nrt_HashTable *options)
 {
     nitf_Writer *writer = _GetObj(env, self);
     nitf_ImageWriter *imageWriter;
@@ -363,7 +365,8 @@ JNIEXPORT jobject JNICALL Java_nitf_Writer_getNewImageWriter
 
     jmethodID methodID =
         (*env)->GetMethodID(env, imageWriterClass, "<init>", "(J)V");
-    imageWriter = nitf_Writer_newImageWriter(writer, imageNumber, NULL, &error);
+    imageWriter = nitf_Writer_newImageWriter(writer, imageNumber, options,
+                                             &error);
 
     if (!imageWriter)
     {
@@ -380,6 +383,86 @@ JNIEXPORT jobject JNICALL Java_nitf_Writer_getNewImageWriter
     return imageWriterObject;
 }
 
+/*
+ * Inserts a copy of the value, which the table adopts
+ */
+static NITF_BOOL insertOption(nrt_HashTable *options, const char *key,
+                              const void *value, size_t size,
+                              nitf_Error *error)
+{
+    void *data = NITF_MALLOC(size);
+    if (!data)
+    {
+        nitf_Error_init(error, NITF_STRERROR(NITF_ERRNO), NITF_CTXT,
+                        NITF_ERR_MEMORY);
+        return NITF_FAILURE;
+    }
+    memcpy(data, value, size);
+    if (!nrt_HashTable_insert(options, key, data, error))
+    {
+        NITF_FREE(data);
+        return NITF_FAILURE;
+    }
+    return NITF_SUCCESS;
+}
+
+/*
+ * Class:     nitf_Writer
+ * Method:    getNewImageWriter
+ * Signature: (I)Lnitf/ImageWriter;
+ */
+JNIEXPORT jobject JNICALL Java_nitf_Writer_getNewImageWriter
+    (JNIEnv * env, jobject self, jint imageNumber)
+{
+    return newImageWriter(env, self, imageNumber, NULL);
+}
+
+/*
+ * Class:     nitf_Writer
+ * Method:    newImageWriter
+ * Signature: (IDIIZ)Lnitf/ImageWriter;
+ */
+JNIEXPORT jobject JNICALL Java_nitf_Writer_newImageWriter
+    (JNIEnv * env, jobject self, jint imageNumber, jdouble compressionRatio,
+     jint numResolutions, jint numThreads, jboolean visuallyLossless)
+{
+    nrt_HashTable *options;
+    nitf_Error error;
+    double ratio = compressionRatio;
+    nrt_Uint32 resolutions = (nrt_Uint32) numResolutions;
+    nrt_Uint32 threads = (nrt_Uint32) numThreads;
+    nrt_Uint32 visual = visuallyLossless ? 1 : 0;
+    jobject imageWriterObject = NULL;
+
+    if (!(options = nrt_HashTable_construct(NUM_OPTION_BUCKETS, &error)))
+    {
+        _ThrowNITFException(env, error.message);
+        return NULL;
+    }
+    nrt_HashTable_setPolicy(options, NRT_DATA_ADOPT);
+
+    if (!insertOption(options, C8_COMPRESSION_RATIO_KEY, &ratio,
+                      sizeof(ratio), &error)
+        || (resolutions > 0
+            && !insertOption(options, C8_NUM_RESOLUTIONS_KEY, &resolutions,
+                             sizeof(resolutions), &error))
+        || !insertOption(options, C8_NUM_THREADS_KEY, &threads,
+                         sizeof(threads), &error)
+        || !insertOption(options, C8_VISUALLY_LOSSLESS_KEY, &visual,
+                         sizeof(visual), &error))
+    {
+        _ThrowNITFException(env, error.message);
+    }
+    else
+    {
+        imageWriterObject = newImageWriter(env, self, imageNumber, options);
+    }
+
+    /* the plugin copied what it needed when it was opened */
+    nrt_HashTable_destruct(&options);
+    return imageWriterObject;
+}
+
 
 /*
  * Class:     nitf_Writer
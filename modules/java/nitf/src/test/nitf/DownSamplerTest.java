@@ -0,0 +1,357 @@
+/*
+ * =========================================================================
+ * This file is part of NITRO
+ * =========================================================================
+ * 
+ * (C) Copyright 2004 - 2010, MDA Information Systems LLC
+ * 
+ * NITRO is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package nitf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests calling the built-in DownSamplers directly on direct buffers
+ */
+public class DownSamplerTest extends TestCase
+{
+    /** NITF_PIXEL_TYPE_INT */
+    private static final int PIXEL_TYPE_INT = 0x00080000;
+
+    /** NITF_PIXEL_TYPE_SI */
+    private static final int PIXEL_TYPE_SI = 0x00200000;
+
+    /** NITF_PIXEL_TYPE_R */
+    private static final int PIXEL_TYPE_R = 0x00400000;
+
+    /** NITF_PIXEL_TYPE_C */
+    private static final int PIXEL_TYPE_C = 0x00800000;
+
+    private static boolean apply(DownSampler downSampler, ByteBuffer in,
+            ByteBuffer out, int numInputCols, int numOutputCols)
+            throws NITFException
+    {
+        return apply(downSampler, in, out, numInputCols, numOutputCols,
+                PIXEL_TYPE_INT, 1, downSampler.getColSkip());
+    }
+
+    private static boolean apply(DownSampler downSampler, ByteBuffer in,
+            ByteBuffer out, int numInputCols, int numOutputCols,
+            int pixelType, int pixelSize, int colsInLastWindow)
+            throws NITFException
+    {
+        return downSampler.apply(new ByteBuffer[] { in },
+                new ByteBuffer[] { out }, 1, 1, numOutputCols, numInputCols,
+                numOutputCols, pixelType, pixelSize, downSampler.getRowSkip(),
+                colsInLastWindow);
+    }
+
+    private static ByteBuffer allocate(int size)
+    {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    public void testApplyMax() throws NITFException
+    {
+        ByteBuffer in = ByteBuffer.allocateDirect(8);
+        in.put(new byte[] { 1, 5, 2, 3, 9, 4, 0, 7 });
+        ByteBuffer out = ByteBuffer.allocateDirect(2);
+
+        assertTrue(apply(new MaxDownSampler(2, 2), in, out, 4, 2));
+        assertEquals(9, out.get(0));
+        assertEquals(7, out.get(1));
+
+        assertTrue(apply(new PixelSkipDownSampler(2, 2), in, out, 4, 2));
+        assertEquals(1, out.get(0));
+        assertEquals(2, out.get(1));
+    }
+
+    public void testApplyHeapBuffer() throws NITFException
+    {
+        try
+        {
+            apply(new MaxDownSampler(2, 2), ByteBuffer.allocate(8), ByteBuffer
+                    .allocateDirect(2), 4, 2);
+            fail("Expected a NITFException for a non-direct buffer");
+        }
+        catch (NITFException e)
+        {
+        }
+    }
+
+    public void testApplyShortBuffers() throws NITFException
+    {
+        DownSampler downSampler = new AverageDownSampler(2, 2);
+
+        // two rows of 2x2 windows need 2 * 2 * 4 input bytes and
+        // (2 - 1) * 3 + 2 output bytes
+        assertTrue(downSampler.apply(new ByteBuffer[] { allocate(16) },
+                new ByteBuffer[] { allocate(5) }, 1, 2, 2, 4, 3,
+                PIXEL_TYPE_INT, 1, 2, 2));
+        try
+        {
+            downSampler.apply(new ByteBuffer[] { allocate(15) },
+                    new ByteBuffer[] { allocate(5) }, 1, 2, 2, 4, 3,
+                    PIXEL_TYPE_INT, 1, 2, 2);
+            fail("Expected a NITFException for a short input buffer");
+        }
+        catch (NITFException e)
+        {
+        }
+        try
+        {
+            downSampler.apply(new ByteBuffer[] { allocate(16) },
+                    new ByteBuffer[] { allocate(4) }, 1, 2, 2, 4, 3,
+                    PIXEL_TYPE_INT, 1, 2, 2);
+            fail("Expected a NITFException for a short output buffer");
+        }
+        catch (NITFException e)
+        {
+        }
+
+        // every band needs a buffer
+        try
+        {
+            downSampler.apply(new ByteBuffer[] { allocate(16), null },
+                    new ByteBuffer[] { allocate(5), allocate(5) }, 2, 2, 2,
+                    4, 3, PIXEL_TYPE_INT, 1, 2, 2);
+            fail("Expected a NITFException for a missing input buffer");
+        }
+        catch (NITFException e)
+        {
+        }
+        try
+        {
+            downSampler.apply(new ByteBuffer[] { allocate(16) },
+                    new ByteBuffer[] { allocate(5) }, 2, 2, 2, 4, 3,
+                    PIXEL_TYPE_INT, 1, 2, 2);
+            fail("Expected a NITFException for too few buffers");
+        }
+        catch (NITFException e)
+        {
+        }
+    }
+
+    public void testApplyAverage() throws NITFException
+    {
+        ByteBuffer in = allocate(8);
+        in.put(new byte[] { 1, 5, 2, 3, 9, 4, 0, 7 });
+        ByteBuffer out = allocate(2);
+
+        // rounded to the nearest value
+        assertTrue(apply(new AverageDownSampler(2, 2), in, out, 4, 2));
+        assertEquals(5, out.get(0));
+        assertEquals(3, out.get(1));
+
+        // the last window is only one column wide
+        assertTrue(apply(new AverageDownSampler(2, 2), in, out, 4, 2,
+                PIXEL_TYPE_INT, 1, 1));
+        assertEquals(5, out.get(0));
+        assertEquals(1, out.get(1));
+
+        // signed values round away from zero
+        in = allocate(8);
+        in.asShortBuffer().put(new short[] { -3, -4, -300, 1 });
+        out = allocate(4);
+        assertTrue(apply(new AverageDownSampler(1, 2), in, out, 4, 2,
+                PIXEL_TYPE_SI, 2, 2));
+        assertEquals(-4, out.getShort(0));
+        assertEquals(-150, out.getShort(2));
+
+        in = allocate(16);
+        in.asFloatBuffer().put(new float[] { 1.5f, 2f, 3f, -1f });
+        out = allocate(4);
+        assertTrue(apply(new AverageDownSampler(2, 2), in, out, 2, 1,
+                PIXEL_TYPE_R, 4, 2));
+        assertEquals(1.375f, out.getFloat(0), 0f);
+
+        // complex parts are averaged separately
+        in = allocate(16);
+        in.asFloatBuffer().put(new float[] { 1f, 2f, 4f, 5f });
+        out = allocate(8);
+        assertTrue(apply(new AverageDownSampler(1, 2), in, out, 2, 1,
+                PIXEL_TYPE_C, 8, 2));
+        assertEquals(2.5f, out.getFloat(0), 0f);
+        assertEquals(3.5f, out.getFloat(4), 0f);
+    }
+
+    public void testApplyGaussian() throws NITFException
+    {
+        // a sigma of 1 reaches 3 pixels past the 2x2 window
+        GaussianDownSampler downSampler = new GaussianDownSampler(2, 2);
+        assertEquals(3, downSampler.getHalo());
+        assertEquals(1, new GaussianDownSampler(1, 1, 0.2).getHalo());
+
+        // the weights of the 8 rows and columns seen by the window
+        double[] weights = new double[8];
+        double sum = 0;
+        for (int i = 0; i < 8; ++i)
+        {
+            weights[i] = Math.exp(-(i - 3.5) * (i - 3.5) / 2);
+            sum += weights[i];
+        }
+
+        // the corners of the halo count for the same, the middle for most
+        ByteBuffer in = allocate(8 * 8 * 4);
+        in.asFloatBuffer().put(0, 1000f).put(63, 1000f);
+        ByteBuffer out = allocate(4);
+        assertTrue(downSampler.apply(new ByteBuffer[] { in },
+                new ByteBuffer[] { out }, 1, 1, 1, 8, 1, PIXEL_TYPE_R, 4, 2,
+                2));
+        assertEquals(2000 * weights[0] * weights[0] / (sum * sum), out
+                .getFloat(0), 1e-4);
+        in.asFloatBuffer().put(0, 0f).put(63, 0f).put(27, 1f);
+        assertTrue(downSampler.apply(new ByteBuffer[] { in },
+                new ByteBuffer[] { out }, 1, 1, 1, 8, 1, PIXEL_TYPE_R, 4, 2,
+                2));
+        assertEquals(weights[3] * weights[3] / (sum * sum), out.getFloat(0),
+                1e-6);
+
+        // a flat image stays flat, and neighboring windows share their halo
+        in = allocate(8 * 10);
+        for (int i = 0; i < 8 * 10; ++i)
+            in.put(i, (byte) (i % 10 < 5 ? 100 : 200));
+        out = allocate(2);
+        assertTrue(downSampler.apply(new ByteBuffer[] { in },
+                new ByteBuffer[] { out }, 1, 1, 2, 10, 2, PIXEL_TYPE_INT, 1,
+                2, 2));
+        assertTrue(out.get(0) > 100 && out.get(0) < 150);
+        assertEquals(300, (out.get(0) & 0xFF) + (out.get(1) & 0xFF));
+
+        // the input must have the halo around every window
+        try
+        {
+            downSampler.apply(new ByteBuffer[] { allocate(8 * 9) },
+                    new ByteBuffer[] { allocate(2) }, 1, 1, 2, 9, 2,
+                    PIXEL_TYPE_INT, 1, 2, 2);
+            fail("Expected a NITFException for a missing halo");
+        }
+        catch (NITFException e)
+        {
+        }
+
+        try
+        {
+            new GaussianDownSampler(2, 2, 0);
+            fail("Expected a NITFException for a zero sigma");
+        }
+        catch (NITFException e)
+        {
+        }
+    }
+
+    public void testApplyMedian() throws NITFException
+    {
+        ByteBuffer in = allocate(8);
+        in.put(new byte[] { 1, 5, 2, 3, 9, 4, 0, 7 });
+        ByteBuffer out = allocate(2);
+        assertTrue(apply(new MedianDownSampler(2, 2), in, out, 4, 2));
+        assertEquals(4, out.get(0));
+        assertEquals(2, out.get(1));
+
+        // unsigned, so 200 is the largest
+        in.put(1, (byte) 200);
+        in.put(4, (byte) 201);
+        assertTrue(apply(new MedianDownSampler(2, 2), in, out, 4, 2));
+        assertEquals(4, out.get(0));
+
+        in = allocate(16);
+        in.asIntBuffer().put(new int[] { -7, 3, -1, 100 });
+        out = allocate(4);
+        assertTrue(apply(new MedianDownSampler(1, 4), in, out, 4, 1,
+                PIXEL_TYPE_SI, 4, 4));
+        assertEquals(-1, out.getInt(0));
+
+        // ordered by absolute value
+        in = allocate(24);
+        in.asFloatBuffer().put(new float[] { 3f, 4f, -1f, 0f, 0f, -2f });
+        out = allocate(8);
+        assertTrue(apply(new MedianDownSampler(1, 3), in, out, 3, 1,
+                PIXEL_TYPE_C, 8, 3));
+        assertEquals(0f, out.getFloat(0), 0f);
+        assertEquals(-2f, out.getFloat(4), 0f);
+
+        // NaNs are ordered last, wherever they are in the window
+        float[][] windows = { { Float.NaN, 3f, 1f, 2f, Float.NaN },
+                { 2f, Float.NaN, 3f, Float.NaN, 1f } };
+        for (float[] window : windows)
+        {
+            in = allocate(20);
+            in.asFloatBuffer().put(window);
+            out = allocate(4);
+            assertTrue(apply(new MedianDownSampler(1, 5), in, out, 5, 1,
+                    PIXEL_TYPE_R, 4, 5));
+            assertEquals(3f, out.getFloat(0), 0f);
+        }
+    }
+
+    public void testApplyDetect() throws NITFException
+    {
+        // two bands, I then Q, detected into both
+        ByteBuffer i = allocate(4);
+        i.put(new byte[] { 3, -6, 0, 100 });
+        ByteBuffer q = allocate(4);
+        q.put(new byte[] { 4, 8, 0, 100 });
+        ByteBuffer outI = allocate(4);
+        ByteBuffer outQ = allocate(4);
+        DetectDownSampler downSampler = new DetectDownSampler(1, 1,
+                DetectDownSampler.MAGNITUDE);
+        assertTrue(downSampler.isMultiBand());
+        assertTrue(downSampler.apply(new ByteBuffer[] { i, q },
+                new ByteBuffer[] { outI, outQ }, 2, 1, 4, 4, 4, PIXEL_TYPE_SI,
+                1, 1, 1));
+        assertEquals(5, outI.get(0));
+        assertEquals(10, outQ.get(1));
+        assertEquals(0, outI.get(2));
+        // clipped to the type
+        assertEquals(127, outI.get(3));
+
+        // one complex band, the mean power of each window
+        ByteBuffer in = allocate(32);
+        in.asFloatBuffer().put(
+                new float[] { 1f, 1f, 1f, -1f, 0f, 3f, 0.5f, 0.5f });
+        ByteBuffer out = allocate(16);
+        assertTrue(apply(new DetectDownSampler(1, 3, DetectDownSampler.POWER),
+                in, out, 4, 2, PIXEL_TYPE_C, 8, 1));
+        assertEquals(13f / 3, out.getFloat(0), 1e-6f);
+        assertEquals(0f, out.getFloat(4), 0f);
+        assertEquals(0.5f, out.getFloat(8), 0f);
+
+        // 20 dB maps to the middle of 10 to 30 dB
+        assertTrue(apply(new DetectDownSampler(1, 1,
+                DetectDownSampler.DECIBELS, 10, 30), in, out, 4, 2,
+                PIXEL_TYPE_C, 8, 1));
+        assertEquals(0f, out.getFloat(0), 0f);
+        in.asFloatBuffer().put(0, 10f).put(1, 0f);
+        assertTrue(apply(new DetectDownSampler(1, 1,
+                DetectDownSampler.DECIBELS, 10, 30), in, out, 4, 1,
+                PIXEL_TYPE_C, 8, 1));
+        assertEquals(128f, out.getFloat(0), 0f);
+
+        try
+        {
+            new DetectDownSampler(1, 1, DetectDownSampler.DECIBELS, 30, 10);
+            fail("Expected a NITFException for an empty remap range");
+        }
+        catch (NITFException e)
+        {
+        }
+    }
+}
@@ -22,6 +22,13 @@
 
 package nitf;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -77,4 +84,253 @@ public class ImageSourceTest extends TestCase
             fail(ExceptionUtils.getStackTrace(e));
         }
     }
-}
\ No newline at end of file
+
+    public void testRowSource() throws NITFException
+    {
+        final int numRows = 10;
+        final int rowLength = 5;
+        final List<Integer> limits = new ArrayList<Integer>();
+        RowSource.RowProducer producer = new RowSource.RowProducer()
+        {
+            private int row = 0;
+
+            public void nextRows(int band, ByteBuffer buffer)
+                    throws NITFException
+            {
+                assertTrue(buffer.isDirect());
+                assertEquals(0, buffer.position());
+                limits.add(buffer.limit());
+                while (buffer.hasRemaining())
+                {
+                    buffer.put((byte) (row * 16 + buffer.position()
+                            % rowLength + band));
+                    if (buffer.position() % rowLength == 0)
+                        ++row;
+                }
+            }
+        };
+
+        ImageSource imageSource = new ImageSource();
+        assertTrue(imageSource.addBand(new RowSource(producer, 2, numRows,
+                rowLength, 3)));
+        BandSource source = imageSource.getBandSources()[0];
+        assertEquals(numRows * rowLength, source.getSize());
+
+        // read in pieces that straddle the batches
+        byte[] band = new byte[numRows * rowLength];
+        byte[] buf = new byte[7];
+        for (int offset = 0; offset < band.length; offset += buf.length)
+        {
+            int size = Math.min(buf.length, band.length - offset);
+            source.read(buf, size);
+            System.arraycopy(buf, 0, band, offset, size);
+        }
+        for (int i = 0; i < band.length; ++i)
+            assertEquals((byte) (i / rowLength * 16 + i % rowLength + 2),
+                    band[i]);
+
+        // three full batches, then what is left
+        assertEquals(4, limits.size());
+        assertEquals(15, limits.get(0).intValue());
+        assertEquals(15, limits.get(2).intValue());
+        assertEquals(5, limits.get(3).intValue());
+    }
+
+    public void testRowSourceError() throws NITFException
+    {
+        RowSource source = new RowSource(new RowSource.RowProducer()
+        {
+            public void nextRows(int band, ByteBuffer buffer)
+                    throws NITFException
+            {
+                throw new NITFException("No rows");
+            }
+        }, 0, 4, 4);
+
+        try
+        {
+            source.read(new byte[4], 4);
+            fail("Expected the producer's exception");
+        }
+        catch (NITFException e)
+        {
+            // expected
+        }
+    }
+
+    public void testDirectMemorySource() throws Exception
+    {
+        // 8 pixels of 3 bands of 2 bytes, split so pixels straddle buffers
+        byte[] data = new byte[48];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) i;
+        int[] lengths = { 11, 0, 20, 17 };
+        ByteBuffer[] buffers = new ByteBuffer[lengths.length];
+        for (int i = 0, offset = 0; i < lengths.length; offset += lengths[i++])
+        {
+            buffers[i] = ByteBuffer.allocateDirect(lengths[i]);
+            buffers[i].put(data, offset, lengths[i]);
+        }
+
+        DirectMemorySource source = new DirectMemorySource(buffers, 16, 2,
+                2, 2);
+        assertEquals(16, source.getSize());
+        byte[] band = new byte[16];
+        byte[] buf = new byte[10];
+        source.read(buf, 6);
+        System.arraycopy(buf, 0, band, 0, 6);
+        source.read(buf, 10);
+        System.arraycopy(buf, 0, band, 6, 10);
+        for (int i = 0; i < band.length; ++i)
+            assertEquals((byte) (i / 2 * 6 + 2 + i % 2), band[i]);
+
+        try
+        {
+            source.read(buf, 2);
+            fail("Expected a read past the end to fail");
+        }
+        catch (NITFException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            new DirectMemorySource(ByteBuffer.wrap(data), 48, 0, 1, 0);
+            fail("Expected a heap buffer to be refused");
+        }
+        catch (NITFException e)
+        {
+            // expected
+        }
+    }
+
+    public void testDirectMemorySourceMapped() throws Exception
+    {
+        File file = File.createTempFile("ImageSourceTest", ".raw");
+        try
+        {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try
+            {
+                raf.write(TEST_BUF);
+                FileChannel channel = raf.getChannel();
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        0, channel.size());
+
+                int size = TEST_BUF.length / TEST_BUF_NUM_BANDS;
+                ImageSource imageSource = new ImageSource();
+                for (int i = 0; i < TEST_BUF_NUM_BANDS; ++i)
+                    assertTrue(imageSource.addBand(new DirectMemorySource(
+                            mapped, size, i, 1, TEST_BUF_NUM_BANDS - 1)));
+
+                BandSource[] bandSources = imageSource.getBandSources();
+                for (int i = 0; i < bandSources.length; ++i)
+                {
+                    byte[] buf = new byte[size];
+                    bandSources[i].read(buf, buf.length);
+                    assertEquals(TEST_BUF_BANDS[i], new String(buf));
+                }
+            }
+            finally
+            {
+                raf.close();
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Fills a row of 5 pixels of 3 bands of 2 bytes, each byte telling where
+     * it came from
+     */
+    private static void putInterleavedRow(ByteBuffer buffer, int row)
+    {
+        for (int col = 0; col < 5; ++col)
+            for (int band = 0; band < 3; ++band)
+                for (int b = 0; b < 2; ++b)
+                    buffer.put((byte) (row * 64 + col * 8 + band * 2 + b));
+    }
+
+    private static void assertInterleavedBands(ImageSource imageSource,
+            int numRows) throws NITFException
+    {
+        BandSource[] bands = imageSource.getBandSources();
+        assertEquals(3, bands.length);
+        for (int band = 0; band < bands.length; ++band)
+            assertEquals(numRows * 10, bands[band].getSize());
+
+        // in step, a row at a time, like the image writer
+        byte[] buf = new byte[10];
+        for (int row = 0; row < numRows; ++row)
+        {
+            for (int band = 0; band < bands.length; ++band)
+            {
+                bands[band].read(buf, buf.length);
+                for (int i = 0; i < buf.length; ++i)
+                    assertEquals((byte) (row * 64 + i / 2 * 8 + band * 2 + i
+                            % 2), buf[i]);
+            }
+        }
+    }
+
+    public void testInterleavedImageSource() throws NITFException
+    {
+        ByteBuffer data = ByteBuffer.allocateDirect(4 * 30);
+        for (int row = 0; row < 4; ++row)
+            putInterleavedRow(data, row);
+        assertInterleavedBands(new InterleavedImageSource(data, 4, 5, 3, 2), 4);
+
+        byte[] array = new byte[data.capacity()];
+        data.clear();
+        data.get(array);
+        assertInterleavedBands(new InterleavedImageSource(array, 4, 5, 3, 2),
+                4);
+
+        try
+        {
+            new InterleavedImageSource(data, 5, 5, 3, 2);
+            fail("Expected a buffer that is too small to be refused");
+        }
+        catch (NITFException e)
+        {
+            // expected
+        }
+    }
+
+    public void testInterleavedImageSourceRows() throws NITFException
+    {
+        final int[] numRows = new int[1];
+        InterleavedImageSource.RowProducer producer = new InterleavedImageSource.RowProducer()
+        {
+            public void nextRow(ByteBuffer buffer) throws NITFException
+            {
+                assertTrue(buffer.isDirect());
+                assertEquals(30, buffer.remaining());
+                putInterleavedRow(buffer, numRows[0]++);
+            }
+        };
+        assertInterleavedBands(new InterleavedImageSource(producer, 3, 5, 3,
+                2), 3);
+        assertEquals(3, numRows[0]);
+
+        // the rows are produced once, so a band cannot run ahead
+        numRows[0] = 0;
+        BandSource[] bands = new InterleavedImageSource(producer, 3, 5, 3, 2)
+                .getBandSources();
+        byte[] buf = new byte[20];
+        bands[0].read(buf, buf.length);
+        try
+        {
+            bands[1].read(buf, 10);
+            fail("Expected reading out of step to fail");
+        }
+        catch (NITFException e)
+        {
+            // expected
+        }
+    }
+}
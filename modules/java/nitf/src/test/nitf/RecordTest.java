@@ -67,4 +67,70 @@ public class RecordTest extends TestCase
         }
     }
 
+    public void testCompressionOptions() throws NITFException
+    {
+        Record record = new Record();
+        ImageSubheader subheader = record.newImageSegment().getSubheader();
+        CompressionOptions options = new CompressionOptions();
+        options.setTileSize(256, 512);
+        try
+        {
+            options.apply(subheader);
+            fail("Expected the image size to be required");
+        }
+        catch (NITFException e)
+        {
+        }
+
+        subheader.getNumRows().setData("1000");
+        subheader.getNumCols().setData("600");
+        options.apply(subheader);
+        assertEquals("C8", subheader.getImageCompression().getStringData()
+                .trim());
+        assertEquals("B", subheader.getImageMode().getStringData().trim());
+        assertEquals(256, subheader.getNumPixelsPerHorizBlock().getIntData());
+        assertEquals(512, subheader.getNumPixelsPerVertBlock().getIntData());
+        assertEquals(3, subheader.getNumBlocksPerRow().getIntData());
+        assertEquals(2, subheader.getNumBlocksPerCol().getIntData());
+
+        // tiles are shrunk to the image
+        options.setTileSize(1024, 1024);
+        options.apply(subheader);
+        assertEquals(600, subheader.getNumPixelsPerHorizBlock().getIntData());
+        assertEquals(1000, subheader.getNumPixelsPerVertBlock().getIntData());
+        assertEquals(1, subheader.getNumBlocksPerRow().getIntData());
+        assertEquals(1, subheader.getNumBlocksPerCol().getIntData());
+
+        // blocks may be at most 8192 pixels on a side
+        subheader.getNumCols().setData("20000");
+        options.setTileSize(8192, 1024);
+        options.apply(subheader);
+        assertEquals(8192, subheader.getNumPixelsPerHorizBlock().getIntData());
+        options.setTileSize(8193, 1024);
+        try
+        {
+            options.apply(subheader);
+            fail("Expected a tile wider than 8192 to be rejected");
+        }
+        catch (NITFException e)
+        {
+        }
+
+        try
+        {
+            options.setCompression("C3");
+            fail("Expected JPEG to be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        try
+        {
+            options.setCompressionRatio(-1);
+            fail("Expected a negative ratio to be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
 }